@@ -0,0 +1,419 @@
+package com.theKidOfArcrania.asm.editor.batch;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static java.lang.System.err;
+import static java.lang.System.out;
+
+/**
+ * Disassembles every method of every class within a jar file into text listings. The classes are read sequentially
+ * from the jar, and then fanned out across a {@link ForkJoinPool} to be disassembled. The listings are either
+ * written as one listing file per class within an output directory, or as entries of a single zip archive.
+ * <p>
+ * The number of classes that are read but not yet written out is bounded by an in-flight limit, which bounds the
+ * memory used by the class data and the method bodies. Once a class is written, its class data and method bodies are
+ * released (see {@link ClassContext#releaseClassData()}) if this disassembler loaded that class itself; classes that
+ * were already loaded (i.e. by an editor or an earlier run) are left as they are. Classes that are resolved from the
+ * class path only read their method bodies once they are needed, so those found in the jar are released as well
+ * unless their method bodies were already read, and only the class meta-data of every class stays loaded. Note that
+ * loading class data into a class context is synchronized, so only the disassembly and the writing of the listings
+ * runs in parallel.
+ * <p>
+ * A class whose name would place its listing outside of the output directory (or the archive root) is rejected, and
+ * counted as a failure.
+ * @author Henry Wang
+ */
+public class JarDisassembler
+{
+    public static final String LISTING_EXT = ".asm";
+    public static final int DEFAULT_IN_FLIGHT = 64;
+
+    private static final String CLASS_EXT = ".class";
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final double NANOS_PER_SEC = 1e9;
+
+    /**
+     * A writer that counts the number of characters written through it.
+     */
+    private static class CountingWriter extends FilterWriter
+    {
+        private long count;
+
+        /**
+         * Constructs a counting writer.
+         * @param out the underlying writer.
+         */
+        public CountingWriter(Writer out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException
+        {
+            super.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException
+        {
+            super.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException
+        {
+            super.write(str, off, len);
+            count += len;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int inFlightLimit;
+    private final Semaphore inFlight;
+
+    private final AtomicInteger classes;
+    private final AtomicInteger methods;
+    private final AtomicInteger failures;
+    private final AtomicLong bytesRead;
+    private final AtomicLong charsWritten;
+
+    /**
+     * Constructs a jar disassembler.
+     * @param parallelism the number of worker threads to disassemble classes with.
+     * @param inFlightLimit the maximum number of classes that are read but not yet written out.
+     * @throws IllegalArgumentException if either parameter is not positive.
+     */
+    public JarDisassembler(int parallelism, int inFlightLimit)
+    {
+        if (inFlightLimit <= 0)
+            throw new IllegalArgumentException("Expected a positive in-flight limit.");
+        this.pool = new ForkJoinPool(parallelism);
+        this.inFlightLimit = inFlightLimit;
+        this.inFlight = new Semaphore(inFlightLimit);
+
+        classes = new AtomicInteger();
+        methods = new AtomicInteger();
+        failures = new AtomicInteger();
+        bytesRead = new AtomicLong();
+        charsWritten = new AtomicLong();
+    }
+
+    /**
+     * Disassembles all the classes in the jar file into the output directory. Each class has its own listing file,
+     * with the class's internal name as the relative path of the file.
+     * @param jar the path of the jar file.
+     * @param outDir the output directory.
+     * @throws IOException if an I/O error occurs while reading the jar file.
+     * @throws InterruptedException if this is interrupted while waiting for the classes to be disassembled.
+     */
+    public void disassembleToDirectory(Path jar, Path outDir) throws IOException, InterruptedException
+    {
+        Path root = outDir.toAbsolutePath().normalize();
+        disassemble(jar, (name, ctx) -> {
+            Path file = root.resolve(checkListingName(name)).normalize();
+            if (!file.startsWith(root))
+                throw new IOException("Listing of '" + name + "' is outside of the output directory.");
+            Files.createDirectories(file.getParent());
+            try (CountingWriter writer = new CountingWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8)))
+            {
+                writeListing(ctx, writer);
+                charsWritten.addAndGet(writer.count);
+            }
+        });
+    }
+
+    /**
+     * Disassembles all the classes in the jar file into a single zip archive. Each class has its own entry, with the
+     * class's internal name as the path of the entry.
+     * @param jar the path of the jar file.
+     * @param archive the path of the zip archive to create.
+     * @throws IOException if an I/O error occurs while reading the jar file, or writing the archive.
+     * @throws InterruptedException if this is interrupted while waiting for the classes to be disassembled.
+     */
+    public void disassembleToArchive(Path jar, Path archive) throws IOException, InterruptedException
+    {
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(archive))))
+        {
+            disassemble(jar, (name, ctx) -> {
+                StringBuilder listing = new StringBuilder();
+                writeListing(ctx, listing);
+                byte[] data = listing.toString().getBytes(StandardCharsets.UTF_8);
+                synchronized (zip)
+                {
+                    zip.putNextEntry(new ZipEntry(checkListingName(name)));
+                    zip.write(data);
+                    zip.closeEntry();
+                }
+                charsWritten.addAndGet(listing.length());
+            });
+        }
+    }
+
+    /**
+     * Shuts down the worker threads of this disassembler.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    public int getClassCount()
+    {
+        return classes.get();
+    }
+
+    public int getMethodCount()
+    {
+        return methods.get();
+    }
+
+    public int getFailureCount()
+    {
+        return failures.get();
+    }
+
+    public long getBytesRead()
+    {
+        return bytesRead.get();
+    }
+
+    public long getCharsWritten()
+    {
+        return charsWritten.get();
+    }
+
+    /**
+     * Reads all the classes from the jar file and submits each class to be disassembled. This will wait until all
+     * the submitted classes have been disassembled.
+     * @param jar the path of the jar file.
+     * @param writer the action that writes the listing of a single class.
+     * @throws IOException if an I/O error occurs while reading the jar file.
+     * @throws InterruptedException if this is interrupted while waiting for the classes to be disassembled.
+     */
+    private void disassemble(Path jar, ListingWriter writer) throws IOException, InterruptedException
+    {
+        try (JarFile file = new JarFile(jar.toFile()))
+        {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements())
+            {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(CLASS_EXT))
+                    continue;
+
+                inFlight.acquire();
+                byte[] data;
+                try (InputStream in = file.getInputStream(entry))
+                {
+                    data = readFully(in);
+                }
+                catch (IOException | RuntimeException e)
+                {
+                    inFlight.release();
+                    throw e;
+                }
+                bytesRead.addAndGet(data.length);
+                pool.execute(() -> process(entry.getName(), data, writer));
+            }
+        }
+        finally
+        {
+            inFlight.acquire(inFlightLimit);
+            inFlight.release(inFlightLimit);
+        }
+    }
+
+    /**
+     * Loads and disassembles a single class. Any errors are reported, and counted as a failure.
+     * @param entryName the name of the jar entry containing the class.
+     * @param data the class data.
+     * @param writer the action that writes the listing of the class.
+     */
+    private void process(String entryName, byte[] data, ListingWriter writer)
+    {
+        try
+        {
+            ClassReader reader = new ClassReader(data);
+            ClassContext ctx;
+            boolean loaded = false;
+            try
+            {
+                ctx = ClassContext.loadContext(reader);
+                loaded = true;
+            }
+            catch (IllegalArgumentException e)
+            {
+                //Already loaded (i.e. also found on the class path), so we reuse that one. Its class data is only
+                //released if it is this run that reads it in.
+                ctx = ClassContext.findContext(reader.getClassName());
+                if (ctx == null)
+                    throw e;
+                loaded = !ctx.isClassDataLoaded();
+            }
+
+            try
+            {
+                writer.write(reader.getClassName(), ctx);
+                classes.incrementAndGet();
+            }
+            finally
+            {
+                //Only release what we loaded, since others might still need the class data.
+                if (loaded)
+                    ctx.releaseClassData();
+            }
+        }
+        catch (Exception e)
+        {
+            failures.incrementAndGet();
+            err.println("Failed to disassemble " + entryName + ": " + e);
+        }
+        finally
+        {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Writes the listing of all the methods of a class, separated by blank lines.
+     * @param ctx the class context.
+     * @param listing the output to write to.
+     * @throws IOException if an I/O error occurs while writing.
+     */
+    private void writeListing(ClassContext ctx, Appendable listing) throws IOException
+    {
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        List<MethodContext> mths = ctx.getMethods();
+        for (MethodContext mth : mths)
+        {
+            mth.readCode(global, listing);
+            listing.append("\n\n");
+        }
+        methods.addAndGet(mths.size());
+    }
+
+    /**
+     * Obtains the relative path of the listing of a class, ensuring that it stays within the output root.
+     * @param name the internal name of the class.
+     * @return the relative path of the listing.
+     * @throws IOException if the name is absolute, or has an empty, "." or ".." path segment.
+     */
+    private static String checkListingName(String name) throws IOException
+    {
+        if (name.startsWith("/") || name.indexOf('\\') != -1 || name.indexOf(':') != -1)
+            throw new IOException("Illegal listing name: '" + name + "'");
+        for (String segment : name.split("/", -1))
+        {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals(".."))
+                throw new IOException("Illegal listing name: '" + name + "'");
+        }
+        return name + LISTING_EXT;
+    }
+
+    /**
+     * Reads all the remaining bytes of an input stream.
+     * @param in the input stream.
+     * @return the bytes read.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static byte[] readFully(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buff = new byte[8192];
+        int read;
+        while ((read = in.read(buff)) != -1)
+            bout.write(buff, 0, read);
+        return bout.toByteArray();
+    }
+
+    /**
+     * Writes out the listing of a single class.
+     */
+    @FunctionalInterface
+    private interface ListingWriter
+    {
+        /**
+         * Writes the listing of a single class.
+         * @param name the internal name of the class.
+         * @param ctx the loaded class context.
+         * @throws IOException if an I/O error occurs while writing.
+         */
+        void write(String name, ClassContext ctx) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        int inFlightLimit = DEFAULT_IN_FLIGHT;
+
+        int ind = 0;
+        try
+        {
+            for (; ind < args.length && args[ind].startsWith("-"); ind++)
+            {
+                switch (args[ind])
+                {
+                    case "-j": parallelism = Integer.parseInt(args[++ind]); break;
+                    case "-n": inFlightLimit = Integer.parseInt(args[++ind]); break;
+                    default: throw new IllegalArgumentException(args[ind]);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            ind = args.length;
+        }
+
+        if (args.length - ind != 2)
+        {
+            err.println("Usage: JarDisassembler [-j threads] [-n in-flight-limit] <jar> <output-dir | output.zip>");
+            System.exit(1);
+        }
+
+        Path jar = Paths.get(args[ind]);
+        Path output = Paths.get(args[ind + 1]);
+
+        JarDisassembler disasm = new JarDisassembler(parallelism, inFlightLimit);
+        long start = System.nanoTime();
+        try
+        {
+            if (output.toString().endsWith(".zip"))
+                disasm.disassembleToArchive(jar, output);
+            else
+                disasm.disassembleToDirectory(jar, output);
+        }
+        finally
+        {
+            disasm.shutdown();
+        }
+        double secs = (System.nanoTime() - start) / NANOS_PER_SEC;
+
+        out.printf("%d classes (%d methods, %d failed) in %.3f s%n", disasm.getClassCount(),
+                disasm.getMethodCount(), disasm.getFailureCount(), secs);
+        out.printf("Read %.2f MB of classes (%.2f MB/s), wrote %.2f MB of listings (%.2f MB/s)%n",
+                disasm.getBytesRead() / MEGABYTE, disasm.getBytesRead() / MEGABYTE / secs,
+                disasm.getCharsWritten() / MEGABYTE, disasm.getCharsWritten() / MEGABYTE / secs);
+    }
+}
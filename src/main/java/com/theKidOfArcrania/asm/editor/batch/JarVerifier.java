@@ -0,0 +1,537 @@
+package com.theKidOfArcrania.asm.editor.batch;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.highlight.TagType;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameError;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameErrorCode;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.lang.System.err;
+import static java.lang.System.out;
+
+/**
+ * Verifies the frames of every method of every class within a jar file, using the same {@link CodeParser} and frame
+ * verifier as the editor. This runs in two phases. First, all the classes are read sequentially from the jar and
+ * loaded into class contexts, so that the class hierarchy is complete before any method is verified (otherwise a
+ * class of the jar might not be found while verifying another class that refers to it). Then every method is fanned
+ * out across a {@link ForkJoinPool} as its own task.
+ * <p>
+ * Each task disassembles, parses and verifies its method with its own code symbols, parser and verifier, so the
+ * tasks share no mutable state besides the class contexts, which are only read while verifying. Finding an already
+ * resolved class context does not take any locks, so the tasks do not contend with each other.
+ * <p>
+ * The results are streamed to a {@link Listener} as they come in: one {@link Diagnostic} per error, and one
+ * {@link ClassSummary} per class once all its methods are verified. The listener is called from the worker threads,
+ * so it must be thread-safe.
+ * @author Henry Wang
+ */
+public class JarVerifier
+{
+    private static final String CLASS_EXT = ".class";
+    private static final double NANOS_PER_SEC = 1e9;
+    private static final double NANOS_PER_MILLI = 1e6;
+    private static final int TOP_CLASSES = 20;
+
+    /**
+     * Receives the results of a verification. These methods are called from the worker threads.
+     */
+    public interface Listener
+    {
+        /**
+         * Reports an error found in a method.
+         * @param diag the error.
+         */
+        void reportDiagnostic(Diagnostic diag);
+
+        /**
+         * Reports that all the methods of a class have been verified.
+         * @param summary the summary of the class.
+         */
+        void classVerified(ClassSummary summary);
+    }
+
+    /**
+     * Represents an error found in a method. This is either a frame error found by the verifier (with an error
+     * code), or an error found while parsing the disassembled code of the method (without an error code).
+     */
+    public static class Diagnostic
+    {
+        private final String className;
+        private final String method;
+        private final int line;
+        private final FrameErrorCode code;
+        private final String message;
+
+        /**
+         * Constructs a diagnostic.
+         * @param className the internal name of the class.
+         * @param method the name and descriptor of the method.
+         * @param line the line number within the method listing (starting from 1), or 0 if unknown.
+         * @param code the frame error code, or null if this is not a frame error.
+         * @param message the error message.
+         */
+        public Diagnostic(String className, String method, int line, FrameErrorCode code, String message)
+        {
+            this.className = className;
+            this.method = method;
+            this.line = line;
+            this.code = code;
+            this.message = message;
+        }
+
+        public String getClassName()
+        {
+            return className;
+        }
+
+        public String getMethod()
+        {
+            return method;
+        }
+
+        public int getLine()
+        {
+            return line;
+        }
+
+        public FrameErrorCode getCode()
+        {
+            return code;
+        }
+
+        public String getMessage()
+        {
+            return message;
+        }
+
+        @Override
+        public String toString()
+        {
+            return className + "." + method + ":" + line + ": " + (code == null ? "PARSE" : code.name()) + ": " +
+                    message;
+        }
+    }
+
+    /**
+     * Summarizes the verification of all the methods of a class.
+     */
+    public static class ClassSummary
+    {
+        private final String name;
+        private final int methods;
+        private final int errors;
+        private final long nanos;
+
+        /**
+         * Constructs a class summary.
+         * @param name the internal name of the class.
+         * @param methods the number of methods verified.
+         * @param errors the number of diagnostics reported.
+         * @param nanos the total time spent on the methods, summed over all the worker threads.
+         */
+        public ClassSummary(String name, int methods, int errors, long nanos)
+        {
+            this.name = name;
+            this.methods = methods;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        public String getName()
+        {
+            return name;
+        }
+
+        public int getMethodCount()
+        {
+            return methods;
+        }
+
+        public int getErrorCount()
+        {
+            return errors;
+        }
+
+        public long getNanos()
+        {
+            return nanos;
+        }
+    }
+
+    /**
+     * The progress of verifying the methods of one class.
+     */
+    private static class ClassJob
+    {
+        private final String name;
+        private final ClassContext ctx;
+        private final int methods;
+        private final AtomicInteger remaining;
+        private final AtomicInteger errors;
+        private final AtomicLong nanos;
+
+        /**
+         * Constructs a class job.
+         * @param name the internal name of the class.
+         * @param ctx the loaded class context.
+         * @param methods the number of methods to verify.
+         */
+        public ClassJob(String name, ClassContext ctx, int methods)
+        {
+            this.name = name;
+            this.ctx = ctx;
+            this.methods = methods;
+            remaining = new AtomicInteger(methods);
+            errors = new AtomicInteger();
+            nanos = new AtomicLong();
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    private final AtomicInteger classes;
+    private final AtomicInteger methods;
+    private final AtomicInteger errors;
+    private final AtomicInteger failures;
+
+    /**
+     * Constructs a jar verifier.
+     * @param parallelism the number of worker threads to verify methods with.
+     */
+    public JarVerifier(int parallelism)
+    {
+        pool = new ForkJoinPool(parallelism);
+        classes = new AtomicInteger();
+        methods = new AtomicInteger();
+        errors = new AtomicInteger();
+        failures = new AtomicInteger();
+    }
+
+    /**
+     * Verifies all the methods of all the classes in the jar file. This will wait until all the methods have been
+     * verified.
+     * @param jar the path of the jar file.
+     * @param listener the listener to report the results to.
+     * @throws IOException if an I/O error occurs while reading the jar file.
+     * @throws InterruptedException if this is interrupted while waiting for the methods to be verified.
+     */
+    public void verify(Path jar, Listener listener) throws IOException, InterruptedException
+    {
+        List<ClassJob> jobs = new ArrayList<>();
+        try (JarFile file = new JarFile(jar.toFile()))
+        {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements())
+            {
+                JarEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !entry.getName().endsWith(CLASS_EXT))
+                    continue;
+
+                byte[] data;
+                try (InputStream in = file.getInputStream(entry))
+                {
+                    data = readFully(in);
+                }
+                ClassJob job = load(entry.getName(), data);
+                if (job != null)
+                    jobs.add(job);
+            }
+        }
+
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (ClassJob job : jobs)
+        {
+            if (job.methods == 0)
+            {
+                classes.incrementAndGet();
+                listener.classVerified(new ClassSummary(job.name, 0, 0, 0));
+                continue;
+            }
+            for (MethodContext mth : job.ctx.getMethods())
+            {
+                if (hasCode(mth))
+                    tasks.add(pool.submit(() -> verifyMethod(job, mth, listener)));
+            }
+        }
+
+        for (ForkJoinTask<?> task : tasks)
+        {
+            try
+            {
+                task.get();
+            }
+            catch (ExecutionException e)
+            {
+                //Should not happen, since every failure is caught within the task.
+                throw new InternalError(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Shuts down the worker threads of this verifier.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    public int getClassCount()
+    {
+        return classes.get();
+    }
+
+    public int getMethodCount()
+    {
+        return methods.get();
+    }
+
+    public int getErrorCount()
+    {
+        return errors.get();
+    }
+
+    public int getFailureCount()
+    {
+        return failures.get();
+    }
+
+    /**
+     * Loads a single class into a class context. Any errors are reported, and counted as a failure.
+     * @param entryName the name of the jar entry containing the class.
+     * @param data the class data.
+     * @return the job of verifying the class, or null if the class cannot be loaded.
+     */
+    private ClassJob load(String entryName, byte[] data)
+    {
+        try
+        {
+            ClassReader reader = new ClassReader(data);
+            ClassContext ctx;
+            try
+            {
+                ctx = ClassContext.loadContext(reader);
+            }
+            catch (IllegalArgumentException e)
+            {
+                //Already loaded (i.e. also found on the class path), so we reuse that one.
+                ctx = ClassContext.findContext(reader.getClassName());
+                if (ctx == null)
+                    throw e;
+            }
+
+            int count = 0;
+            for (MethodContext mth : ctx.getMethods())
+            {
+                if (hasCode(mth))
+                    count++;
+            }
+            return new ClassJob(reader.getClassName(), ctx, count);
+        }
+        catch (Exception e)
+        {
+            failures.incrementAndGet();
+            err.println("Failed to load " + entryName + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Disassembles, parses and verifies a single method. Any errors are reported to the listener. If this is the last
+     * method of its class to be verified, the summary of the class is reported as well.
+     * @param job the class job that the method belongs to.
+     * @param mth the method to verify.
+     * @param listener the listener to report the results to.
+     */
+    private void verifyMethod(ClassJob job, MethodContext mth, Listener listener)
+    {
+        long start = System.nanoTime();
+        String method = mth.getName() + mth.getSignature();
+        int found = 0;
+        try
+        {
+            CodeSymbols global = new CodeSymbols(null, job.ctx);
+            List<Tag> parseErrors = new ArrayList<>();
+            CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), new Highlighter()
+            {
+                @Override
+                public void insertTag(Tag tag)
+                {
+                    if (tag.getType() == TagType.ERROR)
+                        parseErrors.add(tag);
+                }
+
+                @Override
+                public void insertSyntax(Syntax syn)
+                {
+
+                }
+            });
+
+            if (!parser.reparse(false) || !parser.resolveSymbols())
+            {
+                for (Tag tag : parseErrors)
+                {
+                    listener.reportDiagnostic(new Diagnostic(job.name, method, lineOf(tag.getSpan()), null,
+                            tag.getTagDescription()));
+                    found++;
+                }
+            }
+            else if (!parser.verifyStack())
+            {
+                for (FrameError error : parser.getVerifier().getErrors())
+                {
+                    listener.reportDiagnostic(new Diagnostic(job.name, method,
+                            lineOf(error.getInstruction().getLineRange()), error.getCode(), error.getMessage()));
+                    found++;
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            failures.incrementAndGet();
+            err.println("Failed to verify " + job.name + "." + method + ": " + e);
+        }
+
+        methods.incrementAndGet();
+        errors.addAndGet(found);
+        job.errors.addAndGet(found);
+        job.nanos.addAndGet(System.nanoTime() - start);
+        if (job.remaining.decrementAndGet() == 0)
+        {
+            classes.incrementAndGet();
+            listener.classVerified(new ClassSummary(job.name, job.methods, job.errors.get(), job.nanos.get()));
+        }
+    }
+
+    /**
+     * Determines whether if a method has code to verify.
+     * @param mth the method.
+     * @return true if the method has code, false if it is abstract or native.
+     */
+    private static boolean hasCode(MethodContext mth)
+    {
+        return !Modifier.isAbstract(mth.getModifiers()) && !Modifier.isNative(mth.getModifiers());
+    }
+
+    /**
+     * Obtains the line number (starting from 1) of a range.
+     * @param range the range, or null.
+     * @return the line number, or 0 if there is no range.
+     */
+    private static int lineOf(Range range)
+    {
+        return range == null ? 0 : range.getStart().getLineNumber() + 1;
+    }
+
+    /**
+     * Reads all the remaining bytes of an input stream.
+     * @param in the input stream.
+     * @return the bytes read.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static byte[] readFully(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buff = new byte[8192];
+        int read;
+        while ((read = in.read(buff)) != -1)
+            bout.write(buff, 0, read);
+        return bout.toByteArray();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+
+        int ind = 0;
+        try
+        {
+            for (; ind < args.length && args[ind].startsWith("-"); ind++)
+            {
+                switch (args[ind])
+                {
+                    case "-j": parallelism = Integer.parseInt(args[++ind]); break;
+                    default: throw new IllegalArgumentException(args[ind]);
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            ind = args.length;
+        }
+
+        if (args.length - ind != 1)
+        {
+            err.println("Usage: JarVerifier [-j threads] <jar>");
+            System.exit(1);
+        }
+
+        List<ClassSummary> summaries = new ArrayList<>();
+        JarVerifier verifier = new JarVerifier(parallelism);
+        long start = System.nanoTime();
+        try
+        {
+            verifier.verify(Paths.get(args[ind]), new Listener()
+            {
+                @Override
+                public void reportDiagnostic(Diagnostic diag)
+                {
+                    synchronized (out)
+                    {
+                        out.println(diag);
+                    }
+                }
+
+                @Override
+                public synchronized void classVerified(ClassSummary summary)
+                {
+                    summaries.add(summary);
+                }
+            });
+        }
+        finally
+        {
+            verifier.shutdown();
+        }
+        double secs = (System.nanoTime() - start) / NANOS_PER_SEC;
+
+        summaries.sort((a, b) -> Long.compare(b.getNanos(), a.getNanos()));
+        out.println();
+        out.printf("%-60s %8s %8s %10s%n", "Class", "methods", "errors", "ms");
+        for (ClassSummary summary : summaries.subList(0, Math.min(TOP_CLASSES, summaries.size())))
+        {
+            out.printf("%-60s %8d %8d %10.2f%n", summary.getName(), summary.getMethodCount(),
+                    summary.getErrorCount(), summary.getNanos() / NANOS_PER_MILLI);
+        }
+
+        out.println();
+        out.printf("%d classes (%d methods, %d errors, %d failed) in %.3f s (%.0f methods/s on %d threads)%n",
+                verifier.getClassCount(), verifier.getMethodCount(), verifier.getErrorCount(),
+                verifier.getFailureCount(), secs, verifier.getMethodCount() / secs, parallelism);
+    }
+}
@@ -0,0 +1,217 @@
+package com.theKidOfArcrania.asm.editor.code.highlight;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records all the highlights emitted by a code parser as a flat list of single-line spans, packed into a primitive
+ * array. Each span consists of a line number, a starting and ending column, a style id (from
+ * {@link HighlightStyles}), and the index of its tag if it is from a tag. Syntax highlights are recorded without
+ * creating any objects at all, and only the tags are kept as objects, since they carry a message.
+ * <p>
+ * A tag that spans over multiple lines is split into one span per line, where all the spans except the last one reach
+ * until {@link #END_OF_LINE}. A buffer is meant to be cleared and reused for every parse pass.
+ * @author Henry Wang
+ */
+public class HighlightBuffer implements Highlighter
+{
+    /**
+     * The ending column of a span that reaches until the end of its line.
+     */
+    public static final int END_OF_LINE = Integer.MAX_VALUE;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    //Rough size of a tag, including its range and positions, but not its message.
+    private static final int TAG_BYTES = 96;
+
+    private static final int LINE = 0;
+    private static final int START = 1;
+    private static final int END = 2;
+    private static final int STYLE = 3;
+    private static final int TAG = 4;
+    private static final int STRIDE = 5;
+
+    private final ArrayList<Tag> tags;
+    private int[] spans;
+    private int count;
+
+    /**
+     * Creates a new empty highlight buffer.
+     */
+    public HighlightBuffer()
+    {
+        tags = new ArrayList<>();
+        spans = new int[INITIAL_CAPACITY * STRIDE];
+    }
+
+    /**
+     * Removes all the spans and tags from this buffer, keeping the allocated space for the next parse pass.
+     */
+    public void clear()
+    {
+        count = 0;
+        tags.clear();
+    }
+
+    /**
+     * Obtains the number of single-line spans within this buffer.
+     * @return the number of spans.
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    public boolean isEmpty()
+    {
+        return count == 0;
+    }
+
+    /**
+     * Estimates the number of bytes retained by this buffer, which is mostly the span array. Since the buffer keeps
+     * its space between passes, this is the size of the largest pass so far, not of the current one.
+     * @return the estimated size in bytes.
+     */
+    public long estimateSize()
+    {
+        return (long)spans.length * Integer.BYTES + (long)tags.size() * TAG_BYTES;
+    }
+
+    /**
+     * Obtains the line number of a span.
+     * @param index the index of the span.
+     * @return the 1-based line number.
+     */
+    public int getLineNumber(int index)
+    {
+        return spans[checkIndex(index) + LINE];
+    }
+
+    /**
+     * Obtains the starting column of a span.
+     * @param index the index of the span.
+     * @return the starting column (inclusive).
+     */
+    public int getStart(int index)
+    {
+        return spans[checkIndex(index) + START];
+    }
+
+    /**
+     * Obtains the ending column of a span.
+     * @param index the index of the span.
+     * @return the ending column (exclusive), or {@link #END_OF_LINE} if this reaches until the end of the line.
+     */
+    public int getEnd(int index)
+    {
+        return spans[checkIndex(index) + END];
+    }
+
+    /**
+     * Obtains the style id of a span.
+     * @param index the index of the span.
+     * @return the style id.
+     * @see HighlightStyles#getStyleId(Enum)
+     */
+    public int getStyleId(int index)
+    {
+        return spans[checkIndex(index) + STYLE];
+    }
+
+    /**
+     * Obtains the tag of a span.
+     * @param index the index of the span.
+     * @return the tag, or null if this span is a syntax highlight.
+     */
+    public Tag getTag(int index)
+    {
+        int tag = spans[checkIndex(index) + TAG];
+        return tag == -1 ? null : tags.get(tag);
+    }
+
+    /**
+     * Obtains all the tags within this buffer, in the order they are inserted.
+     * @return a read-only list of tags.
+     */
+    public List<Tag> getTags()
+    {
+        return Collections.unmodifiableList(tags);
+    }
+
+    @Override
+    public void insertTag(Tag tag)
+    {
+        int tagIndex = tags.size();
+        tags.add(tag);
+        insertRange(tag.getSpan(), HighlightStyles.getStyleId(tag.getType()), tagIndex);
+    }
+
+    @Override
+    public void insertSyntax(Syntax syn)
+    {
+        insertRange(syn.getSpan(), HighlightStyles.getStyleId(syn.getType()), -1);
+    }
+
+    @Override
+    public void insertSyntax(int lineNum, int start, int end, SyntaxType type)
+    {
+        append(lineNum, start, end, HighlightStyles.getStyleId(type), -1);
+    }
+
+    /**
+     * Inserts a range that may span over multiple lines, splitting it into single-line spans.
+     * @param span the range to insert.
+     * @param styleId the style id of the range.
+     * @param tag the tag index, or -1 if none.
+     */
+    private void insertRange(Range span, int styleId, int tag)
+    {
+        int startLine = span.getStart().getLineNumber();
+        int endLine = span.getEnd().getLineNumber();
+        for (int line = startLine; line <= endLine; line++)
+        {
+            int start = line == startLine ? span.getStart().getColumnNumber() : 0;
+            int end = line == endLine ? span.getEnd().getColumnNumber() : END_OF_LINE;
+            append(line, start, end, styleId, tag);
+        }
+    }
+
+    /**
+     * Appends a single-line span, growing the buffer if necessary.
+     * @param lineNum the line number.
+     * @param start the starting column.
+     * @param end the ending column.
+     * @param styleId the style id.
+     * @param tag the tag index, or -1 if none.
+     */
+    private void append(int lineNum, int start, int end, int styleId, int tag)
+    {
+        int off = count * STRIDE;
+        if (off == spans.length)
+            spans = Arrays.copyOf(spans, spans.length * 2);
+        spans[off + LINE] = lineNum;
+        spans[off + START] = start;
+        spans[off + END] = end;
+        spans[off + STYLE] = styleId;
+        spans[off + TAG] = tag;
+        count++;
+    }
+
+    /**
+     * Checks that a span index is within range.
+     * @param index the index of the span.
+     * @return the offset of the span within the array.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    private int checkIndex(int index)
+    {
+        if (index < 0 || index >= count)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        return index * STRIDE;
+    }
+}
@@ -0,0 +1,84 @@
+package com.theKidOfArcrania.asm.editor.code.highlight;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Assigns every highlight type (i.e. all the {@link SyntaxType} and {@link TagType} values) a style id, so that the
+ * set of highlight types over a range can be packed into a single bitmask. The collection of style classes for each
+ * bitmask is only computed once, and is then shared by all the spans with the same highlight types.
+ * @author Henry Wang
+ */
+public final class HighlightStyles
+{
+    private static final Enum<?>[] TYPES;
+    private static final AtomicReferenceArray<Collection<String>> STYLE_CLASSES;
+
+    static
+    {
+        SyntaxType[] syntaxes = SyntaxType.values();
+        TagType[] tags = TagType.values();
+        TYPES = new Enum<?>[syntaxes.length + tags.length];
+        System.arraycopy(syntaxes, 0, TYPES, 0, syntaxes.length);
+        System.arraycopy(tags, 0, TYPES, syntaxes.length, tags.length);
+        if (TYPES.length >= Integer.SIZE)
+            throw new AssertionError("Too many highlight types for a bitmask.");
+        STYLE_CLASSES = new AtomicReferenceArray<>(1 << TYPES.length);
+    }
+
+    private HighlightStyles()
+    {
+    }
+
+    /**
+     * Obtains the style id of a highlight type.
+     * @param type the highlight type, either a {@link SyntaxType} or a {@link TagType}.
+     * @return the style id.
+     * @throws IllegalArgumentException if this is not a highlight type.
+     */
+    public static int getStyleId(Enum<?> type)
+    {
+        if (type instanceof SyntaxType)
+            return type.ordinal();
+        else if (type instanceof TagType)
+            return SyntaxType.values().length + type.ordinal();
+        else
+            throw new IllegalArgumentException("Not a highlight type: " + type);
+    }
+
+    /**
+     * Obtains the bitmask of a single highlight type.
+     * @param type the highlight type, either a {@link SyntaxType} or a {@link TagType}.
+     * @return the bitmask with only the bit of its style id set.
+     */
+    public static int getStyleBit(Enum<?> type)
+    {
+        return 1 << getStyleId(type);
+    }
+
+    /**
+     * Obtains the style classes of all the highlight types within a bitmask. This is computed on first use, and the
+     * same collection is returned for the same bitmask afterwards.
+     * @param mask the bitmask of style ids.
+     * @return a read-only collection of style class names.
+     */
+    public static Collection<String> getStyleClasses(int mask)
+    {
+        Collection<String> classes = STYLE_CLASSES.get(mask);
+        if (classes == null)
+        {
+            ArrayList<String> names = new ArrayList<>(Integer.bitCount(mask));
+            for (int id = 0; id < TYPES.length; id++)
+            {
+                if ((mask & 1 << id) != 0)
+                    names.add(TYPES[id].toString());
+            }
+            classes = Collections.unmodifiableList(names);
+            if (!STYLE_CLASSES.compareAndSet(mask, null, classes))
+                classes = STYLE_CLASSES.get(mask);
+        }
+        return classes;
+    }
+}
@@ -1,7 +1,12 @@
 package com.theKidOfArcrania.asm.editor.code.highlight;
 
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
 
 /**
+ * Receives all the syntax and tag highlights emitted by a code parser. The parser emits a syntax highlight for every
+ * token, so it uses {@link #insertSyntax(int, int, int, SyntaxType)} for those. By default, that creates a
+ * {@link Syntax} object, but a highlighter that records the spans directly (such as a {@link HighlightBuffer}) can
+ * skip that altogether.
  * @author Henry Wang
  */
 public interface Highlighter
@@ -18,4 +23,16 @@ public interface Highlighter
      * @param syn the syntax highlight to add.
      */
     void insertSyntax(Syntax syn);
+
+    /**
+     * Inserts a syntax highlight that spans within a single line.
+     * @param lineNum the line number.
+     * @param start the starting column (inclusive).
+     * @param end the ending column (exclusive).
+     * @param type the type of syntax.
+     */
+    default void insertSyntax(int lineNum, int start, int end, SyntaxType type)
+    {
+        insertSyntax(new Syntax(type, new Range(lineNum, start, lineNum, end)));
+    }
 }
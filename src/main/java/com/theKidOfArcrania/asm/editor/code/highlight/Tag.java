@@ -2,17 +2,24 @@ package com.theKidOfArcrania.asm.editor.code.highlight;
 
 import com.theKidOfArcrania.asm.editor.code.parsing.Range;
 
+import java.util.function.Supplier;
+
 /**
  * Represents a tag highlight. This consists of a bubble/tooltip, and also a syntax highlight. This, like the
  * {@link Syntax} object, can provide hints to the UI as to how to colorize the text to make the code more appealing.
  * Specifically with this particular class, it can also provide the user with helpful feedback as
  * errors/warnings/info on the code.
+ * <p>
+ * Comparing tags never formats their descriptions. Tags with a plain description are equal if they have the same
+ * type, range and description, but a tag whose description is formatted lazily is only equal to itself.
  *
  * @author Henry Wang
  */
 public class Tag extends HighlightMark<TagType>
 {
+    private final boolean lazy;
     private String tagDescription;
+    private Supplier<String> formatter;
 
     /**
      * Creates a tag without a description
@@ -36,18 +43,47 @@ public class Tag extends HighlightMark<TagType>
         if (tagDescription == null)
             throw new NullPointerException();
 
+        this.lazy = false;
         this.tagDescription = tagDescription;
     }
 
-    public String getTagDescription()
+    /**
+     * Creates a tag with a description that is only formatted once it is first needed, i.e. when it is shown. This is
+     * called at most once.
+     * @param type the type of the tag
+     * @param span the range span that this tag spans across.
+     * @param formatter the formatter of the tag description.
+     */
+    public Tag(TagType type, Range span, Supplier<String> formatter)
+    {
+        super(type, span);
+        if (formatter == null)
+            throw new NullPointerException();
+
+        this.lazy = true;
+        this.formatter = formatter;
+    }
+
+    /**
+     * Obtains the tag description, formatting it first if it has not been formatted yet.
+     * @return the tag description.
+     */
+    public synchronized String getTagDescription()
     {
+        if (tagDescription == null)
+        {
+            tagDescription = formatter.get();
+            formatter = null;
+            if (tagDescription == null)
+                tagDescription = "";
+        }
         return tagDescription;
     }
 
     @Override
     public String toString()
     {
-        return super.toString() + " (" + tagDescription + ")";
+        return super.toString() + " (" + getTagDescription() + ")";
     }
 
     @Override
@@ -59,14 +95,16 @@ public class Tag extends HighlightMark<TagType>
 
         Tag tag = (Tag) o;
 
-        return tagDescription.equals(tag.tagDescription);
+        //The descriptions of lazy tags are not formatted here, so those are only equal by identity (checked above).
+        return !lazy && !tag.lazy && tagDescription.equals(tag.tagDescription);
     }
 
     @Override
     public int hashCode()
     {
         int result = super.hashCode();
-        result = 31 * result + tagDescription.hashCode();
+        if (!lazy)
+            result = 31 * result + tagDescription.hashCode();
         return result;
     }
 }
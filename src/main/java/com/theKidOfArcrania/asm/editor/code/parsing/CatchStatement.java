@@ -0,0 +1,168 @@
+package com.theKidOfArcrania.asm.editor.code.parsing;
+
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import org.objectweb.asm.MethodVisitor;
+
+import static com.theKidOfArcrania.asm.editor.code.parsing.Range.tokenRange;
+
+/**
+ * Represents a try-catch block directive. This has the format of <code>$catch start, end, handler[, type]</code>,
+ * where the first three arguments are labels, and the last optional argument is the class name of the exception
+ * type that is caught. If the exception type is omitted, this catches any exception (i.e. a finally block).
+ * @author Henry Wang
+ */
+public class CatchStatement extends DirStatement
+{
+    public static final String DIRECTIVE = "$catch";
+
+    private static final int LABEL_COUNT = 3;
+    private static final ClassContext THROWABLE_CONTEXT = ClassContext.findContext("java/lang/Throwable");
+
+    /**
+     * Reads in a try-catch directive and parses it. The associated token-reader should be primed to the first token
+     * (the directive word) of that line. If an error occurred while parsing this directive, this will return null.
+     * @param reader the token reader.
+     * @return the parsed directive, or null.
+     */
+    public static CatchStatement parseStatement(CodeTokenReader reader)
+    {
+        boolean error = false;
+        Argument[] labels = new Argument[LABEL_COUNT];
+        for (int i = 0; i < LABEL_COUNT; i++)
+        {
+            if (!reader.nextArgument())
+            {
+                reader.errorExpected("label identifier");
+                return null;
+            }
+            if (reader.hasTokenError())
+                error = true;
+            else if (!BasicParamType.IDENTIFIER.matches(reader))
+            {
+                reader.errorExpected("label identifier");
+                error = true;
+            }
+            else if (BasicParamType.IDENTIFIER.checkToken(reader))
+                labels[i] = new Argument(reader, BasicParamType.IDENTIFIER);
+            else
+                error = true;
+        }
+
+        Argument type = null;
+        if (reader.nextArgument())
+        {
+            if (reader.hasTokenError())
+                error = true;
+            else if (!BasicParamType.CLASS_NAME.matches(reader))
+            {
+                reader.errorExpected(BasicParamType.CLASS_NAME.getName());
+                error = true;
+            }
+            else if (BasicParamType.CLASS_NAME.checkToken(reader))
+                type = new Argument(reader, BasicParamType.CLASS_NAME);
+            else
+                error = true;
+        }
+
+        if (error)
+            return null;
+
+        int end = reader.getTokenEndIndex();
+        if (reader.nextToken(false))
+        {
+            Position start = reader.getTokenPos().getStart();
+            reader.error("Expected end of statement.", tokenRange(start.getLineNumber(), end,
+                    reader.getLine().length()));
+            return null;
+        }
+
+        return new CatchStatement(reader, labels, type);
+    }
+
+    private final CodeTokenReader reader;
+    private final Argument[] labels;
+    private final Argument type;
+
+    /**
+     * Constructs a new try-catch directive.
+     * @param reader the token reader.
+     * @param labels the start, end, and handler label arguments.
+     * @param type the exception type argument, or null if this catches any exception.
+     */
+    private CatchStatement(CodeTokenReader reader, Argument[] labels, Argument type)
+    {
+        this.reader = reader;
+        this.labels = labels.clone();
+        this.type = type;
+    }
+
+    @Override
+    public boolean resolveSymbols()
+    {
+        boolean success = true;
+        CodeSymbols resolved = reader.getResolvedSymbols();
+        for (Argument lbl : labels)
+        {
+            String name = (String)lbl.getValue();
+            if (!resolved.containsLabel(name))
+            {
+                reader.error("Cannot resolve label: '" + name + "'.", lbl.getTokenPos());
+                success = false;
+            }
+        }
+
+        if (type != null)
+        {
+            ClassContext ctx = ClassContext.findContext(getExceptionType());
+            if (ctx == null)
+            {
+                reader.error("Cannot resolve symbol(s) " + getExceptionType() + ".", type.getTokenPos());
+                success = false;
+            }
+            else if (!THROWABLE_CONTEXT.isAssignableFrom(ctx))
+            {
+                reader.error("Expected: a subclass of java/lang/Throwable.", type.getTokenPos());
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    @Override
+    public void write(MethodVisitor writer)
+    {
+        CodeSymbols resolved = reader.getResolvedSymbols();
+        writer.visitTryCatchBlock(resolved.getLabel(getStartLabel()), resolved.getLabel(getEndLabel()),
+                resolved.getLabel(getHandlerLabel()), getExceptionType());
+    }
+
+    @Override
+    public void reset()
+    {
+        //Does nothing.
+    }
+
+    public String getStartLabel()
+    {
+        return (String)labels[0].getValue();
+    }
+
+    public String getEndLabel()
+    {
+        return (String)labels[1].getValue();
+    }
+
+    public String getHandlerLabel()
+    {
+        return (String)labels[2].getValue();
+    }
+
+    /**
+     * Obtains the internal class name of the exception type that is caught.
+     * @return the exception type, or null if this catches any exception.
+     */
+    public String getExceptionType()
+    {
+        return type == null ? null : (String)type.getValue();
+    }
+}
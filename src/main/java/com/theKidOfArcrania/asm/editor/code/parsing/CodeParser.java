@@ -1,15 +1,19 @@
 package com.theKidOfArcrania.asm.editor.code.parsing;
 
 import com.theKidOfArcrania.asm.editor.code.highlight.*;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.ControlFlowGraph;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameVerifier;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameWriter;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.StackMapFrame;
 import com.theKidOfArcrania.asm.editor.code.parsing.inst.InstOpcodes;
 import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.MethodVisitor;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.function.Supplier;
 
-import static com.theKidOfArcrania.asm.editor.code.parsing.Range.characterRange;
 import static com.theKidOfArcrania.asm.editor.code.parsing.Range.lineRange;
-import static com.theKidOfArcrania.asm.editor.code.parsing.Range.tokenRange;
 
 /**
  * This parses the code using {@link CodeTokenReader} as the parser, and allows for continuous checks if necessary.
@@ -38,9 +42,12 @@ public class CodeParser
         syntaxScheme.put(TokenType.HANDLE, SyntaxType.HANDLE);
     }
 
+    private final MethodContext context;
     private final CodeTokenReader reader;
     private final ArrayList<CodeStatement> parsedCode;
     private final Highlighter highlighter;
+    private ControlFlowGraph flowGraph;
+    private FrameVerifier verifier;
 
     /**
      * Constructs a CodeParser from the specified code body.
@@ -51,19 +58,11 @@ public class CodeParser
      */
     public CodeParser(CodeSymbols global, MethodContext context, String code, Highlighter highlighter)
     {
+        this.context = context;
         reader = new CodeTokenReader(global, context, code);
 
         this.highlighter = highlighter;
 
-        int lines = reader.getLineCount();
-        parsedCode = new ArrayList<>(lines);
-        for (int i = 0; i < lines; i++)
-        {
-            parsedCode.add(DIRTY_STATEMENT);
-            reader.nextLine();
-            parseLine();
-        }
-
         reader.addErrorLogger(new ErrorLogger()
         {
             @Override
@@ -72,12 +71,27 @@ public class CodeParser
                 highlighter.insertTag(new Tag(TagType.ERROR, highlight, description));
             }
 
+            @Override
+            public void logError(Supplier<String> description, Range highlight)
+            {
+                highlighter.insertTag(new Tag(TagType.ERROR, highlight, description));
+            }
+
             @Override
             public void logWarning(String description, Range highlight)
             {
                 highlighter.insertTag(new Tag(TagType.WARNING, highlight, description));
             }
         });
+
+        int lines = reader.getLineCount();
+        parsedCode = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++)
+        {
+            parsedCode.add(DIRTY_STATEMENT);
+            reader.nextLine();
+            parseLine();
+        }
     }
 
     public int getLineCount()
@@ -132,6 +146,17 @@ public class CodeParser
         return reader.getLine(lineNum);
     }
 
+    /**
+     * Obtains the parsed statement at the particular line number. This may be {@link #DIRTY_STATEMENT} if the line
+     * has not been parsed yet, or {@link #INVALID_STATEMENT} if the line failed to parse.
+     * @param lineNum the 1-based line number.
+     * @return the parsed statement.
+     */
+    public CodeStatement getStatement(int lineNum)
+    {
+        return parsedCode.get(lineNum - 1);
+    }
+
     /**
      * Re-parses all the lines of dirty code. This may emit any parsing errors if encountered. By definition this
      * function is successful if and only if every single line is parsed, and is not left dirty or invalid.
@@ -139,8 +164,22 @@ public class CodeParser
      * @return true if re-parse was successful, false if some errors occurred while re-parsing.
      */
     public boolean reparse(boolean parseInvalid)
+    {
+        return reparse(parseInvalid, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Re-parses at most a limited number of the lines of dirty code, in order. This allows a large body of code to be
+     * parsed in slices, checking for other work in between. Any lines beyond the limit are left dirty, in which case
+     * this is not successful (see {@link #hasDirtyLines()}).
+     * @param parseInvalid determines whether to reparse any invalid lines.
+     * @param limit the maximum number of lines to re-parse.
+     * @return true if re-parse was successful, false if some errors occurred or some lines are left dirty.
+     */
+    public boolean reparse(boolean parseInvalid, int limit)
     {
         boolean success = true;
+        int parsed = 0;
         for (int i = 0; i < parsedCode.size(); i++)
         {
             boolean invalid = parsedCode.get(i) == INVALID_STATEMENT;
@@ -148,6 +187,9 @@ public class CodeParser
 
             if (dirty || invalid && parseInvalid)
             {
+                if (parsed == limit)
+                    return false;
+                parsed++;
                 try
                 {
                     reader.beginLine(i + 1);
@@ -158,6 +200,7 @@ public class CodeParser
                     //TODO: Better error logging.
                     reader.error("Error occurred while parsing line: " + e.toString() + ".", lineRange(reader));
                     e.printStackTrace();
+                    parsedCode.set(i, INVALID_STATEMENT);
                     success = false;
                 }
             }
@@ -231,6 +274,89 @@ public class CodeParser
         return success;
     }
 
+    /**
+     * Writes the parsed code directly into the method visitor, from {@link MethodVisitor#visitCode()} up to
+     * {@link MethodVisitor#visitEnd()}. This is the same as {@link #write(MethodVisitor, boolean)}, writing the stack
+     * map frames whenever they are available.
+     * @param writer the method visitor to write to.
+     * @throws IllegalStateException if some lines are still dirty or invalid.
+     */
+    public void write(MethodVisitor writer)
+    {
+        write(writer, true);
+    }
+
+    /**
+     * Writes the parsed code directly into the method visitor, from {@link MethodVisitor#visitCode()} up to
+     * {@link MethodVisitor#visitEnd()}. This is done in one pass over the parsed statements, without recording the
+     * method body anywhere in between. All try-catch blocks are written before any instructions, since ASM requires
+     * the try-catch blocks to be visited before their labels. Every write uses fresh labels (see
+     * {@link FreshLabelWriter}), so the code can be written any number of times.
+     * <p>
+     * If frames are requested, and the code is unchanged since it was last verified by {@link #verifyStack()} with
+     * no errors, the stack map frames and the max stack and locals are written from the frames computed by the
+     * verifier (see {@link FrameWriter}), so the visitor does not need to compute anything. Otherwise (or if some
+     * blocks are unreachable), no frames are written and the max stack and locals are written as zero, so the visitor
+     * should compute them (i.e. a {@link org.objectweb.asm.ClassWriter} with
+     * {@link org.objectweb.asm.ClassWriter#COMPUTE_MAXS} or {@link org.objectweb.asm.ClassWriter#COMPUTE_FRAMES}).
+     * <p>
+     * This should only be called after the code has been successfully parsed and its symbols resolved.
+     * @param writer the method visitor to write to.
+     * @param frames true to write the stack map frames when they are available, false to never write them.
+     * @throws IllegalStateException if some lines are still dirty or invalid.
+     */
+    public void write(MethodVisitor writer, boolean frames)
+    {
+        for (CodeStatement s : parsedCode)
+        {
+            if (s == INVALID_STATEMENT || s == DIRTY_STATEMENT)
+                throw new IllegalStateException("Code contains lines that are not parsed.");
+        }
+
+        FrameWriter frameWriter = frames ? getFrameWriter() : null;
+        writer = new FreshLabelWriter(writer);
+        writer.visitCode();
+        for (CodeStatement s : parsedCode)
+        {
+            if (s instanceof CatchStatement)
+                s.write(writer);
+        }
+
+        int line = 0;
+        for (CodeStatement s : parsedCode)
+        {
+            if (!(s instanceof CatchStatement))
+            {
+                if (frameWriter != null && s instanceof InstStatement)
+                    frameWriter.visitFrame(writer, line);
+                s.write(writer);
+            }
+            line++;
+        }
+        if (frameWriter == null)
+            writer.visitMaxs(0, 0);
+        else
+            writer.visitMaxs(frameWriter.getMaxStack(), frameWriter.getMaxVars());
+        writer.visitEnd();
+    }
+
+    /**
+     * Obtains the writer of the stack map frames computed by the last call to {@link #verifyStack()}, if the code
+     * has not changed since then (the control flow graph still has the same statements).
+     * @return the frame writer, or null if the frames are not available.
+     */
+    private FrameWriter getFrameWriter()
+    {
+        if (verifier == null || flowGraph.getLineCount() != parsedCode.size())
+            return null;
+        for (int i = 0; i < parsedCode.size(); i++)
+        {
+            if (flowGraph.getStatement(i) != parsedCode.get(i))
+                return null;
+        }
+        return FrameWriter.create(verifier, reader.getResolvedSymbols());
+    }
+
     /**
      * Determines whether if a line is dirty. A line is defined as dirty if it has been modified since the last time
      * it was parsed.
@@ -242,6 +368,15 @@ public class CodeParser
         return parsedCode.get(line - 1) == DIRTY_STATEMENT;
     }
 
+    /**
+     * Determines whether if any line is still dirty, i.e. has not been parsed since it was last modified.
+     * @return true if some lines are dirty, false if every line is parsed.
+     */
+    public boolean hasDirtyLines()
+    {
+        return parsedCode.contains(DIRTY_STATEMENT);
+    }
+
     /**
      * Determines whether if a line is malformed. A line is malformed a parsing error occurred the last time it was
      * parsed.
@@ -296,14 +431,41 @@ public class CodeParser
         }
 
         //Syntax highlighting.
-        parseSyntaxHighlight();
+        parseSyntaxHighlight(reader, highlighter);
         return success;
     }
 
     /**
-     * Parses all the syntax highlights of the current line.
+     * Highlights the syntax of a body of code with only a lexical pass, i.e. every token of every line is read and
+     * colored by its token type (and opcode lookup), but no statements are parsed, and no symbols are resolved. This
+     * is much faster than a full parse, so it can be used to color a large body of code right away, while the full
+     * parse is still running. No errors are emitted.
+     * @param global the global code symbols for this class context.
+     * @param context the location where this code originates.
+     * @param code the code body to read from.
+     * @param highlighter the highlighter used to highlight syntax.
      */
-    private void parseSyntaxHighlight()
+    public static void highlightLexically(CodeSymbols global, MethodContext context, String code,
+                                          Highlighter highlighter)
+    {
+        CodeTokenReader reader = new CodeTokenReader(global, context, code);
+        while (reader.hasNextLine())
+        {
+            reader.nextLine();
+            while (reader.nextToken(true))
+            {
+                //Read all the tokens of this line.
+            }
+            parseSyntaxHighlight(reader, highlighter);
+        }
+    }
+
+    /**
+     * Parses all the syntax highlights of the current line of a token reader, from the tokens read so far.
+     * @param reader the token reader.
+     * @param highlighter the highlighter used to highlight syntax.
+     */
+    private static void parseSyntaxHighlight(CodeTokenReader reader, Highlighter highlighter)
     {
         int prevEnd = -1;
         if (reader.getTokensRead() > 0)
@@ -335,13 +497,14 @@ public class CodeParser
                 int start = line.indexOf(',', prevEnd);
                 while (start != -1 && start < reader.getTokenStartIndex())
                 {
-                    highlighter.insertSyntax(new Syntax(SyntaxType.COMMA, characterRange(reader.getLineNumber(), start)));
+                    highlighter.insertSyntax(reader.getLineNumber(), start, start + 1, SyntaxType.COMMA);
                     start = line.indexOf(',', start + 1);
                 }
             }
 
             if (type != null)
-                highlighter.insertSyntax(new Syntax(type, reader.getTokenPos()));
+                highlighter.insertSyntax(reader.getLineNumber(), reader.getTokenStartIndex(),
+                        reader.getTokenEndIndex(), type);
 
             prevEnd = reader.getTokenEndIndex();
             reader.nextToken(true);
@@ -350,14 +513,85 @@ public class CodeParser
         int len = reader.getLine().length();
         int commentStart = reader.getCommentStartIndex();
         if (commentStart != -1)
-            highlighter.insertSyntax(new Syntax(SyntaxType.COMMENT,  tokenRange(reader.getLineNumber(), commentStart, len)));
+            highlighter.insertSyntax(reader.getLineNumber(), commentStart, len, SyntaxType.COMMENT);
+    }
+
+    /**
+     * Verifies that the stack is not misused in code, and also that the frames are consistent wherever control flow
+     * merges (jumps, switches, and exception handlers). This will emit any type errors if encountered. This should
+     * only be called after the code has been successfully parsed and its symbols resolved. The control flow graph is
+     * kept between calls, and only updated for the lines that were edited since the last call. Likewise, the verifier
+     * only re-interprets the blocks whose entry frames changed because of those edits.
+     * @return true if verification was successful, false if some errors occurred.
+     * @see FrameVerifier
+     * @see #getFlowGraph()
+     */
+    public boolean verifyStack()
+    {
+        for (CodeStatement s : parsedCode)
+        {
+            if (s == INVALID_STATEMENT || s == DIRTY_STATEMENT)
+                return false;
+        }
+
+        if (flowGraph == null)
+        {
+            flowGraph = new ControlFlowGraph(parsedCode);
+            verifier = new FrameVerifier(context, flowGraph);
+        }
+        else
+            flowGraph.update(parsedCode);
+
+        return verifier.verify(new ErrorLogger()
+        {
+            @Override
+            public void logError(String description, Range highlight)
+            {
+                reader.error(description, highlight);
+            }
+
+            @Override
+            public void logError(Supplier<String> description, Range highlight)
+            {
+                reader.error(description, highlight);
+            }
+
+            @Override
+            public void logWarning(String description, Range highlight)
+            {
+                reader.warning(description, highlight);
+            }
+        });
     }
 
     /**
-     * Verifies that the stack is not misused in code, and also that the required stack frames are placed in jumps.
+     * Obtains the control flow graph of the code, as of the last call to {@link #verifyStack()}.
+     * @return the control flow graph, or null if the stack has never been verified.
      */
-    private void verifyStack()
+    public ControlFlowGraph getFlowGraph()
     {
+        return flowGraph;
+    }
 
+    /**
+     * Obtains the frame verifier of the code. The verifier is kept between calls to {@link #verifyStack()}, so that
+     * only the blocks affected by an edit have to be verified again.
+     * @return the frame verifier, or null if the stack has never been verified.
+     */
+    public FrameVerifier getVerifier()
+    {
+        return verifier;
+    }
+
+    /**
+     * Obtains the frame (i.e. the operand stack and the local variables) before the instruction at a line, as of the
+     * last call to {@link #verifyStack()}. The returned frame should not be modified.
+     * @param line the line number (1-based).
+     * @return the frame, or null if the stack has never been verified, or if the line is unreachable.
+     * @see FrameVerifier#getFrame(int)
+     */
+    public StackMapFrame getFrame(int line)
+    {
+        return verifier == null ? null : verifier.getFrame(line - 1);
     }
 }
@@ -6,6 +6,7 @@ import org.objectweb.asm.Label;
 
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -67,6 +68,17 @@ public class CodeSymbols
         return true;
     }
 
+    /**
+     * Adds all the method handles that are named directly in another code symbols (i.e. not its parent's handles).
+     * Any names that already exist here are skipped.
+     * @param other the code symbols to add the handles of.
+     */
+    public void addHandles(CodeSymbols other)
+    {
+        for (Map.Entry<String, Handle> ent : other.handles.entrySet())
+            addHandle(ent.getKey(), ent.getValue());
+    }
+
     /**
      * Determines whether if this label name has been resolved.
      * @param name the label name
@@ -179,19 +191,39 @@ public class CodeSymbols
     public void mapStatement(Label lbl, InstStatement inst)
     {
         InstStatement prev = mappedStatements.put(lbl, inst);
-        if (prev != null)
+        if (prev != null && prev != inst)
             mappedLabels.remove(prev);
+        Label old = mappedLabels.put(inst, lbl);
+        if (old != null && old != lbl)
+            mappedStatements.remove(old);
     }
 
     /**
      * Finds the associated label with this statement if any. If not found, this will create a new anonymous
-     * (unnamed) label.
+     * (unnamed) label, which is then mapped to this statement.
      * @param inst the instruction statement to loop up.
      * @return the associated label.
      */
     public Label findStatementLabel(InstStatement inst)
     {
-        return mappedLabels.computeIfAbsent(inst, key -> new Label());
+        Label lbl = mappedLabels.get(inst);
+        if (lbl == null)
+        {
+            lbl = new Label();
+            mappedLabels.put(inst, lbl);
+            mappedStatements.put(lbl, inst);
+        }
+        return lbl;
+    }
+
+    /**
+     * Obtains the associated label with this statement, without creating one if there is none.
+     * @param inst the instruction statement to look up.
+     * @return the associated label, or <code>null</code> if no label is associated with this statement.
+     */
+    public Label getStatementLabel(InstStatement inst)
+    {
+        return mappedLabels.get(inst);
     }
 
     /**
@@ -6,6 +6,7 @@ import com.theKidOfArcrania.asm.editor.util.FallibleFunction;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.NoSuchElementException;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import static com.theKidOfArcrania.asm.editor.code.parsing.Range.characterRange;
@@ -212,6 +213,20 @@ public class CodeTokenReader
         }
     }
 
+    /**
+     * Emits an error to all the error loggers, where the error message is only formatted if it is actually needed.
+     * @param description the formatter of the error message description
+     * @param highlight specifies the position that this error is highlighting, can be null.
+     */
+    public void error(Supplier<String> description, Range highlight)
+    {
+        if (tokenNum == prevTokens.size() - 1 || tokenNum == -1) //not visiting
+        {
+            for (ErrorLogger logger : errLogs)
+                logger.logError(description, highlight);
+        }
+    }
+
     /**
      * Emits an expected error. This specifically refers to an error where the user fails to provide the correct type
      * of token where needed.
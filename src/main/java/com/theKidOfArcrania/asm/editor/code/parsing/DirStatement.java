@@ -1,34 +1,27 @@
 package com.theKidOfArcrania.asm.editor.code.parsing;
 
-import org.objectweb.asm.MethodVisitor;
-
 /**
  * This statement represents a directive. Directives are prepended by a $.
  * @author Henry Wang
  */
-public class DirStatement extends CodeStatement
+public abstract class DirStatement extends CodeStatement
 {
+    /**
+     * Reads in a directive statement and parses it. The associated token-reader should be primed to the first token
+     * (the directive word) of that line. If an error occurred while parsing this directive, this will return null.
+     * @param parser the code parser parsing this directive.
+     * @param reader the token reader.
+     * @return the parsed directive, or null.
+     */
     public static DirStatement parseStatement(CodeParser parser, CodeTokenReader reader)
     {
-        //TODO
-        return null;
-    }
-
-    @Override
-    public boolean resolveSymbols()
-    {
-        return false;
-    }
-
-    @Override
-    public void write(MethodVisitor writer)
-    {
-
-    }
-
-    @Override
-    public void reset()
-    {
-
+        String dirName = reader.getToken();
+        switch (dirName.toLowerCase())
+        {
+            case CatchStatement.DIRECTIVE: return CatchStatement.parseStatement(reader);
+            default:
+                reader.error("Invalid directive name.", reader.getTokenPos());
+                return null;
+        }
     }
 }
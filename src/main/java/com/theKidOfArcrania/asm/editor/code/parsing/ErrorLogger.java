@@ -1,5 +1,7 @@
 package com.theKidOfArcrania.asm.editor.code.parsing;
 
+import java.util.function.Supplier;
+
 /**
  * This allows a client to listen to any errors emitted when a body of code is parsed with {@link CodeTokenReader}.
  * @author Henry Wang
@@ -19,4 +21,14 @@ public interface ErrorLogger
      * @param highlight specifies the position that this warning is highlighting, can be null.
      */
     void logWarning(String description, Range highlight);
+
+    /**
+     * Logs an error whose message is only formatted if it is actually needed. By default, this formats it right away.
+     * @param description the formatter of the error message description.
+     * @param highlight specifies the position that this error is highlighting, can be null.
+     */
+    default void logError(Supplier<String> description, Range highlight)
+    {
+        logError(description.get(), highlight);
+    }
 }
@@ -0,0 +1,132 @@
+package com.theKidOfArcrania.asm.editor.code.parsing;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.TypePath;
+
+import java.util.HashMap;
+
+/**
+ * Passes a method body through to another method visitor, replacing each label with a fresh label. ASM labels keep
+ * the offset that they are resolved to once they are written, so they cannot be written into more than one method.
+ * Since the parsed statements (and any recorded method body) keep the same labels between writes, each write of the
+ * code goes through a new one of these writers, so that the code can be written any number of times.
+ * @author Henry Wang
+ */
+public class FreshLabelWriter extends MethodVisitor
+{
+    private final HashMap<Label, Label> labels = new HashMap<>();
+
+    /**
+     * Constructs a fresh label writer.
+     * @param writer the method visitor to pass the method body to.
+     */
+    public FreshLabelWriter(MethodVisitor writer)
+    {
+        super(Opcodes.ASM5, writer);
+    }
+
+    /**
+     * Obtains the fresh label that replaces a label.
+     * @param lbl the original label.
+     * @return the fresh label.
+     */
+    private Label fresh(Label lbl)
+    {
+        return labels.computeIfAbsent(lbl, key -> new Label());
+    }
+
+    /**
+     * Obtains the fresh labels that replace an array of labels.
+     * @param lbls the original labels.
+     * @return a new array of the fresh labels.
+     */
+    private Label[] fresh(Label[] lbls)
+    {
+        Label[] copy = new Label[lbls.length];
+        for (int i = 0; i < lbls.length; i++)
+            copy[i] = fresh(lbls[i]);
+        return copy;
+    }
+
+    /**
+     * Replaces the labels (of uninitialized types) within the types of a frame.
+     * @param count the number of types.
+     * @param types the frame types, or null if the frame has none (e.g. a chop frame).
+     * @return the frame types, copied if any label is replaced.
+     */
+    private Object[] fresh(int count, Object[] types)
+    {
+        if (types == null)
+            return null;
+
+        Object[] copy = types;
+        for (int i = 0; i < count; i++)
+        {
+            if (types[i] instanceof Label)
+            {
+                if (copy == types)
+                    copy = types.clone();
+                copy[i] = fresh((Label)types[i]);
+            }
+        }
+        return copy;
+    }
+
+    @Override
+    public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack)
+    {
+        super.visitFrame(type, nLocal, fresh(nLocal, local), nStack, fresh(nStack, stack));
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label)
+    {
+        super.visitJumpInsn(opcode, fresh(label));
+    }
+
+    @Override
+    public void visitLabel(Label label)
+    {
+        super.visitLabel(fresh(label));
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... lbls)
+    {
+        super.visitTableSwitchInsn(min, max, fresh(dflt), fresh(lbls));
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] lbls)
+    {
+        super.visitLookupSwitchInsn(fresh(dflt), keys, fresh(lbls));
+    }
+
+    @Override
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type)
+    {
+        super.visitTryCatchBlock(fresh(start), fresh(end), fresh(handler), type);
+    }
+
+    @Override
+    public void visitLocalVariable(String name, String desc, String signature, Label start, Label end, int index)
+    {
+        super.visitLocalVariable(name, desc, signature, fresh(start), fresh(end), index);
+    }
+
+    @Override
+    public AnnotationVisitor visitLocalVariableAnnotation(int typeRef, TypePath typePath, Label[] start, Label[] end,
+                                                          int[] index, String desc, boolean visible)
+    {
+        return super.visitLocalVariableAnnotation(typeRef, typePath, fresh(start), fresh(end), index, desc, visible);
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start)
+    {
+        super.visitLineNumber(line, fresh(start));
+    }
+}
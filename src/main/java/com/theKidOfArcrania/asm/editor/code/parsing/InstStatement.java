@@ -2,6 +2,9 @@ package com.theKidOfArcrania.asm.editor.code.parsing;
 
 import com.theKidOfArcrania.asm.editor.code.parsing.inst.InstOpcodes;
 import com.theKidOfArcrania.asm.editor.code.parsing.inst.InstSpec;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.FieldContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
 import com.theKidOfArcrania.asm.editor.context.TypeSignature;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
@@ -11,6 +14,13 @@ import static com.theKidOfArcrania.asm.editor.code.parsing.Range.tokenRange;
 
 /**
  * This statement represents a single instruction.
+ * <p>
+ * The type signatures parsed from the arguments, and the class contexts and members that the arguments refer to,
+ * are resolved lazily and cached in the instruction, since the frame verifier looks them up each time it executes
+ * the instruction, and symbols are resolved again after every edit. An instruction is never modified once parsed
+ * (an edited line is parsed into a new instruction), so the parsed signatures stay valid for as long as the
+ * instruction exists. The class contexts and members are looked up again whenever any class context has been
+ * modified since they were cached (see {@link ClassContext#getModificationCount()}).
  * @author Henry Wang
  */
 public class InstStatement extends CodeStatement
@@ -60,6 +70,13 @@ public class InstStatement extends CodeStatement
 
     private final Range lineRange;
 
+    private TypeSignature[] argSigs;
+    private TypeSignature[] argClassTypes;
+    private ClassContext[] argClasses;
+    private MethodContext resolvedMethod;
+    private FieldContext resolvedField;
+    private int classModifications;
+
     /**
      * Constructs a new instruction.
      * @param reader reader associated with instruction.
@@ -217,6 +234,114 @@ public class InstStatement extends CodeStatement
         return lineRange;
     }
 
+    /**
+     * Obtains the type signature of a type descriptor argument (i.e. a field or method descriptor). The parsed type
+     * signature is cached.
+     * @param ind the index of the argument.
+     * @return the type signature, or null if the descriptor cannot be parsed.
+     * @throws IllegalArgumentException if the argument is not a string.
+     */
+    public TypeSignature getArgSignature(int ind)
+    {
+        if (argSigs == null)
+            argSigs = new TypeSignature[args.length];
+        TypeSignature sig = argSigs[ind];
+        if (sig == null)
+            sig = argSigs[ind] = TypeSignature.parseTypeSig(getArgValue(ind, String.class));
+        return sig;
+    }
+
+    /**
+     * Obtains the type signature of a class name argument (i.e. an internal name, or an array descriptor). The
+     * parsed type signature is cached.
+     * @param ind the index of the argument.
+     * @return the type signature, or null if the class name cannot be parsed.
+     * @throws IllegalArgumentException if the argument is not a string.
+     */
+    public TypeSignature getArgClassType(int ind)
+    {
+        if (argClassTypes == null)
+            argClassTypes = new TypeSignature[args.length];
+        TypeSignature sig = argClassTypes[ind];
+        if (sig == null)
+        {
+            String classDesc = getArgValue(ind, String.class);
+            sig = TypeSignature.parseTypeSig(classDesc.startsWith("[") ? classDesc : "L" + classDesc + ";");
+            argClassTypes[ind] = sig;
+        }
+        return sig;
+    }
+
+    /**
+     * Obtains the class context that a class name argument refers to. The class context is cached until any class
+     * context is modified.
+     * @param ind the index of the argument.
+     * @return the class context, or null if the class cannot be found.
+     * @throws IllegalArgumentException if the argument is not a string.
+     */
+    public ClassContext getArgClass(int ind)
+    {
+        checkClassModifications();
+        if (argClasses == null)
+            argClasses = new ClassContext[args.length];
+        ClassContext ctx = argClasses[ind];
+        if (ctx == null)
+            ctx = argClasses[ind] = ClassContext.findContext(getArgValue(ind, String.class));
+        return ctx;
+    }
+
+    /**
+     * Obtains the method that this instruction refers to, for an instruction whose arguments are the owner class, the
+     * method name and the method descriptor (i.e. an invoke instruction). Inherited methods are included. The method
+     * is cached until any class context is modified.
+     * @return the method context, or null if it cannot be found.
+     */
+    public MethodContext getResolvedMethod()
+    {
+        checkClassModifications();
+        if (resolvedMethod == null)
+        {
+            ClassContext owner = getArgClass(0);
+            TypeSignature sig = getArgSignature(2);
+            if (owner != null && sig != null)
+                resolvedMethod = owner.findMethod(getArgValue(1, String.class), sig, true);
+        }
+        return resolvedMethod;
+    }
+
+    /**
+     * Obtains the field that this instruction refers to, for an instruction whose arguments are the owner class, the
+     * field name and the field descriptor. Inherited fields are included. The field is cached until any class context
+     * is modified.
+     * @return the field context, or null if it cannot be found.
+     */
+    public FieldContext getResolvedField()
+    {
+        checkClassModifications();
+        if (resolvedField == null)
+        {
+            ClassContext owner = getArgClass(0);
+            if (owner != null)
+                resolvedField = owner.findField(getArgValue(1, String.class));
+        }
+        return resolvedField;
+    }
+
+    /**
+     * Clears the cached class contexts and members if any class context has been modified since they were cached.
+     */
+    private void checkClassModifications()
+    {
+        int mods = ClassContext.getModificationCount();
+        if (mods != classModifications)
+        {
+            argClasses = null;
+            resolvedMethod = null;
+            resolvedField = null;
+            classModifications = mods;
+        }
+    }
+
     @Override
     public boolean resolveSymbols()
     {
@@ -227,8 +352,8 @@ public class InstStatement extends CodeStatement
     public void write(MethodVisitor writer)
     {
         CodeSymbols symbols = reader.getResolvedSymbols();
-        Label lbl = symbols.findStatementLabel(this);
-        if (symbols.isAnonymousLabel(lbl))
+        Label lbl = symbols.getStatementLabel(this);
+        if (lbl != null && symbols.isAnonymousLabel(lbl))
             writer.visitLabel(lbl);
         getSpec().write(writer, this, symbols);
     }
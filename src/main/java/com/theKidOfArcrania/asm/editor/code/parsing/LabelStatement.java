@@ -70,6 +70,11 @@ public class LabelStatement extends CodeStatement
             resolved.removeLabel(name);
     }
 
+    public String getName()
+    {
+        return name;
+    }
+
     public Label getSymbol()
     {
         return symbol;
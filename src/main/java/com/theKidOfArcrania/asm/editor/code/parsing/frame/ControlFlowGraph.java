@@ -0,0 +1,888 @@
+package com.theKidOfArcrania.asm.editor.code.parsing.frame;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CatchStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.LabelStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.inst.InstSpec;
+import com.theKidOfArcrania.asm.editor.context.TypeSignature;
+
+import java.util.*;
+
+import static com.theKidOfArcrania.asm.editor.code.parsing.inst.InstSpecs.*;
+import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
+
+/**
+ * Represents the control flow graph of a method body, split into basic blocks. A new block begins at the first
+ * instruction, at any instruction that is the target of a jump or a switch, after any instruction that does not
+ * always fall through, and at the start, end and handler of any try-catch block. Blocks are numbered in code order,
+ * and each block is identified by the line of its first and last instruction. The edges of the graph are stored as
+ * arrays of block indices. The exceptional edges (to try-catch handlers) are kept separately from the normal edges,
+ * since an exception may be thrown before any instruction of a block.
+ * <p>
+ * The graph can be updated incrementally after some lines are edited. The edited lines are found by comparing the
+ * statements with the ones from the last update (unchanged lines keep the same statement objects). Then only the
+ * blocks around the edited lines, and around any label whose jumps have changed, are split again, and only the edges
+ * that lead into those blocks are recomputed. The rest of the graph is only renumbered. The whole graph is rebuilt
+ * only if a try-catch block or any of its labels are edited.
+ * @author Henry Wang
+ */
+public class ControlFlowGraph
+{
+    private static final TypeSignature THROWABLE_TYPE = parseTypeSig("Ljava/lang/Throwable;");
+    private static final int[] NO_BLOCKS = new int[0];
+
+    /**
+     * Represents the result of splitting a range of lines into blocks.
+     */
+    private static class Split
+    {
+        private int[] starts = new int[4];
+        private int[] lasts = new int[4];
+        private int count;
+        private boolean startsWithLeader = true;
+        private boolean endsWithLeader;
+
+        /**
+         * Adds a new block to this split.
+         * @param line the line of the first instruction of the block.
+         */
+        private void addBlock(int line)
+        {
+            if (count == starts.length)
+            {
+                starts = Arrays.copyOf(starts, count * 2);
+                lasts = Arrays.copyOf(lasts, count * 2);
+            }
+            starts[count++] = line;
+        }
+    }
+
+    private final ArrayList<CodeStatement> lines;
+    private final HashMap<String, Integer> labelLines;
+    private final HashMap<String, Integer> labelRefs;
+    private final HashSet<String> tryLabels;
+    private final ArrayList<CatchStatement> catches;
+
+    private int blockCount;
+    private int[] starts;
+    private int[] lasts;
+    private int[][] successors;
+    private int[][] predecessors;
+    private int[][] handlers;
+    private boolean[] exits;
+    private int[] handlerBlocks;
+    private TypeSignature[] handlerTypes;
+    private int blocksRebuilt;
+
+    private int updateCount;
+    private int changeStart;
+    private int changeEnd;
+    private int changeShift;
+    private BitSet affected;
+
+    /**
+     * Constructs the control flow graph of a method body. The statements must be completely parsed and have their
+     * symbols resolved.
+     * @param code the list of parsed statements.
+     */
+    public ControlFlowGraph(List<? extends CodeStatement> code)
+    {
+        lines = new ArrayList<>();
+        labelLines = new HashMap<>();
+        labelRefs = new HashMap<>();
+        tryLabels = new HashSet<>();
+        catches = new ArrayList<>();
+        build(code);
+    }
+
+    /**
+     * Determines whether if execution never continues to the next instruction after this instruction.
+     * @param inst the instruction to check.
+     * @return true if this instruction never falls through, false if it might.
+     */
+    public static boolean isTerminal(InstStatement inst)
+    {
+        switch (inst.getOpcode())
+        {
+            case INST_GOTO:
+            case INST_TABLESWITCH:
+            case INST_LOOKUPSWITCH:
+            case INST_ATHROW:
+            case INST_RETURN:
+            case INST_ARETURN:
+            case INST_IRETURN:
+            case INST_LRETURN:
+            case INST_FRETURN:
+            case INST_DRETURN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Obtains the number of labels that an instruction can jump to.
+     * @param inst the instruction.
+     * @return the number of jump targets.
+     */
+    private static int getTargetCount(InstStatement inst)
+    {
+        InstSpec spec = inst.getSpec();
+        if (spec == JMP_INST_SPEC)
+            return 1;
+        else if (spec == TABLE_SWITCH_INST_SPEC)
+            return inst.getArgSize() - 2;
+        else if (spec == LOOKUP_SWITCH_INST_SPEC)
+            return inst.getArgSize() / 2 + 1;
+        return 0;
+    }
+
+    /**
+     * Obtains the name of one of the labels that an instruction can jump to.
+     * @param inst the instruction.
+     * @param ind the index of the jump target, less than {@link #getTargetCount(InstStatement)}.
+     * @return the name of the target label.
+     */
+    private static String getTarget(InstStatement inst, int ind)
+    {
+        InstSpec spec = inst.getSpec();
+        if (spec == TABLE_SWITCH_INST_SPEC)
+            return inst.getArgValue(ind + 2, String.class);
+        else if (spec == LOOKUP_SWITCH_INST_SPEC)
+            return inst.getArgValue(ind * 2, String.class);
+        return inst.getArgValue(ind, String.class);
+    }
+
+    /**
+     * Determines whether if an instruction ends a basic block, i.e. if it jumps or never falls through.
+     * @param inst the instruction to check.
+     * @return true if the next instruction begins a new block.
+     */
+    private static boolean endsBlock(InstStatement inst)
+    {
+        return getTargetCount(inst) > 0 || isTerminal(inst);
+    }
+
+    /**
+     * Updates this graph after some lines have been edited. The statements must be completely parsed and have their
+     * symbols resolved.
+     * @param code the new list of parsed statements.
+     */
+    public void update(List<? extends CodeStatement> code)
+    {
+        int oldSize = lines.size();
+        int newSize = code.size();
+        int common = Math.min(oldSize, newSize);
+        int prefix = 0;
+        while (prefix < common && lines.get(prefix) == code.get(prefix))
+            prefix++;
+        int suffix = 0;
+        while (suffix < common - prefix && lines.get(oldSize - suffix - 1) == code.get(newSize - suffix - 1))
+            suffix++;
+
+        updateCount++;
+        blocksRebuilt = 0;
+        changeStart = changeEnd = changeShift = 0;
+        affected = new BitSet();
+
+        int oldEnd = oldSize - suffix;
+        int newEnd = newSize - suffix;
+        int delta = newSize - oldSize;
+        if (prefix == oldEnd && prefix == newEnd)
+            return;
+
+        HashSet<String> moved = new HashSet<>();
+        HashSet<String> retargeted = new HashSet<>();
+        if (!collectChanges(lines.subList(prefix, oldEnd), moved, retargeted) ||
+                !collectChanges(code.subList(prefix, newEnd), moved, retargeted))
+        {
+            build(code);
+            return;
+        }
+
+        //Find the blocks around the edited lines, and around any label that changed (either the block containing the
+        //label, or the next block, might begin at the label).
+        int firstBlock = Math.max(0, findBlock(prefix));
+        int endBlock = Math.min(blockCount, Math.max(firstBlock, findBlock(Math.max(prefix, oldEnd - 1))) + 1);
+        for (String name : retargeted)
+        {
+            Integer line = labelLines.get(name);
+            if (line == null)
+                continue;
+            int block = findBlock(line);
+            firstBlock = Math.min(firstBlock, Math.max(0, block));
+            endBlock = Math.max(endBlock, Math.min(blockCount, block + 2));
+        }
+
+        for (int i = prefix; i < oldEnd; i++)
+            removeStatement(lines.get(i));
+        for (Map.Entry<String, Integer> ent : labelLines.entrySet())
+        {
+            if (ent.getValue() >= oldEnd)
+                ent.setValue(ent.getValue() + delta);
+        }
+        lines.subList(prefix, oldEnd).clear();
+        lines.addAll(prefix, code.subList(prefix, newEnd));
+        for (int i = prefix; i < newEnd; i++)
+            addStatement(i, lines.get(i));
+
+        for (String name : retargeted)
+        {
+            Integer line = labelLines.get(name);
+            if (line == null)
+                continue;
+            int block = findBlock(line < prefix ? line : line >= newEnd ? line - delta : prefix);
+            firstBlock = Math.min(firstBlock, Math.max(0, block));
+            endBlock = Math.max(endBlock, Math.min(blockCount, block + 2));
+        }
+
+        //Grow the range of blocks until the blocks just outside of it are still split at the same place. If the edit
+        //is within the labels in front of the next block, then some of those labels might now belong to the range,
+        //so that block also has to be included (to relink the jumps to it).
+        Split split;
+        while (true)
+        {
+            split = split(firstBlock, endBlock, delta);
+            if (!split.startsWithLeader)
+                firstBlock--;
+            else if (endBlock < blockCount && !split.endsWithLeader)
+                endBlock++;
+            else if (endBlock < blockCount && prefix <= starts[endBlock] &&
+                    (endBlock == 0 ? 0 : lasts[endBlock - 1] + 1) < prefix)
+                endBlock++;
+            else
+                break;
+        }
+
+        //Likewise, the labels after the last block (that jumped off the end) might now belong to the range.
+        if (endBlock == blockCount)
+        {
+            for (int i = blockCount == 0 ? 0 : lasts[blockCount - 1] + 1; i < prefix; i++)
+            {
+                if (lines.get(i) instanceof LabelStatement)
+                    moved.add(((LabelStatement)lines.get(i)).getName());
+            }
+        }
+
+        //Blocks that jump into the range, or jump to a label that moved, have to be linked again.
+        BitSet relink = new BitSet(blockCount);
+        for (int block = firstBlock; block < endBlock; block++)
+        {
+            for (int pred : predecessors[block])
+                relink.set(pred);
+        }
+        if (!moved.isEmpty())
+        {
+            for (int block = 0; block < blockCount; block++)
+            {
+                if (block == firstBlock)
+                {
+                    block = endBlock - 1;
+                    continue;
+                }
+
+                int last = lasts[block] >= oldEnd ? lasts[block] + delta : lasts[block];
+                InstStatement inst = (InstStatement)lines.get(last);
+                int targets = getTargetCount(inst);
+                for (int i = 0; i < targets; i++)
+                {
+                    if (moved.contains(getTarget(inst, i)))
+                        relink.set(block);
+                }
+            }
+        }
+        relink.clear(firstBlock, endBlock);
+
+        splice(firstBlock, endBlock, delta, split, relink);
+    }
+
+    /**
+     * Collects the labels that are defined and jumped to by a range of edited lines.
+     * @param edited the edited lines.
+     * @param moved the set to add the names of defined labels to.
+     * @param retargeted the set to add the names of both defined labels and jumped-to labels to.
+     * @return true if the lines can be updated incrementally, false if the lines change a try-catch block.
+     */
+    private boolean collectChanges(List<? extends CodeStatement> edited, Set<String> moved, Set<String> retargeted)
+    {
+        for (CodeStatement s : edited)
+        {
+            if (s instanceof CatchStatement)
+                return false;
+            else if (s instanceof LabelStatement)
+            {
+                String name = ((LabelStatement)s).getName();
+                if (tryLabels.contains(name))
+                    return false;
+                moved.add(name);
+                retargeted.add(name);
+            }
+            else if (s instanceof InstStatement)
+            {
+                InstStatement inst = (InstStatement)s;
+                int targets = getTargetCount(inst);
+                for (int i = 0; i < targets; i++)
+                    retargeted.add(getTarget(inst, i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the entire graph from scratch.
+     * @param code the list of parsed statements.
+     */
+    private void build(List<? extends CodeStatement> code)
+    {
+        lines.clear();
+        labelLines.clear();
+        labelRefs.clear();
+        tryLabels.clear();
+        catches.clear();
+
+        lines.addAll(code);
+        for (int i = 0; i < lines.size(); i++)
+            addStatement(i, lines.get(i));
+        updateCount++;
+
+        int oldCount = blockCount;
+        blockCount = 0;
+        starts = NO_BLOCKS;
+        lasts = NO_BLOCKS;
+        successors = new int[0][];
+        predecessors = new int[0][];
+        handlers = new int[0][];
+        exits = new boolean[0];
+        splice(0, 0, 0, split(0, 0, 0), new BitSet());
+        changeShift = blockCount - oldCount;
+    }
+
+    /**
+     * Adds the labels, jumps and try-catch blocks of one statement.
+     * @param line the line of the statement.
+     * @param s the statement.
+     */
+    private void addStatement(int line, CodeStatement s)
+    {
+        if (s instanceof LabelStatement)
+            labelLines.put(((LabelStatement)s).getName(), line);
+        else if (s instanceof InstStatement)
+        {
+            InstStatement inst = (InstStatement)s;
+            int targets = getTargetCount(inst);
+            for (int i = 0; i < targets; i++)
+                labelRefs.merge(getTarget(inst, i), 1, Integer::sum);
+        }
+        else if (s instanceof CatchStatement)
+        {
+            CatchStatement c = (CatchStatement)s;
+            catches.add(c);
+            tryLabels.add(c.getStartLabel());
+            tryLabels.add(c.getEndLabel());
+            tryLabels.add(c.getHandlerLabel());
+        }
+    }
+
+    /**
+     * Removes the labels and jumps of one statement. This is never called for try-catch blocks.
+     * @param s the statement.
+     */
+    private void removeStatement(CodeStatement s)
+    {
+        if (s instanceof LabelStatement)
+            labelLines.remove(((LabelStatement)s).getName());
+        else if (s instanceof InstStatement)
+        {
+            InstStatement inst = (InstStatement)s;
+            int targets = getTargetCount(inst);
+            for (int i = 0; i < targets; i++)
+                labelRefs.computeIfPresent(getTarget(inst, i), (name, refs) -> refs == 1 ? null : refs - 1);
+        }
+    }
+
+    /**
+     * Splits the lines of a range of blocks again into blocks. The lines have already been updated, but the blocks
+     * are still numbered as before the update.
+     * @param firstBlock the first block in the range.
+     * @param endBlock the block after the last block in the range.
+     * @param delta the number of lines added by the update. All the blocks after the range are shifted by this.
+     * @return the new blocks of the range.
+     */
+    private Split split(int firstBlock, int endBlock, int delta)
+    {
+        int startLine = firstBlock == 0 ? 0 : lasts[firstBlock - 1] + 1;
+        int endLine = endBlock == blockCount ? lines.size() : starts[endBlock] + delta;
+        boolean leader = firstBlock == 0 || endsBlock((InstStatement)lines.get(lasts[firstBlock - 1]));
+
+        Split split = new Split();
+        for (int line = startLine; line < endLine; line++)
+        {
+            CodeStatement s = lines.get(line);
+            if (s instanceof LabelStatement)
+            {
+                String name = ((LabelStatement)s).getName();
+                if (labelRefs.containsKey(name) || tryLabels.contains(name))
+                    leader = true;
+            }
+            else if (s instanceof InstStatement)
+            {
+                if (split.count == 0 && !leader)
+                {
+                    split.startsWithLeader = false;
+                    return split;
+                }
+                if (leader)
+                    split.addBlock(line);
+                split.lasts[split.count - 1] = line;
+                leader = endsBlock((InstStatement)s);
+            }
+        }
+        split.endsWithLeader = leader;
+        return split;
+    }
+
+    /**
+     * Replaces a range of blocks with the newly split blocks, and links all the new blocks, along with any other
+     * blocks whose edges have changed. All other blocks are only renumbered.
+     * @param firstBlock the first block in the range.
+     * @param endBlock the block after the last block in the range.
+     * @param delta the number of lines added by the update.
+     * @param split the new blocks of the range.
+     * @param relink the (old) indices of other blocks that have to be linked again.
+     */
+    private void splice(int firstBlock, int endBlock, int delta, Split split, BitSet relink)
+    {
+        int shift = split.count - (endBlock - firstBlock);
+        int count = blockCount + shift;
+        int[] newStarts = new int[count];
+        int[] newLasts = new int[count];
+        int[][] newSuccessors = new int[count][];
+        int[][] newPredecessors = new int[count][];
+        int[][] newHandlers = new int[count][];
+        boolean[] newExits = new boolean[count];
+
+        int after = endBlock + shift;
+        System.arraycopy(starts, 0, newStarts, 0, firstBlock);
+        System.arraycopy(lasts, 0, newLasts, 0, firstBlock);
+        System.arraycopy(split.starts, 0, newStarts, firstBlock, split.count);
+        System.arraycopy(split.lasts, 0, newLasts, firstBlock, split.count);
+        for (int block = endBlock; block < blockCount; block++)
+        {
+            newStarts[block + shift] = starts[block] + delta;
+            newLasts[block + shift] = lasts[block] + delta;
+        }
+
+        BitSet linking = new BitSet(count);
+        linking.set(firstBlock, after);
+        for (int block = relink.nextSetBit(0); block != -1; block = relink.nextSetBit(block + 1))
+            linking.set(block < firstBlock ? block : block + shift);
+
+        //The blocks that lose any incoming edges are affected, as well as the blocks that gain any (including the
+        //first block, which is entered from the start of the method).
+        affected = new BitSet(count);
+        affected.set(firstBlock, after);
+        if (firstBlock == 0 && count > 0)
+            affected.set(0);
+        for (int block = 0; block < blockCount; block++)
+        {
+            boolean replaced = block >= firstBlock && block < endBlock;
+            if (!replaced && !relink.get(block))
+                continue;
+            for (int succ : successors[block])
+            {
+                if (succ < firstBlock)
+                    affected.set(succ);
+                else if (succ >= endBlock)
+                    affected.set(succ + shift);
+            }
+            if (replaced)
+            {
+                for (int handler : handlers[block])
+                {
+                    int target = handlerBlocks[handler];
+                    if (target < firstBlock)
+                        affected.set(target);
+                    else if (target >= endBlock && target < blockCount)
+                        affected.set(target + shift);
+                }
+            }
+        }
+
+        //Renumber the blocks that are kept.
+        for (int block = 0; block < blockCount; block++)
+        {
+            if (block == firstBlock)
+                block = endBlock;
+            if (block >= blockCount)
+                break;
+
+            int moved = block < firstBlock ? block : block + shift;
+            newHandlers[moved] = handlers[block];
+            newExits[moved] = exits[block];
+            if (!relink.get(block))
+                newSuccessors[moved] = renumber(successors[block], firstBlock, endBlock, shift, null);
+            newPredecessors[moved] = renumber(predecessors[block], firstBlock, endBlock, shift, relink);
+        }
+        for (int block = firstBlock; block < after; block++)
+            newPredecessors[block] = NO_BLOCKS;
+
+        blockCount = count;
+        starts = newStarts;
+        lasts = newLasts;
+        successors = newSuccessors;
+        predecessors = newPredecessors;
+        handlers = newHandlers;
+        exits = newExits;
+
+        //Link all the new blocks and the relinked blocks.
+        int[] added = new int[count];
+        for (int block = linking.nextSetBit(0); block != -1; block = linking.nextSetBit(block + 1))
+        {
+            link(block);
+            for (int succ : successors[block])
+            {
+                added[succ]++;
+                affected.set(succ);
+            }
+        }
+        for (int block = 0; block < count; block++)
+        {
+            if (added[block] > 0)
+            {
+                int size = predecessors[block].length;
+                predecessors[block] = Arrays.copyOf(predecessors[block], size + added[block]);
+                added[block] = size;
+            }
+        }
+        for (int block = linking.nextSetBit(0); block != -1; block = linking.nextSetBit(block + 1))
+        {
+            for (int succ : successors[block])
+                predecessors[succ][added[succ]++] = block;
+        }
+
+        for (int block = firstBlock; block < after; block++)
+            handlers[block] = findHandlers(block);
+        handlerBlocks = new int[catches.size()];
+        handlerTypes = new TypeSignature[catches.size()];
+        for (int i = 0; i < handlerBlocks.length; i++)
+        {
+            CatchStatement c = catches.get(i);
+            Integer line = labelLines.get(c.getHandlerLabel());
+            handlerBlocks[i] = line == null ? count : findBlockAfter(line);
+            String type = c.getExceptionType();
+            handlerTypes[i] = type == null ? THROWABLE_TYPE : parseTypeSig("L" + type + ";");
+        }
+        for (int block = firstBlock; block < after; block++)
+        {
+            for (int handler : handlers[block])
+            {
+                if (handlerBlocks[handler] < count)
+                    affected.set(handlerBlocks[handler]);
+            }
+        }
+
+        blocksRebuilt = split.count;
+        changeStart = firstBlock;
+        changeEnd = after;
+        changeShift = shift;
+    }
+
+    /**
+     * Renumbers a list of block indices after a range of blocks has been replaced.
+     * @param blocks the block indices.
+     * @param firstBlock the first block in the range.
+     * @param endBlock the block after the last block in the range.
+     * @param shift the number of blocks added by the replacement.
+     * @param removed the other blocks to remove from the list, or null if none.
+     * @return the renumbered indices, with any blocks in the range (or any removed blocks) removed.
+     */
+    private static int[] renumber(int[] blocks, int firstBlock, int endBlock, int shift, BitSet removed)
+    {
+        int size = 0;
+        int[] renumbered = blocks;
+        for (int i = 0; i < blocks.length; i++)
+        {
+            int block = blocks[i];
+            if (block >= firstBlock && block < endBlock || removed != null && removed.get(block))
+            {
+                if (renumbered == blocks)
+                    renumbered = blocks.clone();
+                continue;
+            }
+            renumbered[size++] = block < firstBlock ? block : block + shift;
+        }
+        return size == renumbered.length ? renumbered : Arrays.copyOf(renumbered, size);
+    }
+
+    /**
+     * Computes the successors of a block, and whether if it can flow past the end of the code.
+     * @param block the block index.
+     */
+    private void link(int block)
+    {
+        InstStatement inst = getLastInst(block);
+        int targets = getTargetCount(inst);
+        int[] succ = new int[targets + 1];
+        int size = 0;
+        boolean exit = false;
+        for (int i = 0; i < targets; i++)
+        {
+            Integer line = labelLines.get(getTarget(inst, i));
+            if (line == null)
+                continue;
+            int target = findBlockAfter(line);
+            if (target == blockCount)
+                exit = true;
+            else
+                succ[size++] = target;
+        }
+        if (!isTerminal(inst))
+        {
+            if (block + 1 == blockCount)
+                exit = true;
+            else
+                succ[size++] = block + 1;
+        }
+
+        Arrays.sort(succ, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++)
+        {
+            if (unique == 0 || succ[unique - 1] != succ[i])
+                succ[unique++] = succ[i];
+        }
+        successors[block] = unique == 0 ? NO_BLOCKS : Arrays.copyOf(succ, unique);
+        exits[block] = exit;
+    }
+
+    /**
+     * Finds the try-catch blocks that cover a block.
+     * @param block the block index.
+     * @return the indices of the try-catch blocks.
+     */
+    private int[] findHandlers(int block)
+    {
+        int start = starts[block];
+        int count = 0;
+        int[] covering = new int[catches.size()];
+        for (int i = 0; i < covering.length; i++)
+        {
+            CatchStatement c = catches.get(i);
+            Integer tryStart = labelLines.get(c.getStartLabel());
+            Integer tryEnd = labelLines.get(c.getEndLabel());
+            Integer handler = labelLines.get(c.getHandlerLabel());
+            if (tryStart != null && tryEnd != null && handler != null && tryStart < start && start < tryEnd &&
+                    findBlockAfter(handler) < blockCount)
+                covering[count++] = i;
+        }
+        return count == 0 ? NO_BLOCKS : Arrays.copyOf(covering, count);
+    }
+
+    /**
+     * Finds the block that contains a line. A block contains all the lines from its first instruction up to the
+     * first instruction of the next block.
+     * @param line the line index.
+     * @return the block index, or -1 if the line is before the first instruction.
+     */
+    public int findBlock(int line)
+    {
+        return findBlockAfter(line) - 1;
+    }
+
+    /**
+     * Finds the first block whose first instruction is after a line.
+     * @param line the line index.
+     * @return the block index, or the number of blocks if no instruction is after this line.
+     */
+    private int findBlockAfter(int line)
+    {
+        int low = 0;
+        int high = blockCount;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= line)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    public int getBlockCount()
+    {
+        return blockCount;
+    }
+
+    /**
+     * Obtains the number of blocks that were split again by the last update (or by the construction of this graph).
+     * @return the number of rebuilt blocks.
+     */
+    public int getBlocksRebuilt()
+    {
+        return blocksRebuilt;
+    }
+
+    /**
+     * Obtains the number of times that this graph has been built or updated. This can be used to check whether if
+     * the graph has been updated more than once since it was last looked at.
+     * @return the update count.
+     */
+    public int getUpdateCount()
+    {
+        return updateCount;
+    }
+
+    /**
+     * Obtains the first block that was replaced with newly split blocks in the last update.
+     * @return the index of the first new block.
+     */
+    public int getChangeStart()
+    {
+        return changeStart;
+    }
+
+    /**
+     * Obtains the block after the last block that was replaced with newly split blocks in the last update. All the
+     * blocks from this block onwards are the same blocks as before the update, shifted by {@link #getChangeShift()}.
+     * @return the index after the last new block.
+     */
+    public int getChangeEnd()
+    {
+        return changeEnd;
+    }
+
+    /**
+     * Obtains the number of blocks that were added (or removed, if negative) by the last update.
+     * @return the change in the number of blocks.
+     */
+    public int getChangeShift()
+    {
+        return changeShift;
+    }
+
+    /**
+     * Obtains the blocks whose incoming edges (or contents) may have changed in the last update, i.e. all the newly
+     * split blocks, and any blocks that have gained or lost predecessors. The returned set should not be modified.
+     * @return the indices of the affected blocks.
+     */
+    public BitSet getAffectedBlocks()
+    {
+        return affected;
+    }
+
+    public int getLineCount()
+    {
+        return lines.size();
+    }
+
+    /**
+     * Obtains the statement at a line, as of the last update.
+     * @param line the line index.
+     * @return the statement.
+     */
+    public CodeStatement getStatement(int line)
+    {
+        return lines.get(line);
+    }
+
+    /**
+     * Obtains the line of the first instruction of a block.
+     * @param block the block index.
+     * @return the line index.
+     */
+    public int getBlockStart(int block)
+    {
+        return starts[block];
+    }
+
+    /**
+     * Obtains the line of the last instruction of a block.
+     * @param block the block index.
+     * @return the line index.
+     */
+    public int getBlockEnd(int block)
+    {
+        return lasts[block];
+    }
+
+    /**
+     * Obtains the last instruction of a block.
+     * @param block the block index.
+     * @return the last instruction.
+     */
+    public InstStatement getLastInst(int block)
+    {
+        return (InstStatement)lines.get(lasts[block]);
+    }
+
+    /**
+     * Obtains the normal successors of a block, in order. The returned array should not be modified.
+     * @param block the block index.
+     * @return the successor block indices.
+     */
+    public int[] getSuccessors(int block)
+    {
+        return successors[block];
+    }
+
+    /**
+     * Obtains the normal predecessors of a block. The returned array should not be modified.
+     * @param block the block index.
+     * @return the predecessor block indices.
+     */
+    public int[] getPredecessors(int block)
+    {
+        return predecessors[block];
+    }
+
+    /**
+     * Obtains the try-catch blocks that cover a block, in the order that they are declared. The returned array should
+     * not be modified.
+     * @param block the block index.
+     * @return the indices of the try-catch blocks.
+     * @see #getHandlerBlock(int)
+     * @see #getHandlerType(int)
+     */
+    public int[] getHandlers(int block)
+    {
+        return handlers[block];
+    }
+
+    /**
+     * Determines whether if control can flow past the end of the code from a block, either by falling through from
+     * the last block, or by jumping to a label at the end of the code.
+     * @param block the block index.
+     * @return true if the block flows past the end of the code.
+     */
+    public boolean exits(int block)
+    {
+        return exits[block];
+    }
+
+    public int getCatchCount()
+    {
+        return catches.size();
+    }
+
+    /**
+     * Obtains the handler block of a try-catch block.
+     * @param ind the index of the try-catch block.
+     * @return the block index, or the number of blocks if the handler is at the end of the code.
+     */
+    public int getHandlerBlock(int ind)
+    {
+        return handlerBlocks[ind];
+    }
+
+    /**
+     * Obtains the exception type caught by a try-catch block.
+     * @param ind the index of the try-catch block.
+     * @return the exception type.
+     */
+    public TypeSignature getHandlerType(int ind)
+    {
+        return handlerTypes[ind];
+    }
+}
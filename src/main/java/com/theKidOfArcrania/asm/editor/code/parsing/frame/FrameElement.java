@@ -11,22 +11,55 @@ import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 
 import java.util.ArrayList;
+import java.util.Objects;
 
 import static com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameType.OBJECT;
 import static com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameType.UNINITIALIZED;
 
 /**
- * Represents a single frame element.
+ * Represents a single frame element. Frame elements are immutable, so the elements that carry no state other than their
+ * frame type are shared (see {@link #valueOf(FrameType)}).
  * @author Henry Wang
  */
 public class FrameElement
 {
     private static final FrameType[] nameMarkers = new FrameType[Byte.MAX_VALUE];
+    private static final FrameElement[] stateless = new FrameElement[FrameType.values().length];
+    private static final FrameElement blockedTop = new FrameElement(FrameType.TOP, true);
 
     static
     {
         for (FrameType s : FrameType.values())
+        {
             nameMarkers[s.getMarker()] = s;
+            if (s != OBJECT && s != FrameType.ARRAY && s != UNINITIALIZED)
+                stateless[s.ordinal()] = new FrameElement(s);
+        }
+    }
+
+    /**
+     * Obtains the shared frame element for one of the following frame types: TOP, INTEGER, LONG, FLOAT, DOUBLE, NULL,
+     * and UNINITIALIZED_THIS. Since frame elements are immutable, these carry no state and can be shared between any
+     * number of frames.
+     * @param type the frame type.
+     * @return the shared frame element.
+     * @throws IllegalArgumentException if the frame type is UNINITIALIZED or OBJECT.
+     */
+    public static FrameElement valueOf(FrameType type)
+    {
+        FrameElement ele = stateless[type.ordinal()];
+        if (ele == null)
+            return new FrameElement(type);
+        return ele;
+    }
+
+    /**
+     * Obtains the shared TOP frame element that is blocked together with a size-2 element.
+     * @return the shared blocked frame element.
+     */
+    public static FrameElement blockedTop()
+    {
+        return blockedTop;
     }
 
     /**
@@ -59,7 +92,7 @@ public class FrameElement
                     i = findObjNext(buff, start);
                     break;
                 default:
-                    eles.add(new FrameElement(type));
+                    eles.add(valueOf(type));
                     continue loop;
             }
 
@@ -130,11 +163,11 @@ public class FrameElement
     }
 
     private final FrameType type;
-    private TypeSignature refSig;
-    private boolean block;
+    private final TypeSignature refSig;
+    private final boolean block;
 
-    private String label;
-    private InstStatement inst;
+    private final String label;
+    private final InstStatement inst;
 
     /**
      * Creates a frame element for following frame types: TOP, INTEGER, LONG, FLOAT, DOUBLE, NULL, and
@@ -149,6 +182,10 @@ public class FrameElement
         if (type == OBJECT)
             throw new IllegalArgumentException("Expected object type.");
         this.type = type;
+        this.refSig = null;
+        this.block = false;
+        this.label = null;
+        this.inst = null;
     }
 
     /**
@@ -165,6 +202,9 @@ public class FrameElement
             throw new IllegalArgumentException("block MUST be TOP.");
         this.type = type;
         this.block = true;
+        this.refSig = null;
+        this.label = null;
+        this.inst = null;
     }
 
     /**
@@ -179,6 +219,9 @@ public class FrameElement
             throw new IllegalArgumentException("Must be UNINITIALIZED frame-type.");
         this.type = type;
         this.label = label;
+        this.refSig = null;
+        this.block = false;
+        this.inst = null;
     }
 
     /**
@@ -195,6 +238,9 @@ public class FrameElement
             throw new IllegalArgumentException("Statement must be a NEW instruction");
         this.type = type;
         this.inst = inst;
+        this.refSig = null;
+        this.block = false;
+        this.label = null;
     }
 
     /**
@@ -212,6 +258,9 @@ public class FrameElement
             throw new IllegalArgumentException("Reference type must be an ARRAY or OBJECT");
         this.type = type;
         this.refSig = refSig;
+        this.block = false;
+        this.label = null;
+        this.inst = null;
     }
 
     public boolean isBlock()
@@ -219,14 +268,6 @@ public class FrameElement
         return block;
     }
 
-    /**
-     * Removes the flag indicating this as a blocked segment.
-     */
-    public void unblock()
-    {
-        this.block = false;
-    }
-
     public FrameType getType()
     {
         return type;
@@ -303,7 +344,7 @@ public class FrameElement
     @Override
     public boolean equals(Object obj)
     {
-        if (obj.getClass() != getClass())
+        if (obj == null || obj.getClass() != getClass())
             return false;
         FrameElement e = (FrameElement)obj;
         if (type != e.type)
@@ -315,7 +356,7 @@ public class FrameElement
             case ARRAY:
                 return refSig.equals(e.refSig);
             case UNINITIALIZED:
-                return label.equals(e.label) && inst.equals(e.inst);
+                return Objects.equals(label, e.label) && inst == e.inst;
             default:
                 return true;
         }
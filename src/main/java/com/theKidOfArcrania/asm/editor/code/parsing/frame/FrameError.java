@@ -0,0 +1,70 @@
+package com.theKidOfArcrania.asm.editor.code.parsing.frame;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+
+/**
+ * Represents a type error found at an instruction. This only records the kind of error and its operands, so that the
+ * error message is not formatted until it is reported. The error refers to the instruction itself rather than to its
+ * line, so that errors kept from an earlier verification still point to the right line after lines are inserted or
+ * removed before it.
+ * @author Henry Wang
+ */
+public class FrameError
+{
+    private final InstStatement inst;
+    private final FrameErrorCode code;
+    private final Object[] operands;
+
+    /**
+     * Constructs a frame error.
+     * @param inst the instruction where this error occurred.
+     * @param code the kind of error.
+     * @param operands the operands of the error, as used by the message format of the error code.
+     */
+    public FrameError(InstStatement inst, FrameErrorCode code, Object... operands)
+    {
+        this.inst = inst;
+        this.code = code;
+        this.operands = operands;
+    }
+
+    public InstStatement getInstruction()
+    {
+        return inst;
+    }
+
+    public FrameErrorCode getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Obtains the operand of this error at an index.
+     * @param index the index of the operand.
+     * @return the operand.
+     */
+    public Object getOperand(int index)
+    {
+        return operands[index];
+    }
+
+    public int getOperandCount()
+    {
+        return operands.length;
+    }
+
+    /**
+     * Formats the error message of this error.
+     * @return the error message.
+     */
+    public String getMessage()
+    {
+        return code.format(operands);
+    }
+
+    @Override
+    public String toString()
+    {
+        return getMessage();
+    }
+}
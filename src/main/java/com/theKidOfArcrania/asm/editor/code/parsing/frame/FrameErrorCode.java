@@ -0,0 +1,60 @@
+package com.theKidOfArcrania.asm.editor.code.parsing.frame;
+
+/**
+ * Represents all the kinds of type errors that can be found while simulating instructions on a stack map frame. Each
+ * kind of error has a message format, which is filled in with the operands of the error (such as the expected and
+ * actual types) only when the message is needed.
+ * @author Henry Wang
+ */
+public enum FrameErrorCode
+{
+    NULL_DEREFERENCE("Dereferencing null pointer."), NOT_ASSIGNABLE("Unable to convert from '%s' to '%s'."),
+    INCONSISTENT_STACK("Inconsistent stack heights: %s and %s."), NOT_ARRAY("Not an array type"),
+    NOT_ARRAY_OF("Not an array type of type %s.")
+    {
+        @Override
+        public String format(Object... operands)
+        {
+            return super.format(operands[0].toString().toLowerCase());
+        }
+    },
+    UNEXPECTED_TYPE("Expected: %s. Actual: %s"), EXPECTED_TYPE("Expected: %s."),
+    EXPECTED_DOUBLE("Expected: (%s, blocked uninitialized)."), EXPECTED_UNINITIALIZED("Expected: %s or %s"),
+    WRONG_SUPER_INIT("Must call <init> of super class or of this class"), WRONG_INIT("Must call <init> method of %s"),
+    STACK_UNDERFLOW("Stack underflow."), CLOBBERED("Clobbering a computation type 2 element."),
+    FALLS_OFF_END("Execution falls off the end of the code."),
+    JUMP_FALLS_OFF_END("Jump target falls off the end of the code."), INTERNAL("%s");
+
+    private final String format;
+
+    /**
+     * Constructs an error code.
+     * @param format the message format of this error (with a <code>%s</code> for each operand).
+     */
+    FrameErrorCode(String format)
+    {
+        this.format = format;
+    }
+
+    /**
+     * Formats the message of an error of this kind. Each <code>%s</code> in the message format is replaced with the
+     * next operand.
+     * @param operands the operands of the error.
+     * @return the error message.
+     */
+    public String format(Object... operands)
+    {
+        if (operands.length == 0)
+            return format;
+
+        StringBuilder msg = new StringBuilder(format.length() + 32);
+        int start = 0;
+        for (Object operand : operands)
+        {
+            int ind = format.indexOf("%s", start);
+            msg.append(format, start, ind).append(operand);
+            start = ind + 2;
+        }
+        return msg.append(format, start, format.length()).toString();
+    }
+}
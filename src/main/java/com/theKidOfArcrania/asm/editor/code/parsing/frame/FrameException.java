@@ -1,20 +1,50 @@
 package com.theKidOfArcrania.asm.editor.code.parsing.frame;
 
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+
 /**
  * This is an exception that is thrown whenever a illegal stack operation has been performed. The associated message
- * will explain the error message.
+ * will explain the error message. Since these describe errors in the code being verified rather than in the program,
+ * they do not fill in any stack trace, and the message is only formatted when requested.
  * @author Henry Wang
  */
 public class FrameException extends Exception
 {
     private static final long serialVersionUID = 4961800575541837476L;
 
+    private final FrameErrorCode code;
+    private final Object[] operands;
+
     /**
-     * Constructs a new FrameException with a message field.
-     * @param msg the message with this stack exception.
+     * Constructs a new FrameException from the kind of error.
+     * @param code the kind of error.
+     * @param operands the operands of the error, as used by the message format of the error code.
      */
-    public FrameException(String msg)
+    public FrameException(FrameErrorCode code, Object... operands)
+    {
+        super(null, null, false, false);
+        this.code = code;
+        this.operands = operands;
+    }
+
+    public FrameErrorCode getCode()
+    {
+        return code;
+    }
+
+    /**
+     * Converts this exception into a frame error record.
+     * @param inst the instruction where this error occurred.
+     * @return the frame error.
+     */
+    public FrameError toError(InstStatement inst)
+    {
+        return new FrameError(inst, code, operands);
+    }
+
+    @Override
+    public String getMessage()
     {
-        super(msg);
+        return code.format(operands);
     }
 }
@@ -0,0 +1,602 @@
+package com.theKidOfArcrania.asm.editor.code.parsing.frame;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.ErrorLogger;
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import com.theKidOfArcrania.asm.editor.context.TypeSignature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
+
+/**
+ * Verifies the operand stack and the local variables of a method body. This abstractly interprets each basic block
+ * of the {@link ControlFlowGraph} with a {@link StackMapFrame}, starting from the entry frame of the method. The
+ * frame at the end of a block flows into all the successor blocks, and the frame before each instruction flows into
+ * any exception handlers covering it, where it is merged with the frames from all the other predecessors. Blocks are
+ * re-interpreted until no frame changes anymore.
+ * <p>
+ * The verifier keeps the entry and exit frames of each block, along with the errors found in that block, between
+ * verifications. When the control flow graph is updated after an edit, only the blocks that the graph reports as
+ * affected are re-examined at first, and the changes propagate forward from there, stopping at any block whose
+ * entry frame is the same as before. Such a block is not interpreted again, and its cached results are kept.
+ * <p>
+ * Blocks are processed one strongly connected component (i.e. loop) at a time in topological order, and in code order
+ * within each component. A loop whose entry frames may have changed is recomputed starting from its entry points
+ * only, since the frames from its back edges could otherwise sustain facts that no longer hold (e.g. after a store
+ * is removed from the loop body). The blocks within the loop still reuse their cached results whenever their entry
+ * frames come out the same.
+ * <p>
+ * The frame before each instruction is kept as well (see {@link #getFrame(int)}). These are snapshots taken with
+ * {@link StackMapFrame#copy()}, which share their elements with each other until they are modified, so keeping them
+ * only costs a small operand stack array per instruction, and a copy of the local variables per store.
+ * @author Henry Wang
+ */
+public class FrameVerifier
+{
+    /**
+     * The cached state of one basic block.
+     */
+    private static class BlockState
+    {
+        private StackMapFrame in;
+        private StackMapFrame out;
+        private StackMapFrame thrown;
+        private StackMapFrame[] frames;
+        private boolean reachable;
+        private boolean stale;
+        private final ArrayList<FrameError> errors = new ArrayList<>();
+        private final ArrayList<FrameError> joinErrors = new ArrayList<>();
+    }
+
+    private static final TypeSignature THROWABLE_TYPE = parseTypeSig("Ljava/lang/Throwable;");
+
+    private final MethodContext mth;
+    private final ControlFlowGraph graph;
+
+    private BlockState[] states;
+    private StackMapFrame entry;
+    private int graphUpdates;
+
+    private int[] components;
+    private int[] order;
+    private int[] positions;
+    private int[] componentStarts;
+    private boolean[] cyclic;
+    private int[][] throwers;
+
+    private BitSet processed;
+    private int blocksVisited;
+    private List<FrameError> errors = Collections.emptyList();
+    private int maxStack;
+    private int maxVars;
+
+    /**
+     * Constructs a verifier for a method body. The statements must be completely parsed and have their symbols
+     * resolved.
+     * @param mth the method which the code belongs to.
+     * @param code the list of parsed statements.
+     */
+    public FrameVerifier(MethodContext mth, List<? extends CodeStatement> code)
+    {
+        this(mth, new ControlFlowGraph(code));
+    }
+
+    /**
+     * Constructs a verifier for a method body from its control flow graph. If the graph is updated in between
+     * verifications, the next verification only recomputes the blocks affected by the update (as long as the graph
+     * is not updated more than once in between).
+     * @param mth the method which the code belongs to.
+     * @param graph the control flow graph of the method body.
+     */
+    public FrameVerifier(MethodContext mth, ControlFlowGraph graph)
+    {
+        this.mth = mth;
+        this.graph = graph;
+    }
+
+    /**
+     * Verifies the method body, reporting any errors to the error logger.
+     * @param logger the error logger to report errors to.
+     * @return true if the method body is verified with no errors, false if some errors occurred.
+     */
+    public boolean verify(ErrorLogger logger)
+    {
+        blocksVisited = 0;
+        int blocks = graph.getBlockCount();
+
+        BitSet seeds = new BitSet(blocks);
+        int updates = graph.getUpdateCount();
+        if (states == null || updates - graphUpdates > 1)
+        {
+            states = new BlockState[blocks];
+            seeds.set(0, blocks);
+        }
+        else if (updates != graphUpdates)
+        {
+            int start = graph.getChangeStart();
+            int end = graph.getChangeEnd();
+            int oldEnd = end - graph.getChangeShift();
+            BlockState[] spliced = new BlockState[blocks];
+            System.arraycopy(states, 0, spliced, 0, start);
+            System.arraycopy(states, oldEnd, spliced, end, states.length - oldEnd);
+            states = spliced;
+            seeds.or(graph.getAffectedBlocks());
+        }
+        graphUpdates = updates;
+        errors = Collections.emptyList();
+        maxStack = maxVars = 0;
+        if (blocks == 0)
+            return true;
+
+        StackMapFrame newEntry = new StackMapFrame(mth);
+        if (!newEntry.equals(entry))
+            seeds.set(0);
+        entry = newEntry;
+
+        computeComponents();
+        processed = new BitSet(blocks);
+        BitSet pending = new BitSet(blocks);
+        for (int block = seeds.nextSetBit(0); block != -1; block = seeds.nextSetBit(block + 1))
+            pending.set(positions[block]);
+
+        BitSet entered = new BitSet();
+        for (int pos = pending.nextSetBit(0); pos != -1; pos = pending.nextSetBit(0))
+        {
+            pending.clear(pos);
+            int block = order[pos];
+            int comp = components[block];
+            if (cyclic[comp] && !entered.get(comp))
+            {
+                entered.set(comp);
+                for (int i = componentStarts[comp]; i < componentStarts[comp + 1]; i++)
+                {
+                    BlockState state = states[order[i]];
+                    if (state != null)
+                        state.stale = true;
+                    pending.set(i);
+                }
+                pending.clear(pos);
+            }
+            process(block, pending);
+        }
+
+        errors = new ArrayList<>();
+        for (int block = 0; block < blocks; block++)
+        {
+            BlockState state = states[block];
+            if (state == null || !state.reachable)
+                continue;
+
+            errors.addAll(state.joinErrors);
+            errors.addAll(state.errors);
+            maxStack = Math.max(maxStack, state.out.getMaxStack());
+            maxVars = Math.max(maxVars, state.out.getMaxVars());
+            if (graph.exits(block))
+            {
+                InstStatement last = graph.getLastInst(block);
+                if (block == blocks - 1 && !ControlFlowGraph.isTerminal(last))
+                    errors.add(new FrameError(last, FrameErrorCode.FALLS_OFF_END));
+                else
+                    errors.add(new FrameError(last, FrameErrorCode.JUMP_FALLS_OFF_END));
+            }
+        }
+
+        for (FrameError error : errors)
+            logger.logError(error::getMessage, error.getInstruction().getLineRange());
+        return errors.isEmpty();
+    }
+
+    public ControlFlowGraph getGraph()
+    {
+        return graph;
+    }
+
+    /**
+     * Obtains all the errors found by the last verification, in the order that they were reported. Errors are only
+     * recorded while verifying, and their messages are only formatted when reported.
+     * @return an unmodifiable list of the errors.
+     */
+    public List<FrameError> getErrors()
+    {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Obtains the maximum height of the operand stack over all the reachable blocks, as of the last verification.
+     * Since the cached frames of a block are kept as long as its entry frame is unchanged, this may overestimate the
+     * height after an edit that removes some pushes, but it never underestimates it.
+     * @return the maximum stack height, in slots.
+     */
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    /**
+     * Obtains the number of local variable slots used over all the reachable blocks, as of the last verification.
+     * Like {@link #getMaxStack()}, this may overestimate after an edit.
+     * @return the number of local variables, in slots.
+     */
+    public int getMaxVars()
+    {
+        return maxVars;
+    }
+
+    /**
+     * Obtains the number of times that blocks were interpreted in the last verification. Blocks whose entry frames
+     * are unchanged from the previous verification are not interpreted again, so after an edit, this is the number
+     * of blocks that were revisited because of that edit.
+     * @return the number of blocks interpreted.
+     */
+    public int getBlocksVisited()
+    {
+        return blocksVisited;
+    }
+
+    /**
+     * Obtains the frame on entry of a basic block, as computed by the last verification.
+     * @param block the index of the basic block.
+     * @return the entry frame, or null if the block is unreachable.
+     */
+    public StackMapFrame getEntryFrame(int block)
+    {
+        BlockState state = states[block];
+        return state == null || !state.reachable ? null : state.in;
+    }
+
+    /**
+     * Obtains the frame before the instruction at a line, as computed by the last verification. For a line without
+     * an instruction, this is the frame before the next instruction in the same block, or the exit frame of the block
+     * if there is no such instruction. The returned frame should not be modified.
+     * @param line the line index (of the control flow graph).
+     * @return the frame, or null if the line is unreachable or is before the first instruction.
+     */
+    public StackMapFrame getFrame(int line)
+    {
+        int block = graph.findBlock(line);
+        if (states == null || block < 0 || block >= states.length)
+            return null;
+        BlockState state = states[block];
+        if (state == null || !state.reachable)
+            return null;
+
+        int start = graph.getBlockStart(block);
+        for (int i = line - start; i < state.frames.length; i++)
+        {
+            if (state.frames[i] != null)
+                return state.frames[i];
+        }
+        return state.out;
+    }
+
+    /**
+     * Recomputes the entry frame of a block from its predecessors, and interprets the block again if the entry frame
+     * changed. If the exit frame (or the frame flowing to exception handlers) then changes, the successors (or the
+     * handlers) are queued to be processed.
+     * @param block the block to process.
+     * @param pending the positions of the blocks that are queued.
+     */
+    private void process(int block, BitSet pending)
+    {
+        BlockState state = states[block];
+        if (state == null)
+            state = states[block] = new BlockState();
+
+        StackMapFrame oldOut = state.reachable ? state.out : null;
+        StackMapFrame oldThrown = state.reachable ? state.thrown : null;
+        boolean wasStale = state.stale;
+
+        //Within one verification, the entry frames only grow, so that the fixpoint is always reached.
+        StackMapFrame in = join(block, state);
+        state.stale = false;
+        if (in != null && processed.get(block) && state.reachable)
+        {
+            StackMapFrame merged = state.in.copy();
+            merge(merged, in, graph.getLastInst(block), state);
+            in = merged;
+        }
+        processed.set(block);
+        state.reachable = in != null;
+        if (in != null && !in.equals(state.in))
+        {
+            state.in = in;
+            interpret(block, state);
+        }
+
+        StackMapFrame out = state.reachable ? state.out : null;
+        StackMapFrame thrown = state.reachable ? state.thrown : null;
+        int comp = components[block];
+        boolean outChanged = out == null ? oldOut != null : !out.equals(oldOut);
+        for (int succ : graph.getSuccessors(block))
+        {
+            if (outChanged || wasStale && components[succ] == comp)
+                pending.set(positions[succ]);
+        }
+
+        boolean thrownChanged = thrown == null ? oldThrown != null : !thrown.equals(oldThrown);
+        for (int handler : graph.getHandlers(block))
+        {
+            int target = graph.getHandlerBlock(handler);
+            if (target < order.length && (thrownChanged || wasStale && components[target] == comp))
+                pending.set(positions[target]);
+        }
+    }
+
+    /**
+     * Merges the exit frames of all the predecessors of a block (and the frames of any blocks that throw into this
+     * block) to compute its entry frame. Any stale blocks are ignored. If only one frame flows into this block, that
+     * frame is returned as is, so the returned frame should not be modified.
+     * @param block the block to compute the entry frame for.
+     * @param state the state of this block, used to keep any errors found while merging.
+     * @return the entry frame, or null if no reachable predecessor flows into this block.
+     */
+    private StackMapFrame join(int block, BlockState state)
+    {
+        state.joinErrors.clear();
+        StackMapFrame in = block == 0 ? entry : null;
+        boolean copied = false;
+        for (int pred : graph.getPredecessors(block))
+        {
+            BlockState predState = states[pred];
+            if (predState == null || !predState.reachable || predState.stale)
+                continue;
+
+            if (in == null)
+                in = predState.out;
+            else
+            {
+                if (!copied)
+                {
+                    in = in.copy();
+                    copied = true;
+                }
+                merge(in, predState.out, graph.getLastInst(pred), state);
+            }
+        }
+
+        int[] from = throwers[block];
+        for (int i = 0; i < from.length; i += 2)
+        {
+            BlockState predState = states[from[i]];
+            if (predState == null || !predState.reachable || predState.stale || predState.thrown == null)
+                continue;
+
+            StackMapFrame frame = predState.thrown.exceptionFrame(graph.getHandlerType(from[i + 1]));
+            if (in == null)
+                in = frame;
+            else
+            {
+                if (!copied)
+                {
+                    in = in.copy();
+                    copied = true;
+                }
+                merge(in, frame, graph.getLastInst(from[i]), state);
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Merges a frame into the entry frame being computed.
+     * @param in the entry frame so far.
+     * @param frame the frame flowing in.
+     * @param from the instruction that control flows from (used for error reporting).
+     * @param state the state of the block being flowed into.
+     */
+    private static void merge(StackMapFrame in, StackMapFrame frame, InstStatement from, BlockState state)
+    {
+        try
+        {
+            in.merge(frame);
+        }
+        catch (FrameException e)
+        {
+            state.joinErrors.add(e.toError(from));
+        }
+    }
+
+    /**
+     * Interprets all the instructions of a basic block, starting from its entry frame. The frames before each
+     * instruction are kept as snapshots, and are merged together into the frame that flows into the exception
+     * handlers covering this block.
+     * @param block the basic block to interpret.
+     * @param state the state of the block, which receives the exit frame and any errors.
+     */
+    private void interpret(int block, BlockState state)
+    {
+        blocksVisited++;
+        state.errors.clear();
+
+        StackMapFrame frame = state.in.copy();
+        StackMapFrame thrown = null;
+        boolean handled = graph.getHandlers(block).length > 0;
+        int start = graph.getBlockStart(block);
+        int end = graph.getBlockEnd(block);
+        StackMapFrame[] frames = new StackMapFrame[end - start + 1];
+        for (int line = start; line <= end; line++)
+        {
+            CodeStatement s = graph.getStatement(line);
+            if (!(s instanceof InstStatement))
+                continue;
+
+            InstStatement inst = (InstStatement)s;
+            frames[line - start] = frame.copy();
+            if (handled)
+            {
+                StackMapFrame exc = frame.exceptionFrame(THROWABLE_TYPE);
+                if (thrown == null)
+                    thrown = exc;
+                else
+                {
+                    try
+                    {
+                        thrown.merge(exc);
+                    }
+                    catch (FrameException e)
+                    {
+                        throw new AssertionError(e);
+                    }
+                }
+            }
+
+            frame.execute(inst, state.errors);
+        }
+        state.out = frame;
+        state.thrown = thrown;
+        state.frames = frames;
+    }
+
+    /**
+     * Computes the strongly connected components of the control flow graph (following both the jumps and the edges
+     * into exception handlers), and orders the blocks by component in topological order, and then in code order.
+     */
+    private void computeComponents()
+    {
+        int blocks = graph.getBlockCount();
+        int[] index = new int[blocks];
+        int[] low = new int[blocks];
+        int[] edge = new int[blocks];
+        int[] stack = new int[blocks];
+        int[] calls = new int[blocks];
+        boolean[] onStack = new boolean[blocks];
+        Arrays.fill(index, -1);
+
+        components = new int[blocks];
+        boolean[] selfLoop = new boolean[blocks];
+        int next = 0;
+        int size = 0;
+        int comps = 0;
+        for (int root = 0; root < blocks; root++)
+        {
+            if (index[root] != -1)
+                continue;
+
+            int depth = 0;
+            calls[depth++] = root;
+            index[root] = low[root] = next++;
+            edge[root] = 0;
+            stack[size++] = root;
+            onStack[root] = true;
+            while (depth > 0)
+            {
+                int block = calls[depth - 1];
+                int succ = edgeTarget(block, edge[block]++);
+                if (succ == -1)
+                {
+                    depth--;
+                    if (depth > 0)
+                    {
+                        int parent = calls[depth - 1];
+                        low[parent] = Math.min(low[parent], low[block]);
+                    }
+                    if (low[block] == index[block])
+                    {
+                        int member;
+                        do
+                        {
+                            member = stack[--size];
+                            onStack[member] = false;
+                            components[member] = comps;
+                        }
+                        while (member != block);
+                        comps++;
+                    }
+                }
+                else if (succ >= blocks)
+                    continue;
+                else if (index[succ] == -1)
+                {
+                    index[succ] = low[succ] = next++;
+                    edge[succ] = 0;
+                    stack[size++] = succ;
+                    onStack[succ] = true;
+                    calls[depth++] = succ;
+                }
+                else if (onStack[succ])
+                {
+                    low[block] = Math.min(low[block], index[succ]);
+                    if (succ == block)
+                        selfLoop[block] = true;
+                }
+            }
+        }
+
+        //Components are found in reverse topological order.
+        componentStarts = new int[comps + 1];
+        cyclic = new boolean[comps];
+        for (int block = 0; block < blocks; block++)
+        {
+            int comp = components[block] = comps - 1 - components[block];
+            componentStarts[comp + 1]++;
+            if (selfLoop[block])
+                cyclic[comp] = true;
+        }
+        for (int comp = 0; comp < comps; comp++)
+        {
+            if (componentStarts[comp + 1] > 1)
+                cyclic[comp] = true;
+            componentStarts[comp + 1] += componentStarts[comp];
+        }
+
+        order = new int[blocks];
+        positions = new int[blocks];
+        int[] fill = Arrays.copyOf(componentStarts, comps);
+        for (int block = 0; block < blocks; block++)
+        {
+            int pos = fill[components[block]]++;
+            order[pos] = block;
+            positions[block] = pos;
+        }
+
+        int[] throwCounts = new int[blocks];
+        for (int block = 0; block < blocks; block++)
+        {
+            for (int handler : graph.getHandlers(block))
+            {
+                int target = graph.getHandlerBlock(handler);
+                if (target < blocks)
+                    throwCounts[target] += 2;
+            }
+        }
+        throwers = new int[blocks][];
+        for (int block = 0; block < blocks; block++)
+            throwers[block] = new int[throwCounts[block]];
+        Arrays.fill(throwCounts, 0);
+        for (int block = 0; block < blocks; block++)
+        {
+            for (int handler : graph.getHandlers(block))
+            {
+                int target = graph.getHandlerBlock(handler);
+                if (target < blocks)
+                {
+                    throwers[target][throwCounts[target]++] = block;
+                    throwers[target][throwCounts[target]++] = handler;
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtains the target of an outgoing edge of a block, where the successors come first, followed by the exception
+     * handlers.
+     * @param block the block index.
+     * @param edge the index of the edge.
+     * @return the target block, or -1 if there are no more edges.
+     */
+    private int edgeTarget(int block, int edge)
+    {
+        int[] successors = graph.getSuccessors(block);
+        if (edge < successors.length)
+            return successors[edge];
+        int[] handlers = graph.getHandlers(block);
+        edge -= successors.length;
+        return edge < handlers.length ? graph.getHandlerBlock(handlers[edge]) : -1;
+    }
+}
@@ -0,0 +1,267 @@
+package com.theKidOfArcrania.asm.editor.code.parsing.frame;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Objects;
+
+import static com.theKidOfArcrania.asm.editor.code.parsing.inst.InstSpecs.JMP_INST_SPEC;
+
+/**
+ * Writes the stack map frames of a method body from the entry frames computed by a {@link FrameVerifier}, so that the
+ * class writer does not have to compute them again (i.e. without {@link org.objectweb.asm.ClassWriter#COMPUTE_FRAMES}).
+ * A frame is only written at the start of the blocks that the JVM requires a frame for: the targets of jumps and
+ * switches, the exception handlers, and the instructions after an instruction that never falls through. Each frame
+ * is written in the most compact form relative to the previous frame (or to the implicit frame of the method
+ * descriptor for the first frame), i.e. as a same, same-locals-one-stack-item, chop, append, or full frame.
+ * <p>
+ * The frames are all computed up front, since the labels of any uninitialized objects have to be resolved before the
+ * instructions that they refer to are written.
+ * @author Henry Wang
+ */
+public class FrameWriter
+{
+    private static final Object[] NO_TYPES = new Object[0];
+    private static final int MAX_DIFF_LOCALS = 3;
+
+    /**
+     * Determines whether if the frames of a method body are available from its verifier. This requires the last
+     * verification to have no errors, and every block to be reachable, since there is no frame for an unreachable
+     * block.
+     * @param verifier the verifier that has verified the method body.
+     * @return true if the frames are available, false otherwise.
+     */
+    public static boolean canWrite(FrameVerifier verifier)
+    {
+        if (!verifier.getErrors().isEmpty())
+            return false;
+        ControlFlowGraph graph = verifier.getGraph();
+        for (int block = 0; block < graph.getBlockCount(); block++)
+        {
+            if (verifier.getEntryFrame(block) == null)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates the frame writer of a verified method body.
+     * @param verifier the verifier that has verified the method body.
+     * @param resolved the resolved code symbols of the method body.
+     * @return the frame writer, or null if the frames are not available (see {@link #canWrite(FrameVerifier)}).
+     */
+    public static FrameWriter create(FrameVerifier verifier, CodeSymbols resolved)
+    {
+        return canWrite(verifier) ? new FrameWriter(verifier, resolved) : null;
+    }
+
+    private final int[] lines;
+    private final int[] types;
+    private final int[] localCounts;
+    private final Object[][] locals;
+    private final Object[][] stacks;
+    private final int maxStack;
+    private final int maxVars;
+    private int count;
+
+    /**
+     * Constructs a frame writer and computes all the frames to write.
+     * @param verifier the verifier that has verified the method body.
+     * @param resolved the resolved code symbols of the method body.
+     */
+    private FrameWriter(FrameVerifier verifier, CodeSymbols resolved)
+    {
+        ControlFlowGraph graph = verifier.getGraph();
+        int blocks = graph.getBlockCount();
+        lines = new int[blocks];
+        types = new int[blocks];
+        localCounts = new int[blocks];
+        locals = new Object[blocks][];
+        stacks = new Object[blocks][];
+        maxStack = verifier.getMaxStack();
+        maxVars = verifier.getMaxVars();
+        if (blocks == 0)
+            return;
+
+        BitSet handlers = new BitSet(blocks);
+        for (int i = 0; i < graph.getCatchCount(); i++)
+            handlers.set(graph.getHandlerBlock(i));
+
+        Object[] prev = localTypes(new StackMapFrame(verifier.getEntryFrame(0).getMethod()), resolved);
+        for (int block = 0; block < blocks; block++)
+        {
+            if (!needsFrame(graph, block, handlers))
+                continue;
+
+            StackMapFrame frame = verifier.getEntryFrame(block);
+            Object[] local = localTypes(frame, resolved);
+            Object[] stack = stackTypes(frame, resolved);
+            lines[count] = graph.getBlockStart(block);
+            compress(prev, local, stack);
+            prev = local;
+        }
+    }
+
+    /**
+     * Determines whether if the JVM requires a frame at the start of a block.
+     * @param graph the control flow graph.
+     * @param block the block index.
+     * @param handlers the blocks that are exception handlers.
+     * @return true if a frame is needed, false if the block is only entered from the previous block.
+     */
+    private static boolean needsFrame(ControlFlowGraph graph, int block, BitSet handlers)
+    {
+        if (handlers.get(block))
+            return true;
+        for (int pred : graph.getPredecessors(block))
+        {
+            if (pred != block - 1)
+                return true;
+        }
+        if (block == 0)
+            return false;
+
+        InstStatement last = graph.getLastInst(block - 1);
+        if (ControlFlowGraph.isTerminal(last))
+            return true;
+        if (last.getSpec() != JMP_INST_SPEC)
+            return false;
+
+        //A jump that only flows into this block must be jumping to this block.
+        for (int succ : graph.getSuccessors(block - 1))
+        {
+            if (succ != block)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the next frame in its most compact form.
+     * @param prev the local variable types of the previous frame.
+     * @param local the local variable types of this frame.
+     * @param stack the operand stack types of this frame.
+     */
+    private void compress(Object[] prev, Object[] local, Object[] stack)
+    {
+        int diff = local.length - prev.length;
+        int common = Math.min(local.length, prev.length);
+        boolean prefix = true;
+        for (int i = 0; i < common && prefix; i++)
+            prefix = Objects.equals(local[i], prev[i]);
+        if (diff == 0 && prefix && stack.length <= 1)
+            types[count] = stack.length == 0 ? Opcodes.F_SAME : Opcodes.F_SAME1;
+        else if (prefix && stack.length == 0 && diff < 0 && diff >= -MAX_DIFF_LOCALS)
+        {
+            //The dropped locals are passed along as well, since method visitors (i.e. adapters) read the local types
+            //of every frame up to the local count.
+            types[count] = Opcodes.F_CHOP;
+            localCounts[count] = -diff;
+            locals[count] = Arrays.copyOfRange(prev, local.length, prev.length);
+        }
+        else if (prefix && stack.length == 0 && diff > 0 && diff <= MAX_DIFF_LOCALS)
+        {
+            types[count] = Opcodes.F_APPEND;
+            localCounts[count] = diff;
+            locals[count] = Arrays.copyOfRange(local, common, local.length);
+        }
+        else
+        {
+            types[count] = Opcodes.F_FULL;
+            localCounts[count] = local.length;
+            locals[count] = local;
+        }
+        stacks[count] = stack;
+        count++;
+    }
+
+    /**
+     * Converts the local variables of a frame into the types passed to
+     * {@link MethodVisitor#visitFrame(int, int, Object[], int, Object[])}. A double-slot type takes up one entry, and
+     * any TOP types at the end are left out.
+     * @param frame the frame to convert.
+     * @param resolved the resolved code symbols, used to resolve the labels of uninitialized types.
+     * @return the local variable types.
+     */
+    private static Object[] localTypes(StackMapFrame frame, CodeSymbols resolved)
+    {
+        ArrayList<Object> types = new ArrayList<>();
+        int vars = frame.getVarCount();
+        for (int i = 0; i < vars; i++)
+        {
+            FrameElement ele = frame.getVar(i);
+            types.add(ele.unwrapElement(resolved));
+            if (ele.getType().getSize() == 2)
+                i++;
+        }
+
+        int size = types.size();
+        while (size > 0 && Opcodes.TOP.equals(types.get(size - 1)))
+            size--;
+        return size == 0 ? NO_TYPES : types.subList(0, size).toArray();
+    }
+
+    /**
+     * Converts the operand stack of a frame into the types passed to
+     * {@link MethodVisitor#visitFrame(int, int, Object[], int, Object[])}, from the bottom of the stack up. A
+     * double-slot type takes up one entry.
+     * @param frame the frame to convert.
+     * @param resolved the resolved code symbols, used to resolve the labels of uninitialized types.
+     * @return the operand stack types.
+     */
+    private static Object[] stackTypes(StackMapFrame frame, CodeSymbols resolved)
+    {
+        if (frame.getStackSize() == 0)
+            return NO_TYPES;
+
+        ArrayList<Object> types = new ArrayList<>();
+        for (int depth = frame.getStackSize() - 1; depth >= 0; depth--)
+        {
+            FrameElement ele = frame.getStackElement(depth);
+            types.add(ele.unwrapElement(resolved));
+            if (ele.getType().getSize() == 2)
+                depth--;
+        }
+        return types.toArray();
+    }
+
+    /**
+     * Writes the frame before the instruction at a line, if a frame is needed there. This should be called before
+     * each instruction is written.
+     * @param writer the method visitor to write to.
+     * @param line the line index (of the control flow graph) of the instruction.
+     */
+    public void visitFrame(MethodVisitor writer, int line)
+    {
+        int ind = Arrays.binarySearch(lines, 0, count, line);
+        if (ind < 0)
+            return;
+
+        Object[] stack = stacks[ind];
+        writer.visitFrame(types[ind], localCounts[ind], locals[ind], stack.length, stack);
+    }
+
+    /**
+     * Obtains the number of frames that are written.
+     * @return the frame count.
+     */
+    public int getFrameCount()
+    {
+        return count;
+    }
+
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    public int getMaxVars()
+    {
+        return maxVars;
+    }
+}
@@ -6,13 +6,12 @@ import com.theKidOfArcrania.asm.editor.context.ClassContext;
 import com.theKidOfArcrania.asm.editor.context.MethodContext;
 import com.theKidOfArcrania.asm.editor.context.TypeSignature;
 import com.theKidOfArcrania.asm.editor.context.TypeSort;
-import org.objectweb.asm.Opcodes;
 
+import java.lang.reflect.Modifier;
 import java.util.*;
 
 import static com.theKidOfArcrania.asm.editor.context.ClassContext.findContext;
 import static com.theKidOfArcrania.asm.editor.context.TypeSignature.VOID_TYPE;
-import static com.theKidOfArcrania.asm.editor.context.TypeSignature.isAssignable;
 import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
 
 /**
@@ -56,7 +55,7 @@ public class StackMapFrame
          */
         public FrameElement getVar(int ind)
         {
-            return tester.localVariables.get(ind);
+            return tester.getVar(ind);
         }
 
         /**
@@ -137,15 +136,15 @@ public class StackMapFrame
         }
 
         /**
-         * Finds any matching uninitialized frame elements from the list and initializes them.
-         * @param eles the frame element list
+         * Finds any matching uninitialized frame elements on the operand stack and in the local variables, and
+         * initializes them.
          * @param resolved the resolved code symbols
          * @param uninit the uninitialized frame element to look for
          * @param init the initialized frame element to replace with
          */
-        public void init(List<FrameElement> eles, CodeSymbols resolved, FrameElement uninit, FrameElement init)
+        public void init(CodeSymbols resolved, FrameElement uninit, FrameElement init)
         {
-            tester.init(eles, resolved, uninit, init);
+            tester.init(resolved, uninit, init);
         }
 
         /**
@@ -308,28 +307,30 @@ public class StackMapFrame
     private static FrameElement nonNull(FrameElement ele) throws FrameException
     {
         if (ele.getType() == FrameType.NULL)
-            throw new FrameException("Dereferencing null pointer.");
+            throw new FrameException(FrameErrorCode.NULL_DEREFERENCE);
         return ele;
     }
 
     /**
-     * Resolves the following class context from it's internal name descriptor.
-     * @param desc the class descriptor to load.
+     * Resolves the class context of a class name argument of an instruction. This is cached by the instruction.
+     * @param inst the instruction.
+     * @param arg the argument number of the instruction.
      * @return the class context
      * @throws IllegalArgumentException if the class context fails to load.
      */
-    private static ClassContext loadClassContext(String desc)
+    private static ClassContext loadClassContext(InstStatement inst, int arg)
     {
-        ClassContext ctx = findContext(desc);
+        ClassContext ctx = inst.getArgClass(arg);
         if (ctx == null)
-            throw new IllegalArgumentException("Cannot find class '" + desc + "'.");
+            throw new IllegalArgumentException("Cannot find class '" + inst.getArgValue(arg) + "'.");
         return ctx;
     }
 
     /**
      * Checks if the type signature represented by the value can be assigned to the type signature represented by the
      * assignee. In other words this checks whether if the value type signature can be converted via a widening
-     * conversion to the assignee.
+     * conversion to the assignee. Like the JVM verifier, any object can be assigned to an interface type, since the
+     * merged type of two objects might not carry the interfaces that both objects implement.
      * @param assignee the assignee type signature
      * @param value the value type signature.
      * @throws FrameException if the conversion cannot be done.
@@ -338,29 +339,409 @@ public class StackMapFrame
     {
         if (!assignee.isObject() || !value.isObject())
             throw new IllegalArgumentException("Expected two object types.");
-        if (!isAssignable(assignee, value))
-            throw new FrameException("Unable to convert from '" + value + "' to '" + assignee + "'.");
+        if (!isReferenceAssignable(assignee, value) && !isInterface(assignee))
+            throw new FrameException(FrameErrorCode.NOT_ASSIGNABLE, value, assignee);
     }
 
+    /**
+     * Checks whether if a value of one object type can be assigned to another object type, as the JVM verifier checks
+     * it. Unlike {@link TypeSignature#isAssignable(TypeSignature, TypeSignature)}, there are no boxing conversions
+     * here, so a wrapper type (e.g. <code>java/lang/Long</code>) is only assignable to its super types.
+     * @param assignee the assignee type signature.
+     * @param value the value type signature.
+     * @return true if the value can be assigned, false otherwise.
+     */
+    private static boolean isReferenceAssignable(TypeSignature assignee, TypeSignature value)
+    {
+        if (!assignee.isWrapper() && !value.isWrapper())
+            return TypeSignature.isAssignable(assignee, value);
+        if (assignee.equals(value) || assignee.equals(OBJECT_TYPE))
+            return true;
+        if (assignee.getSort() != TypeSort.OBJECT || value.getSort() != TypeSort.OBJECT)
+            return false;
+
+        ClassContext assigneeCtx = findContext(assignee.getClassDescriptor());
+        ClassContext valueCtx = findContext(value.getClassDescriptor());
+        return assigneeCtx != null && valueCtx != null && assigneeCtx.isAssignableFrom(valueCtx);
+    }
+
+    /**
+     * Checks whether if the type signature refers to an interface.
+     * @param sig the type signature to check.
+     * @return true if this is an interface type, false otherwise.
+     */
+    private static boolean isInterface(TypeSignature sig)
+    {
+        if (sig.getSort() != TypeSort.OBJECT)
+            return false;
+        ClassContext ctx = findContext(sig.getClassDescriptor());
+        return ctx != null && ctx.isInterface();
+    }
+
+    /**
+     * Checks whether if the frame type is a reference type, i.e. a value that could be loaded/stored with an
+     * <code>aload</code> or <code>astore</code> instruction.
+     * @param type the frame type to check.
+     * @return true if this is a reference type, false otherwise.
+     */
+    private static boolean isReference(FrameType type)
+    {
+        switch (type)
+        {
+            case OBJECT:
+            case NULL:
+            case UNINITIALIZED:
+            case UNINITIALIZED_THIS:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Merges two frame elements where control flow meets. This computes the least upper bound of the two elements,
+     * i.e. the most specific element that both elements can be assigned to. If no such element exists, the merged
+     * element is TOP.
+     * @param cur the current frame element.
+     * @param in the incoming frame element, or null if the incoming frame has no such element.
+     * @return the merged frame element. This is <code>cur</code> itself if the current element is unchanged.
+     */
+    private static FrameElement mergeElement(FrameElement cur, FrameElement in)
+    {
+        if (cur.getType() == FrameType.TOP && !cur.isBlock())
+            return cur;
+
+        if (in != null && cur.isBlock() == in.isBlock())
+        {
+            if (cur.equals(in))
+                return cur;
+
+            FrameType a = cur.getType();
+            FrameType b = in.getType();
+            if (a == FrameType.NULL && b == FrameType.OBJECT)
+                return in;
+            if (a == FrameType.OBJECT && b == FrameType.NULL)
+                return cur;
+            if (a == FrameType.OBJECT && b == FrameType.OBJECT)
+            {
+                TypeSignature sig = commonSuperType(cur.getRefSig(), in.getRefSig());
+                return sig.equals(cur.getRefSig()) ? cur : new FrameElement(FrameType.OBJECT, sig);
+            }
+        }
+        return FrameElement.valueOf(FrameType.TOP);
+    }
+
+    /**
+     * Computes the most specific common super type of two object types. Interfaces are treated the same way as the
+     * JVM verifier treats them, so the common super type of two unrelated interfaces is
+     * <code>java/lang/Object</code>.
+     * @param a the first object type.
+     * @param b the second object type.
+     * @return the common super type.
+     */
+    private static TypeSignature commonSuperType(TypeSignature a, TypeSignature b)
+    {
+        if (isReferenceAssignable(a, b))
+            return a;
+        if (isReferenceAssignable(b, a))
+            return b;
+
+        if (a.getSort() == TypeSort.ARRAY && b.getSort() == TypeSort.ARRAY)
+        {
+            TypeSignature compA = a.getComponentType();
+            TypeSignature compB = b.getComponentType();
+            if (a.getDimensions() == b.getDimensions() && compA.isObject() && compB.isObject())
+            {
+                StringBuilder desc = new StringBuilder();
+                for (int i = 0; i < a.getDimensions(); i++)
+                    desc.append('[');
+                desc.append(commonSuperType(compA, compB));
+                return parseTypeSig(desc.toString());
+            }
+        }
+        else if (a.getSort() == TypeSort.OBJECT && b.getSort() == TypeSort.OBJECT)
+        {
+            ClassContext ctxA = findContext(a.getClassDescriptor());
+            ClassContext ctxB = findContext(b.getClassDescriptor());
+            if (ctxA != null && ctxB != null && !ctxA.isInterface() && !ctxB.isInterface())
+            {
+                while (ctxA != null && !ctxA.isAssignableFrom(ctxB))
+                    ctxA = ctxA.getSuperClass();
+                if (ctxA != null)
+                    return parseTypeSig("L" + ctxA + ";");
+            }
+        }
+        return OBJECT_TYPE;
+    }
+
+    private static final TypeSignature OBJECT_TYPE = parseTypeSig("Ljava/lang/Object;");
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int[] NO_SLOTS = new int[0];
+
     private final MethodContext mth;
-    private final Deque<FrameElement> operandStack;
-    private final ArrayList<FrameElement> localVariables;
+
+    //The bottom of the operand stack is at index 0. Copies of a frame share these arrays until either frame modifies
+    //them (see ownStack() and ownVars()).
+    private FrameElement[] operandStack;
+    private int stackSize;
+    private boolean stackShared;
+    private FrameElement[] localVariables;
+    private int varCount;
+    private boolean varsShared;
+
+    //The indexes of the operand stack slots and local variables that hold uninitialized objects, so that an <init>
+    //call only needs to look at these. These arrays are never modified, only replaced, so copies can share them.
+    private int[] uninitStack = NO_SLOTS;
+    private int[] uninitVars = NO_SLOTS;
 
     private int maxStack;
     private int maxVars;
 
     /**
-     * Constructs a stack map frame.
+     * Constructs a stack map frame. This is the frame on entry of the method, i.e. the local variables are
+     * initialized with the <code>this</code> reference (if not static) and the method parameters, and the operand
+     * stack is empty.
      * @param mth the method which this stack frame is created for.
      */
     public StackMapFrame(MethodContext mth)
     {
         this.mth = mth;
-        if (mth.getName().equals("<init>"))
-            allocateVar(0, new FrameElement(FrameType.UNINITIALIZED_THIS));
+        operandStack = new FrameElement[INITIAL_CAPACITY];
+        localVariables = new FrameElement[mth.getSignature().getParameterTypes().length * 2 + 1];
+
+        int var = 0;
+        if (!Modifier.isStatic(mth.getModifiers()))
+        {
+            ClassContext owner = mth.getOwner();
+            if (mth.getName().equals("<init>") && owner.getSuperClass() != null)
+                allocateVar(var++, FrameElement.valueOf(FrameType.UNINITIALIZED_THIS));
+            else
+                allocateVar(var++, new FrameElement(FrameType.OBJECT, parseTypeSig("L" + owner + ";")));
+        }
+
+        for (TypeSignature param : mth.getSignature().getParameterTypes())
+        {
+            FrameElement ele = createElement(param);
+            allocateVar(var, ele);
+            var += ele.getType().getSize();
+        }
+    }
+
+    /**
+     * Constructs a copy of another stack map frame. This takes constant time: the copy shares the local variables
+     * (and optionally the operand stack) with the other frame, and whichever frame modifies them first makes its own
+     * copy of them then.
+     * @param other the stack map frame to copy.
+     * @param shareStack true to share the operand stack, false to start out with an empty operand stack instead.
+     */
+    private StackMapFrame(StackMapFrame other, boolean shareStack)
+    {
+        mth = other.mth;
+        if (shareStack)
+        {
+            operandStack = other.operandStack;
+            stackSize = other.stackSize;
+            stackShared = other.stackShared = true;
+            uninitStack = other.uninitStack;
+        }
+        else
+            operandStack = new FrameElement[INITIAL_CAPACITY];
+        localVariables = other.localVariables;
+        varCount = other.varCount;
+        varsShared = other.varsShared = true;
+        uninitVars = other.uninitVars;
+
+        maxStack = other.maxStack;
+        maxVars = other.maxVars;
+    }
+
+    /**
+     * Creates a copy of this frame. Further changes to either frame will not affect the other frame. This takes
+     * constant time, since the two frames share their elements until one of them is modified, so a copy can be taken
+     * as a snapshot before every instruction of a method.
+     * @return the copied frame.
+     */
+    public StackMapFrame copy()
+    {
+        return new StackMapFrame(this, true);
+    }
+
+    /**
+     * Creates the frame at the start of an exception handler that handles exceptions thrown while in this frame. This
+     * frame has the same local variables, and only the exception object on the operand stack.
+     * @param exception the type of exception that is caught.
+     * @return the exception handler frame.
+     */
+    public StackMapFrame exceptionFrame(TypeSignature exception)
+    {
+        StackMapFrame frame = new StackMapFrame(this, false);
+        frame.pushOp(new FrameElement(FrameType.OBJECT, exception));
+        return frame;
+    }
+
+    /**
+     * Merges another frame into this frame, at a point where the control flow of both frames meet. Each element of
+     * this frame is replaced with the least upper bound of the two elements. Any local variables that the other frame
+     * does not have are replaced with TOP.
+     * @param other the other frame to merge into this frame.
+     * @return true if this frame changed because of the merge, false if it is unchanged.
+     * @throws FrameException if the two frames have different operand stack heights.
+     */
+    public boolean merge(StackMapFrame other) throws FrameException
+    {
+        if (stackSize != other.stackSize)
+            throw new FrameException(FrameErrorCode.INCONSISTENT_STACK, stackSize, other.stackSize);
+
+        boolean changed = false;
+        for (int i = 0; i < stackSize; i++)
+        {
+            FrameElement merged = mergeElement(operandStack[i], other.operandStack[i]);
+            if (merged != operandStack[i])
+            {
+                setStack(i, merged);
+                changed = true;
+            }
+        }
+
+        for (int i = 0; i < varCount; i++)
+        {
+            FrameElement cur = localVariables[i];
+            FrameElement merged = mergeElement(cur, i < other.varCount ? other.localVariables[i] : null);
+            if (merged != cur)
+            {
+                setVar(i, merged);
+                changed = true;
+            }
+        }
+
+        maxStack = Math.max(maxStack, other.maxStack);
+        maxVars = Math.max(maxVars, other.maxVars);
+        return changed;
+    }
+
+    /**
+     * Obtains the number of local variables, excluding any TOP variables at the end (which are equivalent to having
+     * no variable there at all). The blocked second half of a double-slot variable is never excluded.
+     * @return the number of significant local variables.
+     */
+    private int significantVars()
+    {
+        int size = varCount;
+        while (size > 0)
+        {
+            FrameElement last = localVariables[size - 1];
+            if (last.getType() != FrameType.TOP || last.isBlock())
+                break;
+            size--;
+        }
+        return size;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 13;
+        for (int i = 0; i < stackSize; i++)
+            hash = hash * 31 + operandStack[i].hashCode();
+        int vars = significantVars();
+        for (int i = 0; i < vars; i++)
+            hash = hash * 31 + localVariables[i].hashCode();
+        return hash;
+    }
+
+    /**
+     * Checks whether if this frame has the same elements as another frame, both on the operand stack and in the
+     * local variables. Any TOP variables at the end of the local variables are ignored, and this also does not
+     * compare the maximum stack size or the maximum number of variables.
+     * @param obj the other object to compare to.
+     * @return true if the two frames are equal, false otherwise.
+     */
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (obj == this)
+            return true;
+        if (obj == null || obj.getClass() != getClass())
+            return false;
+
+        StackMapFrame other = (StackMapFrame)obj;
+        int vars = significantVars();
+        if (stackSize != other.stackSize || vars != other.significantVars())
+            return false;
+        for (int i = 0; i < vars; i++)
+        {
+            if (!sameElement(localVariables[i], other.localVariables[i]))
+                return false;
+        }
+        for (int i = 0; i < stackSize; i++)
+        {
+            if (!sameElement(operandStack[i], other.operandStack[i]))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether if two frame elements are equal, and also that both or neither are the blocked second half of a
+     * double-slot element.
+     * @param a the first element.
+     * @param b the second element.
+     * @return true if the elements are the same.
+     */
+    private static boolean sameElement(FrameElement a, FrameElement b)
+    {
+        return a.equals(b) && a.isBlock() == b.isBlock();
+    }
+
+    public MethodContext getMethod()
+    {
+        return mth;
+    }
+
+    public int getMaxStack()
+    {
+        return maxStack;
+    }
+
+    public int getMaxVars()
+    {
+        return maxVars;
+    }
+
+    public int getStackSize()
+    {
+        return stackSize;
+    }
+
+    public int getVarCount()
+    {
+        return varCount;
+    }
+
+    /**
+     * Obtains an element on the operand stack.
+     * @param depth the depth of the element from the top of the stack, where 0 is the top-most element.
+     * @return the frame element.
+     * @throws IndexOutOfBoundsException if the depth is beyond the stack size.
+     */
+    public FrameElement getStackElement(int depth)
+    {
+        if (depth < 0 || depth >= stackSize)
+            throw new IndexOutOfBoundsException("Depth: " + depth);
+        return operandStack[stackSize - depth - 1];
+    }
 
-        operandStack = new ArrayDeque<>();
-        localVariables = new ArrayList<>();
+    /**
+     * Obtains a local variable.
+     * @param index the index of the local variable.
+     * @return the frame element.
+     * @throws IndexOutOfBoundsException if the index is beyond the local variables.
+     */
+    public FrameElement getVar(int index)
+    {
+        if (index < 0 || index >= varCount)
+            throw new IndexOutOfBoundsException("Index: " + index);
+        return localVariables[index];
     }
 
     /**
@@ -369,11 +750,13 @@ public class StackMapFrame
      */
     public int pushVar()
     {
-        localVariables.add(new FrameElement(FrameType.TOP));
-        int size = localVariables.size();
-        if (size > maxVars)
-            maxVars = size;
-        return size - 1;
+        ownVars();
+        if (varCount == localVariables.length)
+            localVariables = Arrays.copyOf(localVariables, varCount * 2 + 1);
+        localVariables[varCount++] = FrameElement.valueOf(FrameType.TOP);
+        if (varCount > maxVars)
+            maxVars = varCount;
+        return varCount - 1;
     }
 
     /**
@@ -384,13 +767,47 @@ public class StackMapFrame
     public int popVar()
     {
 
-        int last = localVariables.size() - 1;
-        if (last > 0 && localVariables.get(last - 1).getType().getSize() == 2)
-            localVariables.remove(last--);
-        localVariables.remove(last);
+        int last = varCount - 1;
+        if (last > 0 && localVariables[last - 1].getType().getSize() == 2)
+            last--;
+        if (last < 0)
+            throw new IndexOutOfBoundsException("Index: " + last);
+
+        //A shared array is left as is, since the other frames still use these slots.
+        if (!varsShared)
+            Arrays.fill(localVariables, last, varCount, null);
+        varCount = last;
+        uninitVars = truncateSlots(uninitVars, last);
         return last;
     }
 
+    /**
+     * Executes the specified instruction statement, recording any type error instead of throwing it. Like
+     * {@link #execute(InstStatement)}, the instruction is still executed as much as possible after an error, so that
+     * the verification can continue with the next instruction.
+     * @param inst the instruction to execute.
+     * @param errors the list that receives the type error, if one occurs.
+     * @return true if the instruction executed without errors, false if an error was recorded.
+     */
+    public boolean execute(InstStatement inst, List<FrameError> errors)
+    {
+        try
+        {
+            execute(inst);
+            return true;
+        }
+        catch (FrameException e)
+        {
+            errors.add(e.toError(inst));
+        }
+        catch (RuntimeException e)
+        {
+            errors.add(new FrameError(inst, FrameErrorCode.INTERNAL, e.getMessage() == null ? e.toString() :
+                    e.getMessage()));
+        }
+        return false;
+    }
+
     /**
      * Executes the specified instruction statement.
      * @param inst the instruction to execute.
@@ -408,19 +825,17 @@ public class StackMapFrame
                 checkArrayStore(TypeSort.OBJECT);
                 break;
             case INST_ACONST_NULL:
-                pushOp(new FrameElement(FrameType.NULL));
+                pushOp(FrameElement.valueOf(FrameType.NULL));
                 break;
             case INST_ALOAD:
-                pushOp(new FrameElement(FrameType.NULL));
+                pushOp(FrameElement.valueOf(FrameType.NULL));
                 FrameElement ele = checkVarType(inst.getIntArgValue(0), FrameType.OBJECT);
                 if (ele.getType() != FrameType.NULL)
-                {
-                    operandStack.pop();
-                    pushOp(ele);
-                }
+                    setTopOp(ele);
                 break;
             case INST_ANEWARRAY:
-                pushElePopOps(new FrameElement(FrameType.OBJECT, parseSig(inst, 0)), FrameType.INTEGER);
+                TypeSignature compType = parseClassType(inst, 0);
+                pushElePopOps(new FrameElement(FrameType.OBJECT, parseTypeSig("[" + compType)), FrameType.INTEGER);
                 break;
             case INST_ARETURN:
                 popOp(FrameType.OBJECT);
@@ -428,16 +843,20 @@ public class StackMapFrame
             case INST_ARRAYLENGTH:
                 FrameElement arr = nonNull(pushPopOps(FrameType.INTEGER, FrameType.OBJECT)[0]);
                 if (arr.getRefSig().getSort() != TypeSort.ARRAY)
-                    throw new FrameException("Not an array type");
+                    throw new FrameException(FrameErrorCode.NOT_ARRAY);
                 break;
             case INST_ASTORE:
                 int index = inst.getIntArgValue(0);
-                allocateVar(index, new FrameElement(FrameType.NULL));
-                FrameElement obj = new FrameElement(FrameType.OBJECT, nonNull(popOp(FrameType.OBJECT)).getRefSig());
+                allocateVar(index, FrameElement.valueOf(FrameType.NULL));
+                FrameElement obj = popOp(FrameType.TOP);
+                if (!isReference(obj.getType()))
+                    throw new FrameException(FrameErrorCode.UNEXPECTED_TYPE, FrameType.OBJECT, obj.getType());
                 allocateVar(index, obj);
                 break;
             case INST_ATHROW:
-                checkIsAssignable(TypeSignature.fromClass(Throwable.class), nonNull(popOp(FrameType.OBJECT)).getRefSig());
+                FrameElement thrown = popOp(FrameType.OBJECT);
+                if (thrown.getType() != FrameType.NULL)
+                    checkIsAssignable(TypeSignature.fromClass(Throwable.class), thrown.getRefSig());
                 break;
             case INST_BALOAD:
                 checkArrayLoad(TypeSort.BYTE);
@@ -453,15 +872,14 @@ public class StackMapFrame
                 break;
             case INST_CHECKCAST:
                 checkOpType(FrameType.OBJECT);
-                TypeSignature type = nonNull(operandStack.peek()).getRefSig();
+                if (peekOp(0).getType() == FrameType.NULL)
+                    break;
+                TypeSignature type = peekOp(0).getRefSig();
                 TypeSignature target = parseClassType(inst, 0);
 
                 //Ignore implicit type casts.
-                if (!isAssignable(target, type))
-                {
-                    operandStack.pop();
-                    pushOp(new FrameElement(FrameType.OBJECT, target));
-                }
+                if (!isReferenceAssignable(target, type))
+                    setTopOp(new FrameElement(FrameType.OBJECT, target));
                 break;
             case INST_D2F:
                 pushPopOps(FrameType.FLOAT, FrameType.DOUBLE);
@@ -484,8 +902,8 @@ public class StackMapFrame
                 break;
             case INST_DCONST_0:
             case INST_DCONST_1:
-                pushOp(new FrameElement(FrameType.DOUBLE));
-                pushOp(new FrameElement(FrameType.TOP, true));
+                pushOp(FrameElement.valueOf(FrameType.DOUBLE));
+                pushOp(FrameElement.blockedTop());
                 break;
             case INST_DADD:
             case INST_DSUB:
@@ -495,8 +913,8 @@ public class StackMapFrame
                 pushPopOps(FrameType.DOUBLE, FrameType.DOUBLE, FrameType.DOUBLE);
                 break;
             case INST_DLOAD:
-                pushOp(new FrameElement(FrameType.DOUBLE));
-                pushOp(new FrameElement(FrameType.TOP, true));
+                pushOp(FrameElement.valueOf(FrameType.DOUBLE));
+                pushOp(FrameElement.blockedTop());
                 checkVarType(inst.getIntArgValue(0), FrameType.DOUBLE);
                 break;
             case INST_DNEG:
@@ -506,7 +924,7 @@ public class StackMapFrame
                 popOp(FrameType.DOUBLE);
                 break;
             case INST_DSTORE:
-                allocateVar(inst.getIntArgValue(0), new FrameElement(FrameType.DOUBLE));
+                allocateVar(inst.getIntArgValue(0), FrameElement.valueOf(FrameType.DOUBLE));
                 popOp(FrameType.DOUBLE);
                 break;
             case INST_DUP:
@@ -528,13 +946,13 @@ public class StackMapFrame
                 dup(2, 2);
                 break;
             case INST_F2D:
-                pushPopOps(FrameType.FLOAT, FrameType.DOUBLE);
+                pushPopOps(FrameType.DOUBLE, FrameType.FLOAT);
                 break;
             case INST_F2I:
-                pushPopOps(FrameType.FLOAT, FrameType.INTEGER);
+                pushPopOps(FrameType.INTEGER, FrameType.FLOAT);
                 break;
             case INST_F2L:
-                pushPopOps(FrameType.FLOAT, FrameType.LONG);
+                pushPopOps(FrameType.LONG, FrameType.FLOAT);
                 break;
             case INST_FALOAD:
                 checkArrayLoad(TypeSort.FLOAT);
@@ -549,7 +967,7 @@ public class StackMapFrame
             case INST_FCONST_0:
             case INST_FCONST_1:
             case INST_FCONST_2:
-                pushOp(new FrameElement(FrameType.FLOAT));
+                pushOp(FrameElement.valueOf(FrameType.FLOAT));
                 break;
             case INST_FADD:
             case INST_FSUB:
@@ -559,7 +977,7 @@ public class StackMapFrame
                 pushPopOps(FrameType.FLOAT, FrameType.FLOAT, FrameType.FLOAT);
                 break;
             case INST_FLOAD:
-                pushOp(new FrameElement(FrameType.FLOAT));
+                pushOp(FrameElement.valueOf(FrameType.FLOAT));
                 checkVarType(inst.getIntArgValue(0), FrameType.FLOAT);
                 break;
             case INST_FNEG:
@@ -569,14 +987,14 @@ public class StackMapFrame
                 popOp(FrameType.FLOAT);
                 break;
             case INST_FSTORE:
-                allocateVar(inst.getIntArgValue(0), new FrameElement(FrameType.FLOAT));
+                allocateVar(inst.getIntArgValue(0), FrameElement.valueOf(FrameType.FLOAT));
                 popOp(FrameType.FLOAT);
                 break;
             case INST_GETFIELD:
                 nonNull(invokeOps(parseSig(inst, 2), parseClassType(inst, 0))[0]);
                 break;
             case INST_GETSTATIC:
-                invokeOps(parseClassType(inst, 0), parseSig(inst, 2));
+                invokeOps(parseSig(inst, 2));
                 break;
             case INST_GOTO:
             case INST_NOP:
@@ -611,7 +1029,7 @@ public class StackMapFrame
             case INST_ICONST_M1:
             case INST_BIPUSH:
             case INST_SIPUSH:
-                pushOp(new FrameElement(FrameType.INTEGER));
+                pushOp(FrameElement.valueOf(FrameType.INTEGER));
                 break;
             case INST_IF_ACMPEQ:
             case INST_IF_ACMPNE:
@@ -641,7 +1059,7 @@ public class StackMapFrame
                 checkVarType(inst.getIntArgValue(0), FrameType.INTEGER);
                 break;
             case INST_ILOAD:
-                pushOp(new FrameElement(FrameType.INTEGER));
+                pushOp(FrameElement.valueOf(FrameType.INTEGER));
                 checkVarType(inst.getIntArgValue(0), FrameType.INTEGER);
                 break;
             case INST_IADD:
@@ -667,7 +1085,7 @@ public class StackMapFrame
                 if (inst.getArgValue(1, String.class).equals("<init>"))
                 {
                     TypeSignature sig = parseSig(inst, 2);
-                    invokeInitOps(inst.getResolvedSymbols(), loadClassContext(inst.getArgValue(0, String.class)),
+                    invokeInitOps(inst.getResolvedSymbols(), loadClassContext(inst, 0),
                             sig.getParameterTypes());
                     break;
                 }
@@ -676,9 +1094,14 @@ public class StackMapFrame
             case INST_INVOKEVIRTUAL:
                 TypeSignature sig = parseSig(inst, 2);
                 TypeSignature[] params = insertObjParam(parseClassType(inst, 0), sig.getParameterTypes());
-                nonNull(invokeOps(sig.getReturnType(), params)[0]);
+
+                //The verifier allows null receivers (javac emits these in try-with-resources).
+                invokeOps(sig.getReturnType(), params);
                 break;
             case INST_INVOKEDYNAMIC:
+                sig = parseSig(inst, 1);
+                invokeOps(sig.getReturnType(), sig.getParameterTypes());
+                break;
             case INST_INVOKESTATIC:
                 sig = parseSig(inst, 2);
                 invokeOps(sig.getReturnType(), sig.getParameterTypes());
@@ -687,7 +1110,7 @@ public class StackMapFrame
                 popOp(FrameType.INTEGER);
                 break;
             case INST_ISTORE:
-                allocateVar(inst.getIntArgValue(0), new FrameElement(FrameType.INTEGER));
+                allocateVar(inst.getIntArgValue(0), FrameElement.valueOf(FrameType.INTEGER));
                 popOp(FrameType.INTEGER);
                 break;
             case INST_L2D:
@@ -710,8 +1133,8 @@ public class StackMapFrame
                 break;
             case INST_LCONST_0:
             case INST_LCONST_1:
-                pushOp(new FrameElement(FrameType.LONG));
-                pushOp(new FrameElement(FrameType.TOP, true));
+                pushOp(FrameElement.valueOf(FrameType.LONG));
+                pushOp(FrameElement.blockedTop());
                 break;
             case INST_LDC:
                 sig = inst.getArgTypeSig(0);
@@ -720,9 +1143,9 @@ public class StackMapFrame
                     pushOp(new FrameElement(FrameType.OBJECT, sig));
                 else
                 {
-                    pushOp(new FrameElement(ftype));
+                    pushOp(FrameElement.valueOf(ftype));
                     if (ftype.getSize() == 2)
-                        pushOp(new FrameElement(FrameType.TOP, true));
+                        pushOp(FrameElement.blockedTop());
                 }
                 break;
             case INST_LADD:
@@ -732,15 +1155,17 @@ public class StackMapFrame
             case INST_LREM:
             case INST_LOR:
             case INST_LAND:
+            case INST_LXOR:
+                pushPopOps(FrameType.LONG, FrameType.LONG, FrameType.LONG);
+                break;
             case INST_LSHL:
             case INST_LSHR:
             case INST_LUSHR:
-            case INST_LXOR:
-                pushPopOps(FrameType.LONG, FrameType.LONG, FrameType.LONG);
+                pushPopOps(FrameType.LONG, FrameType.LONG, FrameType.INTEGER);
                 break;
             case INST_LLOAD:
-                pushOp(new FrameElement(FrameType.LONG));
-                pushOp(new FrameElement(FrameType.TOP, true));
+                pushOp(FrameElement.valueOf(FrameType.LONG));
+                pushOp(FrameElement.blockedTop());
                 checkVarType(inst.getIntArgValue(0), FrameType.LONG);
                 break;
             case INST_LNEG:
@@ -750,7 +1175,7 @@ public class StackMapFrame
                 popOp(FrameType.LONG);
                 break;
             case INST_LSTORE:
-                allocateVar(inst.getIntArgValue(0), new FrameElement(FrameType.LONG));
+                allocateVar(inst.getIntArgValue(0), FrameElement.valueOf(FrameType.LONG));
                 popOp(FrameType.LONG);
                 break;
             case INST_MONITORENTER:
@@ -758,7 +1183,7 @@ public class StackMapFrame
                 nonNull(popOp(FrameType.OBJECT));
                 break;
             case INST_MULTIANEWARRAY:
-                TypeSignature arrType = parseSig(inst, 0);
+                TypeSignature arrType = parseClassType(inst, 0);
                 int dims = inst.getIntArgValue(1);
                 FrameType[] popping = new FrameType[dims];
                 Arrays.fill(popping, FrameType.INTEGER);
@@ -769,16 +1194,16 @@ public class StackMapFrame
                 break;
             case INST_NEWARRAY:
                 String arrSig;
-                switch (inst.getIntArgValue(0))
+                switch (inst.getArgValue(0, String.class))
                 {
-                    case Opcodes.T_BOOLEAN: arrSig = "[Z"; break;
-                    case Opcodes.T_CHAR: arrSig = "[C"; break;
-                    case Opcodes.T_FLOAT: arrSig = "[F"; break;
-                    case Opcodes.T_DOUBLE: arrSig = "[D"; break;
-                    case Opcodes.T_BYTE: arrSig = "[B"; break;
-                    case Opcodes.T_SHORT: arrSig = "[S"; break;
-                    case Opcodes.T_INT: arrSig = "[I"; break;
-                    case Opcodes.T_LONG: arrSig = "[J"; break;
+                    case "T_BOOLEAN": arrSig = "[Z"; break;
+                    case "T_CHAR": arrSig = "[C"; break;
+                    case "T_FLOAT": arrSig = "[F"; break;
+                    case "T_DOUBLE": arrSig = "[D"; break;
+                    case "T_BYTE": arrSig = "[B"; break;
+                    case "T_SHORT": arrSig = "[S"; break;
+                    case "T_INT": arrSig = "[I"; break;
+                    case "T_LONG": arrSig = "[J"; break;
                     default: throw new IllegalArgumentException();
                 }
                 pushElePopOps(new FrameElement(FrameType.OBJECT, parseTypeSig(arrSig)), FrameType.INTEGER);
@@ -787,11 +1212,22 @@ public class StackMapFrame
                 popOp(FrameType.TOP);
                 break;
             case INST_POP2:
-                operandStack.pop();
+                popRaw();
                 popOp(FrameType.TOP);
                 break;
             case INST_PUTFIELD:
-                nonNull(invokeOps(VOID_TYPE, parseClassType(inst, 0), parseSig(inst, 2))[0]);
+                TypeSignature fieldSig = parseSig(inst, 2);
+                TypeSignature owner = parseClassType(inst, 0);
+                int fieldSize = getFrameType(fieldSig.getSort()).getSize();
+                if (stackSize > fieldSize && peekOp(fieldSize).getType() == FrameType.UNINITIALIZED_THIS &&
+                        owner.getClassDescriptor().equals(mth.getOwner().toString()))
+                {
+                    //Fields of this class can be set before the super constructor is called.
+                    invokeOps(VOID_TYPE, fieldSig);
+                    popOp(FrameType.UNINITIALIZED_THIS);
+                }
+                else
+                    nonNull(invokeOps(VOID_TYPE, owner, fieldSig)[0]);
                 break;
             case INST_PUTSTATIC:
                 invokeOps(VOID_TYPE, parseSig(inst, 2));
@@ -832,7 +1268,8 @@ public class StackMapFrame
     }
 
     /**
-     * Parses the type signature from an instruction
+     * Parses the type signature from an instruction. This is cached by the instruction, so that it is only parsed
+     * once however many times the instruction is executed.
      * @param inst the instruction to parse from.
      * @param arg the argument number of the instruction
      * @return the parsed type signature.
@@ -840,14 +1277,15 @@ public class StackMapFrame
      */
     private TypeSignature parseSig(InstStatement inst, int arg)
     {
-        TypeSignature sig = parseTypeSig(inst.getArgValue(arg, String.class));
+        TypeSignature sig = inst.getArgSignature(arg);
         if (sig == null)
             throw new IllegalArgumentException();
         return sig;
     }
 
     /**
-     * Parses a class identifier type from an instruction as a type signature
+     * Parses a class identifier type from an instruction as a type signature. Like {@link #parseSig(InstStatement,
+     * int)}, this is cached by the instruction.
      * @param inst the instruction to parse from.
      * @param arg the argument number of the instruction
      * @return the parsed type signature.
@@ -855,12 +1293,7 @@ public class StackMapFrame
      */
     private TypeSignature parseClassType(InstStatement inst, int arg)
     {
-        String classDesc = inst.getArgValue(arg, String.class);
-        TypeSignature sig;
-        if (classDesc.startsWith("["))
-            sig = parseTypeSig(classDesc);
-        else
-            sig = parseTypeSig("L" + classDesc + ";");
+        TypeSignature sig = inst.getArgClassType(arg);
         if (sig == null)
             throw new IllegalArgumentException();
         return sig;
@@ -875,17 +1308,7 @@ public class StackMapFrame
      */
     private FrameElement[] invokeOps(TypeSignature ret, TypeSignature... params) throws FrameException
     {
-        FrameElement fret;
-        if (ret.getSort() == TypeSort.VOID)
-            fret = null;
-        else
-        {
-            FrameType ftype = getFrameType(ret.getSort());
-            if (ftype == FrameType.OBJECT)
-                fret = new FrameElement(FrameType.OBJECT, ret);
-            else
-                fret = new FrameElement(ftype);
-        }
+        FrameElement fret = ret.getSort() == TypeSort.VOID ? null : createElement(ret);
 
         FrameType fparams[] = new FrameType[params.length];
         for (int i = 0; i < params.length; i++)
@@ -918,74 +1341,166 @@ public class StackMapFrame
 
         fparams[0] = FrameType.TOP;
 
-        String err = null;
+        FrameException err = null;
         TypeSignature replace;
         FrameElement[] actualParams = pushElePopOps(null, fparams);
         switch (actualParams[0].getType())
         {
             case NULL:
-                throw new FrameException("Dereferencing null pointer.");
+                throw new FrameException(FrameErrorCode.NULL_DEREFERENCE);
             case UNINITIALIZED_THIS:
                 ClassContext thisCtx = mth.getOwner();
                 replace = parseTypeSig("L" + thisCtx + ";");
                 if (!thisCtx.equals(initCtx) && !thisCtx.getSuperClass().equals(initCtx))
-                    err = "Must call <init> of super class or of this class";
+                    err = new FrameException(FrameErrorCode.WRONG_SUPER_INIT);
                 break;
             case UNINITIALIZED:
                 replace = parseClassType(actualParams[0].getStatement() /*NEW <type-sig>*/, 0);
                 if (!replace.getClassDescriptor().equals(initCtx.toString()))
-                    err = "Must call <init> method of " + replace.getClassDescriptor();
+                    err = new FrameException(FrameErrorCode.WRONG_INIT, replace.getClassDescriptor());
                 break;
             default:
-                throw new FrameException("Expected: " + FrameType.UNINITIALIZED_THIS + " or " +
+                throw new FrameException(FrameErrorCode.EXPECTED_UNINITIALIZED, FrameType.UNINITIALIZED_THIS,
                         FrameType.UNINITIALIZED);
         }
 
-        ArrayList<FrameElement> tmpOperand = new ArrayList<>(operandStack);
-        FrameElement freplace = new FrameElement(FrameType.OBJECT, replace);
-        init(tmpOperand, resolved, actualParams[0], freplace);
-        operandStack.clear();
-        operandStack.addAll(tmpOperand);
-        init(localVariables, resolved, actualParams[0], freplace);
+        init(resolved, actualParams[0], new FrameElement(FrameType.OBJECT, replace));
 
         if (err != null)
-            throw new FrameException(err);
+            throw err;
 
         for (int i = 1; i < actualParams.length; i++)
         {
             if (actualParams[i].getType() == FrameType.OBJECT)
-                checkIsAssignable(params[i], actualParams[i].getRefSig());
+                checkIsAssignable(params[i - 1], actualParams[i].getRefSig());
         }
     }
 
     /**
-     * Finds any matching uninitialized frame elements from the list and initializes them.
-     * @param eles the frame element list
+     * Finds any matching uninitialized frame elements on the operand stack and in the local variables, and
+     * initializes them. Only the slots that are known to hold uninitialized objects are looked at, so this takes
+     * time proportional to the number of uninitialized references, not to the size of the frame.
      * @param resolved the resolved code symbols
      * @param uninit the uninitialized frame element to look for
      * @param init the initialized frame element to replace with
      */
-    private void init(List<FrameElement> eles, CodeSymbols resolved, FrameElement uninit, FrameElement init)
+    private void init(CodeSymbols resolved, FrameElement uninit, FrameElement init)
+    {
+        //The slot arrays are replaced (not modified) as the slots are initialized, so we can iterate over the old ones.
+        for (int slot : uninitStack)
+        {
+            if (isSameObject(operandStack[slot], resolved, uninit))
+                setStack(slot, init);
+        }
+        for (int slot : uninitVars)
+        {
+            if (isSameObject(localVariables[slot], resolved, uninit))
+                setVar(slot, init);
+        }
+    }
+
+    /**
+     * Checks whether if a frame element refers to the same uninitialized object as another element. Two
+     * uninitialized objects are the same if they are created by the same NEW instruction. This is decided by the
+     * instruction (or label name) itself whenever possible, and the labels are only resolved when one element refers
+     * to an instruction and the other to a label.
+     * @param ele the frame element to check.
+     * @param resolved the resolved code symbols
+     * @param uninit the uninitialized frame element to look for
+     * @return true if the element is the same uninitialized object.
+     */
+    private static boolean isSameObject(FrameElement ele, CodeSymbols resolved, FrameElement uninit)
+    {
+        switch (uninit.getType())
+        {
+            case UNINITIALIZED:
+                if (ele.getType() != FrameType.UNINITIALIZED)
+                    return false;
+                if (ele.equals(uninit))
+                    return true;
+                if (ele.getStatement() != null && uninit.getStatement() != null)
+                    return false;
+                return uninit.unwrapElement(resolved) == ele.unwrapElement(resolved);
+            case UNINITIALIZED_THIS:
+                return ele.getType() == FrameType.UNINITIALIZED_THIS;
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Checks whether if a frame element is an uninitialized object, i.e. whether its slot should be tracked.
+     * @param ele the frame element to check.
+     * @return true if the element is UNINITIALIZED or UNINITIALIZED_THIS.
+     */
+    private static boolean isUninit(FrameElement ele)
+    {
+        return ele.getType() == FrameType.UNINITIALIZED || ele.getType() == FrameType.UNINITIALIZED_THIS;
+    }
+
+    /**
+     * Creates a new slot array with one more slot index.
+     * @param slots the old slot array.
+     * @param slot the slot index to add.
+     * @return the new slot array.
+     */
+    private static int[] addSlot(int[] slots, int slot)
     {
-        ListIterator<FrameElement> itr = eles.listIterator();
-        while (itr.hasNext())
+        int[] added = Arrays.copyOf(slots, slots.length + 1);
+        added[slots.length] = slot;
+        return added;
+    }
+
+    /**
+     * Creates a new slot array without the specified slot index.
+     * @param slots the old slot array.
+     * @param slot the slot index to remove.
+     * @return the new slot array, or the old one if it does not have that slot index.
+     */
+    private static int[] removeSlot(int[] slots, int slot)
+    {
+        for (int i = 0; i < slots.length; i++)
         {
-            FrameElement old = itr.next();
-            switch (uninit.getType())
+            if (slots[i] == slot)
             {
-                case UNINITIALIZED:
-                    if (old.getType() == FrameType.UNINITIALIZED &&
-                            uninit.unwrapElement(resolved) == old.unwrapElement(resolved))
-                        itr.set(init);
-                    break;
-                case UNINITIALIZED_THIS:
-                    if (old.getType() == FrameType.UNINITIALIZED_THIS)
-                        itr.set(init);
-                    break;
-                default:
-                    throw new IllegalArgumentException();
+                if (slots.length == 1)
+                    return NO_SLOTS;
+                int[] removed = new int[slots.length - 1];
+                System.arraycopy(slots, 0, removed, 0, i);
+                System.arraycopy(slots, i + 1, removed, i, removed.length - i);
+                return removed;
             }
         }
+        return slots;
+    }
+
+    /**
+     * Creates a new slot array without any slot indexes at or above a certain size.
+     * @param slots the old slot array.
+     * @param size the number of slots that are left.
+     * @return the new slot array, or the old one if all of its slot indexes are below that size.
+     */
+    private static int[] truncateSlots(int[] slots, int size)
+    {
+        int count = 0;
+        for (int slot : slots)
+        {
+            if (slot < size)
+                count++;
+        }
+        if (count == slots.length)
+            return slots;
+        if (count == 0)
+            return NO_SLOTS;
+
+        int[] truncated = new int[count];
+        count = 0;
+        for (int slot : slots)
+        {
+            if (slot < size)
+                truncated[count++] = slot;
+        }
+        return truncated;
     }
 
     /**
@@ -1006,9 +1521,9 @@ public class StackMapFrame
         {
             if (push != null)
             {
-                operandStack.push(push);
+                pushOp(push);
                 if (push.getType().getSize() == 2)
-                    operandStack.push(new FrameElement(FrameType.TOP, true));
+                    pushOp(FrameElement.blockedTop());
             }
         }
     }
@@ -1035,11 +1550,10 @@ public class StackMapFrame
             }
             catch (FrameException ex)
             {
+                //Only the first error is reported.
                 if (e == null)
                     e = ex;
-                else
-                    e.addSuppressed(ex);
-                if (operandStack.isEmpty())
+                if (stackSize == 0)
                     break;
             }
         }
@@ -1047,13 +1561,13 @@ public class StackMapFrame
         if (push == FrameType.OBJECT)
         {
             if (e != null)
-                pushOp(new FrameElement(FrameType.NULL));
+                pushOp(FrameElement.valueOf(FrameType.NULL));
         }
         else if (push != null)
         {
-            pushOp(new FrameElement(push));
+            pushOp(FrameElement.valueOf(push));
             if (push.getSize() == 2)
-                pushOp(new FrameElement(FrameType.TOP, true));
+                pushOp(FrameElement.blockedTop());
         }
 
         if (e != null)
@@ -1072,10 +1586,10 @@ public class StackMapFrame
     {
         FrameElement[] popped = new FrameElement[popCount];
         int i = popped.length;
-        while (!operandStack.isEmpty() && i --> 0)
-            popped[i] = operandStack.pop();
+        while (stackSize > 0 && i --> 0)
+            popped[i] = popRaw();
         while (i --> 0)
-            popped[i] = new FrameElement(FrameType.TOP);
+            popped[i] = FrameElement.valueOf(FrameType.TOP);
         return popped;
     }
 
@@ -1086,8 +1600,8 @@ public class StackMapFrame
      */
     private void checkStackUnderflow(int size) throws FrameException
     {
-        if (operandStack.size() < size)
-            throw new FrameException("Stack underflow.");
+        if (stackSize < size)
+            throw new FrameException(FrameErrorCode.STACK_UNDERFLOW);
     }
 
     /**
@@ -1107,8 +1621,8 @@ public class StackMapFrame
         finally
         {
             if (type.getSize() == 2)
-                operandStack.pop();
-            ret = operandStack.pop();
+                popRaw();
+            ret = popRaw();
         }
         return ret;
     }
@@ -1125,17 +1639,18 @@ public class StackMapFrame
         checkStackUnderflow(dupSize + spacing);
         FrameElement popped[] = popNoCheck(dupSize + spacing);
 
+        //Clobbered halves of a double-slot element become plain TOP elements.
         boolean clobbered = false;
         if (popped[spacing].isBlock())
         {
             clobbered = true;
-            popped[spacing].unblock();
+            popped[spacing] = FrameElement.valueOf(FrameType.TOP);
         }
 
         if (popped[0].isBlock())
         {
             clobbered = true;
-            popped[0].unblock();
+            popped[0] = FrameElement.valueOf(FrameType.TOP);
         }
 
         //Push dup elements below our spacer, then push everything again.
@@ -1145,7 +1660,17 @@ public class StackMapFrame
             pushOp(e);
 
         if (clobbered)
-            throw new FrameException("Clobbering a computation type 2 element.");
+            throw new FrameException(FrameErrorCode.CLOBBERED);
+    }
+
+    /**
+     * Peeks at an element on the operand stack without any type verification.
+     * @param depth the depth of the element from the top of the stack, where 0 is the top-most element.
+     * @return the frame element.
+     */
+    private FrameElement peekOp(int depth)
+    {
+        return getStackElement(depth);
     }
 
     /**
@@ -1154,8 +1679,97 @@ public class StackMapFrame
      */
     private void pushOp(FrameElement ele)
     {
-        operandStack.push(ele);
-        maxStack = Math.max(maxStack, operandStack.size());
+        ownStack();
+        if (stackSize == operandStack.length)
+            operandStack = Arrays.copyOf(operandStack, stackSize * 2);
+        if (isUninit(ele))
+            uninitStack = addSlot(uninitStack, stackSize);
+        operandStack[stackSize++] = ele;
+        if (stackSize > maxStack)
+            maxStack = stackSize;
+    }
+
+    /**
+     * Pops the top-most element from the operand stack without any type verification.
+     * @return the popped frame element.
+     * @throws NoSuchElementException if the operand stack is empty.
+     */
+    private FrameElement popRaw()
+    {
+        if (stackSize == 0)
+            throw new NoSuchElementException();
+        FrameElement ele = operandStack[--stackSize];
+        if (!stackShared)
+            operandStack[stackSize] = null;
+        if (isUninit(ele))
+            uninitStack = removeSlot(uninitStack, stackSize);
+        return ele;
+    }
+
+    /**
+     * Replaces the top-most element of the operand stack without any type verification.
+     * @param ele the new top-most frame element.
+     */
+    private void setTopOp(FrameElement ele)
+    {
+        setStack(stackSize - 1, ele);
+    }
+
+    /**
+     * Replaces an element of the operand stack without any type verification, keeping track of the slots that hold
+     * uninitialized objects.
+     * @param index the index of the element from the bottom of the stack.
+     * @param ele the new frame element.
+     */
+    private void setStack(int index, FrameElement ele)
+    {
+        ownStack();
+        if (isUninit(operandStack[index]))
+            uninitStack = removeSlot(uninitStack, index);
+        if (isUninit(ele))
+            uninitStack = addSlot(uninitStack, index);
+        operandStack[index] = ele;
+    }
+
+    /**
+     * Replaces a local variable without any type verification, keeping track of the slots that hold uninitialized
+     * objects. The variable must already be allocated.
+     * @param index the index of the variable.
+     * @param ele the new frame element.
+     */
+    private void setVar(int index, FrameElement ele)
+    {
+        ownVars();
+        if (isUninit(localVariables[index]))
+            uninitVars = removeSlot(uninitVars, index);
+        if (isUninit(ele))
+            uninitVars = addSlot(uninitVars, index);
+        localVariables[index] = ele;
+    }
+
+    /**
+     * Makes sure that this frame has its own copy of the operand stack before it is modified. The copy is sized to
+     * the maximum stack size seen so far, so that it usually never needs to grow again.
+     */
+    private void ownStack()
+    {
+        if (stackShared)
+        {
+            operandStack = Arrays.copyOf(operandStack, Math.max(maxStack, INITIAL_CAPACITY));
+            stackShared = false;
+        }
+    }
+
+    /**
+     * Makes sure that this frame has its own copy of the local variables before they are modified.
+     */
+    private void ownVars()
+    {
+        if (varsShared)
+        {
+            localVariables = Arrays.copyOf(localVariables, maxVars);
+            varsShared = false;
+        }
     }
 
     /**
@@ -1168,20 +1782,19 @@ public class StackMapFrame
     {
         checkStackUnderflow(type.getSize());
 
-        FrameElement top = operandStack.peek();
+        int topIndex = stackSize - 1;
+        FrameElement top = operandStack[topIndex];
         if (type.getSize() == 2)
         {
             if (!top.isBlock() || top.getType() != FrameType.TOP)
-                throw new FrameException("Expected: (" + type + ", blocked uninitialized).");
-            FrameElement tmp = operandStack.poll();
-            top = operandStack.peek();
-            operandStack.push(tmp);
+                throw new FrameException(FrameErrorCode.EXPECTED_DOUBLE, type);
+            top = operandStack[--topIndex];
         }
 
         if (top.isBlock())
         {
-            top.unblock();
-            throw new FrameException("Clobbering a computation type 2 element.");
+            setStack(topIndex, FrameElement.valueOf(FrameType.TOP));
+            throw new FrameException(FrameErrorCode.CLOBBERED);
         }
 
         if (type == FrameType.TOP)
@@ -1191,7 +1804,7 @@ public class StackMapFrame
         {
             if (type == FrameType.OBJECT && top.getType() == FrameType.NULL)
                 return;
-            throw new FrameException("Expected: " + type + ". Actual: " + top.getType());
+            throw new FrameException(FrameErrorCode.UNEXPECTED_TYPE, type, top.getType());
         }
     }
 
@@ -1203,11 +1816,11 @@ public class StackMapFrame
     private void allocateVar(int index, FrameElement ele)
     {
         int newSize = index + ele.getType().getSize();
-        while (localVariables.size() < newSize)
+        while (varCount < newSize)
             pushVar();
-        localVariables.set(index, ele);
+        setVar(index, ele);
         if (ele.getType().getSize() == 2)
-            localVariables.set(index + 1, new FrameElement(FrameType.TOP, true));
+            setVar(index + 1, FrameElement.blockedTop());
     }
 
     /**
@@ -1225,25 +1838,25 @@ public class StackMapFrame
         if (type == FrameType.TOP || type == FrameType.NULL)
             throw new IllegalArgumentException();
 
-        if (index >= localVariables.size())
-            throw new FrameException("Illegal variable.");
-
+        //Any variables past the end are TOP.
         if (type.getSize() == 2)
         {
-            if (index + 1 >= localVariables.size())
-                throw new FrameException("Expected: (" + type + ", blocked uninitialized).");
+            if (index + 1 >= varCount)
+                throw new FrameException(FrameErrorCode.EXPECTED_DOUBLE, type);
 
-            FrameElement block = localVariables.get(index + 1);
+            FrameElement block = localVariables[index + 1];
             if (!block.isBlock() || block.getType() != FrameType.TOP)
-                throw new FrameException("Expected: (" + type + ", blocked uninitialized).");
+                throw new FrameException(FrameErrorCode.EXPECTED_DOUBLE, type);
         }
+        else if (index >= varCount)
+            throw new FrameException(FrameErrorCode.EXPECTED_TYPE, type);
 
-        FrameElement ele = localVariables.get(index);
+        FrameElement ele = localVariables[index];
         if (type != ele.getType())
         {
-            if (type == FrameType.OBJECT && ele.getType() == FrameType.NULL)
+            if (type == FrameType.OBJECT && isReference(ele.getType()))
                 return ele;
-            throw new FrameException("Expected: " + type + ".");
+            throw new FrameException(FrameErrorCode.EXPECTED_TYPE, type);
         }
         return ele;
     }
@@ -1256,7 +1869,6 @@ public class StackMapFrame
      */
     private void checkArrayLoad(TypeSort type) throws FrameException
     {
-        String msg = "Not an array type of type " + type.toString().toLowerCase() + ".";
         FrameType ftype = getFrameType(type);
         FrameElement[] popped = pushPopOps(ftype, FrameType.OBJECT, FrameType.INTEGER);
 
@@ -1266,18 +1878,18 @@ public class StackMapFrame
             sig = nonNull(popped[0]).getRefSig();
 
             if (sig.getSort() != TypeSort.ARRAY)
-                throw new FrameException(msg);
+                throw new FrameException(FrameErrorCode.NOT_ARRAY_OF, type);
 
             TypeSort ele = (sig.getDimensions() == 1) ? sig.getComponentType().getSort() : TypeSort.OBJECT;
-            if (ele != type)
-                throw new FrameException(msg);
+            if (ele != type && !(ele == TypeSort.BOOLEAN && type == TypeSort.BYTE))
+                throw new FrameException(FrameErrorCode.NOT_ARRAY_OF, type);
             if (ftype == FrameType.OBJECT)
                 pushOp(new FrameElement(FrameType.OBJECT, sig.getElementType()));
         }
         catch(FrameException e)
         {
             if (ftype == FrameType.OBJECT)
-                pushOp(new FrameElement(FrameType.NULL));
+                pushOp(FrameElement.valueOf(FrameType.NULL));
             throw e;
         }
     }
@@ -1290,17 +1902,15 @@ public class StackMapFrame
      */
     private void checkArrayStore(TypeSort type) throws FrameException
     {
-        String msg = "Not an array type of type " + type.toString().toLowerCase() + ".";
-
         FrameType ftype = getFrameType(type);
         FrameElement[] popped = pushPopOps(null, FrameType.OBJECT, FrameType.INTEGER, ftype);
         TypeSignature sig = nonNull(popped[0]).getRefSig();
         if (sig.getSort() != TypeSort.ARRAY)
-            throw new FrameException(msg);
+            throw new FrameException(FrameErrorCode.NOT_ARRAY_OF, type);
 
         TypeSort ele = (sig.getDimensions() == 1) ? sig.getComponentType().getSort() : TypeSort.OBJECT;
-        if (ele != type)
-            throw new FrameException(msg);
+        if (ele != type && !(ele == TypeSort.BOOLEAN && type == TypeSort.BYTE))
+            throw new FrameException(FrameErrorCode.NOT_ARRAY_OF, type);
 
         if (ftype == FrameType.OBJECT)
         {
@@ -1310,6 +1920,18 @@ public class StackMapFrame
         }
     }
 
+    /**
+     * Creates a frame element representing a value of the type signature.
+     * @param sig the type signature of the value.
+     * @return the frame element.
+     * @throws IllegalArgumentException if the type signature is a METHOD or VOID type.
+     */
+    private FrameElement createElement(TypeSignature sig)
+    {
+        FrameType ftype = getFrameType(sig.getSort());
+        return ftype == FrameType.OBJECT ? new FrameElement(FrameType.OBJECT, sig) : FrameElement.valueOf(ftype);
+    }
+
     /**
      * Obtains the respective frame type from an array type.
      * @param type the primitive type to look up.
@@ -1324,6 +1946,7 @@ public class StackMapFrame
             case VOID:
                 throw new IllegalArgumentException("Expected array type.");
             case OBJECT:
+            case ARRAY:
                 return FrameType.OBJECT;
             case FLOAT:
                 return FrameType.FLOAT;
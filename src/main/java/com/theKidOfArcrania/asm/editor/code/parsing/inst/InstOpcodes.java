@@ -114,6 +114,7 @@ public enum InstOpcodes
 
     private final int opcode;
     private final InstSpec spec;
+    private final String instName;
 
     /**
      * Creates a InstOpcode enum
@@ -124,6 +125,7 @@ public enum InstOpcodes
     {
         this.opcode = opcode;
         this.spec = spec;
+        this.instName = name().substring(5);
     }
 
     public boolean isStatic()
@@ -137,7 +139,7 @@ public enum InstOpcodes
      */
     public String getInstName()
     {
-        return name().substring(5);
+        return instName;
     }
 
     public int getNumber()
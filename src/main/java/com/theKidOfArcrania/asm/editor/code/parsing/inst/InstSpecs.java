@@ -56,8 +56,8 @@ public class InstSpecs
             ClassContext thisCtx = resolved.getThisContext();
             String ownerName = inst.getArgValue(0, String.class);
             String name = inst.getArgValue(1, String.class);
-            ClassContext owner = findContext(ownerName);
-            TypeSignature typeSig = parseTypeSig(inst.getArgValue(2, String.class));
+            ClassContext owner = inst.getArgClass(0);
+            TypeSignature typeSig = inst.getArgSignature(2);
 
             if (owner == null)
             {
@@ -65,7 +65,7 @@ public class InstSpecs
                 return false;
             }
 
-            FieldContext fld = owner.findField(name);
+            FieldContext fld = inst.getResolvedField();
             if (fld == null)
             {
                 logger.logError("Cannot resolve symbol '" + name + "'.", inst.getArgPos(1));
@@ -597,8 +597,8 @@ public class InstSpecs
             ClassContext thisCtx = resolved.getThisContext();
             String name = inst.getArgValue(1, String.class);
             String ownerName = inst.getArgValue(0, String.class);
-            ClassContext owner = findContext(ownerName);
-            TypeSignature typeSig = parseTypeSig(inst.getArgValue(2, String.class));
+            ClassContext owner = inst.getArgClass(0);
+            TypeSignature typeSig = inst.getArgSignature(2);
 
             if (owner == null)
             {
@@ -613,7 +613,7 @@ public class InstSpecs
                 return false;
             }
 
-            MethodContext mth = owner.findMethod(name, typeSig, true);
+            MethodContext mth = inst.getResolvedMethod();
             if (mth == null)
             {
                 logger.logError("Cannot resolve symbol '" + name + typeSig + "'.",
@@ -655,7 +655,7 @@ public class InstSpecs
         public void write(MethodVisitor writer, InstStatement inst, CodeSymbols resolved)
         {
             String clsName = inst.getArgValue(0, String.class);
-            ClassContext owner = findContext(clsName);
+            ClassContext owner = inst.getArgClass(0);
             writer.visitMethodInsn(inst.getOpcodeNum(), clsName, inst.getArgValue(1, String.class), inst.getArgValue
                     (2, String.class), owner.isInterface());
 
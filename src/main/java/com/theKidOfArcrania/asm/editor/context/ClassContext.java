@@ -5,8 +5,11 @@ import com.theKidOfArcrania.asm.editor.util.IndexHashSet;
 import org.objectweb.asm.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Modifier;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.theKidOfArcrania.asm.editor.context.TypeSignature.BOOLEAN_TYPE;
 import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
@@ -15,7 +18,10 @@ import static java.lang.reflect.Modifier.PUBLIC;
 import static java.lang.reflect.Modifier.STATIC;
 
 /**
- * Represents a context of a particular class.
+ * Represents a context of a particular class. Finding, loading and creating class contexts is synchronized on the
+ * master list of class contexts, so this can be done from multiple threads; an individual class context is otherwise
+ * not thread-safe. Finding a class context that is already fully resolved does not take the lock at all, so that
+ * many threads can walk a loaded class hierarchy at once (as long as no thread modifies it).
  * @author Henry Wang
  */
 public class ClassContext
@@ -28,6 +34,7 @@ public class ClassContext
     private static class ClassDataParser extends ClassVisitor
     {
         private ClassContext ctx;
+        private boolean lazy;
 
         /**
          * Constructs a ClassDataParser.
@@ -114,7 +121,10 @@ public class ClassContext
                 for (String except : exceptions)
                     mth.addException(findContext0(except, true));
             }
-            return mth.writeBody();
+            if (!lazy)
+                return mth.loadBody();
+            mth.loadLazyBody();
+            return null;
         }
 
         @Override
@@ -127,18 +137,185 @@ public class ClassContext
         }
     }
 
+    /**
+     * A class visitor that copies through the original class data of a class context into a class writer, while
+     * applying any changes made to this class context. Any methods that have not been modified are returned directly
+     * from the class writer, so that ASM can copy them byte-for-byte, while the modified methods are re-emitted.
+     * Members that were added to the class context are emitted at the end of the class.
+     */
+    private class CopyThroughWriter extends ClassVisitor
+    {
+        private final Set<MemberContext> written;
+
+        /**
+         * Constructs a copy-through writer.
+         * @param writer the class writer to write to.
+         */
+        public CopyThroughWriter(ClassWriter writer)
+        {
+            super(Opcodes.ASM5, writer);
+            written = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces)
+        {
+            super.visit(version, modifiers, ClassContext.this.name, signature, superClass == null ?
+                    "java/lang/Object" : superClass.name, getInterfaceNames());
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value)
+        {
+            FieldContext fld = members.search(new FieldContext(ClassContext.this, 0, name, BOOLEAN_TYPE));
+            if (fld == null)
+                return null;
+            written.add(fld);
+            return super.visitField(fld.getModifiers(), name, fld.getSignature().toString(), signature,
+                    fld.getDefaultValue());
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions)
+        {
+            MethodContext mth = findMethod(name, parseTypeSig(desc), false);
+            if (mth == null)
+                return null;
+            written.add(mth);
+
+            //Keep the original exceptions array if unchanged, so that the method can still be copied.
+            String[] excepts = exceptions;
+            Set<ClassContext> mthExcepts = mth.getExceptions();
+            if (exceptions == null ? !mthExcepts.isEmpty() : !sameExceptions(exceptions, mthExcepts))
+                excepts = getExceptionNames(mth);
+
+            MethodVisitor mv = super.visitMethod(mth.getModifiers(), name, desc, signature, excepts);
+            if (mv == null || !mth.isModified())
+                return mv;
+            return new BodyReplacer(mv, mth);
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            for (MemberContext mem : members)
+            {
+                if (!written.contains(mem))
+                    writeMember(cv, mem);
+            }
+            super.visitEnd();
+        }
+
+        /**
+         * Determines whether if the exception names are the same as the set of exceptions.
+         * @param exceptions the original exception names
+         * @param mthExcepts the exceptions of the method context.
+         * @return true if they are the same, false otherwise.
+         */
+        private boolean sameExceptions(String[] exceptions, Set<ClassContext> mthExcepts)
+        {
+            if (exceptions.length != mthExcepts.size())
+                return false;
+            for (String except : exceptions)
+            {
+                if (!mthExcepts.contains(findContext0(except, true)))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A method visitor that replaces the original method body with the method body of a method context. Any
+     * annotations and attributes of the method are passed through, but all the original code is skipped. The new
+     * method body is written when the original method ends.
+     */
+    private static class BodyReplacer extends MethodVisitor
+    {
+        private final MethodVisitor writer;
+        private final MethodContext mth;
+
+        /**
+         * Constructs a body replacer.
+         * @param writer the method visitor to write to.
+         * @param mth the method context containing the new body.
+         */
+        public BodyReplacer(MethodVisitor writer, MethodContext mth)
+        {
+            super(Opcodes.ASM5);
+            this.writer = writer;
+            this.mth = mth;
+        }
+
+        @Override
+        public void visitParameter(String name, int access)
+        {
+            writer.visitParameter(name, access);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotationDefault()
+        {
+            return writer.visitAnnotationDefault();
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible)
+        {
+            return writer.visitAnnotation(desc, visible);
+        }
+
+        @Override
+        public AnnotationVisitor visitTypeAnnotation(int typeRef, TypePath typePath, String desc, boolean visible)
+        {
+            return writer.visitTypeAnnotation(typeRef, typePath, desc, visible);
+        }
+
+        @Override
+        public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible)
+        {
+            return writer.visitParameterAnnotation(parameter, desc, visible);
+        }
+
+        @Override
+        public void visitAttribute(Attribute attr)
+        {
+            writer.visitAttribute(attr);
+        }
+
+        @Override
+        public void visitEnd()
+        {
+            mth.readBody(writer);
+        }
+    }
+
     public static final ClassContext OBJECT_CONTEXT;
-    private static final HashMap<String, ClassContext> CLASS_CONTEXT_MAP;
+    private static final AtomicInteger MODIFICATIONS = new AtomicInteger();
+    private static final ConcurrentHashMap<String, ClassContext> CLASS_CONTEXT_MAP;
     private static final EnumMap<TypeSort, ClassContext> PRIMITIVE_MAP;
 
 
     static
     {
-        CLASS_CONTEXT_MAP = new HashMap<>();
+        CLASS_CONTEXT_MAP = new ConcurrentHashMap<>();
         OBJECT_CONTEXT = findContext("java/lang/Object"); //Make sure nothing overrides the Object class
         PRIMITIVE_MAP = new EnumMap<>(TypeSort.class);
     }
 
+    /**
+     * Obtains the number of modifications made so far to class contexts that are fully resolved, i.e. renaming a
+     * class, or changing its modifiers, super types or members. Anything cached from looking up class contexts or
+     * their members remains valid as long as this count stays the same. Loading a class context does not count as a
+     * modification, since nothing can be looked up from it until it is fully resolved.
+     * @return the modification count.
+     */
+    public static int getModificationCount()
+    {
+        return MODIFICATIONS.get();
+    }
+
     /**
      * Obtains the class internal name for the specified class. This will only work with non-primitives.
      * @param cls the class to query.
@@ -176,26 +353,59 @@ public class ClassContext
     private static ClassContext findContext0(String name, boolean unresolved)
     {
         ensureClassNameFormat(name);
-        ClassContext ctx = CLASS_CONTEXT_MAP.computeIfAbsent(name, ClassContext::new);
-        if (!ctx.isResolved())
+        ClassContext found = CLASS_CONTEXT_MAP.get(name);
+        if (found != null && found.fullyResolved)
+            return found;
+
+        synchronized (CLASS_CONTEXT_MAP)
         {
-            try
-            {
-                if (ctx.isArray())
-                    loadArrayContext(ctx);
-                else
-                    loadContextFromClass(ctx, new ClassReader(name));
-            }
-            catch (IOException e)
+            ClassContext ctx = CLASS_CONTEXT_MAP.get(name);
+            if (ctx == null)
+                ctx = new ClassContext(name);
+            if (!ctx.isResolved())
             {
-                //e.printStackTrace();
-                //System.err.println(name + " failed to load.");
-                return unresolved ? ctx : null;
+                try
+                {
+                    if (ctx.isArray())
+                        loadArrayContext(ctx);
+                    else
+                        loadContextFromClass(ctx, new ClassReader(name), true);
+                }
+                catch (IOException e)
+                {
+                    //e.printStackTrace();
+                    //System.err.println(name + " failed to load.");
+                    return unresolved ? ctx : null;
+                }
             }
+            if (!unresolved && !ctx.checkResolved())
+                return null;
+            return ctx;
+        }
+    }
+
+    /**
+     * Loads a class context from the class data given by the class reader. This is used to load classes that are not
+     * available from the system class loader (i.e. from a jar file). Any classes that the loaded class refers to are
+     * looked up as with {@link #findContext(String)}.
+     * @param cls the class reader containing the class data.
+     * @return the loaded class context.
+     * @throws IllegalArgumentException if a resolved class context of the same name already exists.
+     */
+    public static ClassContext loadContext(ClassReader cls)
+    {
+        String name = cls.getClassName();
+        ensureClassNameFormat(name);
+        synchronized (CLASS_CONTEXT_MAP)
+        {
+            ClassContext ctx = CLASS_CONTEXT_MAP.get(name);
+            if (ctx == null)
+                ctx = new ClassContext(name);
+            else if (ctx.isResolved())
+                throw new IllegalArgumentException("Class context '" + name + "' already exists.");
+            loadContextFromClass(ctx, cls, false);
+            return ctx;
         }
-        if (!unresolved && !ctx.checkResolved())
-            return null;
-        return ctx;
     }
 
     /**
@@ -235,7 +445,8 @@ public class ClassContext
      */
     private static ClassContext loadPrimitive(TypeSort prim)
     {
-        return PRIMITIVE_MAP.computeIfAbsent(prim, ClassContext::new);
+        ClassContext ctx = PRIMITIVE_MAP.get(prim);
+        return ctx == null ? new ClassContext(prim) : ctx;
     }
 
     /**
@@ -250,12 +461,17 @@ public class ClassContext
     {
         if (name.startsWith("["))
             throw new IllegalArgumentException("Cannot create an array class");
-        ClassContext ctx = CLASS_CONTEXT_MAP.computeIfAbsent(name, n -> new ClassContext(n, itrf));
-        if (ctx.isResolved())
-            throw new IllegalArgumentException("Class context '" + name + "' already exists.");
-        ctx.setInterface(itrf);
-        ctx.resolved = true;
-        return ctx;
+        synchronized (CLASS_CONTEXT_MAP)
+        {
+            ClassContext ctx = CLASS_CONTEXT_MAP.get(name);
+            if (ctx == null)
+                ctx = new ClassContext(name, itrf);
+            else if (ctx.isResolved())
+                throw new IllegalArgumentException("Class context '" + name + "' already exists.");
+            ctx.setInterface(itrf);
+            ctx.resolved = true;
+            return ctx;
+        }
     }
 
     /**
@@ -274,30 +490,49 @@ public class ClassContext
     {
         if (name.startsWith("["))
             throw new IllegalArgumentException("Cannot create an array class");
-        ClassContext ctx = CLASS_CONTEXT_MAP.computeIfAbsent(name, ClassContext::new);
-        if (ctx.isResolved())
-            throw new IllegalArgumentException("Class context '" + name + "' already exists.");
-
-        ctx.setOuterClass(outer);
-        ctx.setModifiers(modifiers);
-        ctx.setSuperClass(superClass);
-        for (ClassContext itrf : interfaces)
-            ctx.addInterface(itrf);
-        ctx.resolved = true;
-        return ctx;
+        synchronized (CLASS_CONTEXT_MAP)
+        {
+            ClassContext ctx = CLASS_CONTEXT_MAP.get(name);
+            if (ctx == null)
+                ctx = new ClassContext(name);
+            else if (ctx.isResolved())
+                throw new IllegalArgumentException("Class context '" + name + "' already exists.");
+
+            ctx.setOuterClass(outer);
+            ctx.setModifiers(modifiers);
+            ctx.setSuperClass(superClass);
+            for (ClassContext itrf : interfaces)
+                ctx.addInterface(itrf);
+            ctx.resolved = true;
+            return ctx;
+        }
     }
 
     /**
-     * Loads an existing class context with the contents of a class reader
+     * Loads an existing class context with the contents of a class reader. If the class is loaded lazily (i.e. it can
+     * be read again from the class path), neither the class reader nor the method bodies are kept; instead, the class
+     * data is read again from the class path once the first method body is read (see {@link #readOriginalBodies()}),
+     * and whenever the class is copied through.
      * @param ctx the class context object to load to.
      * @param cls the class object to load from.
+     * @param lazy whether to read the class data again from the class path when it is needed.
      * @throws IllegalArgumentException if the name in the class context doesn't match up with the class reader.
      */
-    private static void loadContextFromClass(ClassContext ctx, ClassReader cls)
+    private static void loadContextFromClass(ClassContext ctx, ClassReader cls, boolean lazy)
     {
         ClassDataParser parser = new ClassDataParser();
         parser.ctx = ctx;
-        cls.accept(parser, ClassReader.SKIP_DEBUG);
+        parser.lazy = lazy;
+        if (lazy)
+        {
+            ctx.classPathName = cls.getClassName();
+            cls.accept(parser, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG);
+        }
+        else
+        {
+            ctx.original = cls;
+            cls.accept(parser, ClassReader.SKIP_DEBUG);
+        }
     }
 
     /**
@@ -350,7 +585,7 @@ public class ClassContext
     private TypeSort primSort;
 
     private boolean resolved;
-    private boolean fullyResolved;
+    private volatile boolean fullyResolved;
     private final ArrayList<Runnable> postLoad;
 
     private String name;
@@ -367,6 +602,9 @@ public class ClassContext
     private final IndexHashSet<MemberContext> members;
 
     private ClassContext arrayComponent;
+    private ClassReader original;
+    private String classPathName;
+    private boolean bodiesRead;
 
     /**
      * Creates a primitive class context.
@@ -530,9 +768,14 @@ public class ClassContext
     public void rename(String name)
     {
         ensureClassNameFormat(name);
-        if (CLASS_CONTEXT_MAP.remove(this.name) != this)
-            throw new IllegalStateException("Not found in master list.");
-        CLASS_CONTEXT_MAP.put(this.name = name, this);
+        synchronized (CLASS_CONTEXT_MAP)
+        {
+            if (CLASS_CONTEXT_MAP.get(this.name) != this)
+                throw new IllegalStateException("Not found in master list.");
+            CLASS_CONTEXT_MAP.remove(this.name);
+            CLASS_CONTEXT_MAP.put(this.name = name, this);
+        }
+        modified();
     }
 
     public int getModifiers()
@@ -543,6 +786,7 @@ public class ClassContext
     public void setModifiers(int modifiers)
     {
         this.modifiers = modifiers;
+        modified();
     }
 
     /**
@@ -573,6 +817,7 @@ public class ClassContext
      */
     public void setSuperClass(ClassContext superClass)
     {
+        modified();
         if (name.equals("java/lang/Object") || isInterface())
         {
             if (superClass == null)
@@ -669,6 +914,7 @@ public class ClassContext
     public boolean addInterface(ClassContext itrf)
     {
         Objects.requireNonNull(itrf);
+        modified();
         return interfaces.add(itrf);
     }
 
@@ -679,6 +925,7 @@ public class ClassContext
      */
     public boolean removeInterface(ClassContext itrf)
     {
+        modified();
         return interfaces.remove(itrf);
     }
 
@@ -692,6 +939,7 @@ public class ClassContext
      */
     public void removeAllInterfaces()
     {
+        modified();
         interfaces.clear();
     }
 
@@ -706,6 +954,7 @@ public class ClassContext
     public MethodContext addMethod(int modifiers, String name, TypeSignature signature)
     {
         MethodContext mth = new MethodContext(this, modifiers, name, signature);
+        modified();
         return members.add(mth) ? mth : null;
     }
 
@@ -716,6 +965,7 @@ public class ClassContext
      */
     public boolean removeMethod(MethodContext mth)
     {
+        modified();
         return members.remove(mth);
     }
 
@@ -876,6 +1126,7 @@ public class ClassContext
             return false;
 
         int slot = members.indexOf(mth);
+        modified();
         members.set(slot, test);
         mth.renameTo(test);
         members.set(slot, mth);
@@ -914,6 +1165,7 @@ public class ClassContext
     public FieldContext addField(int modifiers, String name, TypeSignature signature)
     {
         FieldContext fld = new FieldContext(this, modifiers, name, signature);
+        modified();
         return members.add(fld) ? fld : null;
     }
 
@@ -924,6 +1176,7 @@ public class ClassContext
      */
     public boolean removeField(FieldContext fld)
     {
+        modified();
         return members.remove(fld);
     }
 
@@ -991,6 +1244,7 @@ public class ClassContext
             return false;
 
         int slot = members.indexOf(fld);
+        modified();
         members.set(slot, test);
         fld.renameTo(test);
         members.set(slot, fld);
@@ -1018,9 +1272,19 @@ public class ClassContext
      */
     public void removeAllMembers()
     {
+        modified();
         members.clear();
     }
 
+    /**
+     * Records a modification of this class context (see {@link #getModificationCount()}).
+     */
+    private void modified()
+    {
+        if (fullyResolved)
+            MODIFICATIONS.incrementAndGet();
+    }
+
     /**
      * Obtains the chain of outer classes over this class, if any. This list will always contain this class context.
      * @return an array of the chain of outer classes, starting with this class context.
@@ -1086,7 +1350,7 @@ public class ClassContext
                     if (itrf.equals(this))
                         return true;
                 }
-                ctx = other.getSuperClass();
+                ctx = ctx.getSuperClass();
             }
 
             Queue<ClassContext> untouchedInterfaces = new LinkedList<>();
@@ -1096,7 +1360,7 @@ public class ClassContext
                 ctx = untouchedInterfaces.remove();
                 for (ClassContext itrf : ctx.getInterfaces())
                 {
-                    if (itrfs.add(ctx))
+                    if (itrfs.add(itrf))
                     {
                         untouchedInterfaces.add(itrf);
                         if (itrf.equals(this))
@@ -1160,9 +1424,8 @@ public class ClassContext
      */
     public void writeClass(ClassVisitor writer, int forceVersion)
     {
-        String[] sItrf = interfaces.parallelStream().map(ClassContext::getName).toArray(String[]::new);
         writer.visit(forceVersion, modifiers, name, null, superClass == null ?
-                "java/lang/Object" : superClass.name, sItrf);
+                "java/lang/Object" : superClass.name, getInterfaceNames());
 
         //TODO: annotations
         if (outer != null)
@@ -1171,27 +1434,163 @@ public class ClassContext
             writer.visitInnerClass(ctx.name, outerMethod != null ? null : ctx.outer.name, ctx.innerName, ctx.modifiers);
 
         for (MemberContext mem : members)
+            writeMember(writer, mem);
+
+        writer.visitEnd();
+    }
+
+    /**
+     * Writes this class context into class file data, copying through as much of the original class data as
+     * possible. The original class data is chained from a {@link ClassReader} into a {@link ClassWriter} constructed
+     * with that reader, so that the constant pool is reused, and any methods whose body has not been modified (see
+     * {@link MethodContext#isModified()}) are copied byte-for-byte, including their debug information. Only the
+     * modified methods and any added members are re-emitted. If this class context was not loaded from class data,
+     * or its class data has been released (see {@link #releaseClassData()}), this will write the class from scratch as
+     * with {@link #writeClass(ClassVisitor)}.
+     * <p>
+     * Note that the flags only apply to the methods that are re-emitted.
+     * @param flags the flags of the class writer (i.e. {@link ClassWriter#COMPUTE_MAXS}).
+     * @return the resulting class file data.
+     */
+    public byte[] writeCopyThrough(int flags)
+    {
+        ClassReader reader = readClassData();
+        if (reader == null)
         {
-            if (mem instanceof MethodContext)
-            {
-                MethodContext mth = (MethodContext)mem;
-                MethodVisitor mthVisitor = writer.visitMethod(mem.getModifiers(), mem.getName(),
-                        mem.getSignature().toString(), null,
-                        mth.getExceptions().parallelStream().map(ClassContext::getName).toArray(String[]::new));
-                if (mthVisitor != null)
-                    mth.readBody(mthVisitor);
-            }
+            ClassWriter writer = new ClassWriter(flags);
+            writeClass(writer);
+            return writer.toByteArray();
+        }
+
+        ClassWriter writer = new ClassWriter(reader, flags);
+        reader.accept(new CopyThroughWriter(writer), 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Releases the original class data of this class context once it is no longer needed, i.e. the class reader and
+     * the method bodies recorded from it. Any modified method bodies are kept, but the other methods will then have
+     * no body, and this class will be written from scratch by {@link #writeCopyThrough(int)}. For classes resolved
+     * from the class path, the other method bodies are instead read again from the class path when next needed.
+     */
+    public synchronized void releaseClassData()
+    {
+        if (!isClassDataLoaded())
+            return;
+        original = null;
+        bodiesRead = false;
+        for (MemberContext mem : members)
+        {
+            if (!(mem instanceof MethodContext) || ((MethodContext)mem).isModified())
+                continue;
+            if (classPathName != null)
+                ((MethodContext)mem).loadLazyBody();
             else
+                ((MethodContext)mem).discardBody();
+        }
+    }
+
+    /**
+     * Determines whether the original class data of this class context is currently held, i.e. whether there is
+     * anything for {@link #releaseClassData()} to release. For classes resolved from the class path, this is only
+     * true once their method bodies have been read.
+     * @return true if the class data is loaded, false otherwise.
+     */
+    public synchronized boolean isClassDataLoaded()
+    {
+        return original != null || bodiesRead;
+    }
+
+    /**
+     * Obtains a class reader of the original class data, reading the class data again from the class path if this
+     * class was loaded lazily.
+     * @return the class reader, or null if there is no original class data.
+     * @throws UncheckedIOException if an I/O error occurs while reading the class data again.
+     */
+    private ClassReader readClassData()
+    {
+        if (original != null || classPathName == null)
+            return original;
+        try
+        {
+            return new ClassReader(classPathName);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the original bodies of all methods that are not yet read from the class data again. This is used for
+     * classes that are loaded lazily from the class path, when the first method body is read. It costs one lookup of
+     * the class on the class path and one pass over its class data, after which the method bodies are recorded just
+     * as for eagerly loaded classes (until they are released by {@link #releaseClassData()}). Any later body read
+     * only replays its recording.
+     * @throws UncheckedIOException if an I/O error occurs while reading the class data again.
+     */
+    synchronized void readOriginalBodies()
+    {
+        if (bodiesRead)
+            return;
+        ClassReader cls = readClassData();
+        if (cls == null)
+            return;
+        bodiesRead = true;
+        cls.accept(new ClassVisitor(Opcodes.ASM5)
+        {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions)
             {
-                FieldContext fld = (FieldContext)mem;
-                FieldVisitor fldVisitor = writer.visitField(mem.getModifiers(), mem.getName(),
-                        mem.getSignature().toString(), null, fld.getDefaultValue());
-                if (fldVisitor != null)
-                    fldVisitor.visitEnd();
+                MethodContext mth = findMethod(name, parseTypeSig(desc), false);
+                return mth != null && mth.isLazy() ? mth.loadBody() : null;
             }
+        }, ClassReader.SKIP_DEBUG);
+    }
+
+    /**
+     * Writes a single member of this class into the class visitor.
+     * @param writer the class visitor to write to.
+     * @param mem the member to write.
+     */
+    private static void writeMember(ClassVisitor writer, MemberContext mem)
+    {
+        if (mem instanceof MethodContext)
+        {
+            MethodContext mth = (MethodContext)mem;
+            MethodVisitor mthVisitor = writer.visitMethod(mem.getModifiers(), mem.getName(),
+                    mem.getSignature().toString(), null, getExceptionNames(mth));
+            if (mthVisitor != null)
+                mth.readBody(mthVisitor);
+        }
+        else
+        {
+            FieldContext fld = (FieldContext)mem;
+            FieldVisitor fldVisitor = writer.visitField(mem.getModifiers(), mem.getName(),
+                    mem.getSignature().toString(), null, fld.getDefaultValue());
+            if (fldVisitor != null)
+                fldVisitor.visitEnd();
         }
+    }
 
-        writer.visitEnd();
+    /**
+     * Obtains the internal names of the exceptions that a method can throw.
+     * @param mth the method context.
+     * @return the exception names.
+     */
+    private static String[] getExceptionNames(MethodContext mth)
+    {
+        return mth.getExceptions().stream().map(ClassContext::getName).toArray(String[]::new);
+    }
+
+    /**
+     * Obtains the internal names of the interfaces that this class implements.
+     * @return the interface names.
+     */
+    private String[] getInterfaceNames()
+    {
+        return interfaces.stream().map(ClassContext::getName).toArray(String[]::new);
     }
 
     /**
@@ -1,7 +1,10 @@
 package com.theKidOfArcrania.asm.editor.context;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 
+import com.theKidOfArcrania.asm.editor.code.parsing.CatchStatement;
 import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
 import com.theKidOfArcrania.asm.editor.code.parsing.inst.InstOpcodes;
 import org.objectweb.asm.*;
@@ -9,31 +12,63 @@ import org.objectweb.asm.*;
 import static org.objectweb.asm.Opcodes.*;
 
 /**
- * This loads a method body into assembly code.
+ * This loads a method body into assembly code. The code is streamed line by line into an {@link Appendable} as the
+ * method body is visited, so that no intermediate copies of the listing are made.
  * @author Henry Wang
  */
 class MethodBodyLoader extends MethodVisitor {
     private static final int ASCII_START = 0x20;
     private static final int ASCII_END = 0x7E;
     private static final int HEX_END = 0xFF;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String[] ARRAY_TYPES = {"T_BOOLEAN", "T_CHAR", "T_FLOAT", "T_DOUBLE", "T_BYTE", "T_SHORT",
+            "T_INT", "T_LONG"};
 
-    private final ArrayList<String> lines;
+    private final Appendable out;
     private final HashMap<Label, String> labels;
     private final CodeSymbols handles;
     private int nextLabel;
+    private boolean firstLine;
+    private boolean firstArg;
 
     /**
-     * Constructs a new method body loader.
-     * @param global the global code symbols
+     * Constructs a new method body loader that accumulates code into a string.
+     * @param global the global code symbols. Any method handles already named there are reused, but the global code
+     *               symbols are never modified (see {@link #getHandles()}).
      */
-    public MethodBodyLoader(CodeSymbols global) {
+    public MethodBodyLoader(CodeSymbols global)
+    {
+        this(global, new StringBuilder());
+    }
+
+    /**
+     * Constructs a new method body loader that streams code to the specified output. Each line is separated by a
+     * newline character, and no trailing newline is written after the last line.
+     * @param global the global code symbols. Any method handles already named there are reused, but the global code
+     *               symbols are never modified (see {@link #getHandles()}).
+     * @param out the output to write the code to.
+     */
+    public MethodBodyLoader(CodeSymbols global, Appendable out)
+    {
         super(Opcodes.ASM5);
         this.handles = new CodeSymbols(global, global.getThisContext());
+        this.out = out;
 
-        lines = new ArrayList<>();
         labels = new HashMap<>();
 
         nextLabel = 0;
+        firstLine = true;
+    }
+
+    /**
+     * Obtains the local code symbols that the method handles used by the code are named in. The names never clash
+     * with the handles of the global code symbols, so these can be merged into them with
+     * {@link CodeSymbols#addHandles(CodeSymbols)}.
+     * @return the local code symbols.
+     */
+    public CodeSymbols getHandles()
+    {
+        return handles;
     }
 
     /**
@@ -42,19 +77,21 @@ class MethodBodyLoader extends MethodVisitor {
      */
     public String toCode()
     {
-        return String.join("\n", lines);
+        return out.toString();
     }
 
     @Override
     public void visitLabel(Label label)
     {
-        lines.add(labelToStr(label) + ":");
+        newLine();
+        append(labelToStr(label));
+        append(':');
     }
 
     @Override
     public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack)
     {
-        //TODO
+        //Frames are not part of the listing, since they are computed again from the code when it is written.
     }
 
     @Override
@@ -67,7 +104,15 @@ class MethodBodyLoader extends MethodVisitor {
     @Override
     public void visitTryCatchBlock(Label start, Label end, Label handler, String type)
     {
-        //TODO
+        newLine();
+        append("  ");
+        append(CatchStatement.DIRECTIVE);
+        firstArg = true;
+        arg(labelToStr(start));
+        arg(labelToStr(end));
+        arg(labelToStr(handler));
+        if (type != null)
+            arg(type);
     }
 
     @Override
@@ -86,176 +131,322 @@ class MethodBodyLoader extends MethodVisitor {
     @Override
     public void visitIntInsn(int opcode, int operand)
     {
-        code(opcode, Integer.toString(operand));
+        code(opcode);
+        if (opcode == NEWARRAY && operand >= T_BOOLEAN && operand <= T_LONG)
+            arg(ARRAY_TYPES[operand - T_BOOLEAN]);
+        else
+            arg(operand);
     }
 
     @Override
     public void visitVarInsn(int opcode, int var)
     {
-        code(opcode, Integer.toString(var));
+        code(opcode);
+        arg(var);
     }
 
     @Override
     public void visitTypeInsn(int opcode, String type)
     {
-        code(opcode, type);
+        code(opcode);
+        arg(type);
     }
 
     @Override
     public void visitFieldInsn(int opcode, String owner, String name, String desc)
     {
-        code(opcode, owner, name, "@" + desc);
+        code(opcode);
+        arg(owner);
+        arg(name);
+        typeArg(desc);
     }
 
     @Override
     public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf)
     {
-        code(opcode, owner, name, "@" + desc);
+        code(opcode);
+        arg(owner);
+        arg(name);
+        typeArg(desc);
     }
 
     @Override
     public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs)
     {
-        String[] args = new String[bsmArgs.length + 2];
-        args[0] = name;
-        args[1] = "@" + desc;
-        args[2] = handleToStr(bsm);
-        for (int i = 0; i < bsmArgs.length; i++)
-            args[i + 3] = argToCode(bsmArgs[i]);
-        code(INVOKEDYNAMIC, args);
+        code(INVOKEDYNAMIC);
+        arg(name);
+        typeArg(desc);
+        constArg(bsm);
+        for (Object bsmArg : bsmArgs)
+            constArg(bsmArg);
     }
 
     @Override
     public void visitJumpInsn(int opcode, Label label)
     {
-        code(opcode, labelToStr(label));
+        code(opcode);
+        arg(labelToStr(label));
     }
 
     @Override
     public void visitLdcInsn(Object cst)
     {
-        code(LDC, argToCode(cst));
+        code(LDC);
+        constArg(cst);
     }
 
     @Override
     public void visitIincInsn(int var, int increment)
     {
-        code(IINC, Integer.toString(var), Integer.toString(var));
+        code(IINC);
+        arg(var);
+        arg(increment);
     }
 
     @Override
     public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels)
     {
-        String[] args = new String[labels.length + 3];
-        args[0] = Integer.toString(min);
-        args[1] = Integer.toString(max);
-        args[2] = labelToStr(dflt);
-        for (int i = 0; i < labels.length; i++)
-            args[i + 3] = labelToStr(labels[i]);
-        code(TABLESWITCH, args);
+        code(TABLESWITCH);
+        arg(min);
+        arg(max);
+        arg(labelToStr(dflt));
+        for (Label lbl : labels)
+            arg(labelToStr(lbl));
     }
 
     @Override
     public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels)
     {
-        String[] args = new String[keys.length * 2 + 1];
-        args[0] = labelToStr(dflt);
+        code(LOOKUPSWITCH);
+        arg(labelToStr(dflt));
         for (int i = 0; i < keys.length; i++)
         {
-            args[i * 2 + 1] = Integer.toString(keys[i]);
-            args[i * 2 + 2] = labelToStr(labels[i]);
+            arg(keys[i]);
+            arg(labelToStr(labels[i]));
         }
-        code(LOOKUPSWITCH, args);
     }
 
     @Override
     public void visitMultiANewArrayInsn(String desc, int dims)
     {
-        code(MULTIANEWARRAY, desc, Integer.toString(dims));
+        code(MULTIANEWARRAY);
+        typeArg(desc);
+        arg(dims);
     }
 
     /**
-     * Writes a line of code with an opcode and a series of arguments.
+     * Starts a new line of code with an opcode. Arguments are then written after this with the <code>arg</code>
+     * methods.
      * @param opcode the opcode of instruction
-     * @param args the codified arguments (if any).
      */
-    private void code(int opcode, String... args)
+    private void code(int opcode)
     {
-        StringBuilder sb = new StringBuilder();
-        String name = InstOpcodes.fromNumber(opcode).getInstName();
+        newLine();
+        append("  ");
+        append(InstOpcodes.fromNumber(opcode).getInstName());
+        firstArg = true;
+    }
 
-        sb.append("  ").append(name);
+    /**
+     * Starts a new line, writing the line separator if this is not the first line.
+     */
+    private void newLine()
+    {
+        if (firstLine)
+            firstLine = false;
+        else
+            append('\n');
+    }
 
-        boolean first = true;
-        for (String arg : args)
+    /**
+     * Writes the separator before the next argument of the current instruction.
+     */
+    private void argSeparator()
+    {
+        if (firstArg)
         {
-            sb.append(first ? " " : ", ").append(arg);
-            first = false;
+            append(' ');
+            firstArg = false;
         }
+        else
+            append(", ");
+    }
+
+    /**
+     * Writes a codified argument verbatim.
+     * @param arg the codified argument.
+     */
+    private void arg(String arg)
+    {
+        argSeparator();
+        append(arg);
+    }
 
-        lines.add(sb.toString());
+    /**
+     * Writes an integer argument.
+     * @param arg the integer argument.
+     */
+    private void arg(int arg)
+    {
+        argSeparator();
+        append(Integer.toString(arg));
     }
 
     /**
-     * Converts this argument into the respective code.
+     * Writes a type signature argument.
+     * @param desc the type descriptor
+     */
+    private void typeArg(String desc)
+    {
+        argSeparator();
+        append('@');
+        append(desc);
+    }
+
+    /**
+     * Writes a constant argument (i.e. an ldc constant or a bootstrap argument) into the respective code.
      * @param arg the argument.
-     * @return the string code form.
      */
-    private String argToCode(Object arg)
-    {
-        String prefix = "";
-        String suffix = "";
-        if (arg instanceof Integer)
-            prefix = "";
-        else if (arg instanceof Float)
-            suffix = "F";
-        else if (arg instanceof Long)
-            suffix = "L";
-        else if (arg instanceof Double)
-            suffix = "D";
-        else if (arg instanceof String)
-            return quoteStr((String) arg);
-        else if (arg instanceof Type)
-            prefix = "@";
+    private void constArg(Object arg)
+    {
+        argSeparator();
+        if (arg instanceof String)
+            appendQuoted((String) arg);
         else if (arg instanceof Handle)
-            return "&" + handleToStr((Handle)arg);
+        {
+            append('&');
+            append(handleToStr((Handle) arg));
+        }
+        else if (arg instanceof Type)
+        {
+            append('@');
+            append(arg.toString());
+        }
         else
-            return null;
-        return prefix + arg + suffix;
+        {
+            String val = arg.toString();
+            if (isNonFinite(arg) && val.charAt(0) != '-')
+                append('+'); //Make sure this is read as a number.
+            append(val);
+            if (arg instanceof Float)
+                append('F');
+            else if (arg instanceof Long)
+                append('L');
+            else if (arg instanceof Double)
+                append('D');
+        }
+    }
+
+    /**
+     * Determines whether if the constant is a NaN or an infinite floating number.
+     * @param arg the constant argument.
+     * @return true if this is non-finite, false otherwise.
+     */
+    private static boolean isNonFinite(Object arg)
+    {
+        if (arg instanceof Float)
+            return ((Float) arg).isNaN() || ((Float) arg).isInfinite();
+        if (arg instanceof Double)
+            return ((Double) arg).isNaN() || ((Double) arg).isInfinite();
+        return false;
     }
 
     /**
-     * Ensures that the following text is escaped so that it can fit within the quotations.
+     * Writes the following text escaped so that it can fit within the quotations. Runs of characters that need no
+     * escaping are written directly from the source string.
      * @param text the string text
-     * @return an escaped string surrounded by quotes.
      */
-    private String quoteStr(String text)
+    private void appendQuoted(String text)
     {
-        StringBuilder sb = new StringBuilder(text.length() + 2);
-        sb.append('"');
-        for (char c : text.toCharArray())
+        append('"');
+        int len = text.length();
+        int start = 0;
+        for (int i = 0; i < len; i++)
         {
+            char c = text.charAt(i);
+            if (c >= ASCII_START && c <= ASCII_END && c != '\\' && c != '"')
+                continue;
+
+            if (start < i)
+                append(text, start, i);
+            start = i + 1;
             switch (c)
             {
-                case '\\': sb.append("\\\\"); break;
-                case '\n': sb.append("\\n"); break;
-                case '\r': sb.append("\\r"); break;
-                case '\t': sb.append("\\t"); break;
-                case '\000': sb.append("\\0"); break;
-                case '"': sb.append("\\\""); break;
+                case '\\': append("\\\\"); break;
+                case '\n': append("\\n"); break;
+                case '\r': append("\\r"); break;
+                case '\t': append("\\t"); break;
+                case '\000': append("\\0"); break;
+                case '"': append("\\\""); break;
                 default:
-                    if (c < ASCII_START || c > ASCII_END)
+                    if (c > HEX_END)
                     {
-                        if (c > HEX_END)
-                            sb.append(String.format("\\u%04x", (int)c));
-                        else
-                            sb.append(String.format("\\x%02x", (int)c));
+                        append("\\u");
+                        append(HEX_DIGITS[(c >> 12) & 0xF]);
+                        append(HEX_DIGITS[(c >> 8) & 0xF]);
                     }
                     else
-                        sb.append(c);
+                        append("\\x");
+                    append(HEX_DIGITS[(c >> 4) & 0xF]);
+                    append(HEX_DIGITS[c & 0xF]);
             }
         }
-        return sb.append('"').toString();
+        if (start < len)
+            append(text, start, len);
+        append('"');
+    }
+
+    /**
+     * Appends a character sequence to the output.
+     * @param seq the character sequence.
+     * @throws UncheckedIOException if the underlying output fails.
+     */
+    private void append(CharSequence seq)
+    {
+        try
+        {
+            out.append(seq);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a subsequence of a character sequence to the output.
+     * @param seq the character sequence.
+     * @param start the starting index (inclusive).
+     * @param end the ending index (exclusive).
+     * @throws UncheckedIOException if the underlying output fails.
+     */
+    private void append(CharSequence seq, int start, int end)
+    {
+        try
+        {
+            out.append(seq, start, end);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Appends a single character to the output.
+     * @param c the character.
+     * @throws UncheckedIOException if the underlying output fails.
+     */
+    private void append(char c)
+    {
+        try
+        {
+            out.append(c);
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
@@ -278,18 +469,25 @@ class MethodBodyLoader extends MethodVisitor {
         String name = handles.getHandleName(handle);
         if (name == null)
         {
+            //Strip any characters that are not valid in an identifier (i.e. from <init>).
+            StringBuilder base = new StringBuilder("H");
+            for (char c : handle.getName().toCharArray())
+            {
+                if (Character.isJavaIdentifierPart(c))
+                    base.append(c);
+            }
+
             int num = 0;
             do
             {
-                name = "H" + handle.getName() + (num == 0 ? "" : num);
+                name = base + (num == 0 ? "" : Integer.toString(num));
                 num++;
             }
             while (handles.getHandle(name) != null);
             handles.addHandle(name, handle);
-            //TODO: add handles.
         }
         return name;
     }
 
 
-}
\ No newline at end of file
+}
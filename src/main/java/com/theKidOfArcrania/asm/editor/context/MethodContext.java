@@ -1,11 +1,16 @@
 package com.theKidOfArcrania.asm.editor.context;
 
 
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
 import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.FreshLabelWriter;
 import org.objectweb.asm.MethodVisitor;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Embodies a context used to identify a method contained within a {@link ClassContext}.
@@ -15,7 +20,9 @@ public class MethodContext extends MemberContext
 {
 
     private HashSet<ClassContext> exceptions;
-    private MethodBody body;
+    private Consumer<MethodVisitor> body;
+    private boolean modified;
+    private boolean lazy;
 
     /**
      * Constructs a method context. This should only be internally called by {@link ClassContext}.
@@ -52,20 +59,160 @@ public class MethodContext extends MemberContext
      */
     public MethodVisitor writeBody()
     {
-        body = new MethodBody();
-        return body;
+        modified = true;
+        return loadBody();
     }
 
     /**
-     * Reads the code body of this method context if any.
+     * Clears the current method body, and records the original body for this method as it is loaded from a class.
+     * Unlike {@link #writeBody()}, this does not mark this method as modified.
+     * @return this is the visitor that will record the method body.
+     */
+    MethodVisitor loadBody()
+    {
+        lazy = false;
+        MethodBody recorded = new MethodBody();
+        body = recorded::accept;
+        return recorded;
+    }
+
+    /**
+     * Sets the original body of this method to be read from the class data of its owner once it is first read, instead
+     * of recording it now. This does not mark this method as modified.
+     * @see ClassContext#readOriginalBodies()
+     */
+    void loadLazyBody()
+    {
+        lazy = true;
+        body = reader -> {
+            getOwner().readOriginalBodies();
+            if (lazy) //Not found in the class data.
+                discardBody();
+            readBody(reader);
+        };
+    }
+
+    /**
+     * Determines whether if the original body of this method is still to be read from the class data of its owner.
+     * @return true if the body is not read yet, false otherwise.
+     */
+    boolean isLazy()
+    {
+        return lazy;
+    }
+
+    /**
+     * Determines whether if the method body has been modified since it was loaded, either by
+     * {@link #writeBody()} or {@link #setCode(CodeParser)}.
+     * @return true if modified, false if this is the originally loaded method body.
+     */
+    public boolean isModified()
+    {
+        return modified;
+    }
+
+    /**
+     * Sets the method body to the code of a code parser. The parsed statements are written once through
+     * {@link CodeParser#write(MethodVisitor)} and recorded, so this method body is a snapshot of the code at the time
+     * of this call; later changes to the code parser are not reflected in it. This should be called from the thread
+     * that owns the code parser. Each read replays the recording through a {@link FreshLabelWriter}, so this method
+     * body can be read any number of times.
+     * @param code the code parser containing the parsed and resolved code of this method.
+     * @throws IllegalStateException if some lines of the code are still dirty or invalid. The method body is then left
+     *                               unchanged.
+     */
+    public void setCode(CodeParser code)
+    {
+        MethodBody recorded = new MethodBody();
+        code.write(recorded);
+        modified = true;
+        lazy = false;
+        body = reader -> recorded.accept(new FreshLabelWriter(reader));
+    }
+
+    /**
+     * Discards the current method body, if any, freeing the memory used to record it. This method will then be
+     * treated as having no body.
+     */
+    public void discardBody()
+    {
+        lazy = false;
+        body = null;
+    }
+
+    /**
+     * Reads the code body of this method context if any. The global code symbols are not modified, so any method
+     * handles that the code uses will not resolve when the code is parsed with those symbols. Use
+     * {@link #readCode(CodeSymbols, boolean)} to define them.
      * @param global the global code symbols for method handles.
      * @return the resulting code.
      */
     public String readCode(CodeSymbols global)
     {
-        MethodBodyLoader loader = new MethodBodyLoader(global);
-        body.accept(loader);
-        return "# " + getOwner() + "." + name + getSignature() + "\n" + loader.toCode();
+        return readCode(global, false);
+    }
+
+    /**
+     * Reads the code body of this method context if any.
+     * @param global the global code symbols for method handles.
+     * @param defineHandles whether to define the method handles that the code uses in the global code symbols, so
+     *                      that the code can be parsed again with those symbols.
+     * @return the resulting code.
+     */
+    public String readCode(CodeSymbols global, boolean defineHandles)
+    {
+        StringBuilder sb = new StringBuilder();
+        try
+        {
+            readCode(global, sb, defineHandles);
+        }
+        catch (IOException e)
+        {
+            throw new InternalError(e); //Should not happen with a StringBuilder.
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads the code body of this method context if any, streaming the resulting code into the specified output. The
+     * global code symbols are not modified.
+     * @param global the global code symbols for method handles.
+     * @param out the output to write the code to.
+     * @throws IOException if the output throws an I/O error.
+     */
+    public void readCode(CodeSymbols global, Appendable out) throws IOException
+    {
+        readCode(global, out, false);
+    }
+
+    /**
+     * Reads the code body of this method context if any, streaming the resulting code into the specified output. The
+     * method handles that the code uses are named in a local table, and are only merged into the global code symbols
+     * if requested, once the whole body is read. The global code symbols are otherwise only read from, so a caller
+     * sharing them between threads only has to guard the calls that define handles.
+     * @param global the global code symbols for method handles.
+     * @param out the output to write the code to.
+     * @param defineHandles whether to define the method handles that the code uses in the global code symbols, so
+     *                      that the code can be parsed again with those symbols.
+     * @throws IOException if the output throws an I/O error.
+     */
+    public void readCode(CodeSymbols global, Appendable out, boolean defineHandles) throws IOException
+    {
+        out.append("# ").append(toString());
+        if (body == null)
+            return;
+        out.append('\n');
+        MethodBodyLoader loader = new MethodBodyLoader(global, out);
+        try
+        {
+            body.accept(loader);
+        }
+        catch (UncheckedIOException e)
+        {
+            throw e.getCause();
+        }
+        if (defineHandles)
+            global.addHandles(loader.getHandles());
     }
 
     /**
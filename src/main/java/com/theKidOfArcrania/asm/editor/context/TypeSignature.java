@@ -83,7 +83,15 @@ public class TypeSignature
                     return desc.equals("java/lang/Cloneable") || desc.equals("java/io/Serializable");
                 }
                 if (assignee.getDimensions() != value.getDimensions())
-                    return false;
+                {
+                    //A lower-dimensional array of Object, Cloneable, or Serializable can hold arrays.
+                    TypeSignature comp = assignee.getComponentType();
+                    if (assignee.getDimensions() > value.getDimensions() || comp.getSort() != TypeSort.OBJECT)
+                        return false;
+                    String desc = comp.getClassDescriptor();
+                    return desc.equals("java/lang/Object") || desc.equals("java/lang/Cloneable") ||
+                            desc.equals("java/io/Serializable");
+                }
                 assignee = assignee.getComponentType();
                 value = value.getComponentType();
 
@@ -92,10 +100,12 @@ public class TypeSignature
                 if (!assignee.isObject() || !value.isObject())
                     return false;
             }
+            else if (assignee.getSort() == TypeSort.ARRAY)
+                return false;
 
             ClassContext assigneeCtx = findContext(assignee.getClassDescriptor());
             ClassContext valueCtx = findContext(value.getClassDescriptor());
-            return assigneeCtx.isAssignableFrom(valueCtx);
+            return assigneeCtx != null && valueCtx != null && assigneeCtx.isAssignableFrom(valueCtx);
         }
         else
         {
@@ -0,0 +1,259 @@
+package com.theKidOfArcrania.asm.editor.ui;
+
+import com.theKidOfArcrania.asm.editor.util.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Breaks down the time between a keystroke in an editor and its updated highlights into the phases of the parse
+ * pipeline, so that a slow edit can be attributed to one of the phases. Each edit is timed by an {@link Edit}, starting
+ * from the first keystroke that is not parsed yet. The phases of an edit are added up over all the parses it takes
+ * (i.e. superseded parses, and the slices of a large document), until its highlights are fully applied. An edit
+ * whose complete highlights are dropped as stale is carried on by the parse of the newer keystrokes, so that it is
+ * timed up to the highlights that are actually shown.
+ * <p>
+ * Once an edit is finished, each of its phases is recorded in a histogram, and if the edit took longer than the slow
+ * edit threshold, the edit is also kept in a (bounded) log of slow edits, along with the document size and the number
+ * of lines it touched.
+ * @author Henry Wang
+ */
+public class EditProfiler
+{
+    /**
+     * Represents one phase between a keystroke and the updated highlights.
+     */
+    public enum Phase
+    {
+        DEBOUNCE("debounce"), UPDATE("update changes"), REPARSE("reparse"), RESOLVE("resolve symbols"),
+        VERIFY("verify stack"), PROCESS("process styles"), APPLY("apply styles"), TOTAL("keystroke to highlight");
+
+        private final String name;
+
+        Phase(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public String toString()
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Records the timings of a single edit, which may be made of several keystrokes that are parsed together. The
+     * phases are added to by both the worker thread and the FX thread (for applying the styles), while the edit is
+     * still being parsed.
+     */
+    public static class Edit
+    {
+        private final long keyedAt;
+        private final AtomicLongArray phases;
+        private volatile int documentLines;
+        private volatile int linesTouched;
+        private volatile boolean finished;
+
+        /**
+         * Creates a new edit.
+         * @param keyedAt the time of the first keystroke of this edit, from {@link System#nanoTime()}.
+         */
+        public Edit(long keyedAt)
+        {
+            this.keyedAt = keyedAt;
+            phases = new AtomicLongArray(Phase.values().length);
+        }
+
+        public long getKeyedAt()
+        {
+            return keyedAt;
+        }
+
+        /**
+         * Adds some time spent in a phase.
+         * @param phase the phase.
+         * @param nanos the time spent in nanoseconds.
+         */
+        public void add(Phase phase, long nanos)
+        {
+            phases.addAndGet(phase.ordinal(), nanos);
+        }
+
+        /**
+         * Obtains the total time spent in a phase so far.
+         * @param phase the phase.
+         * @return the time in nanoseconds.
+         */
+        public long get(Phase phase)
+        {
+            return phases.get(phase.ordinal());
+        }
+
+        public int getDocumentLines()
+        {
+            return documentLines;
+        }
+
+        public void setDocumentLines(int documentLines)
+        {
+            this.documentLines = documentLines;
+        }
+
+        /**
+         * Determines whether if this edit has been finished by {@link EditProfiler#finish(Edit, long)}, after which no
+         * more timings should be added to it.
+         * @return true if finished, false if it is still being timed.
+         */
+        public boolean isFinished()
+        {
+            return finished;
+        }
+
+        /**
+         * Obtains the number of lines touched by this edit. This is the most lines that were left dirty (i.e. waiting
+         * to be re-parsed) at once, over all the parses of this edit.
+         * @return the number of lines touched.
+         */
+        public int getLinesTouched()
+        {
+            return linesTouched;
+        }
+
+        /**
+         * Records the number of dirty lines at the start of one parse of this edit.
+         * @param lines the number of dirty lines.
+         */
+        public void touchLines(int lines)
+        {
+            linesTouched = Math.max(linesTouched, lines);
+        }
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(String.format("%.2fms lines=%d touched=%d:",
+                    get(Phase.TOTAL) / NANOS_PER_MILLI, documentLines, linesTouched));
+            for (Phase phase : Phase.values())
+            {
+                if (phase != Phase.TOTAL)
+                    sb.append(String.format(" %s=%.2fms", phase, get(phase) / NANOS_PER_MILLI));
+            }
+            return sb.toString();
+        }
+    }
+
+    public static final long DEFAULT_SLOW_EDIT = TimeUnit.MILLISECONDS.toNanos(100);
+    public static final int SLOW_LOG_SIZE = 50;
+
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private static EditProfiler defaultProfiler;
+
+    /**
+     * Obtains the profiler shared by all the editors, creating it on first use.
+     * @return the default profiler.
+     */
+    public static synchronized EditProfiler getDefault()
+    {
+        if (defaultProfiler == null)
+            defaultProfiler = new EditProfiler(DEFAULT_SLOW_EDIT);
+        return defaultProfiler;
+    }
+
+    private final EnumMap<Phase, LatencyHistogram> histograms;
+    private final ArrayDeque<Edit> slowEdits;
+    private final long slowEdit;
+
+    /**
+     * Creates a new profiler.
+     * @param slowEdit the threshold in nanoseconds, from which an edit is logged as slow.
+     */
+    public EditProfiler(long slowEdit)
+    {
+        this.slowEdit = slowEdit;
+        histograms = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values())
+            histograms.put(phase, new LatencyHistogram(phase.toString()));
+        slowEdits = new ArrayDeque<>();
+    }
+
+    /**
+     * Finishes an edit once its highlights are fully applied, and records all its phases.
+     * @param edit the edit to finish.
+     * @param now the time that the highlights are applied, from {@link System#nanoTime()}.
+     */
+    public void finish(Edit edit, long now)
+    {
+        edit.finished = true;
+        edit.add(Phase.TOTAL, now - edit.getKeyedAt());
+        for (Phase phase : Phase.values())
+            histograms.get(phase).record(edit.get(phase));
+
+        if (edit.get(Phase.TOTAL) >= slowEdit)
+        {
+            synchronized (slowEdits)
+            {
+                if (slowEdits.size() == SLOW_LOG_SIZE)
+                    slowEdits.removeFirst();
+                slowEdits.addLast(edit);
+            }
+        }
+    }
+
+    /**
+     * Obtains the histogram of a phase.
+     * @param phase the phase.
+     * @return the latency histogram of that phase, over all the finished edits.
+     */
+    public LatencyHistogram getHistogram(Phase phase)
+    {
+        return histograms.get(phase);
+    }
+
+    /**
+     * Obtains the most recent slow edits, oldest first.
+     * @return a copy of the slow edit log.
+     */
+    public List<Edit> getSlowEdits()
+    {
+        synchronized (slowEdits)
+        {
+            return new ArrayList<>(slowEdits);
+        }
+    }
+
+    /**
+     * Clears all the recorded histograms and the slow edit log.
+     */
+    public void reset()
+    {
+        for (LatencyHistogram histogram : histograms.values())
+            histogram.reset();
+        synchronized (slowEdits)
+        {
+            slowEdits.clear();
+        }
+    }
+
+    /**
+     * Formats a report of the histograms of every phase, followed by the slow edit log.
+     * @return the report, one entry per line.
+     */
+    public String getReport()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (Phase phase : Phase.values())
+            sb.append(histograms.get(phase)).append('\n');
+
+        List<Edit> slow = getSlowEdits();
+        sb.append(String.format("Slow edits (over %.2fms): %d\n", slowEdit / NANOS_PER_MILLI, slow.size()));
+        for (Edit edit : slow)
+            sb.append("  ").append(edit).append('\n');
+        return sb.toString();
+    }
+}
@@ -3,18 +3,25 @@ package com.theKidOfArcrania.asm.editor.ui;
 import com.theKidOfArcrania.asm.editor.code.highlight.*;
 import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
 import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
-import com.theKidOfArcrania.asm.editor.code.parsing.Range;
 import com.theKidOfArcrania.asm.editor.context.ClassContext;
 import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import com.theKidOfArcrania.asm.editor.ui.EditProfiler.Edit;
+import com.theKidOfArcrania.asm.editor.ui.EditProfiler.Phase;
+import com.theKidOfArcrania.asm.editor.util.LatencyHistogram;
+import com.theKidOfArcrania.asm.editor.util.LineOffsets;
 import com.theKidOfArcrania.asm.editor.util.RangeSet;
 import javafx.application.Application;
-import javafx.concurrent.Task;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Point2D;
 import javafx.geometry.Rectangle2D;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.TextArea;
 import javafx.scene.control.Tooltip;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.StackPane;
 import javafx.stage.Stage;
@@ -23,19 +30,18 @@ import org.fxmisc.richtext.CodeArea;
 import org.fxmisc.richtext.LineNumberFactory;
 import org.fxmisc.richtext.model.PlainTextChange;
 import org.fxmisc.richtext.model.StyleSpansBuilder;
+import org.fxmisc.richtext.model.TwoDimensional.Bias;
+import org.fxmisc.richtext.model.TwoDimensional.Position;
 
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Supplier;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.theKidOfArcrania.asm.editor.code.highlight.HighlightStyles.getStyleBit;
+import static com.theKidOfArcrania.asm.editor.code.highlight.HighlightStyles.getStyleClasses;
 import static com.theKidOfArcrania.asm.editor.context.ClassContext.getInternalName;
 import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
 import static java.lang.String.join;
 import static java.time.Duration.ofMillis;
-import static java.util.stream.Collectors.joining;
 import static javafx.stage.Screen.getScreensForRectangle;
 import static org.fxmisc.richtext.MouseOverTextEvent.MOUSE_OVER_TEXT_BEGIN;
 
@@ -69,38 +75,73 @@ public class MethodEditor extends StackPane
 
             Scene scene = new Scene(root, WIDTH, HEIGHT);
             scene.getStylesheets().add("com/theKidOfArcrania/asm/editor/ui/style.css");
+            //F12 shows the keystroke to highlight latency of the edits made so far.
+            scene.getAccelerators().put(new KeyCodeCombination(KeyCode.F12), this::showEditReport);
             primaryStage.setScene(scene);
             primaryStage.show();
         }
+
+        /**
+         * Shows the report of the default edit profiler (see {@link EditProfiler#getReport()}) in a dialog.
+         */
+        private void showEditReport()
+        {
+            TextArea report = new TextArea(EditProfiler.getDefault().getReport());
+            report.setEditable(false);
+            report.setStyle("-fx-font-family: monospace");
+
+            Alert alert = new Alert(Alert.AlertType.INFORMATION);
+            alert.setHeaderText("Edit latency");
+            alert.getDialogPane().setContent(report);
+            alert.show();
+        }
     }
 
     /**
-     * Represents all the syntax stylizing for a particular line.
+     * Represents a single line styling data. Once a line style is published within a {@link ParseSnapshot}, the
+     * worker thread never modifies it again, but instead replaces it with a modified copy.
      */
-    private class LineStyles
+    private static class LineStyle
     {
+        private final RangeSet<Tag> markers;
+        private final int cycle;
+        private int guard;
+
+        //Only accessed by the FX thread.
+        private boolean applied;
+
         /**
-         * Represents a single line syling data.
+         * Constructs a new line style
+         * @param cycle the parse cycle that this line style is created in.
          */
-        private class LineStyle
+        public LineStyle(int cycle)
         {
-            private final RangeSet<HighlightMark<?>> markers;
-            private boolean modified;
-            private int guard;
-            //tag
+            markers = new RangeSet<>();
+            guard = Integer.MAX_VALUE;
+            this.cycle = cycle;
+        }
 
-            /**
-             * Constructs a new line style
-             */
-            public LineStyle()
-            {
-                markers = new RangeSet<>();
-                modified = true;
-                guard = Integer.MAX_VALUE;
-            }
+        /**
+         * Constructs a copy of another line style that can be modified in a later parse cycle.
+         * @param other the line style to copy.
+         * @param cycle the parse cycle that this line style is created in.
+         */
+        public LineStyle(LineStyle other, int cycle)
+        {
+            markers = new RangeSet<>(other.markers);
+            guard = other.guard;
+            this.cycle = cycle;
         }
+    }
 
+    /**
+     * Represents all the syntax stylizing for all the lines. This is only used by the worker thread, which publishes
+     * the results of each parse with {@link #snapshot(long, boolean, Edit)}.
+     */
+    private class LineStyles
+    {
         private final ArrayList<LineStyle> lines;
+        private int cycle;
 
         /**
          * Creates a new line styles
@@ -110,46 +151,41 @@ public class MethodEditor extends StackPane
             lines = new ArrayList<>();
         }
 
+        /**
+         * Obtains a line style that can be modified in the current parse cycle, copying the line style if it was
+         * already published.
+         * @param lineNum the line number
+         * @return the modifiable line style.
+         */
+        private LineStyle editLine(int lineNum)
+        {
+            LineStyle line = lines.get(lineNum - 1);
+            if (line.cycle != cycle)
+            {
+                line = new LineStyle(line, cycle);
+                lines.set(lineNum - 1, line);
+            }
+            return line;
+        }
+
         /**
          * Adds a style marker to this line. If this exceeds the guard length, the values will clamp out.
          * @param lineNum the line number
          * @param from the starting range
          * @param to the ending range
-         * @param style the marker object to add.
+         * @param styleId the style id of the marker.
+         * @param tag the tag of the marker, or null if this is a syntax marker.
          */
-        public void addMarker(int lineNum, int from, int to, HighlightMark<?> style)
+        public void addMarker(int lineNum, int from, int to, int styleId, Tag tag)
         {
-            LineStyle line = lines.get(lineNum - 1);
-            int guard = line.guard;
-
+            int guard = lines.get(lineNum - 1).guard;
             if (to <= 0 || from >= guard)
                 return;
             if (from < 0)
                 from = 0;
             if (to > guard)
                 to = guard;
-            if (line.markers.add(from, to, style))
-                line.modified = true;
-        }
-
-        /**
-         * Obtains a list of all line markers at a position
-         * @param lineNum the line number
-         * @param colNum the column number or -1 if to obtain all highlight markers.
-         * @return the set of markers.
-         */
-        public Set<HighlightMark<?>> getMarkersAt(int lineNum, int colNum)
-        {
-            if (lineNum > lines.size() || lineNum <= 0)
-                return new HashSet<>();
-            if (colNum == -1)
-            {
-                HashSet<HighlightMark<?>> markers = new HashSet<>();
-                for (RangeSet<HighlightMark<?>>.RangeElement e : lines.get(lineNum - 1).markers)
-                    markers.addAll(e.getItems());
-                return markers;
-            }
-            return lines.get(lineNum - 1).markers.get(colNum);
+            editLine(lineNum).markers.add(from, to, 1 << styleId, tag);
         }
 
         /**
@@ -158,9 +194,7 @@ public class MethodEditor extends StackPane
          */
         public void clearStyles(int lineNum)
         {
-            LineStyle line = lines.get(lineNum - 1);
-            line.markers.clear();
-            line.modified = true;
+            lines.set(lineNum - 1, new LineStyle(cycle));
         }
 
         /**
@@ -180,7 +214,7 @@ public class MethodEditor extends StackPane
          */
         public void guardLine(int lineNum, int length)
         {
-            LineStyle line = lines.get(lineNum - 1);
+            LineStyle line = editLine(lineNum);
             line.guard = length;
             line.markers.retainRange(0, length);
         }
@@ -191,7 +225,7 @@ public class MethodEditor extends StackPane
          */
         public void insertLine(int lineNum)
         {
-            lines.add(lineNum - 1, new LineStyle());
+            lines.add(lineNum - 1, new LineStyle(cycle));
         }
 
         /**
@@ -202,52 +236,158 @@ public class MethodEditor extends StackPane
          */
         public void removeMarker(int lineNum, Enum<?> markerType)
         {
-            LineStyle line = lines.get(lineNum - 1);
-            if (line.markers.removeIf(h -> h.getType().equals(markerType)))
-                line.modified = true;
+            editLine(lineNum).markers.remove(getStyleBit(markerType), t -> t.getType().equals(markerType));
+        }
+
+        /**
+         * Publishes the current line styles as an immutable snapshot, and starts a new parse cycle. Any line styles
+         * modified after this will be copied first, so the snapshot never changes.
+         * @param version the text version that these line styles correspond to.
+         * @param complete whether if the code is fully analyzed, or if more tags are still to come.
+         * @param edit the timings of the edit being parsed.
+         * @return the snapshot of the line styles.
+         */
+        public ParseSnapshot snapshot(long version, boolean complete, Edit edit)
+        {
+            cycle++;
+            return new ParseSnapshot(version, lines.toArray(new LineStyle[0]), complete, edit);
+        }
+
+        /**
+         * Estimates the number of bytes retained by all the line styles, counting each line and each of its ranges.
+         * @return the estimated size in bytes.
+         */
+        public long estimateSize()
+        {
+            long size = (long)lines.size() * LINE_STYLE_BYTES;
+            for (LineStyle line : lines)
+                size += (long)line.markers.size() * RANGE_BYTES;
+            return size;
+        }
+    }
+
+    /**
+     * Represents the immutable result of one parse, which is handed from the worker thread to the FX thread. A
+     * snapshot is only valid for the text version that it is parsed from, i.e. once the text changes again, the
+     * snapshot is stale and is simply dropped, since a newer one is on its way. The only exception is the loading of
+     * a large document, which just appends more lines, so the snapshots of the lines loaded so far stay valid.
+     * <p>
+     * A parse publishes a snapshot after each of its phases that adds any highlights, so the syntax highlights show
+     * up before the symbols are resolved and the stack is verified. Only the last snapshot of a parse is complete.
+     */
+    private class ParseSnapshot
+    {
+        private final long version;
+        private final LineStyle[] lines;
+        private final boolean complete;
+        private final Edit edit;
+
+        /**
+         * Creates a new parse snapshot.
+         * @param version the text version that this is parsed from.
+         * @param lines the line styles of every line.
+         * @param complete whether if the code is fully analyzed, or if more tags are still to come.
+         * @param edit the timings of the edit that this is parsed for, or null if this is not from an edit.
+         */
+        public ParseSnapshot(long version, LineStyle[] lines, boolean complete, Edit edit)
+        {
+            this.version = version;
+            this.lines = lines;
+            this.complete = complete;
+            this.edit = edit;
+        }
+
+        /**
+         * Determines whether if this snapshot is parsed from the current text in the code area.
+         * @return true if this is current, false if it is stale.
+         */
+        public boolean isCurrent()
+        {
+            return version >= stableVersion;
+        }
+
+        /**
+         * Obtains a list of all the tags at a position. Only the tags are kept with their messages, since the other
+         * markers are just packed into the style bitmask of each range.
+         * @param lineNum the line number
+         * @param colNum the column number or -1 if to obtain all tags.
+         * @return the set of tags.
+         */
+        public Set<Tag> getTagsAt(int lineNum, int colNum)
+        {
+            if (lineNum > lines.length || lineNum <= 0)
+                return new HashSet<>();
+            if (colNum == -1)
+            {
+                HashSet<Tag> tags = new HashSet<>();
+                for (RangeSet<Tag>.RangeElement e : lines[lineNum - 1].markers)
+                    tags.addAll(e.getItems());
+                return tags;
+            }
+            return new HashSet<>(lines[lineNum - 1].markers.getItems(colNum));
         }
 
         /**
-         * Applies all pending marker styles to the code area.
+         * Applies the pending marker styles of the visible lines (plus a margin around them) to the code area. The
+         * other lines keep their pending styles until they are scrolled into view, so the cost of this does not grow
+         * with the size of the document.
          */
         public void applyStyles()
         {
-            //Compute real-time line offsets.
-            String[] rawLines = codeArea.getText().split("\n");
-            int off = 0;
-            for (int i = 0; i < rawLines.length; i++)
+            //Lines are never wrapped, so every paragraph has the same height, and the estimated scroll position maps
+            //straight to the visible paragraphs. The margin covers for any error in the estimate.
+            int first = 0;
+            int last = 0;
+            double total = codeArea.getTotalHeightEstimate();
+            if (total > 0)
+            {
+                int count = codeArea.getParagraphs().size();
+                double top = codeArea.getEstimatedScrollY();
+                first = (int)(count * top / total);
+                last = (int)Math.ceil(count * (top + codeArea.getHeight()) / total);
+            }
+            applyStyles(first - VIEWPORT_MARGIN, last + VIEWPORT_MARGIN);
+        }
+
+        /**
+         * Applies the pending marker styles of a range of lines to the code area.
+         * @param from the first paragraph index (0-based) to apply.
+         * @param to the last paragraph index (0-based, inclusive) to apply.
+         */
+        public void applyStyles(int from, int to)
+        {
+            from = Math.max(from, 0);
+            to = Math.min(to, Math.min(lines.length, codeArea.getParagraphs().size()) - 1);
+            if (from > to)
+                return;
+
+            int off = codeArea.position(from, 0).toOffset();
+            for (int i = from; i <= to; i++)
             {
-                LineStyle line = lines.get(i);
-                RangeSet<HighlightMark<?>> markers = line.markers;
-                if (line.modified && line.guard > 0)
+                LineStyle line = lines[i];
+                int length = codeArea.getParagraph(i).length();
+                if (!line.applied && length > 0)
                 {
                     int last = 0;
                     StyleSpansBuilder<Collection<String>> ssb = new StyleSpansBuilder<>();
-
-                    String tags = markers.stream().map(ele -> {
-                        String prefix = ele.getFrom() + "-" + ele.getTo() + ": [";
-                        return ele.getItems()
-                                .stream()
-                                .map(mark -> mark.getType() + (mark instanceof Tag ? " (" +
-                                        ((Tag) mark).getTagDescription() + ")" : ""))
-                                .collect(joining(", ", prefix, "]"));
-                    }).collect(joining(", ", "[", "]"));
-                    //System.out.println(i + 1 + " (+ " + off + "): " + tags);
-                    for (RangeSet<HighlightMark<?>>.RangeElement ele : markers)
+                    for (RangeSet<Tag>.RangeElement ele : line.markers)
                     {
-                        if (last < ele.getFrom())
-                            ssb.add(Collections.emptyList(), ele.getFrom() - last);
-
-                        last = ele.getTo();
-                        ssb.add(ele.getItems().stream().map(HighlightMark::getType).map(Enum::toString)
-                                        .collect(Collectors.toSet()), last - ele.getFrom());
+                        int start = Math.min(ele.getFrom(), length);
+                        int end = Math.min(ele.getTo(), length);
+                        if (last < start)
+                            ssb.add(Collections.emptyList(), start - last);
+                        if (start < end)
+                        {
+                            ssb.add(getStyleClasses(ele.getMask()), end - start);
+                            last = end;
+                        }
                     }
-                    if (last < line.guard)
-                        ssb.add(Collections.emptyList(), line.guard - last);
+                    if (last < length)
+                        ssb.add(Collections.emptyList(), length - last);
                     codeArea.setStyleSpans(off, ssb.create());
-                    line.modified = false;
+                    line.applied = true;
                 }
-                off += rawLines[i].length() + 1;
+                off += length + 1;
             }
         }
     }
@@ -274,21 +414,80 @@ public class MethodEditor extends StackPane
         return list;
     }
 
-    private static final Duration PARSE_DELAY = ofMillis(300);
     private static final int MOVE_TOOLTIP_RANGE = 10;
+    private static final int VIEWPORT_MARGIN = 50;
+
+    //Large documents are loaded into the code area, and parsed by the worker thread, this many lines at a time.
+    private static final int LOAD_CHUNK_LINES = 5000;
+    private static final int PARSE_SLICE_LINES = 5000;
+
+    //Rough sizes used for the memory estimate of an editor.
+    private static final int LINE_BYTES = 96;
+    private static final int LINE_STYLE_BYTES = 64;
+    private static final int RANGE_BYTES = 80;
+
+    private static final LatencyHistogram firstPaintLatency = new LatencyHistogram("first paint");
+    private static final LatencyHistogram analysisLatency = new LatencyHistogram("full analysis");
+
+    /**
+     * Obtains the histogram of the time from opening an editor until its code is first colored, which is usually
+     * done by the lexical pass.
+     * @return the first paint latency histogram.
+     */
+    public static LatencyHistogram getFirstPaintLatency()
+    {
+        return firstPaintLatency;
+    }
+
+    /**
+     * Obtains the histogram of the time from opening an editor until the code is fully analyzed, i.e. parsed,
+     * resolved and verified, and all its tags are shown.
+     * @return the full analysis latency histogram.
+     */
+    public static LatencyHistogram getAnalysisLatency()
+    {
+        return analysisLatency;
+    }
 
-    private final List<Tag> highlightTags;
-    private final List<Syntax> highlightSyntaxes;
+    private final HighlightBuffer highlights;
     private final LineStyles styles;
 
-    private final ArrayList<Integer> linePos;
+    private final LineOffsets linePos;
     private final CodeParser parser;
     private final CodeArea codeArea;
     private final Tooltip tagMsg;
-    private final ExecutorService executor;
+    private final ParseScheduler.Handle parseHandle;
+
+    //The text changes that the worker thread has not parsed yet, the text version after those changes, and when the
+    //first of those changes was made.
+    private final Object pendingLock = new Object();
+    private ArrayList<PlainTextChange> pendingChanges = new ArrayList<>();
+    private long pendingVersion;
+    private long pendingSince;
+
+    //The timings of the edit that the worker thread is parsing. This carries on over every parse until the FX thread
+    //applies a complete snapshot of the edit and finishes it, so that an edit whose complete snapshot turned out to be
+    //stale or superseded goes on with the next parse. Worker only.
+    private Edit edit;
 
     private int moveCount = 10;
 
+    //The version of the text in the code area, which is only accessed by the FX thread, and the latest published
+    //parse snapshot of that text (or an older version). Any snapshot since the stable version still lines up with
+    //the text, since only chunks of a large document have been appended after it.
+    private long textVersion;
+    private long stableVersion;
+    private boolean loading;
+    private final AtomicReference<ParseSnapshot> published = new AtomicReference<>();
+
+    //Estimated memory retained by this editor, as of the last complete parse.
+    private volatile long memoryEstimate;
+
+    //When this editor is opened, and whether if it has been painted (and fully analyzed) since. FX thread only.
+    private final long openedAt;
+    private boolean painted;
+    private boolean analyzed;
+
     /**
      * Constructs a new method editor object.
      * @param global the global code symbols for this method
@@ -297,36 +496,17 @@ public class MethodEditor extends StackPane
      */
     public MethodEditor(CodeSymbols global, MethodContext mth, String code)
     {
+        openedAt = System.nanoTime();
         getStylesheets().add("com/theKidOfArcrania/asm/editor/ui/syntax-def.css");
         getStyleClass().add("method-editor");
 
-        highlightSyntaxes = new ArrayList<>();
-        highlightTags = new ArrayList<>();
+        highlights = new HighlightBuffer();
         styles = new LineStyles();
 
-        executor = Executors.newFixedThreadPool(1, r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true);
-            return t;
-        });
-        parser = new CodeParser(global, mth, "", new Highlighter()
-        {
-
-            @Override
-            public void insertTag(Tag tag)
-            {
-                highlightTags.add(tag);
-            }
+        parseHandle = ParseScheduler.getDefault().register(this::parse);
+        parser = new CodeParser(global, mth, "", highlights);
 
-            @Override
-            public void insertSyntax(Syntax syn)
-            {
-                highlightSyntaxes.add(syn);
-            }
-        });
-
-        linePos = new ArrayList<>();
-        linePos.add(0);
+        linePos = new LineOffsets();
         styles.insertLine(1);
 
         tagMsg = new Tooltip();
@@ -336,20 +516,12 @@ public class MethodEditor extends StackPane
         codeArea = new CodeArea();
         codeArea.plainTextChanges()
                 .filter(ch -> !ch.getInserted().equals(ch.getRemoved()))
-                .reduceSuccessions((Supplier<ArrayList<PlainTextChange>>) ArrayList::new,
-                        MethodEditor::combineEdits, PARSE_DELAY)
-                .mapToTask(this::computeChanges)
-                .awaitLatest(codeArea.richChanges())
-                .filterMap(t -> {
-                    if (t.isSuccess())
-                        return Optional.of(styles);
-                    else
-                    {
-                        t.getFailure().printStackTrace();
-                        return Optional.empty();
-                    }
-                })
-                .subscribe(LineStyles::applyStyles);
+                .subscribe(this::queueChange);
+        codeArea.focusedProperty().addListener((val, oldVal, newVal) -> updatePriority());
+
+        //Lines that are off-screen are only styled once they are scrolled into view.
+        codeArea.estimatedScrollYProperty().addListener((val, oldVal, newVal) -> applyVisibleStyles());
+        codeArea.heightProperty().addListener((val, oldVal, newVal) -> applyVisibleStyles());
         codeArea.setParagraphGraphicFactory(LineNumberFactory.get(codeArea)); //TODO: line number factory + tag id.
 
         codeArea.setMouseOverTextDelay(ofMillis(200));
@@ -357,10 +529,9 @@ public class MethodEditor extends StackPane
             int chIdx = e.getCharacterIndex();
             Point2D pos = e.getScreenPosition();
 
-            int lineNum = searchLine(chIdx);
-            int colNum = chIdx - linePos.get(lineNum - 1);
-
-            showTagMsgs(pos, lineNum, colNum);
+            //The line offsets belong to the worker thread, so this uses the code area's own paragraphs.
+            Position textPos = codeArea.offsetToPosition(chIdx, Bias.Forward);
+            showTagMsgs(pos, textPos.getMajor() + 1, textPos.getMinor());
         });
 
         codeArea.addEventHandler(MouseEvent.MOUSE_MOVED, e -> {
@@ -380,7 +551,85 @@ public class MethodEditor extends StackPane
         scroll.setVbarPolicy(ScrollPane.ScrollBarPolicy.ALWAYS);
         getChildren().addAll(scroll);
 
-        codeArea.insertText(0, code);
+        //A large document is loaded in chunks, one chunk per pulse, so the editor stays responsive while loading.
+        int split = findChunkEnd(code, 0);
+        String head = code.substring(0, split);
+        codeArea.insertText(0, head);
+        if (split < code.length())
+            Platform.runLater(() -> loadChunk(code, split));
+
+        //Color the code (or its first chunk) with a quick lexical pass first, without waiting for the full parse.
+        long version = textVersion;
+        ParseScheduler.Handle lexHandle = ParseScheduler.getDefault().register(h -> paintLexically(global, mth, head,
+                version));
+        lexHandle.setPriority(ParseScheduler.PRIORITY_FOCUSED);
+        lexHandle.requestNow();
+    }
+
+    /**
+     * Obtains the estimated memory retained by this editor, i.e. the code (which is kept both by the code area and
+     * the parser), the line styles, and the highlight buffer. This is updated after every complete parse, and is only
+     * a rough estimate.
+     * @return the estimated size in bytes, or 0 if the code is not fully parsed yet.
+     */
+    public long getMemoryEstimate()
+    {
+        return memoryEstimate;
+    }
+
+    /**
+     * Appends the next chunk of a large document to the code area, and schedules the chunk after that. Each chunk
+     * starts with the line break ending the previous chunk, so the lines loaded so far never change. The chunk is
+     * inserted without any style, instead of copying the style of the last loaded character.
+     * @param code the entire code of the document.
+     * @param from the offset of the line break starting this chunk.
+     */
+    private void loadChunk(String code, int from)
+    {
+        int to = findChunkEnd(code, from + 1);
+        loading = true;
+        codeArea.setUseInitialStyleForInsertion(true);
+        try
+        {
+            codeArea.insertText(codeArea.getLength(), code.substring(from, to));
+        }
+        finally
+        {
+            codeArea.setUseInitialStyleForInsertion(false);
+            loading = false;
+        }
+
+        if (to < code.length())
+            Platform.runLater(() -> loadChunk(code, to));
+    }
+
+    /**
+     * Publishes the syntax highlights of a lexical pass over the code, as long as the full parse has not published
+     * anything yet. This is run on a worker thread, but it only uses its own reader and line styles, so it can run
+     * alongside the full parse.
+     * @param global the global code symbols for this method
+     * @param mth the associated method context of the code
+     * @param code the code to highlight.
+     * @param version the text version of the code.
+     */
+    private void paintLexically(CodeSymbols global, MethodContext mth, String code, long version)
+    {
+        HighlightBuffer buffer = new HighlightBuffer();
+        CodeParser.highlightLexically(global, mth, code, buffer);
+
+        LineStyle[] lines = new LineStyle[countLines(code)];
+        for (int i = 0; i < lines.length; i++)
+            lines[i] = new LineStyle(0);
+        for (int i = 0; i < buffer.size(); i++)
+        {
+            int line = buffer.getLineNumber(i);
+            if (line <= lines.length)
+                lines[line - 1].markers.add(buffer.getStart(i), buffer.getEnd(i), 1 << buffer.getStyleId(i), null);
+        }
+
+        ParseSnapshot snapshot = new ParseSnapshot(version, lines, false, null);
+        if (published.compareAndSet(null, snapshot))
+            Platform.runLater(() -> applySnapshot(snapshot));
     }
 
     /**
@@ -391,12 +640,13 @@ public class MethodEditor extends StackPane
      */
     private void showTagMsgs(Point2D pos, int lineNum, int colNum)
     {
+        ParseSnapshot snapshot = published.get();
+        if (snapshot == null || !snapshot.isCurrent())
+            return;
+
         ArrayList<String> lines = new ArrayList<>();
-        for (HighlightMark<?> mark : styles.getMarkersAt(lineNum, colNum))
-        {
-            if (mark instanceof Tag)
-                lines.add(((Tag) mark).getTagDescription());
-        }
+        for (Tag tag : snapshot.getTagsAt(lineNum, colNum))
+            lines.add(tag.getTagDescription());
         if (!lines.isEmpty())
         {
             double xPos = pos.getX();
@@ -413,81 +663,247 @@ public class MethodEditor extends StackPane
     }
 
     /**
-     * Computes all the changes that has been made to this editor and re-parses the appropriate lines. This will
-     * queue the actual computation for a later time and will return this task's status.
-     * @param changes the changes that has been made to the editor to be processed.
-     * @return a task describing all the l
+     * Queues a text change to be parsed by the shared parse scheduler. Consecutive changes are squashed together
+     * until the worker thread picks them up.
+     * @param change the text change made to the editor.
+     */
+    private void queueChange(PlainTextChange change)
+    {
+        textVersion++;
+        if (!loading)
+            stableVersion = textVersion;
+        synchronized (pendingLock)
+        {
+            if (pendingChanges.isEmpty())
+                pendingSince = System.nanoTime();
+            combineEdits(pendingChanges, change);
+            pendingVersion = textVersion;
+        }
+        updatePriority();
+        parseHandle.request();
+    }
+
+    /**
+     * Updates the scheduling priority of this editor, depending on whether if it is focused or visible.
+     */
+    private void updatePriority()
+    {
+        int priority;
+        if (codeArea.isFocused())
+            priority = ParseScheduler.PRIORITY_FOCUSED;
+        else if (getScene() != null && isVisible())
+            priority = ParseScheduler.PRIORITY_VISIBLE;
+        else
+            priority = ParseScheduler.PRIORITY_BACKGROUND;
+        parseHandle.setPriority(priority);
+    }
+
+    /**
+     * Computes all the changes that has been made to this editor and re-parses the appropriate lines. This is run by
+     * the parse scheduler on a worker thread. The highlight lists, the line styles, and the parser itself are only
+     * ever touched by the worker thread, and the result is handed back as an immutable {@link ParseSnapshot}.
+     * <p>
+     * The highlights are streamed in phases: the syntax (and parse errors) are published right after the lines are
+     * re-parsed, and the tags from resolving the symbols and verifying the stack follow as soon as each is done. If
+     * newer changes come in while parsing, the remaining phases are skipped and nothing more is published, since it
+     * would be stale.
+     * <p>
+     * The dirty lines are re-parsed at most {@link #PARSE_SLICE_LINES} lines at a time. If more lines are left after
+     * one slice, the lines so far are published, and the rest is requested again right away, so that a large document
+     * does not hold up the other editors on the shared scheduler.
+     * <p>
+     * The time spent in each phase is added to the timings of the edit (see {@link EditProfiler}), which go on over
+     * all the parses of the edit until a complete snapshot of it is applied.
+     * @param handle the scheduler handle of this editor.
      */
-    private Task<Void> computeChanges(List<PlainTextChange> changes)
+    private void parse(ParseScheduler.Handle handle)
     {
+        long time = System.nanoTime();
+        ArrayList<PlainTextChange> changes;
+        long version;
+        long keyedAt;
+        synchronized (pendingLock)
+        {
+            changes = pendingChanges;
+            version = pendingVersion;
+            keyedAt = changes.isEmpty() ? time : pendingSince;
+            pendingChanges = new ArrayList<>();
+        }
 
-        Task<Void> task = new Task<Void>()
+        if (edit == null || edit.isFinished())
         {
-            @Override
-            protected Void call() throws Exception
+            edit = new Edit(keyedAt);
+            edit.add(Phase.DEBOUNCE, time - keyedAt);
+        }
+
+        highlights.clear();
+        edit.touchLines(updateChanges(changes));
+        time = lap(Phase.UPDATE, time);
+
+        //The emitted highlights are always processed, even if superseded, since the re-parsed lines are not dirty
+        //anymore, so their syntax highlights would not be emitted again.
+        BitSet invalidated = new BitSet();
+        boolean success = parser.reparse(false, PARSE_SLICE_LINES);
+        time = lap(Phase.REPARSE, time);
+        int processed = processLineStyles(invalidated, 0);
+        time = lap(Phase.PROCESS, time);
+        if (handle.isSuperseded())
+            return;
+        if (parser.hasDirtyLines())
+        {
+            publish(version, false);
+            handle.requestNow();
+            return;
+        }
+
+        if (success)
+        {
+            publish(version, false);
+            boolean resolved = parser.resolveSymbols();
+            time = lap(Phase.RESOLVE, time);
+            if (resolved && !handle.isSuperseded())
             {
-                highlightSyntaxes.clear();
-                highlightTags.clear();
-                updateChanges(changes);
-                processLineStyles();
-                return null;
+                if (processed < highlights.size())
+                {
+                    processed = processLineStyles(invalidated, processed);
+                    time = lap(Phase.PROCESS, time);
+                    publish(version, false);
+                }
+                parser.verifyStack();
+                time = lap(Phase.VERIFY, time);
             }
-        };
-        executor.execute(task);
-        return task;
+            processLineStyles(invalidated, processed);
+            lap(Phase.PROCESS, time);
+            if (handle.isSuperseded())
+                return;
+        }
+        publish(version, true);
     }
 
     /**
-     * This processes the resulting line styles (syntax highlighting and tags) that have been emitted by our code
-     * parser into our line styles object.
+     * Adds the time since the last lap to a phase of the current edit.
+     * @param phase the phase to add to.
+     * @param since the time of the last lap.
+     * @return the current time, i.e. the time of this lap.
+     */
+    private long lap(Phase phase, long since)
+    {
+        long now = System.nanoTime();
+        edit.add(phase, now - since);
+        return now;
+    }
+
+    /**
+     * Publishes the current line styles as a snapshot, and applies it on the FX thread.
+     * @param version the text version that is parsed.
+     * @param complete whether if the code is fully analyzed.
+     */
+    private void publish(long version, boolean complete)
+    {
+        ParseSnapshot snapshot = styles.snapshot(version, complete, edit);
+        if (complete)
+        {
+            memoryEstimate = estimateMemory();
+            edit.setDocumentLines(parser.getLineCount());
+        }
+        published.set(snapshot);
+        Platform.runLater(() -> applySnapshot(snapshot));
+    }
+
+    /**
+     * Estimates the memory retained by this editor. This is run on the worker thread, since it uses the parser.
+     * @return the estimated size in bytes.
+     * @see #getMemoryEstimate()
      */
-    @SuppressWarnings("unchecked")
-    private void processLineStyles()
+    private long estimateMemory()
     {
+        int lines = parser.getLineCount();
+        long chars = linePos.getLineStart(lines - 1) + parser.getLine(lines).length();
+        return chars * Character.BYTES * 2 + (long)lines * LINE_BYTES + styles.estimateSize() +
+                highlights.estimateSize();
+    }
 
-        List<HighlightMark> markList = new ArrayList<>(highlightSyntaxes);
-        markList.addAll(highlightTags);
+    /**
+     * Applies a published snapshot to the code area, unless it is already stale or superseded by a newer snapshot.
+     * This also records the first paint and full analysis latency of this editor, and finishes the timings of the
+     * edit once its highlights are complete.
+     * @param snapshot the snapshot to apply.
+     */
+    private void applySnapshot(ParseSnapshot snapshot)
+    {
+        if (published.get() != snapshot || !snapshot.isCurrent())
+            return;
+        long start = System.nanoTime();
+        snapshot.applyStyles();
 
-        //Compute real-time line offsets.
-        String[] lines = codeArea.getText().split("\n");
-        int[] offsets = new int[lines.length];
-        int ind = 0;
-        for (int i = 0; i < offsets.length; i++)
+        long now = System.nanoTime();
+        if (snapshot.edit != null)
         {
-            offsets[i] = ind;
-            ind += lines[i].length() + 1;
+            snapshot.edit.add(Phase.APPLY, now - start);
+            if (snapshot.complete)
+                EditProfiler.getDefault().finish(snapshot.edit, now);
         }
 
-        //Compute all the highlighting
-        for (int i = 0; i < lines.length; i++)
-            styles.guardLine(i + 1, lines[i].length());
+        long elapsed = now - openedAt;
+        if (!painted)
+        {
+            firstPaintLatency.record(elapsed);
+            painted = true;
+        }
+        if (snapshot.complete && !analyzed)
+        {
+            analysisLatency.record(elapsed);
+            analyzed = true;
+        }
+    }
 
-        boolean[] invalidated = new boolean[lines.length];
-        for (HighlightMark mark : markList)
+    /**
+     * Applies the pending styles of the lines that have been scrolled into view. This does nothing if the latest
+     * parse snapshot is stale, since a newer one will be applied once it is finished.
+     */
+    private void applyVisibleStyles()
+    {
+        ParseSnapshot snapshot = published.get();
+        if (snapshot != null && snapshot.isCurrent())
+            snapshot.applyStyles();
+    }
+
+    /**
+     * This processes the resulting line styles (syntax highlighting and tags) that have been emitted by our code
+     * parser into our line styles object. The spans are read straight out of the highlight buffer, which already has
+     * them split up into single lines. Since the parser emits highlights in phases, this only processes the spans
+     * emitted since the last call of the same parse.
+     * @param invalidated the lines whose old tags have already been removed in this parse.
+     * @param from the index of the first span to process.
+     * @return the number of spans processed so far, i.e. where to continue from.
+     */
+    private int processLineStyles(BitSet invalidated, int from)
+    {
+        //Compute the highlighting, only touching the lines that have any markers. The line lengths are taken from
+        //the parser, since the code area belongs to the FX thread.
+        for (int i = from; i < highlights.size(); i++)
         {
-            Range span = mark.getSpan();
-            int startLine = span.getStart().getLineNumber();
-            int endLine = span.getEnd().getLineNumber();
-            for (int line = startLine; line <= endLine; line++)
+            int line = highlights.getLineNumber(i);
+            if (!invalidated.get(line - 1))
             {
-                if (!invalidated[line - 1])
-                {
-                    for (TagType type : TagType.values())
-                        styles.removeMarker(line, type);
-                    invalidated[line - 1] = true;
-                }
-                int start = line == startLine ? span.getStart().getColumnNumber() : 0;
-                int end = line == endLine ? span.getEnd().getColumnNumber() : lines[line - 1].length();
-                styles.addMarker(line, start, end, mark);
+                styles.guardLine(line, parser.getLine(line).length());
+                for (TagType type : TagType.values())
+                    styles.removeMarker(line, type);
+                invalidated.set(line - 1);
             }
+            styles.addMarker(line, highlights.getStart(i), highlights.getEnd(i), highlights.getStyleId(i),
+                    highlights.getTag(i));
         }
+        return highlights.size();
     }
 
     /**
-     * Updates all the changes listed, re-parses the affected lines, and reanalyzes the code for symbolic errors.
+     * Updates all the changes listed into the parser, and clears the styles of the affected lines, which are then
+     * re-parsed by {@link #parse(ParseScheduler.Handle)}.
      * @param changes the text changes made to the code.
+     * @return the number of dirty lines, i.e. the lines left to re-parse.
      */
-    private void updateChanges(List<PlainTextChange> changes)
+    private int updateChanges(List<PlainTextChange> changes)
     {
         for (PlainTextChange change : changes)
         {
@@ -497,19 +913,21 @@ public class MethodEditor extends StackPane
                 insertRange(change.getInserted(), change.getPosition());
         }
 
+        int dirty = 0;
         for (int i = 1; i <= parser.getLineCount(); i++)
         {
             if (parser.isLineDirty(i))
+            {
                 styles.clearStyles(i);
+                dirty++;
+            }
         }
 
 //        System.out.println("***");
 //        for (int i = 0; i < parser.getLineCount(); i++)
 //            System.out.println(parser.getLine(i + 1));
 //        System.out.println("---");
-
-        parser.reparse(false);
-        parser.resolveSymbols();
+        return dirty;
     }
 
     /**
@@ -524,7 +942,7 @@ public class MethodEditor extends StackPane
         String[] lines = added.split("\n", -1);
 
         //Modify the first line where we start adding stuff.
-        int headOffset = position - linePos.get(firstLineNum - 1);
+        int headOffset = position - linePos.getLineStart(firstLineNum - 1);
         String firstLine = parser.getLine(firstLineNum);
         String modLine;
         if (headOffset < firstLine.length())
@@ -533,13 +951,16 @@ public class MethodEditor extends StackPane
             modLine = firstLine + lines[0];
         parser.modifyLine(firstLineNum, modLine);
 
+        //Move down the line position of subsequent untouched lines, before the new lines are added in between.
+        linePos.shift(firstLineNum, length);
+
         //Add subsequent lines
-        int pos = linePos.get(firstLineNum - 1) + modLine.length() + 1;
+        int pos = linePos.getLineStart(firstLineNum - 1) + modLine.length() + 1;
         for (int i = 1; i < lines.length; i++)
         {
             parser.insertLine(firstLineNum + i, lines[i]);
             styles.insertLine(firstLineNum + i);
-            linePos.add((firstLineNum - 1) + i, pos);
+            linePos.insertLine((firstLineNum - 1) + i, pos);
             pos += lines[i].length() + 1;
         }
 
@@ -551,10 +972,6 @@ public class MethodEditor extends StackPane
             String lastLine = parser.getLine(lastLineNum);
             parser.modifyLine(lastLineNum, lastLine + tail);
         }
-
-        //Move down the line position of subsequent untouched lines.
-        for (int i = (firstLineNum - 1) + lines.length; i < linePos.size(); i++)
-            linePos.set(i, linePos.get(i) + length);
     }
 
     /**
@@ -569,7 +986,7 @@ public class MethodEditor extends StackPane
         int removedLines = countLines(removed) - 1;
 
         //Modify the first line where we start deleting stuff.
-        int headOffset = position - linePos.get(firstLineNum - 1);
+        int headOffset = position - linePos.getLineStart(firstLineNum - 1);
         String firstLine = parser.getLine(firstLineNum);
         String modLine = firstLine;
         if (headOffset < firstLine.length())
@@ -577,7 +994,7 @@ public class MethodEditor extends StackPane
 
         //Append any trailing text after removal range
         int lastLineNum = firstLineNum + removedLines;
-        int tailOffset = (position + length) - linePos.get(lastLineNum - 1);
+        int tailOffset = (position + length) - linePos.getLineStart(lastLineNum - 1);
         String lastLine = parser.getLine(lastLineNum);
         if (tailOffset < lastLine.length())
             modLine += lastLine.substring(tailOffset);
@@ -589,19 +1006,37 @@ public class MethodEditor extends StackPane
         //Delete subsequent lines.
         for (int i = 0; i < removedLines; i++)
         {
-            if (linePos.size() >= firstLineNum)
+            if (linePos.getLineCount() > firstLineNum)
             {
                 parser.deleteLine(firstLineNum + 1);
                 styles.deleteLine(firstLineNum + 1);
-                linePos.remove(firstLineNum);
+                linePos.removeLine(firstLineNum);
             }
             else
                 System.err.println("Unable to remove line position.");
         }
 
         //Move up the line position of subsequent untouched lines.
-        for (int i = firstLineNum; i < linePos.size(); i++)
-            linePos.set(i, linePos.get(i) - length);
+        linePos.shift(firstLineNum, -length);
+    }
+
+    /**
+     * Finds the end of a chunk of a large document, i.e. the line break after {@link #LOAD_CHUNK_LINES} more lines.
+     * @param code the entire code of the document.
+     * @param from the offset to start counting lines from.
+     * @return the offset of the line break ending the chunk, or the length of the code if this is the last chunk.
+     */
+    private static int findChunkEnd(String code, int from)
+    {
+        int pos = from;
+        for (int i = 0; i < LOAD_CHUNK_LINES; i++)
+        {
+            pos = code.indexOf('\n', pos);
+            if (pos == -1)
+                return code.length();
+            pos++;
+        }
+        return pos - 1;
     }
 
     /**
@@ -619,26 +1054,12 @@ public class MethodEditor extends StackPane
     }
 
     /**
-     * Using a modified binary search algorithm, searches for the line number of this character position.
+     * Searches for the line number of this character position. This takes logarithmic time in the number of lines.
      * @param pos the position to search line number
      * @return the respective line number. (1-based)
      */
     private int searchLine(int pos)
     {
-        int low = 0;
-        int high = linePos.size() - 1;
-
-        while (low < high)
-        {
-            int mid = (high + low) / 2;
-            int cmp = pos - linePos.get(mid);
-            if (cmp > 0)
-                low = mid + 1;
-            else if (cmp < 0)
-                high = mid - 1;
-            else //if (cmp == 0)
-                return mid + 1;
-        }
-        return pos >= linePos.get(high) ? high + 1 : high;
+        return linePos.findLine(pos) + 1;
     }
 }
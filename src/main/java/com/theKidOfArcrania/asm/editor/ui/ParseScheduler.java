@@ -0,0 +1,336 @@
+package com.theKidOfArcrania.asm.editor.ui;
+
+import com.theKidOfArcrania.asm.editor.util.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the background parses of all the open editors on a small shared pool of threads, instead of each editor
+ * having its own thread. Each editor registers a {@link Handle}, and requests a parse whenever its text changes.
+ * <ul>
+ *     <li>A request only becomes ready after a debounce delay, which is pushed back by every newer request. The delay
+ *     adapts to the measured parse cost of that editor, between {@link #MIN_DELAY} and {@link #MAX_DELAY}.</li>
+ *     <li>Out of the ready requests, the one with the highest priority (the focused editor, then any visible editor)
+ *     is parsed first.</li>
+ *     <li>An editor is never parsed by two threads at once. Requests made while a parse is still running are merged
+ *     into one more parse afterwards, and the running parse can see that it is superseded (with
+ *     {@link Handle#isSuperseded()}) and skip the rest of its work.</li>
+ * </ul>
+ * The time each request waits in the queue and the time each parse takes are recorded in histograms.
+ * @author Henry Wang
+ */
+public class ParseScheduler
+{
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_VISIBLE = 1;
+    public static final int PRIORITY_FOCUSED = 2;
+
+    public static final long MIN_DELAY = TimeUnit.MILLISECONDS.toNanos(30);
+    public static final long MAX_DELAY = TimeUnit.MILLISECONDS.toNanos(300);
+
+    private static final int DELAY_FACTOR = 2;
+    private static final int COST_SMOOTHING = 4;
+
+    private static ParseScheduler defaultScheduler;
+
+    /**
+     * Obtains the scheduler shared by all the editors, creating it on first use. This uses half of the available
+     * processors (at least one).
+     * @return the default scheduler.
+     */
+    public static synchronized ParseScheduler getDefault()
+    {
+        if (defaultScheduler == null)
+            defaultScheduler = new ParseScheduler(Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        return defaultScheduler;
+    }
+
+    /**
+     * Represents the parsing work of a single editor.
+     */
+    public interface Parse
+    {
+        /**
+         * Parses all the changes of the editor made so far. This is called from a worker thread, but never from two
+         * threads at the same time for the same handle.
+         * @param handle the handle that this is scheduled from.
+         * @throws Exception if any error occurs, which is then printed out.
+         */
+        void run(Handle handle) throws Exception;
+    }
+
+    /**
+     * Represents the registration of one editor within the scheduler.
+     */
+    public class Handle
+    {
+        private final Parse parse;
+
+        //These are guarded by the scheduler's lock.
+        private int priority = PRIORITY_VISIBLE;
+        private long generation;
+        private long runGeneration;
+        private long readyAt;
+        private long requestedAt;
+        private boolean queued;
+        private boolean running;
+
+        private volatile long avgCost;
+
+        /**
+         * Creates a new handle.
+         * @param parse the parsing work.
+         */
+        private Handle(Parse parse)
+        {
+            this.parse = parse;
+        }
+
+        /**
+         * Requests a parse of this editor after the debounce delay. If there is already a pending request, this pushes
+         * it back, and if a parse is currently running, this supersedes it.
+         */
+        public void request()
+        {
+            request(getDelay());
+        }
+
+        /**
+         * Requests a parse of this editor without any debounce delay, i.e. as soon as a worker thread is free. This is
+         * meant for work that should not wait for the typing to settle down, such as the first paint of an editor.
+         */
+        public void requestNow()
+        {
+            request(0);
+        }
+
+        /**
+         * Requests a parse of this editor after a delay.
+         * @param delay the delay in nanoseconds.
+         */
+        private void request(long delay)
+        {
+            long now = System.nanoTime();
+            synchronized (ParseScheduler.this)
+            {
+                //This is the first request since the last parse started.
+                if (!queued && generation == runGeneration)
+                    requestedAt = now;
+                generation++;
+                readyAt = now + delay;
+                if (!queued && !running)
+                {
+                    queued = true;
+                    pending.add(this);
+                }
+                ParseScheduler.this.notifyAll();
+            }
+        }
+
+        /**
+         * Sets the priority of this editor, i.e. one of {@link #PRIORITY_BACKGROUND}, {@link #PRIORITY_VISIBLE} or
+         * {@link #PRIORITY_FOCUSED}. This also affects a pending request.
+         * @param priority the new priority.
+         */
+        public void setPriority(int priority)
+        {
+            synchronized (ParseScheduler.this)
+            {
+                this.priority = priority;
+            }
+        }
+
+        /**
+         * Determines whether if the parse that is currently running has been superseded by a newer request, in which
+         * case the parse may skip any work that does not need to be kept, since it will run again soon.
+         * @return true if superseded, false otherwise.
+         */
+        public boolean isSuperseded()
+        {
+            synchronized (ParseScheduler.this)
+            {
+                return generation != runGeneration;
+            }
+        }
+
+        /**
+         * Obtains the current debounce delay of this editor. This is a multiple of the average parse cost, so that
+         * cheap parses start almost right away while expensive ones wait for the typing to settle down.
+         * @return the delay in nanoseconds.
+         */
+        public long getDelay()
+        {
+            return Math.max(MIN_DELAY, Math.min(MAX_DELAY, avgCost * DELAY_FACTOR));
+        }
+
+        /**
+         * Obtains the smoothed average time that a parse of this editor takes.
+         * @return the average cost in nanoseconds.
+         */
+        public long getAverageCost()
+        {
+            return avgCost;
+        }
+    }
+
+    private final ArrayList<Handle> pending;
+    private final Thread[] workers;
+    private final LatencyHistogram queueLatency;
+    private final LatencyHistogram parseLatency;
+    private boolean shutdown;
+
+    /**
+     * Creates a new scheduler with its own worker threads. The threads are daemon threads, so they do not keep the
+     * application alive.
+     * @param threads the number of worker threads.
+     */
+    public ParseScheduler(int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("Need at least one thread.");
+        pending = new ArrayList<>();
+        queueLatency = new LatencyHistogram("queue");
+        parseLatency = new LatencyHistogram("parse");
+
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++)
+        {
+            workers[i] = new Thread(this::work, "Parse-Scheduler-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Registers the parsing work of an editor.
+     * @param parse the parsing work.
+     * @return the handle to request parses with.
+     */
+    public Handle register(Parse parse)
+    {
+        return new Handle(parse);
+    }
+
+    /**
+     * Obtains the histogram of the time between the first request of a parse and the start of that parse. This
+     * includes the debounce delay.
+     * @return the queue latency histogram.
+     */
+    public LatencyHistogram getQueueLatency()
+    {
+        return queueLatency;
+    }
+
+    /**
+     * Obtains the histogram of the time that each parse takes.
+     * @return the parse latency histogram.
+     */
+    public LatencyHistogram getParseLatency()
+    {
+        return parseLatency;
+    }
+
+    /**
+     * Stops all the worker threads once they finish their current parse. Pending requests are discarded.
+     */
+    public synchronized void shutdown()
+    {
+        shutdown = true;
+        pending.clear();
+        notifyAll();
+    }
+
+    /**
+     * The main loop of a worker thread.
+     */
+    private void work()
+    {
+        while (true)
+        {
+            Handle next;
+            try
+            {
+                next = take();
+            }
+            catch (InterruptedException e)
+            {
+                return;
+            }
+            if (next == null)
+                return;
+
+            long start = System.nanoTime();
+            queueLatency.record(start - next.requestedAt);
+            try
+            {
+                next.parse.run(next);
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+            finally
+            {
+                long cost = System.nanoTime() - start;
+                parseLatency.record(cost);
+                next.avgCost += (cost - next.avgCost) / COST_SMOOTHING;
+                finish(next);
+            }
+        }
+    }
+
+    /**
+     * Waits for the next ready request with the highest priority, and marks it as running.
+     * @return the handle to parse, or null if the scheduler is shut down.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private synchronized Handle take() throws InterruptedException
+    {
+        while (!shutdown)
+        {
+            long now = System.nanoTime();
+            long wait = Long.MAX_VALUE;
+            Handle next = null;
+            for (Handle h : pending)
+            {
+                long remaining = h.readyAt - now;
+                if (remaining > 0)
+                    wait = Math.min(wait, remaining);
+                else if (next == null || h.priority > next.priority ||
+                        h.priority == next.priority && h.requestedAt - next.requestedAt < 0)
+                    next = h;
+            }
+
+            if (next != null)
+            {
+                pending.remove(next);
+                next.queued = false;
+                next.running = true;
+                next.runGeneration = next.generation;
+                return next;
+            }
+
+            if (wait == Long.MAX_VALUE)
+                wait();
+            else
+                TimeUnit.NANOSECONDS.timedWait(this, wait);
+        }
+        return null;
+    }
+
+    /**
+     * Marks a parse as finished, and queues the handle again if it was requested while it was running.
+     * @param handle the handle that was parsed.
+     */
+    private synchronized void finish(Handle handle)
+    {
+        handle.running = false;
+        if (handle.generation != handle.runGeneration && !shutdown)
+        {
+            handle.queued = true;
+            pending.add(handle);
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.theKidOfArcrania.asm.editor.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records a distribution of latencies in nanoseconds. Each latency is counted in a bucket of its power of two, so the
+ * percentiles are only accurate up to a factor of two, but recording takes constant time and memory, and never
+ * blocks. This is safe to use from multiple threads.
+ *
+ * @author Henry Wang
+ */
+public class LatencyHistogram
+{
+    private static final int BUCKETS = Long.SIZE;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    private final String name;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong total;
+    private final AtomicLong max;
+
+    /**
+     * Creates a new empty histogram.
+     * @param name the name of this histogram, used when printing it out.
+     */
+    public LatencyHistogram(String name)
+    {
+        this.name = name;
+        buckets = new AtomicLongArray(BUCKETS);
+        count = new AtomicLong();
+        total = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a single latency. Negative latencies are counted as zero.
+     * @param nanos the latency in nanoseconds.
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+            nanos = 0;
+        buckets.incrementAndGet(bucketOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+
+        long cur = max.get();
+        while (nanos > cur && !max.compareAndSet(cur, nanos))
+            cur = max.get();
+    }
+
+    /**
+     * Obtains the bucket that a latency is counted in, i.e. bucket <tt>b</tt> counts the latencies in the range
+     * <tt>[2^(b-1), 2^b)</tt>, and bucket 0 counts the latencies of zero.
+     * @param nanos the latency in nanoseconds.
+     * @return the bucket index.
+     */
+    private static int bucketOf(long nanos)
+    {
+        return BUCKETS - Long.numberOfLeadingZeros(nanos);
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public long getCount()
+    {
+        return count.get();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Obtains the average of all recorded latencies.
+     * @return the average latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getMean()
+    {
+        long n = count.get();
+        return n == 0 ? 0 : total.get() / n;
+    }
+
+    /**
+     * Obtains an upper bound of a percentile of the recorded latencies. This is the upper end of the bucket that
+     * contains that percentile, but never more than the maximum latency recorded.
+     * @param percentile the percentile, from 0 to 100.
+     * @return the latency in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile)
+    {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+
+        long rank = (long)Math.ceil(n * percentile / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++)
+        {
+            seen += buckets.get(b);
+            if (seen >= rank && seen > 0)
+                return Math.min(b == 0 ? 0 : (1L << b) - 1, max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all the recorded latencies.
+     */
+    public void reset()
+    {
+        for (int b = 0; b < BUCKETS; b++)
+            buckets.set(b, 0);
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s: n=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", name, getCount(),
+                getMean() / NANOS_PER_MILLI, getPercentile(50) / NANOS_PER_MILLI, getPercentile(90) / NANOS_PER_MILLI,
+                getPercentile(99) / NANOS_PER_MILLI, getMax() / NANOS_PER_MILLI);
+    }
+}
@@ -0,0 +1,306 @@
+package com.theKidOfArcrania.asm.editor.util;
+
+/**
+ * Keeps track of the starting offset of every line in a document. Unlike a plain list of offsets, inserting or
+ * removing a line, shifting all the lines after an edit, and searching for the line of an offset all take
+ * logarithmic time, so an edit near the top of a large document does not need to touch every line below it.
+ * <p>
+ * Internally this is a balanced binary tree (a treap) ordered by line index, where each line stores the distance
+ * from the start of the previous line (its gap), and each node caches the sum of the gaps in its subtree. The start of
+ * a line is then the sum of the gaps of that line and all the lines before it. The gaps are never negative as long
+ * as the line offsets are kept in ascending order.
+ *
+ * @author Henry Wang
+ */
+public class LineOffsets
+{
+    /**
+     * Represents a single line within the tree.
+     */
+    private static class Node
+    {
+        private final int priority;
+        private int gap;
+        private int sum;
+        private int size;
+        private Node left;
+        private Node right;
+
+        /**
+         * Creates a new line node.
+         * @param gap the distance from the start of the previous line.
+         * @param priority the heap priority of this node.
+         */
+        private Node(int gap, int priority)
+        {
+            this.gap = gap;
+            this.priority = priority;
+            sum = gap;
+            size = 1;
+        }
+
+        /**
+         * Recomputes the cached size and sum of this subtree from its children.
+         */
+        private void update()
+        {
+            size = 1 + size(left) + size(right);
+            sum = gap + sum(left) + sum(right);
+        }
+    }
+
+    /**
+     * Obtains the number of lines in a subtree.
+     * @param n the subtree, or null.
+     * @return the number of lines.
+     */
+    private static int size(Node n)
+    {
+        return n == null ? 0 : n.size;
+    }
+
+    /**
+     * Obtains the sum of the gaps in a subtree.
+     * @param n the subtree, or null.
+     * @return the sum of the gaps.
+     */
+    private static int sum(Node n)
+    {
+        return n == null ? 0 : n.sum;
+    }
+
+    /**
+     * Joins two subtrees, where all the lines of the first subtree come before the lines of the second.
+     * @param a the first subtree.
+     * @param b the second subtree.
+     * @return the joined tree.
+     */
+    private static Node merge(Node a, Node b)
+    {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        if (a.priority > b.priority)
+        {
+            a.right = merge(a.right, b);
+            a.update();
+            return a;
+        }
+        else
+        {
+            b.left = merge(a, b.left);
+            b.update();
+            return b;
+        }
+    }
+
+    /**
+     * Splits a tree into the first few lines and the rest of the lines.
+     * @param n the tree to split.
+     * @param count the number of lines in the first part.
+     * @return the two parts of the tree, either of which could be null.
+     */
+    private static Node[] split(Node n, int count)
+    {
+        if (n == null)
+            return new Node[2];
+
+        Node[] parts;
+        if (count <= size(n.left))
+        {
+            parts = split(n.left, count);
+            n.left = parts[1];
+            parts[1] = n;
+        }
+        else
+        {
+            parts = split(n.right, count - size(n.left) - 1);
+            n.right = parts[0];
+            parts[0] = n;
+        }
+        n.update();
+        return parts;
+    }
+
+    private Node root;
+    private int seed = 0x2545F491;
+
+    /**
+     * Creates a new line offset index with a single line at offset 0.
+     */
+    public LineOffsets()
+    {
+        root = new Node(0, nextPriority());
+    }
+
+    /**
+     * Obtains the number of lines.
+     * @return the number of lines.
+     */
+    public int getLineCount()
+    {
+        return size(root);
+    }
+
+    /**
+     * Obtains the starting offset of a line.
+     * @param index the index of the line (0-based).
+     * @return the starting offset.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public int getLineStart(int index)
+    {
+        checkIndex(index, getLineCount());
+
+        int start = 0;
+        Node n = root;
+        while (true)
+        {
+            int leftSize = size(n.left);
+            if (index < leftSize)
+                n = n.left;
+            else
+            {
+                start += sum(n.left) + n.gap;
+                if (index == leftSize)
+                    return start;
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Searches for the line that contains an offset, i.e. the last line that starts at or before the offset.
+     * @param pos the offset to search for.
+     * @return the index of the line (0-based), or -1 if the offset is before the first line.
+     */
+    public int findLine(int pos)
+    {
+        int found = -1;
+        int base = 0;
+        int start = 0;
+        Node n = root;
+        while (n != null)
+        {
+            int nodeStart = start + sum(n.left) + n.gap;
+            if (nodeStart <= pos)
+            {
+                found = base + size(n.left);
+                base = found + 1;
+                start = nodeStart;
+                n = n.right;
+            }
+            else
+                n = n.left;
+        }
+        return found;
+    }
+
+    /**
+     * Inserts a new line. The lines at or after this index are moved down by one index, but their starting offsets
+     * stay the same.
+     * @param index the index of the new line (0-based). This cannot be 0, since the first line always starts at 0.
+     * @param start the starting offset of the new line. This must be between the starting offsets of the lines
+     *              around it.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void insertLine(int index, int start)
+    {
+        int count = getLineCount();
+        checkIndex(index - 1, count);
+
+        int gap = start - getLineStart(index - 1);
+        if (index < count)
+            addGap(index, -gap);
+
+        Node[] parts = split(root, index);
+        root = merge(merge(parts[0], new Node(gap, nextPriority())), parts[1]);
+    }
+
+    /**
+     * Removes a line. The lines after this index are moved up by one index, but their starting offsets stay the
+     * same.
+     * @param index the index of the line to remove (0-based). This cannot be 0, since there is always a first line.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void removeLine(int index)
+    {
+        int count = getLineCount();
+        checkIndex(index - 1, count - 1);
+
+        Node[] parts = split(root, index);
+        Node[] removed = split(parts[1], 1);
+        root = merge(parts[0], removed[1]);
+        if (index < count - 1)
+            addGap(index, removed[0].gap);
+    }
+
+    /**
+     * Shifts the starting offset of a line and all the lines after it.
+     * @param index the index of the first line to shift (0-based). If this is the line count, this does nothing.
+     * @param delta the amount to add to the starting offsets.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    public void shift(int index, int delta)
+    {
+        int count = getLineCount();
+        if (index == count)
+            return;
+        checkIndex(index, count);
+        addGap(index, delta);
+    }
+
+    /**
+     * Adds an amount to the gap of a single line, updating the sums along the way.
+     * @param index the index of the line.
+     * @param delta the amount to add.
+     */
+    private void addGap(int index, int delta)
+    {
+        Node n = root;
+        while (true)
+        {
+            n.sum += delta;
+            int leftSize = size(n.left);
+            if (index < leftSize)
+                n = n.left;
+            else if (index == leftSize)
+            {
+                n.gap += delta;
+                return;
+            }
+            else
+            {
+                index -= leftSize + 1;
+                n = n.right;
+            }
+        }
+    }
+
+    /**
+     * Obtains the priority for a new node. This is a simple xorshift generator, so that the shape of the tree is the
+     * same for the same edits.
+     * @return a pseudo-random priority.
+     */
+    private int nextPriority()
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+
+    /**
+     * Checks that an index is within range.
+     * @param index the index to check.
+     * @param size the number of valid indexes.
+     * @throws IndexOutOfBoundsException if the index is out of range.
+     */
+    private static void checkIndex(int index, int size)
+    {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+}
@@ -6,47 +6,60 @@ import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 /**
- * Represents a set of items that span over a range.
+ * Represents a set of items that span over a range. Each range holds a set of flags (packed as a bitmask), along with
+ * a list of items. Items that carry no data of their own (i.e. syntax styles) are best added as flags, so that a range
+ * with a few of them does not need a list of its own; only the few items that carry extra data (i.e. tag messages)
+ * need to be kept as items. The item lists are shared by all the ranges that have the same items.
+ * <p>
+ * Internally, this is a sorted tree of disjoint ranges (keyed by their starting points), and neighboring ranges with
+ * the same flags and items are always combined. Adding or removing items over a range, and finding the items at a
+ * point, take logarithmic time plus the number of ranges that are touched. The range elements, and their item lists,
+ * are immutable. Any change replaces the affected range elements instead, so the range elements can be handed out as
+ * read-only views without copying them.
+ * <p>
+ * Items are compared with {@link Object#equals(Object)}, so that an item is never added twice to the same range.
  * @author Henry Wang
  */
 public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement>
 {
     /**
      * This represents a range that it's elements span. This contains two states <tt>to</tt> and <tt>from</tt> that
-     * correspond to the two end-points of this range. Within this range, it contains the said elements.
+     * correspond to the two end-points of this range. Within this range, it contains the same flags and items
+     * throughout. A range element never changes once it is created.
      */
-    public class RangeElement implements Cloneable
+    public class RangeElement
     {
-        private final Set<T> items;
-        private int from;
-        private int to;
+        private final int from;
+        private final int to;
+        private final int mask;
+        private final List<T> items;
 
         /**
          * Creates a new range element.
          * @param from the starting range.
          * @param to the ending range.
-         * @param items the list of items to add.
+         * @param mask the flags within this range.
+         * @param items the read-only list of items within this range.
          */
-        private RangeElement(int from, int to, Collection<? extends T> items)
+        private RangeElement(int from, int to, int mask, List<T> items)
         {
-            this.items = new HashSet<>(items);
             this.from = from;
             this.to = to;
+            this.mask = mask;
+            this.items = items;
         }
 
         /**
-         * Obtains a copy of this range element, such that any subsequent edits to this copy will not reflect the
-         * parent object and vice versa.
-         * @return a copy of the range element
+         * Determines whether if this range element has the same contents as another one, regardless of their ranges,
+         * and of the order of their items.
+         * @param other the other range element.
+         * @return true if the flags and items are the same.
          */
-        public RangeElement copy()
+        private boolean sameContents(RangeElement other)
         {
-            return new RangeElement(from, to, items);
-        }
-
-        public Set<T> getItems()
-        {
-            return new HashSet<>(items);
+            if (mask != other.mask)
+                return false;
+            return items == other.items || items.size() == other.items.size() && items.containsAll(other.items);
         }
 
         public int getFrom()
@@ -59,21 +72,46 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement>
             return to;
         }
 
+        public int getMask()
+        {
+            return mask;
+        }
+
+        /**
+         * Obtains a read-only view of the items within this range.
+         * @return the list of items in the order they were added, which is empty if there are none.
+         */
+        public List<T> getItems()
+        {
+            return items;
+        }
+
         @Override
         public String toString()
         {
-            return from + "-" + to + ": " + items;
+            String flags = from + "-" + to + ": " + Integer.toBinaryString(mask);
+            return items.isEmpty() ? flags : flags + " " + items;
         }
     }
 
-    private final ArrayList<RangeElement> eles;
+    private final TreeMap<Integer, RangeElement> eles;
 
     /**
      * Creates a new range list.
      */
     public RangeSet()
     {
-        this.eles = new ArrayList<>();
+        this.eles = new TreeMap<>();
+    }
+
+    /**
+     * Creates a copy of another range list. Since the range elements never change, they are shared with the other
+     * range list instead of being copied.
+     * @param other the range list to copy from.
+     */
+    public RangeSet(RangeSet<T> other)
+    {
+        this.eles = new TreeMap<>(other.eles);
     }
 
     /**
@@ -86,96 +124,138 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement>
      */
     public boolean add(int from, int to, T item)
     {
-        return addAll(from, to, Collections.singletonList(item));
+        return add(from, to, 0, Objects.requireNonNull(item));
     }
 
     /**
-     * Unions this series of items at this specified range.
+     * Unions the flags, and optionally an item, at this specified range.
      * @param from the starting range
      * @param to the ending range
-     * @param items the item to add.
+     * @param mask the flags to add.
+     * @param item the item to add, or null if none.
      * @throws IllegalArgumentException if from is greater than to.
      * @return if the set changed as a result of this add.
      */
-    public boolean addAll(int from, int to, Collection<? extends T> items)
+    public boolean add(int from, int to, int mask, T item)
     {
-        if (from == to || items.isEmpty())
+        if (from == to || mask == 0 && item == null)
             return false;
         if (from > to)
             throw new IllegalArgumentException("`from` must be less than or equal to `to`.");
 
-        RangeElement ele = new RangeElement(from, to, items);
-        if (eles.isEmpty())
+        splitAt(from);
+        splitAt(to);
+
+        List<T> added = item == null ? Collections.emptyList() : Collections.singletonList(item);
+        boolean changed = false;
+        int pos = from;
+        for (RangeElement ele = ceiling(from); ele != null && ele.from < to; ele = higher(ele.from))
         {
-            eles.add(ele);
-            return true;
-        }
+            if (pos < ele.from)
+            {
+                eles.put(pos, new RangeElement(pos, ele.from, mask, added));
+                changed = true;
+            }
 
-        int ind = binarySearch(from);
-        if (ind == -1)
-            ind = combineRange(0, ele);
-        while (ele.from < ele.to && ind < eles.size())
+            boolean hasItem = item == null || ele.items.contains(item);
+            if ((ele.mask | mask) != ele.mask || !hasItem)
+            {
+                List<T> items = ele.items;
+                if (!hasItem)
+                {
+                    ArrayList<T> merged = new ArrayList<>(items);
+                    merged.add(item);
+                    items = Collections.unmodifiableList(merged);
+                }
+                eles.put(ele.from, new RangeElement(ele.from, ele.to, ele.mask | mask, items));
+                changed = true;
+            }
+            pos = ele.to;
+        }
+        if (pos < to)
         {
-            ind = mergeRange(ind, ele);
-            ind = combineRange(ind, ele);
+            eles.put(pos, new RangeElement(pos, to, mask, added));
+            changed = true;
         }
-        consolidate();
-        return true;
+
+        consolidate(from, to);
+        return changed;
     }
 
     /**
-     * Clears all the range elements from this range set.
+     * Removes an item only within the specified range. This will remove any blank ranges and consolidate
+     * consecutive ranges containing the same elements.
+     * @param from the starting range
+     * @param to the ending range
+     * @param item the item to remove.
+     * @throws IllegalArgumentException if from is greater than to.
+     * @return true if this range set has changed as a result of this removal.
      */
-    public void clear()
+    public boolean remove(int from, int to, T item)
     {
-        eles.clear();
+        return remove(from, to, 0, t -> Objects.equals(t, item));
     }
 
     /**
-     * Obtains all items at a specified position.
-     * @param pos the position to look at
-     * @return the set of items if any.
+     * Removes some flags and all the matching items only within the specified range. This will remove any blank
+     * ranges and consolidate consecutive ranges containing the same flags and items.
+     * @param from the starting range
+     * @param to the ending range
+     * @param mask the flags to remove.
+     * @param test condition by which to remove items.
+     * @throws IllegalArgumentException if from is greater than to.
+     * @return true if this range set has changed as a result of this removal.
      */
-    public Set<T> get(int pos)
+    public boolean remove(int from, int to, int mask, Predicate<? super T> test)
     {
-        int ind = binarySearch(pos);
-        if (ind == -1)
-            return new HashSet<>();
-        else
+        if (from > to)
+            throw new IllegalArgumentException("`from` must be less than or equal to `to`.");
+        if (from == to)
+            return false;
+
+        splitAt(from);
+        splitAt(to);
+
+        boolean changed = false;
+        for (RangeElement ele = ceiling(from); ele != null && ele.from < to; ele = higher(ele.from))
         {
-            RangeElement ele = eles.get(ind);
-            return ele.to >= pos ? new HashSet<>(ele.items) : new HashSet<>();
+            RangeElement left = without(ele, mask, test);
+            if (left == ele)
+                continue;
+            if (left == null)
+                eles.remove(ele.from);
+            else
+                eles.put(ele.from, left);
+            changed = true;
         }
+        consolidate(from, to);
+        return changed;
+    }
+
+    /**
+     * Removes some flags and all the matching items from across the entire range. This will remove any blank ranges
+     * and consolidate consecutive ranges containing the same flags and items. Since any range may contain these, this
+     * looks at every range.
+     * @param mask the flags to remove.
+     * @param test condition by which to remove items.
+     * @return true if this range list has changed as a result of this removal.
+     */
+    public boolean remove(int mask, Predicate<? super T> test)
+    {
+        if (eles.isEmpty())
+            return false;
+        return remove(eles.firstKey(), eles.lastEntry().getValue().to, mask, test);
     }
 
     /**
-     * Removes all elements that meet a specified condition
-     * @param test condition by which to remove elements.
+     * Removes all items that meet a specified condition. Since any range may contain these items, this looks at
+     * every range.
+     * @param test condition by which to remove items.
      * @return true if the list has been changed as a result of this removal.
      */
-    public boolean removeIf(Predicate<T> test)
+    public boolean removeIf(Predicate<? super T> test)
     {
-        boolean removed = false;
-        Iterator<RangeElement> itr = eles.iterator();
-        RangeElement prev = null;
-        while (itr.hasNext())
-        {
-            RangeElement ele = itr.next();
-            removed |= ele.items.removeIf(test);
-            if (ele.items.isEmpty())
-                itr.remove();
-            else
-            {
-                if (prev != null && prev.to == ele.from && prev.items.equals(ele.items))
-                {
-                    prev.to = ele.to;
-                    itr.remove();
-                }
-                else
-                    prev = ele;
-            }
-        }
-        return removed;
+        return remove(0, test);
     }
 
     /**
@@ -186,27 +266,7 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement>
      */
     public boolean remove(T item)
     {
-        boolean removed = false;
-        Iterator<RangeElement> itr = eles.iterator();
-        RangeElement prev = null;
-        while (itr.hasNext())
-        {
-            RangeElement ele = itr.next();
-            removed |= ele.items.remove(item);
-            if (ele.items.isEmpty())
-                itr.remove();
-            else
-            {
-                if (prev != null && prev.to == ele.from && prev.items.equals(ele.items))
-                {
-                    prev.to = ele.to;
-                    itr.remove();
-                }
-                else
-                    prev = ele;
-            }
-        }
-        return removed;
+        return removeIf(t -> Objects.equals(t, item));
     }
 
     /**
@@ -218,196 +278,207 @@ public class RangeSet<T> implements Iterable<RangeSet<T>.RangeElement>
     {
         if (eles.isEmpty())
             return;
-        while (eles.get(0).to <= from)
-            eles.remove(0);
-        if (eles.isEmpty())
+        if (from >= to)
+        {
+            eles.clear();
             return;
-        if (eles.get(0).from < from)
-            eles.get(0).from = from;
-
-        int i = eles.size() - 1;
-        while (i >= 0 && eles.get(i).from >= to)
-            eles.remove(i--);
-        if (!eles.isEmpty() && eles.get(i).to > to)
-            eles.get(i).to = to;
+        }
+
+        splitAt(from);
+        splitAt(to);
+        eles.headMap(from).clear();
+        eles.tailMap(to, true).clear();
     }
 
     /**
-     * Creates a sequential stream from the associated {@link #spliterator()} method.
-     * @return the stream.
+     * Clears all the range elements from this range set.
      */
-    public Stream<RangeElement> stream()
+    public void clear()
     {
-        return StreamSupport.stream(spliterator(), false);
+        eles.clear();
     }
 
+    /**
+     * Determines whether if this range set has no ranges at all.
+     * @return true if empty, false otherwise.
+     */
+    public boolean isEmpty()
+    {
+        return eles.isEmpty();
+    }
 
     /**
-     * Creates a parallel stream from the associated {@link #spliterator()} method.
-     * @return the stream.
+     * Obtains the number of (disjoint) ranges within this range set.
+     * @return the number of ranges.
+     */
+    public int size()
+    {
+        return eles.size();
+    }
+
+    /**
+     * Obtains the range element at a specified position. The ending point of a range is also counted, unless another
+     * range starts there.
+     * @param pos the position to look at
+     * @return the range element, or null if there is none.
      */
-    public Stream<RangeElement> parallelStream()
+    public RangeElement get(int pos)
     {
-        return StreamSupport.stream(spliterator(), true);
+        Map.Entry<Integer, RangeElement> entry = eles.floorEntry(pos);
+        if (entry == null || entry.getValue().to < pos)
+            return null;
+        return entry.getValue();
     }
 
+    /**
+     * Obtains the flags at a specified position.
+     * @param pos the position to look at
+     * @return the flags, or 0 if there are none.
+     */
+    public int getMask(int pos)
+    {
+        RangeElement ele = get(pos);
+        return ele == null ? 0 : ele.mask;
+    }
 
+    /**
+     * Obtains all items at a specified position.
+     * @param pos the position to look at
+     * @return a read-only view of the list of items, which is empty if there are none.
+     */
+    public List<T> getItems(int pos)
+    {
+        RangeElement ele = get(pos);
+        return ele == null ? Collections.emptyList() : ele.items;
+    }
 
     /**
-     * Obtains a weakly bound iterator snapshot of the ranges listed in this range list. This may skip a few ranges,
-     * known as "holes" if there are no items in those ranges.
+     * Creates a sequential stream from the associated {@link #spliterator()} method.
+     * @return the stream.
+     */
+    public Stream<RangeElement> stream()
+    {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Obtains a read-only iterator over the ranges listed in this range list, in ascending order. This may skip a few
+     * ranges, known as "holes" if there are no flags or items in those ranges. The range elements are not copied, but
+     * they never change either. This range set must not be modified while iterating.
      * @return an iterator to iterate through all the ranges.
      */
     @Override
     public Iterator<RangeElement> iterator()
     {
-        List<RangeElement> list = new ArrayList<>();
-        for (RangeElement ele : eles)
-        {
-            RangeElement copy = ele.copy();
-            list.add(copy);
-        }
-        return list.iterator();
+        return Collections.unmodifiableCollection(eles.values()).iterator();
     }
 
-    @SuppressWarnings({"SuspiciousToArrayCall", "unchecked"})
     @Override
     public Spliterator<RangeElement> spliterator()
     {
-        List<RangeElement> list = new ArrayList<>();
-        for (RangeElement ele : eles)
-        {
-            RangeElement copy = ele.copy();
-            list.add(copy);
-        }
-        return Arrays.spliterator(list.toArray(new RangeSet.RangeElement[0]));
+        return Collections.unmodifiableCollection(eles.values()).spliterator();
     }
 
     @Override
     public String toString()
     {
-        return eles.toString();
+        return eles.values().toString();
     }
 
     /**
-     * Consolidates all contigous ranges that contain the same elements.
+     * Obtains a range element with some flags and the matching items removed from it.
+     * @param ele the range element to remove from.
+     * @param mask the flags to remove.
+     * @param test condition by which to remove items.
+     * @return the same range element if nothing is removed, null if nothing is left, or otherwise a new range
+     * element with the remaining flags and items.
      */
-    private void consolidate()
+    private RangeElement without(RangeElement ele, int mask, Predicate<? super T> test)
     {
-        RangeElement last = null;
-        ArrayList<RangeElement> tmp = new ArrayList<>();
-        for (RangeElement e : eles)
+        List<T> items = ele.items;
+        for (T item : ele.items)
         {
-            if (last == null)
-                tmp.add(e);
-            else if (last.to >= e.from && last.items.equals(e.items))
+            if (test.test(item))
             {
-                last.to = e.to;
-                e = last;
+                ArrayList<T> remaining = new ArrayList<>(ele.items);
+                remaining.removeIf(test);
+                items = remaining.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(remaining);
+                break;
             }
-            else
-                tmp.add(e);
-            last = e;
         }
-        eles.clear();
-        eles.addAll(tmp);
+
+        int left = ele.mask & ~mask;
+        if (left == ele.mask && items == ele.items)
+            return ele;
+        if (left == 0 && items.isEmpty())
+            return null;
+        return new RangeElement(ele.from, ele.to, left, items);
     }
 
     /**
-     * Merges a range element with the specified range element. This will insert/remove the existing range elements as
-     * needed to make room for this range.
-     * @param ind the index of the range to merge with.
-     * @param insert the range element to perform merge with.
-     * @return the next index to check merge with after the needed inserts.
+     * Obtains the range element starting at or after a point.
+     * @param point the point to search from.
+     * @return the range element, or null if there is none.
      */
-    private int mergeRange(int ind, RangeElement insert)
+    private RangeElement ceiling(int point)
     {
-        if (insert.from == insert.to)
-            return ind;
-
-        RangeElement merged = eles.get(ind);
-        if (merged.items.containsAll(insert.items))
-        {
-            //No need to merge.
-            insert.from = Math.max(insert.from, merged.to);
-            return ind + 1;
-        }
+        Map.Entry<Integer, RangeElement> entry = eles.ceilingEntry(point);
+        return entry == null ? null : entry.getValue();
+    }
 
-        if (merged.from < insert.from)
-        {
-            if (merged.to <= insert.from)
-                return ind + 1; //averted merge.
-            eles.add(ind++, new RangeElement(merged.from, insert.from, merged.items));
-            merged.from = insert.from;
-        }
-        //assert merged.from == insert.from
-        if (insert.to < merged.to)
-            eles.add(++ind, new RangeElement(insert.to, merged.to, merged.items));
-        insert.from = merged.to = Math.min(merged.to, insert.to);
-        merged.items.addAll(insert.items);
-        return ind + 1;
+    /**
+     * Obtains the range element starting strictly after a point.
+     * @param point the point to search from.
+     * @return the range element, or null if there is none.
+     */
+    private RangeElement higher(int point)
+    {
+        Map.Entry<Integer, RangeElement> entry = eles.higherEntry(point);
+        return entry == null ? null : entry.getValue();
     }
 
     /**
-     * Combines the specified range element. This differs from {@link #mergeRange(int, RangeElement)} because this
-     * function assumes that the low end of this range element DOES NOT intersect with any existing ranges. This will
-     * combine until it detects a range element that it will clobber.
-     *
-     * @param ind the index of the nearest range that might intersect this range. This can be a number >= size if
-     *            there are no ranges to check.
-     * @param insert the range element to perform combination with.
-     * @return the index of the range element to detect possible merging with, after any inserts.
+     * Splits the range element that crosses the specified point (if any) into two range elements, which share the same
+     * flags and items.
+     * @param point the point to split at.
      */
-    private int combineRange(int ind, RangeElement insert)
+    private void splitAt(int point)
     {
-        if (insert.from == insert.to)
-            return ind;
+        Map.Entry<Integer, RangeElement> entry = eles.lowerEntry(point);
+        if (entry == null)
+            return;
 
-        if (ind >= eles.size())
+        RangeElement ele = entry.getValue();
+        if (ele.to > point)
         {
-            eles.add(new RangeElement(insert.from, insert.to, insert.items));
-            return ind;
+            eles.put(ele.from, new RangeElement(ele.from, point, ele.mask, ele.items));
+            eles.put(point, new RangeElement(point, ele.to, ele.mask, ele.items));
         }
-
-        RangeElement evade = eles.get(ind);
-        if (evade.from == insert.from)
-            return ind;
-
-        //assert evade.from > insert.from
-        int combineTo = Math.min(evade.from, insert.to);
-        eles.add(ind++, new RangeElement(insert.from, combineTo, insert.items));
-        insert.from = combineTo;
-        return ind;
     }
 
     /**
-     * Locates the index of the highest range element that is under this number point. This is implemented by a
-     * modified binary search. If this point is lower than the lowest range element, this will return -1.
-     * @param point the number to search
-     * @return the index referring to the matched range element.
+     * Consolidates all contiguous ranges that contain the same flags and items, from the range just before the
+     * starting point up to the range at the ending point.
+     * @param from the starting range point.
+     * @param to the ending range point.
      */
-    private int binarySearch(int point)
+    private void consolidate(int from, int to)
     {
-        if (eles.isEmpty())
-            return -1;
-
-        int low = 0;
-        int high = eles.size() - 1;
+        Map.Entry<Integer, RangeElement> entry = eles.lowerEntry(from);
+        RangeElement last = entry == null ? ceiling(from) : entry.getValue();
+        if (last == null)
+            return;
 
-        while (low < high)
+        for (RangeElement e = higher(last.from); e != null && e.from <= to; e = higher(last.from))
         {
-            int mid = (low + high) / 2;
-            int cmp = point - eles.get(mid).from;
-            if (cmp > 0)
-                low = mid + 1;
-            else if (cmp < 0)
-                high = mid - 1;
-            else //if (cmp == 0)
-                return mid;
+            if (last.to == e.from && last.sameContents(e))
+            {
+                eles.remove(e.from);
+                last = new RangeElement(last.from, e.to, last.mask, last.items);
+                eles.put(last.from, last);
+            }
+            else
+                last = e;
         }
-
-        if (high < 0)
-            return -1;
-        return point >= eles.get(high).from ? high : high - 1;
     }
 }
@@ -0,0 +1,123 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+
+import java.util.ArrayList;
+
+import static java.lang.System.out;
+
+/**
+ * Holds the fixture shared by the benchmarks: the default corpus of large JDK classes, the warm-up and measurement
+ * loop, and a highlighter that discards everything. Each benchmark only supplies its own workload.
+ * @author Henry Wang
+ */
+public final class Benchmarks
+{
+    public static final String[] DEFAULT_CLASSES = {"java/lang/String", "java/lang/Character",
+            "java/util/HashMap", "java/util/concurrent/ConcurrentHashMap", "java/util/Formatter",
+            "java/math/BigInteger", "java/math/BigDecimal", "java/util/regex/Pattern"};
+
+    /**
+     * A highlighter that discards all syntax highlights and tags.
+     */
+    public static final Highlighter NO_HIGHLIGHTS = new Highlighter()
+    {
+        @Override
+        public void insertTag(Tag tag)
+        {
+
+        }
+
+        @Override
+        public void insertSyntax(Syntax syn)
+        {
+
+        }
+    };
+
+    /**
+     * Represents a single workload that is measured.
+     */
+    public interface Workload
+    {
+        /**
+         * Runs one round of this workload.
+         */
+        void run();
+    }
+
+    private Benchmarks()
+    {
+    }
+
+    /**
+     * Finds the classes to benchmark from the class path. These are the classes given as arguments (internal names),
+     * or the default classes if there are no arguments. Any class that cannot be found is reported and skipped.
+     * @param args the arguments of the benchmark.
+     * @return the list of classes found.
+     */
+    public static ArrayList<ClassContext> findClasses(String[] args)
+    {
+        ArrayList<ClassContext> classes = new ArrayList<>();
+        for (String name : args.length == 0 ? DEFAULT_CLASSES : args)
+        {
+            ClassContext ctx = findClass(name);
+            if (ctx != null)
+                classes.add(ctx);
+        }
+        return classes;
+    }
+
+    /**
+     * Finds a single class from the class path, reporting it if it cannot be found.
+     * @param name the internal name of the class.
+     * @return the class context, or null if it cannot be found.
+     */
+    public static ClassContext findClass(String name)
+    {
+        ClassContext ctx = ClassContext.findContext(name);
+        if (ctx == null)
+            out.println("Cannot load class: " + name);
+        return ctx;
+    }
+
+    /**
+     * Runs a workload for a number of warm-up rounds, and then measures it for a number of rounds.
+     * @param warmupRounds the number of rounds to warm up with.
+     * @param rounds the number of rounds to measure.
+     * @param workload the workload to run.
+     * @return the average time of a measured round, in nanoseconds.
+     */
+    public static double measure(int warmupRounds, int rounds, Workload workload)
+    {
+        repeat(warmupRounds, workload);
+        return time(rounds, workload);
+    }
+
+    /**
+     * Measures a workload for a number of rounds, without any warm-up.
+     * @param rounds the number of rounds to measure.
+     * @param workload the workload to run.
+     * @return the average time of a round, in nanoseconds.
+     */
+    public static double time(int rounds, Workload workload)
+    {
+        long start = System.nanoTime();
+        repeat(rounds, workload);
+        return (double)(System.nanoTime() - start) / rounds;
+    }
+
+    /**
+     * Runs a workload for a number of rounds, i.e. to warm it up.
+     * @param rounds the number of rounds to run.
+     * @param workload the workload to run.
+     */
+    public static void repeat(int rounds, Workload workload)
+    {
+        for (int i = 0; i < rounds; i++)
+            workload.run();
+    }
+}
@@ -0,0 +1,88 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.lang.reflect.Modifier;
+
+import static com.theKidOfArcrania.asm.editor.bench.Benchmarks.NO_HIGHLIGHTS;
+import static java.lang.System.out;
+
+/**
+ * Compares the save time and output size of writing a class from scratch ({@link ClassContext#writeClass}) against
+ * copying through the original class data ({@link ClassContext#writeCopyThrough(int)}), where only one method of
+ * each class has been edited. The classes can be given as arguments (internal names); otherwise a set of large JDK
+ * classes is used.
+ * @author Henry Wang
+ */
+public class CopyThroughBenchmark
+{
+    private static final int WARMUP_ROUNDS = 50;
+    private static final int MEASURE_ROUNDS = 200;
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    public static void main(String[] args) throws IOException
+    {
+        out.printf("%-42s %8s %10s %10s %10s %10s%n", "Class", "orig B", "full B", "copy B", "full ms",
+                "copy ms");
+        for (ClassContext ctx : Benchmarks.findClasses(args))
+        {
+            String name = ctx.getName();
+            if (!editMethod(ctx))
+            {
+                out.println("No method could be edited: " + name);
+                continue;
+            }
+
+            int origSize = new ClassReader(name).b.length;
+            int fullSize = writeFull(ctx).length;
+            int copySize = ctx.writeCopyThrough(ClassWriter.COMPUTE_MAXS).length;
+            double full = Benchmarks.measure(WARMUP_ROUNDS, MEASURE_ROUNDS, () -> writeFull(ctx));
+            double copy = Benchmarks.measure(WARMUP_ROUNDS, MEASURE_ROUNDS,
+                    () -> ctx.writeCopyThrough(ClassWriter.COMPUTE_MAXS));
+
+            out.printf("%-42s %8d %10d %10d %10.3f %10.3f%n", name, origSize, fullSize, copySize,
+                    full / NANOS_PER_MILLI, copy / NANOS_PER_MILLI);
+        }
+    }
+
+    /**
+     * Writes the class from scratch.
+     * @param ctx the class context.
+     * @return the class file data.
+     */
+    private static byte[] writeFull(ClassContext ctx)
+    {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        ctx.writeClass(writer);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Edits the first concrete method of the class, by re-parsing its own code and setting it as the new body.
+     * @param ctx the class context.
+     * @return true if a method was edited, false if none could be edited.
+     */
+    private static boolean editMethod(ClassContext ctx)
+    {
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        for (MethodContext mth : ctx.getMethods())
+        {
+            if (Modifier.isAbstract(mth.getModifiers()) || Modifier.isNative(mth.getModifiers()))
+                continue;
+
+            CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), NO_HIGHLIGHTS);
+            if (parser.reparse(false) && parser.resolveSymbols())
+            {
+                mth.setCode(parser);
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,92 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import static java.lang.System.out;
+
+/**
+ * Measures the throughput of the disassembler, in MB/s of listing text produced. The classes to disassemble can be
+ * given as arguments (internal names); otherwise a set of large JDK classes is used.
+ * @author Henry Wang
+ */
+public class DisassemblerBenchmark
+{
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURE_ROUNDS = 20;
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final double NANOS_PER_SEC = 1e9;
+
+    /**
+     * A sink that only counts the number of characters written to it.
+     */
+    private static class CountingAppendable implements Appendable
+    {
+        private long count;
+
+        @Override
+        public Appendable append(CharSequence csq)
+        {
+            count += csq.length();
+            return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end)
+        {
+            count += end - start;
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c)
+        {
+            count++;
+            return this;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        ArrayList<ClassContext> classes = Benchmarks.findClasses(args);
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> disassemble(classes, new CountingAppendable()));
+
+        CountingAppendable counter = new CountingAppendable();
+        double elapsed = Benchmarks.time(MEASURE_ROUNDS, () -> disassemble(classes, counter)) * MEASURE_ROUNDS;
+
+        double secs = elapsed / NANOS_PER_SEC;
+        out.printf("%d classes, %.2f MB of listing in %.3f s%n", classes.size(), counter.count / MEGABYTE, secs);
+        out.printf("Throughput: %.2f MB/s%n", counter.count / MEGABYTE / secs);
+    }
+
+    /**
+     * Disassembles all the methods of the classes into the specified output.
+     * @param classes the list of classes to disassemble.
+     * @param sink the output of the listings.
+     * @throws UncheckedIOException if the output throws an I/O error.
+     */
+    private static void disassemble(ArrayList<ClassContext> classes, Appendable sink)
+    {
+        try
+        {
+            for (ClassContext ctx : classes)
+            {
+                CodeSymbols global = new CodeSymbols(null, ctx);
+                for (MethodContext mth : ctx.getMethods())
+                {
+                    mth.readCode(global, sink);
+                    sink.append('\n');
+                }
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.*;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.ControlFlowGraph;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameException;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameVerifier;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.StackMapFrame;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+import static com.theKidOfArcrania.asm.editor.bench.Benchmarks.NO_HIGHLIGHTS;
+import static java.lang.System.out;
+
+/**
+ * Measures the heap allocations of a {@link StackMapFrame} while it simulates instructions. Every method of a set of
+ * large JDK classes is verified once, and then each basic block is simulated again from its entry frame, the same way
+ * that the {@link FrameVerifier} interprets a block. This reports the number of bytes allocated and the time taken per
+ * simulated instruction, both without and with a snapshot of the frame taken before each instruction (as the verifier
+ * keeps for every instruction). The allocated bytes are read from the HotSpot thread allocation counter, so this requires a
+ * HotSpot JVM. The classes can be given as arguments (internal names); otherwise a set of large JDK classes is used.
+ * @author Henry Wang
+ */
+public class FrameAllocationBenchmark
+{
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 50;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    /**
+     * A verified method whose basic blocks can be simulated again from their entry frames.
+     */
+    private static class SimulatedMethod
+    {
+        private final ControlFlowGraph graph;
+        private final StackMapFrame[] entries;
+
+        /**
+         * Constructs a simulated method.
+         * @param verifier the verifier that has verified the method.
+         */
+        public SimulatedMethod(FrameVerifier verifier)
+        {
+            graph = verifier.getGraph();
+            entries = new StackMapFrame[graph.getBlockCount()];
+            for (int i = 0; i < entries.length; i++)
+                entries[i] = verifier.getEntryFrame(i);
+        }
+
+        /**
+         * Simulates every reachable block of this method once.
+         * @param snapshots whether to take a snapshot of the frame before each instruction.
+         * @return the number of instructions simulated.
+         */
+        public int simulate(boolean snapshots)
+        {
+            int insts = 0;
+            for (int block = 0; block < entries.length; block++)
+            {
+                if (entries[block] == null)
+                    continue;
+
+                StackMapFrame frame = entries[block].copy();
+                int end = graph.getBlockEnd(block);
+                for (int line = graph.getBlockStart(block); line <= end; line++)
+                {
+                    CodeStatement s = graph.getStatement(line);
+                    if (!(s instanceof InstStatement))
+                        continue;
+                    if (snapshots)
+                        frame.copy();
+                    try
+                    {
+                        frame.execute((InstStatement)s);
+                    }
+                    catch (FrameException e)
+                    {
+                        throw new IllegalStateException(e);
+                    }
+                    insts++;
+                }
+            }
+            return insts;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        if (!THREADS.isThreadAllocatedMemorySupported())
+        {
+            out.println("Thread allocation counters are not supported by this JVM.");
+            return;
+        }
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+
+        out.printf("%-48s %10s %12s %12s %12s %12s%n", "Class", "insts", "bytes/inst", "ns/inst", "snap b/inst",
+                "snap ns/inst");
+        for (ClassContext ctx : Benchmarks.findClasses(args))
+        {
+            ArrayList<SimulatedMethod> mths = new ArrayList<>();
+            for (MethodContext mth : ctx.getMethods())
+            {
+                if (Modifier.isAbstract(mth.getModifiers()) || Modifier.isNative(mth.getModifiers()))
+                    continue;
+                SimulatedMethod simulated = verify(mth);
+                if (simulated != null)
+                    mths.add(simulated);
+            }
+            out.printf("%-48s", ctx.getName() + " (" + mths.size() + " methods)");
+            measure(mths, false);
+            measure(mths, true);
+            out.println();
+        }
+    }
+
+    /**
+     * Measures the allocations of simulating a group of methods, and prints out the results.
+     * @param mths the methods to simulate.
+     * @param snapshots whether to take a snapshot of the frame before each instruction.
+     */
+    private static void measure(ArrayList<SimulatedMethod> mths, boolean snapshots)
+    {
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> simulate(mths, snapshots));
+
+        long insts = 0;
+        for (SimulatedMethod mth : mths)
+            insts += mth.simulate(snapshots);
+
+        long thread = Thread.currentThread().getId();
+        long bytes = THREADS.getThreadAllocatedBytes(thread);
+        double time = Benchmarks.time(MEASURE_ROUNDS, () -> simulate(mths, snapshots));
+        bytes = THREADS.getThreadAllocatedBytes(thread) - bytes;
+
+        if (!snapshots)
+            out.printf(" %10d", insts);
+        out.printf(" %12.1f %12.1f", (double)bytes / MEASURE_ROUNDS / insts, time / insts);
+    }
+
+    /**
+     * Simulates a group of methods once.
+     * @param mths the methods to simulate.
+     * @param snapshots whether to take a snapshot of the frame before each instruction.
+     */
+    private static void simulate(ArrayList<SimulatedMethod> mths, boolean snapshots)
+    {
+        for (SimulatedMethod mth : mths)
+            mth.simulate(snapshots);
+    }
+
+    /**
+     * Parses and verifies the code of a method.
+     * @param mth the method to verify.
+     * @return the verified method, or null if the code cannot be parsed or does not verify.
+     */
+    private static SimulatedMethod verify(MethodContext mth)
+    {
+        CodeSymbols global = new CodeSymbols(null, mth.getOwner());
+        CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), NO_HIGHLIGHTS);
+        if (!parser.reparse(false) || !parser.resolveSymbols() || !parser.verifyStack())
+            return null;
+        return new SimulatedMethod(parser.getVerifier());
+    }
+}
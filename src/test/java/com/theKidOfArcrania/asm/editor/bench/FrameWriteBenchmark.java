@@ -0,0 +1,159 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameWriter;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+import static com.theKidOfArcrania.asm.editor.bench.Benchmarks.NO_HIGHLIGHTS;
+import static java.lang.System.out;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compares writing the methods of a class with the stack map frames (and max stack and locals) computed by the
+ * {@link FrameWriter} from an earlier verification, against letting ASM compute them with
+ * {@link ClassWriter#COMPUTE_FRAMES}. Every method of a set of large JDK classes is parsed and verified once, and
+ * then all the methods are written into a new class writer repeatedly. This reports the number of frames written and
+ * the size of the class data for both ways, and the time taken per class. The classes can be given as arguments
+ * (internal names); otherwise a set of large JDK classes is used. Classes with a method that does not verify (or that
+ * has unreachable code) are skipped, since no frames are written for such methods.
+ * @author Henry Wang
+ */
+public class FrameWriteBenchmark
+{
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURE_ROUNDS = 50;
+
+    /**
+     * A method whose code is parsed and verified, ready to be written.
+     */
+    private static class ParsedMethod
+    {
+        private final MethodContext mth;
+        private final CodeParser parser;
+
+        public ParsedMethod(MethodContext mth, CodeParser parser)
+        {
+            this.mth = mth;
+            this.parser = parser;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        out.printf("%-48s %8s %8s %10s %10s %10s %10s %8s%n", "Class", "frames", "asm", "bytes", "asm bytes",
+                "us/write", "us/asm", "speedup");
+        for (ClassContext ctx : Benchmarks.findClasses(args))
+        {
+            String name = ctx.getName();
+            ArrayList<ParsedMethod> mths = parse(ctx);
+            if (mths == null)
+            {
+                out.println("Skipped (not verified): " + name);
+                continue;
+            }
+
+            byte[] ours = write(ctx, mths, true);
+            byte[] computed = write(ctx, mths, false);
+            double oursTime = measure(ctx, mths, true);
+            double computedTime = measure(ctx, mths, false);
+            out.printf("%-48s %8d %8d %10d %10d %10.1f %10.1f %8.2f%n", name + " (" + mths.size() + " methods)",
+                    countFrames(ours), countFrames(computed), ours.length, computed.length, oursTime / 1000,
+                    computedTime / 1000, computedTime / oursTime);
+        }
+    }
+
+    /**
+     * Measures the average time of writing a class.
+     * @param ctx the class context.
+     * @param mths the methods of the class.
+     * @param frames true to write our own frames, false to let ASM compute them.
+     * @return the average time in nanoseconds.
+     */
+    private static double measure(ClassContext ctx, ArrayList<ParsedMethod> mths, boolean frames)
+    {
+        return Benchmarks.measure(WARMUP_ROUNDS, MEASURE_ROUNDS, () -> write(ctx, mths, frames));
+    }
+
+    /**
+     * Writes the methods of a class into a new class writer.
+     * @param ctx the class context.
+     * @param mths the methods of the class.
+     * @param frames true to write our own frames, false to let ASM compute them.
+     * @return the class file data.
+     */
+    private static byte[] write(ClassContext ctx, ArrayList<ParsedMethod> mths, boolean frames)
+    {
+        ClassWriter writer = new ClassWriter(frames ? 0 : ClassWriter.COMPUTE_FRAMES);
+        writer.visit(V1_8, ACC_PUBLIC, ctx.getName(), null,
+                ctx.getSuperClass() == null ? null : ctx.getSuperClass().getName(), null);
+        for (ParsedMethod parsed : mths)
+        {
+            MethodContext mth = parsed.mth;
+            MethodVisitor mv = writer.visitMethod(mth.getModifiers(), mth.getName(), mth.getSignature().toString(),
+                    null, null);
+            parsed.parser.write(mv, frames);
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Counts the stack map frames of all the methods in the class data.
+     * @param data the class file data.
+     * @return the number of frames.
+     */
+    private static int countFrames(byte[] data)
+    {
+        int[] count = {0};
+        new ClassReader(data).accept(new ClassVisitor(ASM5)
+        {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions)
+            {
+                return new MethodVisitor(ASM5)
+                {
+                    @Override
+                    public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack)
+                    {
+                        count[0]++;
+                    }
+                };
+            }
+        }, 0);
+        return count[0];
+    }
+
+    /**
+     * Parses and verifies the code of all the methods of a class.
+     * @param ctx the class context.
+     * @return the parsed methods, or null if some method cannot be parsed, or does not have frames.
+     */
+    private static ArrayList<ParsedMethod> parse(ClassContext ctx)
+    {
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        ArrayList<ParsedMethod> mths = new ArrayList<>();
+        for (MethodContext mth : ctx.getMethods())
+        {
+            if (Modifier.isAbstract(mth.getModifiers()) || Modifier.isNative(mth.getModifiers()))
+                continue;
+
+            CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), NO_HIGHLIGHTS);
+            if (!parser.reparse(false) || !parser.resolveSymbols() || !parser.verifyStack())
+                return null;
+            if (!FrameWriter.canWrite(parser.getVerifier()))
+                return null;
+            mths.add(new ParsedMethod(mth, parser));
+        }
+        return mths;
+    }
+}
@@ -0,0 +1,162 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.util.RangeSet;
+
+import java.util.Random;
+
+import static java.lang.System.out;
+
+/**
+ * Measures the {@link RangeSet} operations that the editor relies on. The first workloads replay the scenarios of
+ * <code>RangeSetTest</code> (combining, merging, retaining and removing ranges). The others model the editor, which
+ * adds each syntax style as a flag, and each tag as a flag along with the tag itself as an item: styling a line with
+ * syntax and tag markers, hovering over every column of a line, iterating over all the ranges of a line, and querying
+ * a single large range set with many small ranges. Each workload prints the time per round.
+ * @author Henry Wang
+ */
+public class RangeSetBenchmark
+{
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int MEASURE_ROUNDS = 20000;
+    private static final int LARGE_RANGES = 20000;
+    private static final int LARGE_ROUNDS = 5;
+    private static final int LINE_LENGTH = 120;
+    private static final int TOKENS = 20;
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    private static final String[] TYPES = {"KEYWORD", "IDENTIFIER", "NUMBER", "STRING", "COMMENT", "COMMA"};
+    private static final String[] TAGS = {"ERROR", "WARNING"};
+
+    private static int sink;
+
+    public static void main(String[] args)
+    {
+        out.printf("%-32s %12s%n", "Workload", "us/round");
+
+        measure("test: add combine", MEASURE_ROUNDS, () -> {
+            RangeSet<String> eles = new RangeSet<>();
+            eles.add(5, 10, "A");
+            eles.add(0, 5, "A");
+            eles.add(7, 11, "A");
+            eles.add(12, 16, "A");
+            eles.add(21, 22, "A");
+            eles.add(20, 21, "A");
+            eles.add(22, 25, "A");
+            consume(eles);
+        });
+        measure("test: late combine", MEASURE_ROUNDS, () -> {
+            RangeSet<String> eles = new RangeSet<>();
+            eles.add(0, 5, "A");
+            eles.add(0, 5, "B");
+            eles.add(5, 10, "A");
+            eles.add(5, 10, "B");
+            eles.add(-5, 0, "A");
+            eles.add(-5, 0, "B");
+            consume(eles);
+        });
+        measure("test: add merge + retain", MEASURE_ROUNDS, () -> {
+            RangeSet<String> eles = new RangeSet<>();
+            eles.add(1, 7, "A");
+            eles.add(9, 12, "A");
+            eles.add(5, 10, "B");
+            eles.add(13, 15, "A");
+            eles.retainRange(5, 10);
+            consume(eles);
+        });
+        measure("test: remove", MEASURE_ROUNDS, () -> {
+            RangeSet<String> eles = new RangeSet<>();
+            eles.add(1, 7, "A");
+            eles.add(5, 10, "B");
+            eles.add(9, 12, "A");
+            eles.remove("A");
+            consume(eles);
+        });
+
+        RangeSet<String> line = styleLine(new Random(0));
+        measure("editor: style line", MEASURE_ROUNDS, () -> consume(styleLine(new Random(0))));
+        measure("editor: hover every column", MEASURE_ROUNDS, () -> {
+            for (int col = 0; col < LINE_LENGTH; col++)
+                sink += line.getMask(col) + line.getItems(col).size();
+        });
+        measure("editor: iterate line", MEASURE_ROUNDS, () -> consume(line));
+
+        Random rng = new Random(1);
+        RangeSet<String> large = new RangeSet<>();
+        for (int i = 0; i < LARGE_RANGES; i++)
+            large.add(i * 4, i * 4 + 3, 1 << (i % TYPES.length), null);
+        measure("large: point queries", LARGE_ROUNDS, () -> {
+            for (int i = 0; i < LARGE_RANGES; i++)
+                sink += large.getMask(rng.nextInt(LARGE_RANGES * 4));
+        });
+        measure("large: add overlapping tags", LARGE_ROUNDS, () -> {
+            RangeSet<String> copy = new RangeSet<>();
+            for (RangeSet<String>.RangeElement ele : large)
+                copy.add(ele.getFrom(), ele.getTo(), ele.getMask(), null);
+            for (int i = 0; i < LARGE_RANGES / 10; i++)
+            {
+                int from = rng.nextInt(LARGE_RANGES * 4);
+                copy.add(from, from + 10, tagBit(i % TAGS.length), TAGS[i % TAGS.length]);
+            }
+            consume(copy);
+        });
+    }
+
+    /**
+     * Styles a single line, the same way that the editor does: a series of syntax tokens, a few error/warning tags
+     * overlapping them, and finally removing all the tags of one type again.
+     * @param rng the random generator to pick the tokens with.
+     * @return the styled line.
+     */
+    private static RangeSet<String> styleLine(Random rng)
+    {
+        RangeSet<String> line = new RangeSet<>();
+        int col = 0;
+        for (int i = 0; i < TOKENS && col < LINE_LENGTH; i++)
+        {
+            int len = 1 + rng.nextInt(5);
+            line.add(col, Math.min(col + len, LINE_LENGTH), 1 << rng.nextInt(TYPES.length), null);
+            col += len + 1;
+        }
+        for (int i = 0; i < TAGS.length; i++)
+        {
+            int from = rng.nextInt(LINE_LENGTH / 2);
+            line.add(from, from + LINE_LENGTH / 4, tagBit(i), TAGS[i]);
+        }
+        line.remove(tagBit(1), TAGS[1]::equals);
+        return line;
+    }
+
+    /**
+     * Obtains the flag of a tag type, which comes after the flags of all the syntax types.
+     * @param tag the index of the tag type.
+     * @return the flag.
+     */
+    private static int tagBit(int tag)
+    {
+        return 1 << (TYPES.length + tag);
+    }
+
+    /**
+     * Iterates over all the ranges of a range set, so that the work cannot be optimized away.
+     * @param eles the range set.
+     */
+    private static void consume(RangeSet<String> eles)
+    {
+        for (RangeSet<String>.RangeElement ele : eles)
+        {
+            sink += ele.getMask() + ele.getItems().size() + ele.getTo() - ele.getFrom();
+        }
+    }
+
+    /**
+     * Measures a workload, and prints out one line of results.
+     * @param title the title of the workload.
+     * @param rounds the number of rounds to measure.
+     * @param workload the workload.
+     */
+    private static void measure(String title, int rounds, Benchmarks.Workload workload)
+    {
+        double elapsed = Benchmarks.measure(Math.min(rounds, WARMUP_ROUNDS), rounds, workload);
+        out.printf("%-32s %12.2f%n", title, elapsed / NANOS_PER_MICRO);
+    }
+}
@@ -0,0 +1,406 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.highlight.TagType;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static java.lang.System.out;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Measures the throughput of the whole round-trip pipeline: disassembling a method into code, parsing the code with
+ * {@link CodeParser}, resolving its symbols, and writing the statements back into an ASM {@link ClassWriter}. Each
+ * phase reports its own throughput (in MB/s of listing text), allocation rate, and the ratio of methods that made it
+ * through that phase.
+ * <p>
+ * The corpus is a set of large JDK classes, plus any classes or jar files given as arguments. The results are
+ * compared against a baseline file (<code>-baseline &lt;file&gt;</code>, defaults to
+ * {@value #DEFAULT_BASELINE}), and any phase that regressed by more than {@value #REGRESSION_PERCENT}% is flagged.
+ * Pass <code>-save</code> to store the current results as the new baseline.
+ * @author Henry Wang
+ */
+public class RoundTripBenchmark
+{
+    private static final String DEFAULT_BASELINE = "roundtrip-baseline.properties";
+    private static final int REGRESSION_PERCENT = 10;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURE_ROUNDS = 5;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private static final double MEGABYTE = 1024 * 1024;
+    private static final double NANOS_PER_SEC = 1e9;
+
+    /**
+     * The phases of the round trip.
+     */
+    private enum Phase
+    {
+        DISASSEMBLE, PARSE, RESOLVE, WRITE
+    }
+
+    /**
+     * Accumulates the measurements of a single phase.
+     */
+    private static class PhaseStats
+    {
+        private long nanos;
+        private long allocated;
+        private long chars;
+        private int attempted;
+        private int succeeded;
+
+        /**
+         * Obtains the throughput of this phase.
+         * @return the throughput in MB/s of listing text
+         */
+        public double throughput()
+        {
+            return chars / MEGABYTE / (nanos / NANOS_PER_SEC);
+        }
+
+        /**
+         * Obtains the allocation rate of this phase.
+         * @return the number of bytes allocated per character of listing text, or -1 if not available.
+         */
+        public double allocationRate()
+        {
+            return allocated < 0 ? -1 : (double)allocated / chars;
+        }
+
+        /**
+         * Obtains the success ratio of this phase.
+         * @return the ratio of successful methods, between 0 and 1.
+         */
+        public double successRatio()
+        {
+            return attempted == 0 ? 1 : (double)succeeded / attempted;
+        }
+    }
+
+    /**
+     * A highlighter that discards syntax highlights, and only remembers the first error emitted.
+     */
+    private static class ErrorCatcher implements Highlighter
+    {
+        private Tag firstError;
+
+        @Override
+        public void insertTag(Tag tag)
+        {
+            if (firstError == null && tag.getType() == TagType.ERROR)
+                firstError = tag;
+        }
+
+        @Override
+        public void insertSyntax(Syntax syn)
+        {
+            //Does nothing.
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREAD_BEAN;
+
+    static
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            THREAD_BEAN = (com.sun.management.ThreadMXBean) bean;
+        else
+            THREAD_BEAN = null;
+    }
+
+    private final EnumMap<Phase, PhaseStats> stats;
+    private final Set<String> errors;
+    private long lastTime;
+    private long lastAllocated;
+
+    /**
+     * Constructs a new benchmark run.
+     */
+    private RoundTripBenchmark()
+    {
+        stats = new EnumMap<>(Phase.class);
+        for (Phase p : Phase.values())
+            stats.put(p, new PhaseStats());
+        errors = new LinkedHashSet<>();
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Path baseline = Paths.get(DEFAULT_BASELINE);
+        boolean save = false;
+        ArrayList<ClassContext> corpus = Benchmarks.findClasses(Benchmarks.DEFAULT_CLASSES);
+
+        for (int i = 0; i < args.length; i++)
+        {
+            if (args[i].equals("-baseline") && i + 1 < args.length)
+                baseline = Paths.get(args[++i]);
+            else if (args[i].equals("-save"))
+                save = true;
+            else if (args[i].endsWith(".jar"))
+                addJar(corpus, Paths.get(args[i]));
+            else
+                addClass(corpus, args[i]);
+        }
+
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> new RoundTripBenchmark().run(corpus));
+        RoundTripBenchmark bench = new RoundTripBenchmark();
+        Benchmarks.repeat(MEASURE_ROUNDS, () -> bench.run(corpus));
+
+        Properties results = bench.report();
+        for (String error : bench.errors)
+            out.println("  " + error);
+
+        if (Files.exists(baseline))
+        {
+            Properties base = new Properties();
+            try (InputStream in = Files.newInputStream(baseline))
+            {
+                base.load(in);
+            }
+            compare(base, results);
+        }
+        else
+            out.println("No baseline found at " + baseline + ".");
+
+        if (save)
+        {
+            try (OutputStream os = Files.newOutputStream(baseline))
+            {
+                results.store(os, "Round-trip benchmark baseline (" + corpus.size() + " classes)");
+            }
+            out.println("Saved baseline to " + baseline + ".");
+        }
+    }
+
+    /**
+     * Adds a class from the class path into the corpus.
+     * @param corpus the corpus of classes.
+     * @param name the internal name of the class.
+     */
+    private static void addClass(List<ClassContext> corpus, String name)
+    {
+        ClassContext ctx = Benchmarks.findClass(name);
+        if (ctx != null)
+            corpus.add(ctx);
+    }
+
+    /**
+     * Adds all the classes of a jar file into the corpus.
+     * @param corpus the corpus of classes.
+     * @param jar the path of the jar file.
+     * @throws IOException if an I/O error occurs while reading the jar.
+     */
+    private static void addJar(List<ClassContext> corpus, Path jar) throws IOException
+    {
+        try (JarFile file = new JarFile(jar.toFile()))
+        {
+            Enumeration<JarEntry> entries = file.entries();
+            while (entries.hasMoreElements())
+            {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName().endsWith(".class"))
+                    continue;
+                try (InputStream in = file.getInputStream(entry))
+                {
+                    ClassReader reader = new ClassReader(in);
+                    try
+                    {
+                        corpus.add(ClassContext.loadContext(reader));
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        ClassContext ctx = ClassContext.findContext(reader.getClassName());
+                        if (ctx != null)
+                            corpus.add(ctx);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the results against a baseline, printing the change of each measurement and flagging regressions.
+     * @param base the baseline results.
+     * @param results the current results.
+     */
+    private static void compare(Properties base, Properties results)
+    {
+        out.println("Compared to baseline:");
+        for (String key : new TreeSet<>(results.stringPropertyNames()))
+        {
+            String baseVal = base.getProperty(key);
+            if (baseVal == null)
+                continue;
+
+            double was = Double.parseDouble(baseVal);
+            double now = Double.parseDouble(results.getProperty(key));
+            if (was <= 0)
+                continue;
+
+            //Throughput and success should not drop, allocations should not grow.
+            double change = (now - was) / was * 100;
+            boolean regressed = key.endsWith(".alloc") ? change > REGRESSION_PERCENT : change < -REGRESSION_PERCENT;
+            out.printf("  %-24s %10.3f -> %10.3f (%+6.1f%%)%s%n", key, was, now, change,
+                    regressed ? "  REGRESSION" : "");
+        }
+    }
+
+    /**
+     * Runs the round-trip once over all the classes of the corpus.
+     * @param corpus the list of classes.
+     */
+    private void run(List<ClassContext> corpus)
+    {
+        for (ClassContext ctx : corpus)
+        {
+            CodeSymbols global = new CodeSymbols(null, ctx);
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            writer.visit(V1_8, ctx.getModifiers(), ctx.getName(), null, "java/lang/Object", null);
+            for (MethodContext mth : ctx.getMethods())
+            {
+                if (!Modifier.isAbstract(mth.getModifiers()) && !Modifier.isNative(mth.getModifiers()))
+                    roundTrip(global, writer, mth);
+            }
+            writer.visitEnd();
+            writer.toByteArray();
+        }
+    }
+
+    /**
+     * Runs a single method through all the phases of the round trip, stopping at the first failing phase.
+     * @param global the global code symbols of the class.
+     * @param writer the class writer to write the method to.
+     * @param mth the method to round-trip.
+     */
+    private void roundTrip(CodeSymbols global, ClassWriter writer, MethodContext mth)
+    {
+        startPhase();
+        String code = mth.readCode(global, true);
+        endPhase(Phase.DISASSEMBLE, code, true);
+
+        ErrorCatcher catcher = new ErrorCatcher();
+        CodeParser parser = new CodeParser(global, mth, code, catcher);
+        boolean success = parser.reparse(false);
+        if (!endPhase(Phase.PARSE, code, success))
+        {
+            reportError(mth, catcher);
+            return;
+        }
+
+        success = parser.resolveSymbols();
+        if (!endPhase(Phase.RESOLVE, code, success))
+        {
+            reportError(mth, catcher);
+            return;
+        }
+
+        try
+        {
+            MethodVisitor mv = writer.visitMethod(mth.getModifiers(), mth.getName(), mth.getSignature().toString(),
+                    null, null);
+            parser.write(mv);
+            success = true;
+        }
+        catch (RuntimeException e)
+        {
+            if (errors.size() < MAX_REPORTED_ERRORS)
+                errors.add(mth + ": " + e);
+            success = false;
+        }
+        endPhase(Phase.WRITE, code, success);
+    }
+
+    /**
+     * Records the start of a phase.
+     */
+    private void startPhase()
+    {
+        lastAllocated = allocatedBytes();
+        lastTime = System.nanoTime();
+    }
+
+    /**
+     * Records the end of a phase, and starts the next phase.
+     * @param phase the phase that ended.
+     * @param code the code that was processed in this phase.
+     * @param success whether if this phase was successful.
+     * @return the success value passed.
+     */
+    private boolean endPhase(Phase phase, String code, boolean success)
+    {
+        long time = System.nanoTime();
+        long allocated = allocatedBytes();
+
+        PhaseStats s = stats.get(phase);
+        s.nanos += time - lastTime;
+        s.allocated = allocated < 0 ? -1 : s.allocated + allocated - lastAllocated;
+        s.chars += code.length();
+        s.attempted++;
+        if (success)
+            s.succeeded++;
+
+        lastAllocated = allocatedBytes();
+        lastTime = System.nanoTime();
+        return success;
+    }
+
+    /**
+     * Reports the first error emitted while processing a method (up to a certain number of errors).
+     * @param mth the method that failed.
+     * @param catcher the highlighter that caught the error.
+     */
+    private void reportError(MethodContext mth, ErrorCatcher catcher)
+    {
+        if (errors.size() < MAX_REPORTED_ERRORS)
+            errors.add(mth + ": " + catcher.firstError);
+    }
+
+    /**
+     * Prints the results of this benchmark.
+     * @return the results as a set of properties.
+     */
+    private Properties report()
+    {
+        Properties results = new Properties();
+        out.printf("%-12s %10s %12s %10s%n", "Phase", "MB/s", "alloc B/ch", "success");
+        for (Phase p : Phase.values())
+        {
+            PhaseStats s = stats.get(p);
+            String key = p.name().toLowerCase();
+            out.printf("%-12s %10.2f %12.1f %9.2f%%%n", p, s.throughput(), s.allocationRate(),
+                    s.successRatio() * 100);
+            results.setProperty(key + ".throughput", String.format("%.3f", s.throughput()));
+            results.setProperty(key + ".alloc", String.format("%.3f", s.allocationRate()));
+            results.setProperty(key + ".success", String.format("%.5f", s.successRatio()));
+        }
+        return results;
+    }
+
+    /**
+     * Obtains the number of bytes allocated by the current thread so far.
+     * @return the number of allocated bytes, or -1 if this is not supported.
+     */
+    private static long allocatedBytes()
+    {
+        return THREAD_BEAN == null ? -1 : THREAD_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,392 @@
+package com.theKidOfArcrania.asm.editor.bench;
+
+import com.theKidOfArcrania.asm.editor.code.parsing.*;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.ControlFlowGraph;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameVerifier;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+import static com.theKidOfArcrania.asm.editor.bench.Benchmarks.NO_HIGHLIGHTS;
+import static java.lang.System.out;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Measures the time taken by the {@link FrameVerifier} to verify large methods with many branches. This generates
+ * methods with an increasing number of branches, all within one loop (so that the loop-carried local variables have
+ * to be merged and re-propagated), and then verifies every method of a set of large JDK classes. For each method,
+ * this reports the number of instructions and basic blocks, the number of block visits per block needed to reach the
+ * fixpoint, and the time per verification. The classes can be given as arguments (internal names); otherwise a set
+ * of large JDK classes is used.
+ * <p>
+ * Afterwards, this measures the incremental verification after an edit. In each method, an instruction near the middle
+ * is replaced with the same instruction again, and the code is verified again. This reports the number of blocks that
+ * were revisited per edit, and the time per edit compared to a full verification.
+ * <p>
+ * Lastly, this measures the verification of broken code, where every <code>ALOAD</code> is swapped with an
+ * <code>ILOAD</code> (and vice versa), so that most methods are riddled with type errors. This reports the number of
+ * errors per verification, and the time per verification compared to that of the valid code.
+ * @author Henry Wang
+ */
+public class VerifierBenchmark
+{
+    private static final int[] BRANCH_COUNTS = {64, 512, 2048};
+    private static final int SWITCH_EVERY = 16;
+
+    private static final int WARMUP_ROUNDS = 10;
+    private static final int MEASURE_ROUNDS = 20;
+    private static final int EDIT_ROUNDS = 20;
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * A parsed method that is ready to be verified.
+     */
+    private static class ParsedMethod
+    {
+        private final MethodContext mth;
+        private final CodeParser parser;
+        private final ArrayList<CodeStatement> code;
+        private final int instCount;
+        private final int editLine;
+        private final boolean broken;
+
+        /**
+         * Constructs a parsed method.
+         * @param mth the method context.
+         * @param parser the parser that has parsed the code of the method.
+         * @param broken whether if the code is expected to have errors.
+         */
+        public ParsedMethod(MethodContext mth, CodeParser parser, boolean broken)
+        {
+            this.mth = mth;
+            this.parser = parser;
+            this.broken = broken;
+            code = new ArrayList<>();
+            int insts = 0;
+            int edit = -1;
+            int middle = parser.getLineCount() / 2;
+            for (int i = 1; i <= parser.getLineCount(); i++)
+            {
+                CodeStatement s = parser.getStatement(i);
+                code.add(s);
+                if (s instanceof InstStatement)
+                {
+                    insts++;
+                    InstStatement inst = (InstStatement)s;
+                    if (i >= middle && edit == -1 && inst.getArgSize() == 0 && !ControlFlowGraph.isTerminal(inst))
+                        edit = i;
+                }
+            }
+            instCount = insts;
+            editLine = edit;
+        }
+
+        /**
+         * Replaces the edited line with the same instruction, and verifies the code incrementally.
+         * @return the time taken to verify, in nanoseconds.
+         */
+        public long edit()
+        {
+            parser.modifyLine(editLine, parser.getLine(editLine));
+            if (!parser.reparse(false) || !parser.resolveSymbols())
+                throw new IllegalStateException("Cannot parse method: " + mth);
+
+            long start = System.nanoTime();
+            if (!parser.verifyStack())
+                throw new IllegalStateException("Verification failed: " + mth);
+            return System.nanoTime() - start;
+        }
+
+        /**
+         * Verifies this method once.
+         * @return the verifier used.
+         */
+        public FrameVerifier verify()
+        {
+            FrameVerifier verifier = new FrameVerifier(mth, code);
+            if (!verifier.verify(new ErrorLogger()
+            {
+                @Override
+                public void logError(String description, Range highlight)
+                {
+
+                }
+
+                @Override
+                public void logWarning(String description, Range highlight)
+                {
+
+                }
+            }) && !broken)
+                throw new IllegalStateException("Verification failed: " + mth);
+            return verifier;
+        }
+    }
+
+    public static void main(String[] args)
+    {
+        out.printf("%-48s %8s %8s %10s %12s %10s%n", "Method", "insts", "blocks", "visits/bl", "us/verify",
+                "ns/inst");
+
+        ArrayList<String> titles = new ArrayList<>();
+        ArrayList<ParsedMethod[]> groups = new ArrayList<>();
+        ArrayList<ParsedMethod[]> brokenGroups = new ArrayList<>();
+        ClassContext generated = ClassContext.loadContext(new ClassReader(generateClass()));
+        for (MethodContext mth : generated.getMethods())
+        {
+            ParsedMethod parsed = parse(mth, false);
+            if (parsed != null)
+            {
+                measure(mth.getName(), parsed);
+                titles.add(mth.getName());
+                groups.add(new ParsedMethod[] {parsed});
+                brokenGroups.add(new ParsedMethod[] {parse(mth, true)});
+            }
+        }
+
+        for (ClassContext ctx : Benchmarks.findClasses(args))
+        {
+            String name = ctx.getName();
+            ArrayList<ParsedMethod> mths = new ArrayList<>();
+            ArrayList<ParsedMethod> brokenMths = new ArrayList<>();
+            for (MethodContext mth : ctx.getMethods())
+            {
+                if (Modifier.isAbstract(mth.getModifiers()) || Modifier.isNative(mth.getModifiers()))
+                    continue;
+                ParsedMethod parsed = parse(mth, false);
+                if (parsed != null)
+                {
+                    mths.add(parsed);
+                    brokenMths.add(parse(mth, true));
+                }
+            }
+            measure(name + " (" + mths.size() + " methods)", mths.toArray(new ParsedMethod[0]));
+            titles.add(name + " (" + mths.size() + " methods)");
+            groups.add(mths.toArray(new ParsedMethod[0]));
+            brokenGroups.add(brokenMths.toArray(new ParsedMethod[0]));
+        }
+
+        out.println();
+        out.printf("%-48s %8s %10s %12s %12s%n", "Method (incremental)", "blocks", "revisited", "us/edit",
+                "us/full");
+        for (int i = 0; i < groups.size(); i++)
+            measureEdits(titles.get(i), groups.get(i));
+
+        out.println();
+        out.printf("%-48s %10s %12s %12s%n", "Method (broken)", "errors", "us/verify", "us/valid");
+        for (int i = 0; i < groups.size(); i++)
+            measureBroken(titles.get(i), groups.get(i), brokenGroups.get(i));
+    }
+
+    /**
+     * Measures the verification time of a group of broken methods, and prints out one line of results. The time of
+     * verifying the valid methods is measured again for comparison.
+     * @param title the title of this group.
+     * @param valid the valid methods.
+     * @param broken the broken methods.
+     */
+    private static void measureBroken(String title, ParsedMethod[] valid, ParsedMethod[] broken)
+    {
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> verify(broken));
+
+        long errors = 0;
+        for (ParsedMethod mth : broken)
+            errors += mth.verify().getErrors().size();
+
+        double brokenTime = Benchmarks.time(MEASURE_ROUNDS, () -> verify(broken));
+        double validTime = Benchmarks.time(MEASURE_ROUNDS, () -> verify(valid));
+
+        out.printf("%-48s %10d %12.1f %12.1f%n", title, errors, brokenTime / NANOS_PER_MICRO,
+                validTime / NANOS_PER_MICRO);
+    }
+
+    /**
+     * Measures the incremental verification time of a group of methods after an edit, and prints out one line of
+     * results. The time of a full verification (with a new verifier) is measured again for comparison.
+     * @param title the title of this group.
+     * @param mths the methods to edit.
+     */
+    private static void measureEdits(String title, ParsedMethod... mths)
+    {
+        ArrayList<ParsedMethod> edited = new ArrayList<>();
+        for (ParsedMethod mth : mths)
+        {
+            if (mth.editLine != -1)
+            {
+                mth.parser.verifyStack();
+                edited.add(mth);
+            }
+        }
+
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> {
+            for (ParsedMethod mth : edited)
+                mth.edit();
+        });
+
+        long blocks = 0;
+        long revisited = 0;
+        long editTime = 0;
+        for (int i = 0; i < EDIT_ROUNDS; i++)
+        {
+            for (ParsedMethod mth : edited)
+            {
+                editTime += mth.edit();
+                blocks += mth.parser.getFlowGraph().getBlockCount();
+                revisited += mth.parser.getVerifier().getBlocksVisited();
+            }
+        }
+
+        ParsedMethod[] full = edited.toArray(new ParsedMethod[0]);
+        double fullTime = Benchmarks.time(EDIT_ROUNDS, () -> verify(full));
+
+        out.printf("%-48s %8d %10.1f %12.1f %12.1f%n", title, blocks / EDIT_ROUNDS,
+                (double)revisited / EDIT_ROUNDS, (double)editTime / EDIT_ROUNDS / NANOS_PER_MICRO,
+                fullTime / NANOS_PER_MICRO);
+    }
+
+    /**
+     * Measures the verification time of a group of methods, and prints out one line of results.
+     * @param title the title of this group.
+     * @param mths the methods to verify.
+     */
+    private static void measure(String title, ParsedMethod... mths)
+    {
+        Benchmarks.repeat(WARMUP_ROUNDS, () -> verify(mths));
+
+        long insts = 0;
+        long blocks = 0;
+        long visits = 0;
+        for (ParsedMethod mth : mths)
+        {
+            FrameVerifier verifier = mth.verify();
+            insts += mth.instCount;
+            blocks += verifier.getGraph().getBlockCount();
+            visits += verifier.getBlocksVisited();
+        }
+
+        double elapsed = Benchmarks.time(MEASURE_ROUNDS, () -> verify(mths));
+
+        out.printf("%-48s %8d %8d %10.2f %12.1f %10.1f%n", title, insts, blocks, (double)visits / blocks,
+                elapsed / NANOS_PER_MICRO, elapsed / insts);
+    }
+
+    /**
+     * Verifies a group of methods once.
+     * @param mths the methods to verify.
+     */
+    private static void verify(ParsedMethod... mths)
+    {
+        for (ParsedMethod mth : mths)
+            mth.verify();
+    }
+
+    /**
+     * Parses the code of a method.
+     * @param mth the method to parse.
+     * @param broken whether to break the code by swapping every <code>ALOAD</code> with an <code>ILOAD</code>.
+     * @return the parsed method, or null if the code fails to parse.
+     */
+    private static ParsedMethod parse(MethodContext mth, boolean broken)
+    {
+        CodeSymbols global = new CodeSymbols(null, mth.getOwner());
+        String code = mth.readCode(global, true);
+        if (broken)
+        {
+            code = code.replace("\n  ALOAD ", "\n  #LOAD ").replace("\n  ILOAD ", "\n  ALOAD ")
+                    .replace("\n  #LOAD ", "\n  ILOAD ");
+        }
+
+        CodeParser parser = new CodeParser(global, mth, code, NO_HIGHLIGHTS);
+        if (!parser.reparse(false) || !parser.resolveSymbols())
+        {
+            out.println("Cannot parse method: " + mth);
+            return null;
+        }
+        return new ParsedMethod(mth, parser, broken);
+    }
+
+    /**
+     * Generates a class with one method for each of the branch counts.
+     * @return the class file data.
+     */
+    private static byte[] generateClass()
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, "bench/Branchy", null, "java/lang/Object", null);
+        for (int branches : BRANCH_COUNTS)
+            generateMethod(cw, "branches" + branches, branches);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Generates a method with the specified number of branches. Each branch assigns either a string or an integer to
+     * the same local variable, and every few branches there is a table switch. All the branches are within a loop.
+     * @param cw the class writer.
+     * @param name the name of the method.
+     * @param branches the number of branches.
+     */
+    private static void generateMethod(ClassWriter cw, String name, int branches)
+    {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, name, "(I[Ljava/lang/Object;)Ljava/lang/Object;",
+                null, null);
+        mv.visitCode();
+        mv.visitInsn(ACONST_NULL);
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, 3);
+
+        Label loop = new Label();
+        mv.visitLabel(loop);
+        for (int k = 0; k < branches; k++)
+        {
+            Label other = new Label();
+            Label join = new Label();
+            mv.visitVarInsn(ILOAD, 0);
+            mv.visitLdcInsn(k);
+            mv.visitInsn(IAND);
+            mv.visitJumpInsn(IFEQ, other);
+            mv.visitLdcInsn("branch" + k);
+            mv.visitVarInsn(ASTORE, 2);
+            mv.visitJumpInsn(GOTO, join);
+            mv.visitLabel(other);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ILOAD, 3);
+            mv.visitInsn(AALOAD);
+            mv.visitTypeInsn(CHECKCAST, "java/lang/Integer");
+            mv.visitVarInsn(ASTORE, 2);
+            mv.visitLabel(join);
+
+            if (k % SWITCH_EVERY == SWITCH_EVERY - 1)
+            {
+                Label[] cases = {new Label(), new Label(), new Label()};
+                Label end = new Label();
+                mv.visitVarInsn(ILOAD, 3);
+                mv.visitTableSwitchInsn(0, cases.length - 1, end, cases);
+                for (int c = 0; c < cases.length; c++)
+                {
+                    mv.visitLabel(cases[c]);
+                    mv.visitLdcInsn((long)c);
+                    mv.visitVarInsn(LSTORE, 4);
+                    mv.visitJumpInsn(GOTO, end);
+                }
+                mv.visitLabel(end);
+            }
+        }
+        mv.visitIincInsn(3, 1);
+        mv.visitVarInsn(ILOAD, 3);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitJumpInsn(IF_ICMPLT, loop);
+
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+}
@@ -0,0 +1,363 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.highlight.TagType;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.*;
+
+@SuppressWarnings("JavaDoc")
+public class AssemblerTest
+{
+    private static final String CLASS_NAME = "asmtest/TryCatch";
+    private static final String COPY_CLASS_NAME = "asmtest/CopyThrough";
+    private static final String FRAMES_CLASS_NAME = "asmtest/Frames";
+    private static final String CHOP_CLASS_NAME = "asmtest/Chop";
+    private static final String REMAPPED_CLASS_NAME = "asmtest/ChopRemapped";
+    private static final int LINE_NUMBER = 42;
+
+    private static class DefiningLoader extends ClassLoader
+    {
+        public Class<?> define(String name, byte[] data)
+        {
+            return defineClass(name, data, 0, data.length);
+        }
+    }
+
+    @Test
+    public void testReadCodeHandles() throws Exception
+    {
+        ClassContext ctx = ClassContext.findContext("java/util/stream/Collectors");
+        MethodContext mth = ctx.findMethod("toList", parseTypeSig("()Ljava/util/stream/Collector;"), false);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+
+        String code = mth.readCode(global);
+        Matcher handle = Pattern.compile("&(\\w+)").matcher(code);
+        assertTrue(code, handle.find());
+        assertFalse(global.containsHandle(handle.group(1)));
+
+        assertEquals(code, mth.readCode(global, true));
+        assertTrue(global.containsHandle(handle.group(1)));
+    }
+
+    @Test
+    public void testRoundTripTryCatch() throws Exception
+    {
+        ClassContext ctx = ClassContext.loadContext(new ClassReader(generateClass()));
+        MethodContext mth = ctx.findMethod("parse", parseTypeSig("(Ljava/lang/String;)I"), false);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+
+        String code = mth.readCode(global, true);
+        assertTrue(code, code.contains("\n  $catch L0, L1, L2, java/lang/NumberFormatException\n"));
+
+        List<Tag> errors = new ArrayList<>();
+        CodeParser parser = new CodeParser(global, mth, code, new Highlighter()
+        {
+            @Override
+            public void insertTag(Tag tag)
+            {
+                if (tag.getType() == TagType.ERROR)
+                    errors.add(tag);
+            }
+
+            @Override
+            public void insertSyntax(Syntax syn)
+            {
+
+            }
+        });
+        assertTrue(errors.toString(), parser.reparse(false));
+        assertTrue(errors.toString(), parser.resolveSymbols());
+
+        mth.setCode(parser);
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        ctx.writeClass(writer, V1_6);
+
+        Class<?> cls = new DefiningLoader().define(CLASS_NAME.replace('/', '.'), writer.toByteArray());
+        Method parse = cls.getMethod("parse", String.class);
+        assertEquals(123, parse.invoke(null, "123"));
+        assertEquals(-1, parse.invoke(null, "abc"));
+    }
+
+    @Test
+    public void testWriteFrames() throws Exception
+    {
+        ClassContext ctx = ClassContext.loadContext(new ClassReader(generateClass(FRAMES_CLASS_NAME, false)));
+        MethodContext mth = ctx.findMethod("parse", parseTypeSig("(Ljava/lang/String;)I"), false);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), new Highlighter()
+        {
+            @Override
+            public void insertTag(Tag tag)
+            {
+
+            }
+
+            @Override
+            public void insertSyntax(Syntax syn)
+            {
+
+            }
+        });
+        assertTrue(parser.reparse(false));
+        assertTrue(parser.resolveSymbols());
+        assertTrue(parser.verifyStack());
+        mth.setCode(parser);
+
+        //Neither the maxs nor the frames are computed by ASM, so the JVM verifies our own.
+        ClassWriter writer = new ClassWriter(0);
+        ctx.writeClass(writer, V1_7);
+        byte[] written = writer.toByteArray();
+
+        List<Integer> frames = new ArrayList<>();
+        new ClassReader(written).accept(new ClassVisitor(ASM5)
+        {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions)
+            {
+                if (!name.equals("parse"))
+                    return null;
+                return new MethodVisitor(ASM5)
+                {
+                    @Override
+                    public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack)
+                    {
+                        frames.add(type);
+                    }
+                };
+            }
+        }, 0);
+        assertEquals(Collections.singletonList(F_SAME1), frames);
+
+        Class<?> cls = new DefiningLoader().define(FRAMES_CLASS_NAME.replace('/', '.'), written);
+        Method parse = cls.getMethod("parse", String.class);
+        assertEquals(123, parse.invoke(null, "123"));
+        assertEquals(-1, parse.invoke(null, "abc"));
+    }
+
+    @Test
+    public void testWriteFramesRemapped() throws Exception
+    {
+        ClassContext ctx = ClassContext.loadContext(new ClassReader(generateChopClass()));
+        MethodContext mth = ctx.findMethod("chop", parseTypeSig("(I)I"), false);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), new Highlighter()
+        {
+            @Override
+            public void insertTag(Tag tag)
+            {
+
+            }
+
+            @Override
+            public void insertSyntax(Syntax syn)
+            {
+
+            }
+        });
+        assertTrue(parser.reparse(false));
+        assertTrue(parser.resolveSymbols());
+        assertTrue(parser.verifyStack());
+        mth.setCode(parser);
+
+        //Adapters read every local type of a frame, including the ones dropped by a chop frame.
+        ClassWriter writer = new ClassWriter(0);
+        ctx.writeClass(new ClassRemapper(writer, new SimpleRemapper(CHOP_CLASS_NAME, REMAPPED_CLASS_NAME)), V1_7);
+        byte[] written = writer.toByteArray();
+
+        List<Integer> frames = new ArrayList<>();
+        new ClassReader(written).accept(new ClassVisitor(ASM5)
+        {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions)
+            {
+                if (!name.equals("chop"))
+                    return null;
+                return new MethodVisitor(ASM5)
+                {
+                    @Override
+                    public void visitFrame(int type, int nLocal, Object[] local, int nStack, Object[] stack)
+                    {
+                        frames.add(type);
+                    }
+                };
+            }
+        }, 0);
+        assertTrue(frames.toString(), frames.contains(F_CHOP));
+
+        Class<?> cls = new DefiningLoader().define(REMAPPED_CLASS_NAME.replace('/', '.'), written);
+        Method chop = cls.getMethod("chop", int.class);
+        assertEquals(5, chop.invoke(null, 5));
+        assertEquals(0, chop.invoke(null, 0));
+        assertEquals(-3, chop.invoke(null, -3));
+    }
+
+    @Test
+    public void testCopyThrough() throws Exception
+    {
+        byte[] original = generateClass(COPY_CLASS_NAME, true);
+        ClassContext ctx = ClassContext.loadContext(new ClassReader(original));
+        assertArrayEquals(original, ctx.writeCopyThrough(0));
+
+        MethodContext mth = ctx.findMethod("parse", parseTypeSig("(Ljava/lang/String;)I"), false);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        String code = mth.readCode(global, true).replace("ICONST_M1", "ICONST_2");
+        CodeParser parser = new CodeParser(global, mth, code, new Highlighter()
+        {
+            @Override
+            public void insertTag(Tag tag)
+            {
+
+            }
+
+            @Override
+            public void insertSyntax(Syntax syn)
+            {
+
+            }
+        });
+        assertTrue(parser.reparse(false));
+        assertTrue(parser.resolveSymbols());
+        mth.setCode(parser);
+
+        //The method body is a snapshot of the parsed code, so later edits to the parser do not change it, and it can
+        //be written more than once.
+        parser.modifyLine(1, "  ICONST_3");
+        byte[] written = ctx.writeCopyThrough(ClassWriter.COMPUTE_MAXS);
+        assertArrayEquals(written, ctx.writeCopyThrough(ClassWriter.COMPUTE_MAXS));
+        Class<?> cls = new DefiningLoader().define(COPY_CLASS_NAME.replace('/', '.'), written);
+        Method parse = cls.getMethod("parse", String.class);
+        assertEquals(2, parse.invoke(null, "abc"));
+
+        //The untouched method is copied, so it still has its debug information.
+        List<Integer> lines = new ArrayList<>();
+        new ClassReader(written).accept(new ClassVisitor(ASM5)
+        {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                             String[] exceptions)
+            {
+                if (!name.equals("twice"))
+                    return null;
+                return new MethodVisitor(ASM5)
+                {
+                    @Override
+                    public void visitLineNumber(int line, Label start)
+                    {
+                        lines.add(line);
+                    }
+                };
+            }
+        }, 0);
+        assertEquals(Collections.singletonList(LINE_NUMBER), lines);
+    }
+
+    private static byte[] generateChopClass()
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_7, ACC_PUBLIC, CHOP_CLASS_NAME, null, "java/lang/Object", null);
+
+        //Local 1 is an int on one path and a float on the other, so it is dropped at the join.
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "chop", "(I)I", null, null);
+        Label notPositive = new Label();
+        Label join = new Label();
+        mv.visitCode();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitVarInsn(ISTORE, 1);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitJumpInsn(IFLE, notPositive);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(notPositive);
+        mv.visitFrame(F_APPEND, 1, new Object[]{INTEGER}, 0, null);
+        mv.visitInsn(FCONST_0);
+        mv.visitVarInsn(FSTORE, 1);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitJumpInsn(IFEQ, join);
+        mv.visitInsn(ICONST_1);
+        mv.visitVarInsn(ISTORE, 1);
+        mv.visitLabel(join);
+        mv.visitFrame(F_CHOP, 1, null, 0, null);
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static byte[] generateClass()
+    {
+        return generateClass(CLASS_NAME, false);
+    }
+
+    private static byte[] generateClass(String name, boolean withDebug)
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_6, ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        if (withDebug)
+        {
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "twice", "(I)I", null, null);
+            Label start = new Label();
+            mv.visitCode();
+            mv.visitLabel(start);
+            mv.visitLineNumber(LINE_NUMBER, start);
+            mv.visitVarInsn(ILOAD, 0);
+            mv.visitInsn(ICONST_2);
+            mv.visitInsn(IMUL);
+            mv.visitInsn(IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "parse", "(Ljava/lang/String;)I", null, null);
+        Label start = new Label();
+        Label end = new Label();
+        Label handler = new Label();
+        mv.visitCode();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/NumberFormatException");
+        mv.visitLabel(start);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "parseInt", "(Ljava/lang/String;)I", false);
+        mv.visitLabel(end);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(handler);
+        mv.visitInsn(POP);
+        mv.visitInsn(ICONST_M1);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
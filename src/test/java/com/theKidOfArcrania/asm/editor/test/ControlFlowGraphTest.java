@@ -0,0 +1,336 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.ErrorLogger;
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.ControlFlowGraph;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameVerifier;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
+import static org.junit.Assert.*;
+
+@SuppressWarnings("JavaDoc")
+public class ControlFlowGraphTest
+{
+    private static final ClassContext classContext;
+    static
+    {
+        ClassContext ctx = ClassContext.findContext("FlowGraphTestClass");
+        classContext = ctx == null ? ClassContext.createContext("FlowGraphTestClass", false) : ctx;
+    }
+
+    private static final Highlighter NO_HIGHLIGHTS = new Highlighter()
+    {
+        @Override
+        public void insertTag(Tag tag)
+        {
+
+        }
+
+        @Override
+        public void insertSyntax(Syntax syn)
+        {
+
+        }
+    };
+
+    private static final String[] EDITED_CLASSES = {"java/util/HashMap", "java/util/regex/Pattern"};
+    private static final int EDITS_PER_METHOD = 40;
+
+    @Test
+    public void testBranches()
+    {
+        CodeParser parser = parse("branches", "(Z)I",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  ICONST_1",
+                "  GOTO L1",
+                "L0:",
+                "  ICONST_2",
+                "L1:",
+                "  IRETURN");
+        ControlFlowGraph graph = parser.getFlowGraph();
+        assertEquals(4, graph.getBlockCount());
+        assertArrayEquals(new int[] {1, 2}, graph.getSuccessors(0));
+        assertArrayEquals(new int[] {3}, graph.getSuccessors(1));
+        assertArrayEquals(new int[] {3}, graph.getSuccessors(2));
+        assertArrayEquals(new int[0], graph.getSuccessors(3));
+        assertArrayEquals(new int[] {1, 2}, sorted(graph.getPredecessors(3)));
+        assertEquals(5, graph.getBlockStart(2));
+        assertFalse(graph.exits(3));
+    }
+
+    @Test
+    public void testSwitches()
+    {
+        CodeParser parser = parse("switches", "(I)V",
+                "  ILOAD 0",
+                "  TABLESWITCH 0, 1, L2, L0, L1",
+                "L0:",
+                "  ILOAD 0",
+                "  LOOKUPSWITCH L2, 5, L1, 6, L2",
+                "L1:",
+                "  RETURN",
+                "L2:",
+                "  RETURN");
+        ControlFlowGraph graph = parser.getFlowGraph();
+        assertEquals(4, graph.getBlockCount());
+        assertArrayEquals(new int[] {1, 2, 3}, graph.getSuccessors(0));
+        assertArrayEquals(new int[] {2, 3}, graph.getSuccessors(1));
+        assertArrayEquals(new int[] {0, 1}, sorted(graph.getPredecessors(3)));
+    }
+
+    @Test
+    public void testHandlers()
+    {
+        CodeParser parser = parse("handlers", "(Ljava/lang/String;)I",
+                "  $catch L0, L1, L2, java/lang/NumberFormatException",
+                "L0:",
+                "  ALOAD 0",
+                "  INVOKESTATIC java/lang/Integer, parseInt, @(Ljava/lang/String;)I",
+                "L1:",
+                "  IRETURN",
+                "L2:",
+                "  POP",
+                "  ICONST_M1",
+                "  IRETURN");
+        ControlFlowGraph graph = parser.getFlowGraph();
+        assertEquals(3, graph.getBlockCount());
+        assertArrayEquals(new int[] {0}, graph.getHandlers(0));
+        assertArrayEquals(new int[0], graph.getHandlers(1));
+        assertEquals(2, graph.getHandlerBlock(0));
+        assertEquals(parseTypeSig("Ljava/lang/NumberFormatException;"), graph.getHandlerType(0));
+    }
+
+    @Test
+    public void testExits()
+    {
+        CodeParser parser = parse("exits", "(Z)V",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  RETURN",
+                "L0:");
+        ControlFlowGraph graph = parser.getFlowGraph();
+        assertTrue(graph.exits(0));
+        assertFalse(graph.exits(1));
+    }
+
+    @Test
+    public void testLocalUpdate()
+    {
+        CodeParser parser = parse("localUpdate", "(Z)I",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  ICONST_1",
+                "  GOTO L1",
+                "L0:",
+                "  ICONST_2",
+                "L1:",
+                "  IRETURN");
+        ControlFlowGraph graph = parser.getFlowGraph();
+
+        //Editing a line within a block only splits that block again.
+        parser.insertLine(7, "  NOP");
+        reverify(parser);
+        assertEquals(1, graph.getBlocksRebuilt());
+        assertSameGraph(new ControlFlowGraph(statements(parser)), graph);
+
+        //Removing the only jump to a label merges its block into the previous block.
+        parser.modifyLine(4, "  NOP");
+        reverify(parser);
+        assertEquals(3, graph.getBlockCount());
+        assertSameGraph(new ControlFlowGraph(statements(parser)), graph);
+
+        reverify(parser);
+        assertEquals(0, graph.getBlocksRebuilt());
+    }
+
+    @Test
+    public void testIncrementalUpdates()
+    {
+        Random rand = new Random(42);
+        long rebuilt = 0;
+        long visited = 0;
+        long total = 0;
+        for (String name : EDITED_CLASSES)
+        {
+            ClassContext ctx = ClassContext.findContext(name);
+            CodeSymbols global = new CodeSymbols(null, ctx);
+            for (MethodContext mth : ctx.getMethods())
+            {
+                if (Modifier.isAbstract(mth.getModifiers()) || Modifier.isNative(mth.getModifiers()))
+                    continue;
+
+                CodeParser parser = new CodeParser(global, mth, mth.readCode(global, true), NO_HIGHLIGHTS);
+                if (!parser.reparse(false) || !parser.resolveSymbols())
+                    continue;
+                parser.verifyStack();
+                ControlFlowGraph graph = parser.getFlowGraph();
+
+                for (int i = 0; i < EDITS_PER_METHOD; i++)
+                {
+                    edit(parser, rand);
+                    if (!parser.reparse(false) || !parser.resolveSymbols())
+                        continue;
+                    parser.verifyStack();
+                    assertSameGraph(new ControlFlowGraph(statements(parser)), graph);
+                    assertSameFrames(new FrameVerifier(mth, statements(parser)), parser.getVerifier());
+                    rebuilt += graph.getBlocksRebuilt();
+                    visited += parser.getVerifier().getBlocksVisited();
+                    total += graph.getBlockCount();
+                }
+            }
+        }
+        assertTrue(rebuilt + " of " + total, rebuilt * 4 < total);
+        assertTrue(visited + " of " + total, visited * 2 < total);
+    }
+
+    private static void edit(CodeParser parser, Random rand)
+    {
+        int lines = parser.getLineCount();
+        if (lines < 3)
+            return;
+
+        int line = 2 + rand.nextInt(lines - 1);
+        String text = parser.getLine(line);
+        switch (rand.nextInt(5))
+        {
+            case 0:
+                if (!text.trim().startsWith("$") && !text.endsWith(":"))
+                    parser.deleteLine(line);
+                break;
+            case 1:
+                String copy = parser.getLine(2 + rand.nextInt(lines - 1));
+                if (!copy.endsWith(":"))
+                    parser.insertLine(line, copy);
+                break;
+            case 2:
+                if (text.endsWith(":"))
+                {
+                    parser.deleteLine(line);
+                    parser.insertLine(2 + rand.nextInt(lines - 2), text);
+                }
+                break;
+            case 3:
+                String label = findLabel(parser, rand);
+                if (label != null && !text.endsWith(":") && !text.trim().startsWith("$"))
+                    parser.modifyLine(line, "  IFEQ " + label);
+                break;
+            default:
+                if (!text.endsWith(":") && !text.trim().startsWith("$"))
+                    parser.modifyLine(line, "  NOP");
+                break;
+        }
+    }
+
+    private static String findLabel(CodeParser parser, Random rand)
+    {
+        int lines = parser.getLineCount();
+        int start = 1 + rand.nextInt(lines);
+        for (int i = 0; i < lines; i++)
+        {
+            String text = parser.getLine((start + i) % lines + 1);
+            if (text.endsWith(":"))
+                return text.substring(0, text.length() - 1);
+        }
+        return null;
+    }
+
+    private static void assertSameGraph(ControlFlowGraph expected, ControlFlowGraph actual)
+    {
+        assertEquals(expected.getBlockCount(), actual.getBlockCount());
+        for (int i = 0; i < expected.getBlockCount(); i++)
+        {
+            String msg = "Block " + i;
+            assertEquals(msg, expected.getBlockStart(i), actual.getBlockStart(i));
+            assertEquals(msg, expected.getBlockEnd(i), actual.getBlockEnd(i));
+            assertArrayEquals(msg, expected.getSuccessors(i), actual.getSuccessors(i));
+            assertArrayEquals(msg, sorted(expected.getPredecessors(i)), sorted(actual.getPredecessors(i)));
+            assertArrayEquals(msg, expected.getHandlers(i), actual.getHandlers(i));
+            assertEquals(msg, expected.exits(i), actual.exits(i));
+        }
+        assertEquals(expected.getCatchCount(), actual.getCatchCount());
+        for (int i = 0; i < expected.getCatchCount(); i++)
+            assertEquals(expected.getHandlerBlock(i), actual.getHandlerBlock(i));
+    }
+
+    private static void assertSameFrames(FrameVerifier expected, FrameVerifier actual)
+    {
+        //Frames with inconsistent stack heights depend on the order that they flow in, so they are not compared.
+        List<String> errors = errors(expected);
+        if (errors.toString().contains("Inconsistent stack heights"))
+            return;
+        assertEquals(errors, errors(actual));
+        for (int i = 0; i < expected.getGraph().getBlockCount(); i++)
+            assertEquals("Block " + i, expected.getEntryFrame(i), actual.getEntryFrame(i));
+    }
+
+    private static List<String> errors(FrameVerifier verifier)
+    {
+        List<String> errors = new ArrayList<>();
+        verifier.verify(new ErrorLogger()
+        {
+            @Override
+            public void logError(String description, Range highlight)
+            {
+                errors.add(highlight + ": " + description);
+            }
+
+            @Override
+            public void logWarning(String description, Range highlight)
+            {
+
+            }
+        });
+        errors.sort(null);
+        return errors;
+    }
+
+    private static int[] sorted(int[] blocks)
+    {
+        int[] copy = blocks.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static List<CodeStatement> statements(CodeParser parser)
+    {
+        List<CodeStatement> code = new ArrayList<>();
+        for (int i = 1; i <= parser.getLineCount(); i++)
+            code.add(parser.getStatement(i));
+        return code;
+    }
+
+    private static void reverify(CodeParser parser)
+    {
+        assertTrue(parser.reparse(false));
+        assertTrue(parser.resolveSymbols());
+        parser.verifyStack();
+    }
+
+    private static CodeParser parse(String name, String sig, String... lines)
+    {
+        MethodContext mth = classContext.findMethod(name, parseTypeSig(sig), false);
+        if (mth == null)
+            mth = classContext.addMethod(Modifier.PUBLIC | Modifier.STATIC, name, parseTypeSig(sig));
+
+        CodeParser parser = new CodeParser(new CodeSymbols(null, classContext), mth, String.join("\n", lines),
+                NO_HIGHLIGHTS);
+        reverify(parser);
+        return parser;
+    }
+}
@@ -0,0 +1,79 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.ui.EditProfiler;
+import com.theKidOfArcrania.asm.editor.ui.EditProfiler.Edit;
+import com.theKidOfArcrania.asm.editor.ui.EditProfiler.Phase;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class EditProfilerTest
+{
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void testPhases() throws Exception
+    {
+        EditProfiler profiler = new EditProfiler(SLOW);
+        Edit edit = new Edit(1000);
+        edit.add(Phase.DEBOUNCE, 300);
+        edit.add(Phase.REPARSE, 200);
+        edit.add(Phase.REPARSE, 100);
+        assertFalse(edit.isFinished());
+        profiler.finish(edit, 2000);
+
+        assertTrue(edit.isFinished());
+        assertEquals(1000, edit.get(Phase.TOTAL));
+        assertEquals(300, edit.get(Phase.REPARSE));
+        assertEquals(1, profiler.getHistogram(Phase.TOTAL).getCount());
+        assertEquals(1000, profiler.getHistogram(Phase.TOTAL).getMax());
+        assertEquals(300, profiler.getHistogram(Phase.REPARSE).getMax());
+        assertEquals(1, profiler.getHistogram(Phase.VERIFY).getCount());
+        assertEquals(0, profiler.getHistogram(Phase.VERIFY).getMax());
+        assertTrue(profiler.getSlowEdits().isEmpty());
+    }
+
+    @Test
+    public void testSlowEdits() throws Exception
+    {
+        EditProfiler profiler = new EditProfiler(SLOW);
+        for (int i = 0; i < EditProfiler.SLOW_LOG_SIZE + 5; i++)
+        {
+            Edit edit = new Edit(0);
+            edit.setDocumentLines(i);
+            edit.touchLines(3);
+            edit.touchLines(2);
+            profiler.finish(edit, SLOW + i);
+        }
+        profiler.finish(new Edit(0), SLOW - 1);
+
+        List<Edit> slow = profiler.getSlowEdits();
+        assertEquals(EditProfiler.SLOW_LOG_SIZE, slow.size());
+        assertEquals(5, slow.get(0).getDocumentLines());
+        assertEquals(3, slow.get(0).getLinesTouched());
+        assertEquals(EditProfiler.SLOW_LOG_SIZE + 4, slow.get(slow.size() - 1).getDocumentLines());
+        assertEquals(EditProfiler.SLOW_LOG_SIZE + 6, profiler.getHistogram(Phase.TOTAL).getCount());
+    }
+
+    @Test
+    public void testReport() throws Exception
+    {
+        EditProfiler profiler = new EditProfiler(SLOW);
+        Edit edit = new Edit(0);
+        edit.setDocumentLines(100000);
+        profiler.finish(edit, SLOW * 2);
+
+        String report = profiler.getReport();
+        for (Phase phase : Phase.values())
+            assertTrue(report.contains(phase + ": n=1"));
+        assertTrue(report.contains("lines=100000"));
+
+        profiler.reset();
+        assertEquals(0, profiler.getHistogram(Phase.TOTAL).getCount());
+        assertTrue(profiler.getSlowEdits().isEmpty());
+    }
+}
@@ -0,0 +1,376 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.Highlighter;
+import com.theKidOfArcrania.asm.editor.code.highlight.Syntax;
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.highlight.TagType;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeParser;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.code.parsing.InstStatement;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameError;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameErrorCode;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameType;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.FrameVerifier;
+import com.theKidOfArcrania.asm.editor.code.parsing.frame.StackMapFrame;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.junit.Test;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.theKidOfArcrania.asm.editor.context.TypeSignature.parseTypeSig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("JavaDoc")
+public class FrameVerifierTest
+{
+    private static final ClassContext classContext;
+    static
+    {
+        ClassContext ctx = ClassContext.findContext("VerifierTestClass");
+        classContext = ctx == null ? ClassContext.createContext("VerifierTestClass", false) : ctx;
+    }
+
+    private List<String> errors;
+
+    @Test
+    public void testMergeBranches()
+    {
+        assertVerified(verify("mergeBranches", "(Z)Ljava/lang/String;",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  LDC \"yes\"",
+                "  GOTO L1",
+                "L0:",
+                "  ACONST_NULL",
+                "L1:",
+                "  INVOKEVIRTUAL java/lang/String, trim, @()Ljava/lang/String;",
+                "  ARETURN"));
+    }
+
+    @Test
+    public void testMergedTypeMismatch()
+    {
+        assertFalse(verify("mergedMismatch", "(Z)I",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  LDC \"yes\"",
+                "  ASTORE 1",
+                "  GOTO L1",
+                "L0:",
+                "  ICONST_0",
+                "  INVOKESTATIC java/lang/Integer, valueOf, @(I)Ljava/lang/Integer;",
+                "  ASTORE 1",
+                "L1:",
+                "  ALOAD 1",
+                "  INVOKEVIRTUAL java/lang/String, length, @()I",
+                "  IRETURN"));
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.toString(), errors.get(0).contains("Unable to convert"));
+    }
+
+    @Test
+    public void testInconsistentStack()
+    {
+        assertFalse(verify("inconsistentStack", "(Z)V",
+                "  ILOAD 0",
+                "  IFEQ L0",
+                "  ICONST_1",
+                "L0:",
+                "  RETURN"));
+        assertTrue(errors.toString(), errors.get(0).contains("Inconsistent stack heights"));
+    }
+
+    @Test
+    public void testLoop()
+    {
+        assertVerified(verify("loop", "(I)J",
+                "  LCONST_0",
+                "  LSTORE 1",
+                "  ICONST_0",
+                "  ISTORE 3",
+                "L0:",
+                "  ILOAD 3",
+                "  ILOAD 0",
+                "  IF_ICMPGE L1",
+                "  LLOAD 1",
+                "  ILOAD 3",
+                "  I2L",
+                "  LADD",
+                "  LSTORE 1",
+                "  IINC 3, 1",
+                "  GOTO L0",
+                "L1:",
+                "  LLOAD 1",
+                "  LRETURN"));
+    }
+
+    @Test
+    public void testLoopCarriedVariable()
+    {
+        //Variable 1 only holds an integer after the first iteration, so it is TOP at the loop head.
+        assertFalse(verify("loopCarried", "(I)I",
+                "L0:",
+                "  ILOAD 0",
+                "  IFEQ L1",
+                "  ICONST_0",
+                "  ISTORE 1",
+                "  IINC 0, -1",
+                "  GOTO L0",
+                "L1:",
+                "  ILOAD 1",
+                "  IRETURN"));
+        assertEquals(errors.toString(), 1, errors.size());
+    }
+
+    @Test
+    public void testExceptionHandler()
+    {
+        assertVerified(verify("handler", "(Ljava/lang/String;)I",
+                "  $catch L0, L1, L2, java/lang/NumberFormatException",
+                "L0:",
+                "  ALOAD 0",
+                "  INVOKESTATIC java/lang/Integer, parseInt, @(Ljava/lang/String;)I",
+                "L1:",
+                "  IRETURN",
+                "L2:",
+                "  INVOKEVIRTUAL java/lang/NumberFormatException, getMessage, @()Ljava/lang/String;",
+                "  INVOKEVIRTUAL java/lang/String, length, @()I",
+                "  IRETURN"));
+    }
+
+    @Test
+    public void testHandlerLocals()
+    {
+        //Variable 1 is not yet assigned at the start of the try block, so it cannot be used in the handler.
+        assertFalse(verify("handlerLocals", "(Ljava/lang/String;)I",
+                "  $catch L0, L1, L2",
+                "L0:",
+                "  ALOAD 0",
+                "  INVOKESTATIC java/lang/Integer, parseInt, @(Ljava/lang/String;)I",
+                "  ISTORE 1",
+                "  ILOAD 1",
+                "L1:",
+                "  IRETURN",
+                "L2:",
+                "  POP",
+                "  ILOAD 1",
+                "  IRETURN"));
+        assertEquals(errors.toString(), 1, errors.size());
+    }
+
+    @Test
+    public void testConstructor()
+    {
+        assertVerified(verify("<init>", "(Ljava/lang/Object;)V",
+                "  ALOAD 0",
+                "  INVOKESPECIAL java/lang/Object, <init>, @()V",
+                "  RETURN"));
+    }
+
+    @Test
+    public void testFallOffEnd()
+    {
+        assertFalse(verify("fallOff", "()V",
+                "  ICONST_0",
+                "  POP"));
+        assertTrue(errors.toString(), errors.get(0).contains("falls off"));
+    }
+
+    @Test
+    public void testIncrementalVerify()
+    {
+        String[] lines = new String[40];
+        for (int i = 0; i < lines.length; i += 4)
+        {
+            lines[i] = "  ILOAD 0";
+            lines[i + 1] = "  IFEQ L" + i;
+            lines[i + 2] = "  IINC 0, 1";
+            lines[i + 3] = "L" + i + ":";
+        }
+        lines = Arrays.copyOf(lines, lines.length + 2);
+        lines[lines.length - 2] = "  ILOAD 0";
+        lines[lines.length - 1] = "  IRETURN";
+
+        CodeParser parser = parse("incremental", "(I)I", lines);
+        assertTrue(errors.toString(), parser.verifyStack());
+        FrameVerifier verifier = parser.getVerifier();
+        int blocks = parser.getFlowGraph().getBlockCount();
+        assertEquals(blocks, verifier.getBlocksVisited());
+
+        //Only the edited block is revisited, since its exit frame is unchanged.
+        parser.modifyLine(35, "  IINC 0, 2");
+        assertTrue(errors.toString(), reverify(parser));
+        assertEquals(1, verifier.getBlocksVisited());
+
+        //The errors stay reported without interpreting anything again.
+        parser.modifyLine(37, "  FLOAD 0");
+        assertFalse(reverify(parser));
+        List<String> reported = new ArrayList<>(errors);
+        assertFalse(reverify(parser));
+        assertEquals(0, verifier.getBlocksVisited());
+        assertEquals(reported, errors);
+
+        parser.modifyLine(37, "  ILOAD 0");
+        assertTrue(errors.toString(), reverify(parser));
+    }
+
+    @Test
+    public void testIncrementalLoop()
+    {
+        CodeParser parser = parse("incrementalLoop", "()I",
+                "  ICONST_0",
+                "  ISTORE 0",
+                "L0:",
+                "  ILOAD 0",
+                "  IFEQ L1",
+                "  FCONST_0",
+                "  FSTORE 0",
+                "  GOTO L0",
+                "L1:",
+                "  ICONST_0",
+                "  IRETURN");
+        assertFalse(parser.verifyStack());
+        assertEquals(errors.toString(), 1, errors.size());
+
+        //Removing the store fixes the loop, even though the cached frame at the loop head still has TOP.
+        parser.modifyLine(6, "  NOP");
+        parser.modifyLine(7, "  NOP");
+        assertTrue(errors.toString(), reverify(parser));
+    }
+
+    @Test
+    public void testFrameSnapshots()
+    {
+        CodeParser parser = parse("snapshots", "(I)J",
+                "  ILOAD 0",
+                "  I2L",
+                "  LSTORE 1",
+                "L0:",
+                "  LLOAD 1",
+                "  LRETURN");
+        assertTrue(errors.toString(), parser.verifyStack());
+
+        StackMapFrame first = parser.getFrame(1);
+        assertEquals(0, first.getStackSize());
+        assertEquals(1, first.getVarCount());
+        assertEquals(FrameType.INTEGER, parser.getFrame(2).getStackElement(0).getType());
+        assertEquals(2, parser.getFrame(3).getStackSize());
+        assertEquals(FrameType.LONG, parser.getFrame(3).getStackElement(1).getType());
+
+        //Later stores do not show up in the earlier snapshots.
+        assertEquals(1, parser.getFrame(3).getVarCount());
+        assertEquals(FrameType.LONG, parser.getFrame(5).getVar(1).getType());
+        assertEquals(parser.getFrame(5), parser.getFrame(4));
+        assertEquals(0, parser.getFrame(5).getStackSize());
+
+        //Snapshots are independent copies, even though they share their elements.
+        StackMapFrame copy = first.copy();
+        copy.pushVar();
+        assertEquals(1, first.getVarCount());
+        assertEquals(2, copy.getVarCount());
+    }
+
+    @Test
+    public void testErrorRecords()
+    {
+        CodeParser parser = parse("errorRecords", "()I",
+                "  FCONST_0",
+                "  IRETURN");
+        assertFalse(parser.verifyStack());
+
+        List<FrameError> records = parser.getVerifier().getErrors();
+        assertEquals(1, records.size());
+        FrameError error = records.get(0);
+        assertEquals(FrameErrorCode.UNEXPECTED_TYPE, error.getCode());
+        assertEquals(FrameType.INTEGER, error.getOperand(0));
+        assertEquals(FrameType.FLOAT, error.getOperand(1));
+        assertEquals(parser.getStatement(2), error.getInstruction());
+        assertEquals(errors, Arrays.asList(error.getMessage()));
+    }
+
+    @Test
+    public void testResolvedSymbolCache()
+    {
+        ClassContext ctx = ClassContext.findContext("VerifierCacheClass");
+        if (ctx == null)
+            ctx = ClassContext.createContext("VerifierCacheClass", false);
+        MethodContext callee = ctx.findMethod("callee", parseTypeSig("()I"), false);
+        if (callee == null)
+            callee = ctx.addMethod(Modifier.PUBLIC | Modifier.STATIC, "callee", parseTypeSig("()I"));
+
+        CodeParser parser = parse("resolvedCache", "()I",
+                "  INVOKESTATIC VerifierCacheClass, callee, @()I",
+                "  IRETURN");
+        assertTrue(errors.toString(), parser.verifyStack());
+
+        InstStatement inst = (InstStatement)parser.getStatement(1);
+        assertSame(callee, inst.getResolvedMethod());
+        assertSame(ctx, inst.getArgClass(0));
+        assertSame(inst.getArgSignature(2), inst.getArgSignature(2));
+
+        //Modifying the referenced class invalidates the cached method.
+        ctx.removeMethod(callee);
+        assertNull(inst.getResolvedMethod());
+        assertFalse(parser.resolveSymbols());
+
+        callee = ctx.addMethod(Modifier.PUBLIC | Modifier.STATIC, "callee", parseTypeSig("()I"));
+        assertSame(callee, inst.getResolvedMethod());
+    }
+
+    private void assertVerified(boolean verified)
+    {
+        assertTrue(errors.toString(), verified);
+    }
+
+    private boolean verify(String name, String sig, String... lines)
+    {
+        return parse(name, sig, lines).verifyStack();
+    }
+
+    private boolean reverify(CodeParser parser)
+    {
+        errors.clear();
+        assertTrue(errors.toString(), parser.reparse(false));
+        assertTrue(errors.toString(), parser.resolveSymbols());
+        return parser.verifyStack();
+    }
+
+    private CodeParser parse(String name, String sig, String... lines)
+    {
+        MethodContext mth = classContext.findMethod(name, parseTypeSig(sig), false);
+        if (mth == null)
+        {
+            int mods = name.equals("<init>") ? Modifier.PUBLIC : Modifier.PUBLIC | Modifier.STATIC;
+            mth = classContext.addMethod(mods, name, parseTypeSig(sig));
+        }
+
+        errors = new ArrayList<>();
+        CodeParser parser = new CodeParser(new CodeSymbols(null, classContext), mth, String.join("\n", lines),
+                new Highlighter()
+                {
+                    @Override
+                    public void insertTag(Tag tag)
+                    {
+                        if (tag.getType() == TagType.ERROR)
+                            errors.add(tag.getTagDescription());
+                    }
+
+                    @Override
+                    public void insertSyntax(Syntax syn)
+                    {
+
+                    }
+                });
+        assertTrue(errors.toString(), parser.reparse(false));
+        assertTrue(errors.toString(), parser.resolveSymbols());
+        return parser;
+    }
+}
@@ -0,0 +1,78 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.code.highlight.*;
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class HighlightBufferTest
+{
+    @Test
+    public void testSyntaxSpans() throws Exception
+    {
+        HighlightBuffer buffer = new HighlightBuffer();
+        for (int i = 0; i < 1000; i++)
+            buffer.insertSyntax(i + 1, 2, 5, SyntaxType.NUMBER);
+        buffer.insertSyntax(new Syntax(SyntaxType.COMMA, new Range(7, 3, 7, 4)));
+
+        assertEquals(1001, buffer.size());
+        assertEquals(500, buffer.getLineNumber(499));
+        assertEquals(2, buffer.getStart(499));
+        assertEquals(5, buffer.getEnd(499));
+        assertEquals(HighlightStyles.getStyleId(SyntaxType.NUMBER), buffer.getStyleId(499));
+        assertNull(buffer.getTag(499));
+        assertEquals(7, buffer.getLineNumber(1000));
+        assertEquals(HighlightStyles.getStyleId(SyntaxType.COMMA), buffer.getStyleId(1000));
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testMultiLineTag() throws Exception
+    {
+        HighlightBuffer buffer = new HighlightBuffer();
+        Tag tag = new Tag(TagType.ERROR, new Range(2, 3, 4, 5), "error");
+        buffer.insertTag(tag);
+
+        assertEquals(3, buffer.size());
+        for (int i = 0; i < 3; i++)
+        {
+            assertEquals(i + 2, buffer.getLineNumber(i));
+            assertSame(tag, buffer.getTag(i));
+            assertEquals(HighlightStyles.getStyleId(TagType.ERROR), buffer.getStyleId(i));
+        }
+        assertEquals(3, buffer.getStart(0));
+        assertEquals(HighlightBuffer.END_OF_LINE, buffer.getEnd(0));
+        assertEquals(0, buffer.getStart(2));
+        assertEquals(5, buffer.getEnd(2));
+    }
+
+    @Test
+    public void testLazyTag() throws Exception
+    {
+        int[] formatted = {0};
+        Tag tag = new Tag(TagType.WARNING, new Range(1, 0, 1, 1), () -> {
+            formatted[0]++;
+            return "warning";
+        });
+
+        HighlightBuffer buffer = new HighlightBuffer();
+        buffer.insertTag(tag);
+        assertEquals(0, formatted[0]);
+        assertEquals("warning", buffer.getTag(0).getTagDescription());
+        assertEquals("warning", buffer.getTag(0).getTagDescription());
+        assertEquals(1, formatted[0]);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testOutOfRange() throws Exception
+    {
+        HighlightBuffer buffer = new HighlightBuffer();
+        buffer.insertSyntax(1, 0, 1, SyntaxType.LABEL);
+        buffer.clear();
+        buffer.getLineNumber(0);
+    }
+}
@@ -0,0 +1,195 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.batch.JarDisassembler;
+import com.theKidOfArcrania.asm.editor.code.parsing.CodeSymbols;
+import com.theKidOfArcrania.asm.editor.context.ClassContext;
+import com.theKidOfArcrania.asm.editor.context.MethodContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.objectweb.asm.Opcodes.*;
+
+@SuppressWarnings("JavaDoc")
+public class JarDisassemblerTest
+{
+    private static final int CLASS_COUNT = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path jar;
+    private JarDisassembler disasm;
+    private String prefix;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        prefix = "batch/" + folder.getRoot().getName().replaceAll("\\W", "") + "/Gen";
+        jar = folder.newFile("test.jar").toPath();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+        {
+            out.putNextEntry(new JarEntry("META-INF/notes.txt"));
+            out.write("not a class".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < CLASS_COUNT; i++)
+            {
+                out.putNextEntry(new JarEntry(prefix + i + ".class"));
+                out.write(generateClass(prefix + i, i));
+            }
+        }
+
+        disasm = new JarDisassembler(4, 3);
+    }
+
+    @After
+    public void tearDown()
+    {
+        disasm.shutdown();
+    }
+
+    @Test
+    public void testDisassembleToDirectory() throws Exception
+    {
+        Path outDir = folder.newFolder("out").toPath();
+        disasm.disassembleToDirectory(jar, outDir);
+
+        assertEquals(CLASS_COUNT, disasm.getClassCount());
+        assertEquals(CLASS_COUNT * 2, disasm.getMethodCount());
+        assertEquals(0, disasm.getFailureCount());
+        for (int i = 0; i < CLASS_COUNT; i++)
+        {
+            Path listing = outDir.resolve(prefix + i + JarDisassembler.LISTING_EXT);
+            checkListing(new String(Files.readAllBytes(listing), StandardCharsets.UTF_8), i);
+        }
+    }
+
+    @Test
+    public void testDisassembleToArchive() throws Exception
+    {
+        Path archive = folder.getRoot().toPath().resolve("out.zip");
+        disasm.disassembleToArchive(jar, archive);
+
+        assertEquals(CLASS_COUNT, disasm.getClassCount());
+        assertEquals(0, disasm.getFailureCount());
+        try (ZipFile zip = new ZipFile(archive.toFile()))
+        {
+            assertEquals(CLASS_COUNT, zip.size());
+            for (int i = 0; i < CLASS_COUNT; i++)
+            {
+                ZipEntry entry = zip.getEntry(prefix + i + JarDisassembler.LISTING_EXT);
+                try (InputStream in = zip.getInputStream(entry))
+                {
+                    checkListing(readAll(in), i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testReleaseClassData() throws Exception
+    {
+        disasm.disassembleToArchive(jar, folder.getRoot().toPath().resolve("out.zip"));
+
+        ClassContext ctx = ClassContext.findContext(prefix + 0);
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        for (MethodContext mth : ctx.getMethods())
+            assertFalse(mth.readCode(global).contains("RETURN"));
+    }
+
+    @Test
+    public void testKeepLoadedClassData() throws Exception
+    {
+        ClassContext ctx = ClassContext.loadContext(new ClassReader(generateClass(prefix + 1, 1)));
+        disasm.disassembleToArchive(jar, folder.getRoot().toPath().resolve("out.zip"));
+        assertEquals(CLASS_COUNT, disasm.getClassCount());
+
+        //The class was loaded before the disassembly, so its class data is left alone.
+        CodeSymbols global = new CodeSymbols(null, ctx);
+        for (MethodContext mth : ctx.getMethods())
+            assertTrue(mth.readCode(global).contains("RETURN"));
+    }
+
+    @Test
+    public void testClassPathClass() throws Exception
+    {
+        Path cpJar = folder.newFile("cp.jar").toPath();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(cpJar)))
+        {
+            out.putNextEntry(new JarEntry("java/lang/Object.class"));
+            out.write(new ClassReader("java/lang/Object").b);
+        }
+
+        //Class path classes read their method bodies from the class path for the listing, and only release them
+        //again if they were not read before.
+        ClassContext ctx = ClassContext.findContext("java/lang/Object");
+        boolean loaded = ctx.isClassDataLoaded();
+        Path outDir = folder.newFolder("out").toPath();
+        disasm.disassembleToDirectory(cpJar, outDir);
+        assertEquals(0, disasm.getFailureCount());
+        assertEquals(loaded, ctx.isClassDataLoaded());
+
+        String listing = new String(Files.readAllBytes(outDir.resolve("java/lang/Object" +
+                JarDisassembler.LISTING_EXT)), StandardCharsets.UTF_8);
+        assertTrue(listing, listing.contains("# java/lang/Object.<init>()V\n  RETURN"));
+    }
+
+    private void checkListing(String listing, int num)
+    {
+        assertTrue(listing, listing.contains("# " + prefix + num + ".<init>()V\n  ALOAD 0\n"));
+        assertTrue(listing, listing.contains("# " + prefix + num + ".num()Ljava/lang/String;\n  LDC \"#" + num +
+                "\\n\"\n  ARETURN"));
+    }
+
+    private static String readAll(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        byte[] buff = new byte[1024];
+        int read;
+        while ((read = in.read(buff)) != -1)
+            bout.write(buff, 0, read);
+        return new String(bout.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] generateClass(String name, int num)
+    {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC, name, null, "java/lang/Object", null);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "num", "()Ljava/lang/String;", null, null);
+        mv.visitCode();
+        mv.visitLdcInsn("#" + num + "\n");
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
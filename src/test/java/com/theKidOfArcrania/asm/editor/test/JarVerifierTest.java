@@ -0,0 +1,154 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.batch.JarVerifier;
+import com.theKidOfArcrania.asm.editor.batch.JarVerifier.ClassSummary;
+import com.theKidOfArcrania.asm.editor.batch.JarVerifier.Diagnostic;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.objectweb.asm.Opcodes.*;
+
+@SuppressWarnings("JavaDoc")
+public class JarVerifierTest
+{
+    private static final int CLASS_COUNT = 20;
+    private static final int BAD_CLASS = 7;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path jar;
+    private JarVerifier verifier;
+    private String prefix;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        prefix = "verify/" + folder.getRoot().getName().replaceAll("\\W", "") + "/Gen";
+        jar = folder.newFile("test.jar").toPath();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)))
+        {
+            out.putNextEntry(new JarEntry("META-INF/notes.txt"));
+            out.write("not a class".getBytes(StandardCharsets.UTF_8));
+
+            //Each class extends the next one, which comes later in the jar.
+            for (int i = 0; i < CLASS_COUNT; i++)
+            {
+                out.putNextEntry(new JarEntry(prefix + i + ".class"));
+                out.write(generateClass(i));
+            }
+        }
+
+        verifier = new JarVerifier(4);
+    }
+
+    @After
+    public void tearDown()
+    {
+        verifier.shutdown();
+    }
+
+    @Test
+    public void testVerify() throws Exception
+    {
+        List<Diagnostic> diags = Collections.synchronizedList(new ArrayList<>());
+        List<ClassSummary> summaries = Collections.synchronizedList(new ArrayList<>());
+        verifier.verify(jar, new JarVerifier.Listener()
+        {
+            @Override
+            public void reportDiagnostic(Diagnostic diag)
+            {
+                diags.add(diag);
+            }
+
+            @Override
+            public void classVerified(ClassSummary summary)
+            {
+                summaries.add(summary);
+            }
+        });
+
+        assertEquals(0, verifier.getFailureCount());
+        assertEquals(CLASS_COUNT, verifier.getClassCount());
+        assertEquals(CLASS_COUNT * 3, verifier.getMethodCount());
+        assertEquals(CLASS_COUNT, summaries.size());
+        for (ClassSummary summary : summaries)
+        {
+            assertEquals(3, summary.getMethodCount());
+            assertEquals(summary.getName().equals(prefix + BAD_CLASS) ? 1 : 0, summary.getErrorCount());
+        }
+
+        assertEquals(diags.toString(), 1, diags.size());
+        Diagnostic diag = diags.get(0);
+        assertEquals(prefix + BAD_CLASS, diag.getClassName());
+        assertEquals("bad()I", diag.getMethod());
+        assertNotNull(diag.getCode());
+        assertEquals(1, verifier.getErrorCount());
+    }
+
+    private String superName(int num)
+    {
+        return num == CLASS_COUNT - 1 ? "java/lang/Object" : prefix + (num + 1);
+    }
+
+    private byte[] generateClass(int num)
+    {
+        String name = prefix + num;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC, name, null, superName(num), null);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, superName(num), "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        //Uses the class as its super class, which is only found in the jar.
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "pick", "(Z)L" + superName(num) + ";", null, null);
+        Label other = new Label();
+        mv.visitCode();
+        mv.visitVarInsn(ILOAD, 0);
+        mv.visitJumpInsn(IFEQ, other);
+        mv.visitTypeInsn(NEW, name);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, name, "<init>", "()V", false);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(other);
+        mv.visitInsn(ACONST_NULL);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "bad", "()I", null, null);
+        mv.visitCode();
+        if (num == BAD_CLASS)
+            mv.visitInsn(ACONST_NULL);
+        else
+            mv.visitInsn(ICONST_0);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+}
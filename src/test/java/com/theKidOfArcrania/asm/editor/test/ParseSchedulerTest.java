@@ -0,0 +1,139 @@
+package com.theKidOfArcrania.asm.editor.test;
+
+import com.theKidOfArcrania.asm.editor.ui.ParseScheduler;
+import com.theKidOfArcrania.asm.editor.ui.ParseScheduler.Handle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings("JavaDoc")
+public class ParseSchedulerTest
+{
+    private static final long TIMEOUT = 5;
+
+    private ParseScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        scheduler = new ParseScheduler(1);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCoalesce() throws Exception
+    {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        Handle handle = scheduler.register(h -> {
+            runs.incrementAndGet();
+            done.countDown();
+        });
+
+        for (int i = 0; i < 10; i++)
+            handle.request();
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(ParseScheduler.MAX_DELAY * 2));
+
+        assertEquals(1, runs.get());
+        assertEquals(1, scheduler.getParseLatency().getCount());
+        assertEquals(1, scheduler.getQueueLatency().getCount());
+        assertTrue(scheduler.getQueueLatency().getMax() >= ParseScheduler.MIN_DELAY);
+    }
+
+    @Test
+    public void testSupersede() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        AtomicBoolean superseded = new AtomicBoolean();
+        Handle handle = scheduler.register(h -> {
+            if (runs.incrementAndGet() == 1)
+            {
+                started.countDown();
+                release.await();
+                superseded.set(h.isSuperseded());
+            }
+            else
+            {
+                assertFalse(h.isSuperseded());
+                second.countDown();
+            }
+        });
+
+        handle.request();
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        handle.request();
+        handle.request();
+        release.countDown();
+
+        assertTrue(second.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(superseded.get());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void testPriority() throws Exception
+    {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        Handle blocker = scheduler.register(h -> {
+            started.countDown();
+            release.await();
+        });
+        Handle background = scheduler.register(h -> {
+            order.add("background");
+            finished.countDown();
+        });
+        Handle focused = scheduler.register(h -> {
+            order.add("focused");
+            finished.countDown();
+        });
+        background.setPriority(ParseScheduler.PRIORITY_BACKGROUND);
+        focused.setPriority(ParseScheduler.PRIORITY_FOCUSED);
+
+        blocker.request();
+        assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+        background.request();
+        focused.request();
+
+        //Wait until both requests are ready, so that only the priority decides.
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(ParseScheduler.MAX_DELAY * 2));
+        release.countDown();
+
+        assertTrue(finished.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals("focused", order.get(0));
+        assertEquals("background", order.get(1));
+    }
+
+    @Test
+    public void testRequestNow() throws Exception
+    {
+        CountDownLatch done = new CountDownLatch(1);
+        Handle handle = scheduler.register(h -> done.countDown());
+
+        handle.requestNow();
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(scheduler.getQueueLatency().getMax() < ParseScheduler.MIN_DELAY);
+    }
+}
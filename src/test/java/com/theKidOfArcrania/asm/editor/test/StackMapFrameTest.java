@@ -11,6 +11,7 @@ import com.theKidOfArcrania.asm.editor.context.MethodContext;
 import com.theKidOfArcrania.asm.editor.context.TypeSort;
 import org.junit.Before;
 import org.junit.Test;
+import org.objectweb.asm.Label;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
@@ -93,6 +94,34 @@ public class StackMapFrameTest
         assertEquals(classContext.toString(), tester.getVar(0).getRefSig().getClassDescriptor());
     }
 
+    @Test
+    public void testInitAllocationSite() throws Exception
+    {
+        globalSymbols.addLabel("first", new Label());
+        globalSymbols.addLabel("second", new Label());
+        FrameElement first = new FrameElement(UNINITIALIZED, "first");
+        FrameElement second = new FrameElement(UNINITIALIZED, "second");
+        FrameElement init = new FrameElement(OBJECT, parseTypeSig("Ljava/lang/String;"));
+
+        tester.allocateVar(1, first);
+        tester.allocateVar(2, second);
+        tester.allocateVar(3, first);
+        tester.popVar();
+        tester.pushOp(first);
+        tester.pushOp(second);
+        tester.pushOp(new FrameElement(UNINITIALIZED, "first"));
+        tester.init(globalSymbols, first, init);
+
+        assertEquals(init, tester.popOp(OBJECT));
+        assertEquals(second, tester.popOp(UNINITIALIZED));
+        assertEquals(init, tester.popOp(OBJECT));
+        assertEquals(init, tester.getVar(1));
+        assertEquals(second, tester.getVar(2));
+
+        tester.init(globalSymbols, second, init);
+        assertEquals(init, tester.getVar(2));
+    }
+
     @Test(expected=FrameException.class)
     public void testPopLongFailed() throws Exception
     {
@@ -0,0 +1,43 @@
+package com.theKidOfArcrania.asm.editor.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class LatencyHistogramTest
+{
+    @Test
+    public void testPercentiles() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getPercentile(50));
+
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i * 1000);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100000, histogram.getMax());
+        assertEquals(50500, histogram.getMean());
+
+        //Percentiles are only accurate up to the power of two.
+        long p50 = histogram.getPercentile(50);
+        assertTrue(p50 >= 50000 && p50 < 100000);
+        assertEquals(100000, histogram.getPercentile(100));
+        assertTrue(histogram.getPercentile(10) <= histogram.getPercentile(90));
+    }
+
+    @Test
+    public void testReset() throws Exception
+    {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.record(-5);
+        histogram.record(0);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
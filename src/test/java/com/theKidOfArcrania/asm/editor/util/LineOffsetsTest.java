@@ -0,0 +1,108 @@
+package com.theKidOfArcrania.asm.editor.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@SuppressWarnings({"JavaDoc", "MagicNumber"})
+public class LineOffsetsTest
+{
+    @Test
+    public void testInsertRemove() throws Exception
+    {
+        LineOffsets offsets = new LineOffsets();
+        offsets.insertLine(1, 10);
+        offsets.insertLine(2, 20);
+        offsets.insertLine(1, 5);
+
+        checkData(offsets, 0, 5, 10, 20);
+        assertEquals(-1, offsets.findLine(-1));
+        assertEquals(0, offsets.findLine(4));
+        assertEquals(1, offsets.findLine(5));
+        assertEquals(2, offsets.findLine(19));
+        assertEquals(3, offsets.findLine(100));
+
+        offsets.removeLine(2);
+        checkData(offsets, 0, 5, 20);
+        offsets.removeLine(2);
+        checkData(offsets, 0, 5);
+    }
+
+    @Test
+    public void testShift() throws Exception
+    {
+        LineOffsets offsets = new LineOffsets();
+        offsets.insertLine(1, 3);
+        offsets.insertLine(2, 7);
+        offsets.shift(1, 4);
+        checkData(offsets, 0, 7, 11);
+        offsets.shift(2, -2);
+        checkData(offsets, 0, 7, 9);
+        offsets.shift(3, 100);
+        checkData(offsets, 0, 7, 9);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void testRemoveFirst() throws Exception
+    {
+        new LineOffsets().removeLine(0);
+    }
+
+    @Test
+    public void testRandomEdits() throws Exception
+    {
+        Random rng = new Random(42);
+        LineOffsets offsets = new LineOffsets();
+        ArrayList<Integer> expected = new ArrayList<>();
+        expected.add(0);
+
+        for (int i = 0; i < 2000; i++)
+        {
+            int size = expected.size();
+            switch (rng.nextInt(3))
+            {
+                case 0:
+                    int index = 1 + rng.nextInt(size);
+                    int start = expected.get(index - 1) + 1;
+                    if (index < size && start >= expected.get(index))
+                        break;
+                    expected.add(index, start);
+                    offsets.insertLine(index, start);
+                    break;
+                case 1:
+                    if (size == 1)
+                        break;
+                    index = 1 + rng.nextInt(size - 1);
+                    expected.remove(index);
+                    offsets.removeLine(index);
+                    break;
+                default:
+                    index = rng.nextInt(size + 1);
+                    int delta = rng.nextInt(10);
+                    for (int j = index; j < size; j++)
+                        expected.set(j, expected.get(j) + delta);
+                    offsets.shift(index, delta);
+            }
+        }
+
+        int[] data = new int[expected.size()];
+        for (int i = 0; i < data.length; i++)
+            data[i] = expected.get(i);
+        checkData(offsets, data);
+    }
+
+    private void checkData(LineOffsets offsets, int... starts)
+    {
+        assertEquals(starts.length, offsets.getLineCount());
+        for (int i = 0; i < starts.length; i++)
+        {
+            assertEquals(starts[i], offsets.getLineStart(i));
+            assertEquals(i, offsets.findLine(starts[i]));
+            if (i > 0 && starts[i - 1] < starts[i] - 1)
+                assertEquals(i - 1, offsets.findLine(starts[i] - 1));
+        }
+    }
+}
@@ -1,8 +1,15 @@
 package com.theKidOfArcrania.asm.editor.util;
 
+import com.theKidOfArcrania.asm.editor.code.highlight.Tag;
+import com.theKidOfArcrania.asm.editor.code.highlight.TagType;
+import com.theKidOfArcrania.asm.editor.code.parsing.Range;
 import org.junit.Test;
 
-import java.util.Set;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.*;
@@ -94,6 +101,223 @@ public class RangeSetTest
         checkData(eles, contains, ranges);
     }
 
+    @Test
+    public void testRemoveRange() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, "A");
+        eles.add(5, 10, "B");
+        assertTrue(eles.remove(3, 6, "A"));
+        assertFalse(eles.remove(3, 6, "A"));
+
+        String[][] contains = {{"A"}, {"B"}, {"A", "B"}, {"B"}};
+        int[][] ranges = {{1, 3}, {5, 6}, {6, 7}, {7, 10}};
+        checkData(eles, contains, ranges);
+
+        eles.remove(6, 7, "A");
+        contains = new String[][] {{"A"}, {"B"}};
+        ranges = new int[][] {{1, 3}, {5, 10}};
+        checkData(eles, contains, ranges);
+    }
+
+    @Test
+    public void testAddIntoGap() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(23, 35, "B");
+        eles.add(41, 54, "A");
+        eles.add(34, 43, "A");
+
+        String[][] contains = {{"B"}, {"A", "B"}, {"A"}};
+        int[][] ranges = {{23, 34}, {34, 35}, {35, 54}};
+        checkData(eles, contains, ranges);
+    }
+
+    @Test
+    public void testGet() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, "A");
+        eles.add(5, 10, "B");
+
+        assertTrue(eles.getItems(0).isEmpty());
+        assertEquals(1, eles.getItems(1).size());
+        assertEquals(2, eles.getItems(5).size());
+        assertEquals(1, eles.getItems(10).size());
+        assertTrue(eles.getItems(11).isEmpty());
+        assertNull(eles.get(11));
+    }
+
+    @Test(expected=UnsupportedOperationException.class)
+    public void testReadOnlyItems() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, "A");
+        eles.getItems(3).add("B");
+    }
+
+    @Test
+    public void testCopy() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, "A");
+        RangeSet<String> copy = new RangeSet<>(eles);
+        eles.add(5, 10, "B");
+
+        String[][] contains = {{"A"}};
+        int[][] ranges = {{1, 7}};
+        checkData(copy, contains, ranges);
+    }
+
+    @Test
+    public void testCombineUnordered() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(0, 5, "A");
+        eles.add(0, 5, "B");
+        eles.add(5, 10, "B");
+        eles.add(5, 10, "A");
+
+        String[][] contains = {{"A", "B"}};
+        int[][] ranges = {{0, 10}};
+        checkData(eles, contains, ranges);
+    }
+
+    @Test
+    public void testMaskCombine() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        assertTrue(eles.add(5, 10, 1, null));
+        assertTrue(eles.add(0, 5, 1, null));
+        assertTrue(eles.add(12, 16, 1, null));
+        assertFalse(eles.add(2, 8, 1, null));
+
+        checkMasks(eles, new int[][] {{0, 10, 1}, {12, 16, 1}});
+    }
+
+    @Test
+    public void testMaskMerge() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, 1, null);
+        eles.add(9, 12, 1, null);
+        eles.add(5, 10, 2, "B");
+
+        checkMasks(eles, new int[][] {{1, 5, 1}, {5, 7, 3}, {7, 9, 2}, {9, 10, 3}, {10, 12, 1}});
+        assertEquals(Collections.emptyList(), eles.getItems(4));
+        assertEquals(Collections.singletonList("B"), eles.getItems(5));
+        assertEquals(Collections.singletonList("B"), eles.getItems(7));
+        assertEquals(3, eles.getMask(9));
+        assertEquals(1, eles.getMask(10));
+        assertEquals(1, eles.getMask(12));
+        assertEquals(0, eles.getMask(13));
+    }
+
+    @Test
+    public void testMaskItems() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(0, 10, 2, "A");
+        assertTrue(eles.add(5, 10, 2, "B"));
+        assertFalse(eles.add(5, 10, 2, "B"));
+
+        checkMasks(eles, new int[][] {{0, 5, 2}, {5, 10, 2}});
+        assertEquals(Arrays.asList("A", "B"), eles.getItems(7));
+
+        assertTrue(eles.remove(0, "B"::equals));
+        checkMasks(eles, new int[][] {{0, 10, 2}});
+    }
+
+    @Test
+    public void testRemoveMask() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, 1, null);
+        eles.add(5, 10, 2, "B");
+        eles.add(9, 12, 1, null);
+        assertTrue(eles.remove(2, "B"::equals));
+        assertFalse(eles.remove(2, "B"::equals));
+
+        checkMasks(eles, new int[][] {{1, 7, 1}, {9, 12, 1}});
+        assertEquals(Collections.emptyList(), eles.getItems(6));
+
+        assertTrue(eles.remove(3, 10, 1, s -> false));
+        checkMasks(eles, new int[][] {{1, 3, 1}, {10, 12, 1}});
+    }
+
+    @Test
+    public void testRetainMaskRange() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, 1, null);
+        eles.add(9, 12, 1, null);
+        eles.add(5, 10, 2, null);
+        eles.retainRange(5, 10);
+
+        checkMasks(eles, new int[][] {{5, 7, 3}, {7, 9, 2}, {9, 10, 3}});
+    }
+
+    @Test
+    public void testCopyMask() throws Exception
+    {
+        RangeSet<String> eles = new RangeSet<>();
+        eles.add(1, 7, 1, null);
+        RangeSet<String> copy = new RangeSet<>(eles);
+        eles.add(5, 10, 2, null);
+
+        checkMasks(copy, new int[][] {{1, 7, 1}});
+    }
+
+    @Test
+    public void testLazyTagsNotFormatted() throws Exception
+    {
+        AtomicInteger formatted = new AtomicInteger();
+        Supplier<String> formatter = () -> {
+            formatted.incrementAndGet();
+            return "error";
+        };
+        Range span = new Range(0, 0, 0, 10);
+        Tag first = new Tag(TagType.ERROR, span, formatter);
+        Tag second = new Tag(TagType.ERROR, span, formatter);
+
+        RangeSet<Tag> eles = new RangeSet<>();
+        eles.add(0, 5, 1, first);
+        eles.add(5, 10, 1, first);
+        eles.add(0, 10, 1, second);
+        assertFalse(eles.add(3, 7, 1, first));
+        checkMasks(eles, new int[][] {{0, 10, 1}});
+        assertEquals(Arrays.asList(first, second), eles.getItems(5));
+
+        eles.remove(first);
+        assertEquals(Collections.singletonList(second), eles.getItems(5));
+        assertEquals(0, formatted.get());
+        assertEquals("error", second.getTagDescription());
+        assertEquals(1, formatted.get());
+    }
+
+    private void checkMasks(RangeSet<?> eles, int[][] ranges)
+    {
+        try
+        {
+            int ind = 0;
+            for (RangeSet<?>.RangeElement ele : eles)
+            {
+                if (ind >= ranges.length)
+                    fail("Out of range check");
+                assertEquals(ranges[ind][0], ele.getFrom());
+                assertEquals(ranges[ind][1], ele.getTo());
+                assertEquals(ranges[ind][2], ele.getMask());
+                ind++;
+            }
+            assertEquals(ranges.length, ind);
+        }
+        catch (AssertionError e)
+        {
+            System.err.println(eles);
+            throw e;
+        }
+    }
+
     private <T> void checkData(RangeSet<? extends T> eles, T contains[][], int[][] ranges)
     {
         class Range
@@ -144,7 +368,7 @@ public class RangeSetTest
                     fail("Out of range check");
                 Range range = new Range(ranges[ind][0], ranges[ind][1]);
                 assertEquals(range, new Range(ele.getFrom(), ele.getTo()));
-                Set<? extends T> actual = ele.getItems();
+                Collection<? extends T> actual = ele.getItems();
                 for (T e : contains[ind])
                     if (!actual.contains(e))
                         fail(range + " does not contain " + e);